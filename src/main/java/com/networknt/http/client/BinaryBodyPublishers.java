@@ -0,0 +1,210 @@
+package com.networknt.http.client;
+
+import com.networknt.http.client.compression.GzipBodyPublisher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The BodyPublishers for binary request bodies. The bytes are published as they are, without being copied into a
+ * String or a new array, and the content length is reported whenever it is known so that the Content-Length header
+ * is set instead of a chunked body.
+ *
+ * A file is memory-mapped one region at a time as the HttpClient requests more buffers, so a large upload doesn't
+ * read the file on the heap and the mapped regions can be released by the GC once they are written.
+ */
+public final class BinaryBodyPublishers {
+    static final int DEFAULT_REGION_SIZE = 1024 * 1024;
+
+    private BinaryBodyPublishers() {
+    }
+
+    /**
+     * @param body the bytes to send, the array must not be changed until the response is received
+     * @return BodyPublisher
+     */
+    public static HttpRequest.BodyPublisher of(byte[] body) {
+        return HttpRequest.BodyPublishers.ofByteArray(body);
+    }
+
+    /**
+     * Publish the remaining bytes of a heap or direct buffer. The position of the buffer is not changed, so the body
+     * can be sent again if the request is retried.
+     *
+     * @param body the buffer to send
+     * @return BodyPublisher
+     */
+    public static HttpRequest.BodyPublisher of(ByteBuffer body) {
+        return new ByteBufferPublisher(body);
+    }
+
+    /**
+     * Publish the content of a stream with an unknown length. The stream can only be read once, so a request with
+     * this body is not retried, and a second subscription fails instead of sending what is left of the stream.
+     *
+     * @param body the stream to send, it is closed at the end of the body
+     * @return BodyPublisher
+     */
+    public static HttpRequest.BodyPublisher of(InputStream body) {
+        return new InputStreamPublisher(body);
+    }
+
+    /**
+     * @param publisher the BodyPublisher of a request, it may be gzipped
+     * @return true if the body can only be sent once
+     */
+    static boolean isOneShot(HttpRequest.BodyPublisher publisher) {
+        if (publisher instanceof GzipBodyPublisher) {
+            publisher = ((GzipBodyPublisher) publisher).getBody();
+        }
+        return publisher instanceof InputStreamPublisher;
+    }
+
+    /**
+     * @param file the file to send
+     * @return BodyPublisher
+     * @throws UncheckedIOException if the file cannot be read
+     */
+    public static HttpRequest.BodyPublisher of(Path file) {
+        return ofMappedFile(file, DEFAULT_REGION_SIZE);
+    }
+
+    /**
+     * Publish a file memory-mapped in regions of the given size. The file is opened again for each subscription.
+     *
+     * @param file       the file to send
+     * @param regionSize the size of the mapped regions
+     * @return BodyPublisher
+     * @throws UncheckedIOException if the file cannot be read
+     */
+    public static HttpRequest.BodyPublisher ofMappedFile(Path file, int regionSize) {
+        long size;
+        try {
+            size = Files.size(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new MappedFilePublisher(file, size, Math.max(4096, regionSize));
+    }
+
+    static final class ByteBufferPublisher implements HttpRequest.BodyPublisher {
+        private final ByteBuffer body;
+
+        ByteBufferPublisher(ByteBuffer body) {
+            this.body = body.asReadOnlyBuffer();
+        }
+
+        @Override
+        public long contentLength() {
+            return body.remaining();
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            // each subscriber reads its own view of the buffer.
+            ByteBuffer[] chunk = { body.duplicate() };
+            ChunkSubscription.subscribe(subscriber, () -> {
+                ByteBuffer next = chunk[0];
+                chunk[0] = null;
+                return next;
+            });
+        }
+    }
+
+    static final class InputStreamPublisher implements HttpRequest.BodyPublisher {
+        private final HttpRequest.BodyPublisher body;
+        private final AtomicBoolean subscribed = new AtomicBoolean();
+
+        InputStreamPublisher(InputStream body) {
+            this.body = HttpRequest.BodyPublishers.ofInputStream(() -> body);
+        }
+
+        @Override
+        public long contentLength() {
+            return -1;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            if (!subscribed.compareAndSet(false, true)) {
+                ChunkSubscription.fail(subscriber, new IllegalStateException("The InputStream body has been sent already"));
+                return;
+            }
+            body.subscribe(subscriber);
+        }
+    }
+
+    static final class MappedFilePublisher implements HttpRequest.BodyPublisher {
+        private final Path file;
+        private final long size;
+        private final int regionSize;
+
+        MappedFilePublisher(Path file, long size, int regionSize) {
+            this.file = file;
+            this.size = size;
+            this.regionSize = regionSize;
+        }
+
+        @Override
+        public long contentLength() {
+            return size;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            FileChannel channel;
+            try {
+                channel = FileChannel.open(file, StandardOpenOption.READ);
+            } catch (IOException | RuntimeException e) {
+                ChunkSubscription.fail(subscriber, e);
+                return;
+            }
+            ChunkSubscription.subscribe(subscriber, new MappedFileSource(channel, size, regionSize));
+        }
+    }
+
+    /**
+     * Map the next region of the file on demand. The length reported in the headers is kept even if the file
+     * changes, so a file that is truncated while it is sent fails the request.
+     */
+    static final class MappedFileSource implements ChunkSubscription.ChunkSource {
+        private final FileChannel channel;
+        private final long size;
+        private final int regionSize;
+        private long position;
+
+        MappedFileSource(FileChannel channel, long size, int regionSize) {
+            this.channel = channel;
+            this.size = size;
+            this.regionSize = regionSize;
+        }
+
+        @Override
+        public ByteBuffer next() throws IOException {
+            if (position >= size) {
+                return null;
+            }
+            long length = Math.min(regionSize, size - position);
+            if (position + length > channel.size()) {
+                throw new IOException("File is shorter than the content length " + size);
+            }
+            ByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            position += length;
+            return region;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.networknt.http.client;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded platform thread pool for the asynchronous HttpClient callbacks. Unlike the JDK default executor,
+ * the number of threads and the queue are capped and the saturation can be observed from the metrics.
+ */
+public class BoundedExecutor extends ThreadPoolExecutor {
+    private final AtomicLong rejectedCount;
+    private final int queueCapacity;
+
+    public BoundedExecutor(int corePoolSize, int maxPoolSize, int queueCapacity, long keepAliveTime) {
+        this(corePoolSize, maxPoolSize, queueCapacity, keepAliveTime, new AtomicLong());
+    }
+
+    private BoundedExecutor(int corePoolSize, int maxPoolSize, int queueCapacity, long keepAliveTime,
+            AtomicLong rejectedCount) {
+        super(corePoolSize, maxPoolSize, keepAliveTime, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new DaemonThreadFactory(), new CountingPolicy(rejectedCount));
+        this.rejectedCount = rejectedCount;
+        this.queueCapacity = queueCapacity;
+        allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return the number of tasks waiting in the queue.
+     */
+    public int getQueueDepth() {
+        return getQueue().size();
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * @return the number of tasks rejected because both the pool and the queue are full.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("poolSize", getPoolSize());
+        metrics.put("activeCount", getActiveCount());
+        metrics.put("queueDepth", getQueueDepth());
+        metrics.put("queueCapacity", queueCapacity);
+        metrics.put("completedTaskCount", getCompletedTaskCount());
+        metrics.put("rejectedCount", getRejectedCount());
+        return metrics;
+    }
+
+    /**
+     * Count the rejected tasks. It is passed to the super constructor, so it gets the counter instead of the
+     * enclosing executor.
+     */
+    private static class CountingPolicy implements RejectedExecutionHandler {
+        private final AtomicLong rejectedCount;
+
+        CountingPolicy(AtomicLong rejectedCount) {
+            this.rejectedCount = rejectedCount;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            rejectedCount.incrementAndGet();
+            throw new RejectedExecutionException("HttpClient executor is saturated with " + executor.getActiveCount()
+                    + " active threads and " + executor.getQueue().size() + " queued tasks");
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private static final AtomicInteger poolNumber = new AtomicInteger();
+        private final AtomicInteger threadNumber = new AtomicInteger();
+        private final String prefix = "http-client-" + poolNumber.incrementAndGet() + "-";
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.networknt.http.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publish the chunks of a request body as they are requested by the HttpClient. The request may be called from
+ * any thread and from the onNext, so a single drain loop pulls the chunks from the source and publishes them.
+ */
+class ChunkSubscription implements Flow.Subscription {
+    private static final Logger logger = LoggerFactory.getLogger(ChunkSubscription.class);
+
+    /**
+     * Produce the chunks of a body on demand.
+     */
+    interface ChunkSource {
+        /**
+         * @return the next chunk or null at the end of the body
+         * @throws IOException if the chunk cannot be produced
+         */
+        ByteBuffer next() throws IOException;
+
+        /**
+         * Release the resources of the source when the body is complete, failed or cancelled.
+         *
+         * @throws IOException if the resources cannot be released
+         */
+        default void close() throws IOException {
+        }
+    }
+
+    private final Flow.Subscriber<? super ByteBuffer> subscriber;
+    private final ChunkSource source;
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicBoolean done = new AtomicBoolean();
+
+    ChunkSubscription(Flow.Subscriber<? super ByteBuffer> subscriber, ChunkSource source) {
+        this.subscriber = subscriber;
+        this.source = source;
+    }
+
+    /**
+     * Subscribe the subscriber to the chunks of the source.
+     */
+    static void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber, ChunkSource source) {
+        subscriber.onSubscribe(new ChunkSubscription(subscriber, source));
+    }
+
+    /**
+     * Subscribe the subscriber and fail it right away, for a source that cannot be opened.
+     */
+    static void fail(Flow.Subscriber<? super ByteBuffer> subscriber, Throwable throwable) {
+        ChunkSubscription subscription = new ChunkSubscription(subscriber, () -> null);
+        subscription.done.set(true);
+        subscriber.onSubscribe(subscription);
+        subscriber.onError(throwable);
+    }
+
+    @Override
+    public void request(long n) {
+        if (n <= 0) {
+            terminate(new IllegalArgumentException("non-positive request " + n));
+            return;
+        }
+        demand.getAndAccumulate(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+        drain();
+    }
+
+    @Override
+    public void cancel() {
+        if (done.compareAndSet(false, true)) {
+            closeSource();
+        }
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            while (demand.get() > 0 && !done.get()) {
+                ByteBuffer chunk;
+                try {
+                    chunk = source.next();
+                } catch (IOException | RuntimeException e) {
+                    terminate(e);
+                    return;
+                }
+                if (chunk == null) {
+                    terminate(null);
+                    return;
+                }
+                demand.decrementAndGet();
+                subscriber.onNext(chunk);
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void terminate(Throwable throwable) {
+        if (done.compareAndSet(false, true)) {
+            closeSource();
+            if (throwable == null) {
+                subscriber.onComplete();
+            } else {
+                subscriber.onError(throwable);
+            }
+        }
+    }
+
+    private void closeSource() {
+        try {
+            source.close();
+        } catch (IOException e) {
+            logger.error("Failed to close the body source:", e);
+        }
+    }
+}
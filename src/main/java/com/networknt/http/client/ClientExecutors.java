@@ -0,0 +1,78 @@
+package com.networknt.http.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The shared executors for the execution modes. They are created lazily and shared by all HttpClientRequest
+ * instances so that the HttpClientRegistry can reuse the clients built with them.
+ */
+public final class ClientExecutors {
+    private static final Logger logger = LoggerFactory.getLogger(ClientExecutors.class);
+    private static volatile ExecutorService virtualExecutor;
+    private static volatile boolean virtualUnavailable;
+    private static volatile BoundedExecutor boundedExecutor;
+
+    private ClientExecutors() {
+    }
+
+    /**
+     * Get the shared executor for the mode.
+     *
+     * @param mode ExecutionMode
+     * @return ExecutorService or null for the DEFAULT mode or when virtual threads are not supported.
+     */
+    public static ExecutorService get(ExecutionMode mode) {
+        switch (mode) {
+            case VIRTUAL:
+                return getVirtualExecutor();
+            case BOUNDED:
+                return getBoundedExecutor();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * The virtual-thread-per-task executor is looked up by reflection as the module is compiled for Java 11.
+     *
+     * @return ExecutorService or null if the running JVM doesn't support virtual threads.
+     */
+    public static ExecutorService getVirtualExecutor() {
+        if (virtualExecutor == null && !virtualUnavailable) {
+            synchronized (ClientExecutors.class) {
+                if (virtualExecutor == null && !virtualUnavailable) {
+                    try {
+                        Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                        virtualExecutor = (ExecutorService) method.invoke(null);
+                    } catch (ReflectiveOperationException e) {
+                        logger.warn("Virtual threads are not supported by Java {}, the default executor is used.",
+                                System.getProperty("java.version"));
+                        virtualUnavailable = true;
+                    }
+                }
+            }
+        }
+        return virtualExecutor;
+    }
+
+    /**
+     * @return the shared BoundedExecutor sized from the httpClient.executor section in the client.yml
+     */
+    public static BoundedExecutor getBoundedExecutor() {
+        if (boundedExecutor == null) {
+            synchronized (ClientExecutors.class) {
+                if (boundedExecutor == null) {
+                    HttpClientConfig config = HttpClientConfig.get();
+                    boundedExecutor = new BoundedExecutor(config.getCorePoolSize(), config.getMaxPoolSize(),
+                            config.getQueueCapacity(), config.getKeepAliveTime());
+                }
+            }
+        }
+        return boundedExecutor;
+    }
+}
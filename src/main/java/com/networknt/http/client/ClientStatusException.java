@@ -0,0 +1,35 @@
+package com.networknt.http.client;
+
+import com.networknt.monad.Failure;
+import com.networknt.monad.Result;
+import com.networknt.status.Status;
+
+import java.io.IOException;
+
+/**
+ * An IOException thrown by the HttpClientRequest when a request is rejected on the client side, for example by
+ * the bulkhead or the circuit breaker, so that the caller can tell it apart from a network error with the Status.
+ */
+public class ClientStatusException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    // the Status is not Serializable, it is only kept for the callers in the same process.
+    private final transient Status status;
+
+    public ClientStatusException(Status status) {
+        super(status.getCode() + " " + status.getMessage() + ": " + status.getDescription());
+        this.status = status;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @param <T> the type of the successful result
+     * @return a Failure with the Status
+     */
+    public <T> Result<T> toFailure() {
+        return Failure.of(status);
+    }
+}
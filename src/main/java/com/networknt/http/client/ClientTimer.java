@@ -0,0 +1,72 @@
+package com.networknt.http.client;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single shared timer thread to schedule the delayed work of the HttpClientRequest like the async retries.
+ * No thread is parked while waiting for the delay, and the scheduled tasks must be short and non-blocking as
+ * they run on the timer thread.
+ */
+public final class ClientTimer {
+    private static final ScheduledExecutorService scheduler = createScheduler();
+
+    private ClientTimer() {
+    }
+
+    private static ScheduledExecutorService createScheduler() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "http-client-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * Run the task once after the delay.
+     *
+     * @param task  the non-blocking task
+     * @param delay the delay in milliseconds
+     * @return ScheduledFuture that can be used to cancel the task
+     */
+    public static ScheduledFuture<?> schedule(Runnable task, long delay) {
+        return scheduler.schedule(task, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Hand the task over to the executor after the delay, so that a task that may block or take long, like
+     * sending a request, doesn't hold up the timer thread. If the executor rejects the task, it runs on the
+     * timer thread so that it is not lost.
+     *
+     * @param task     the task
+     * @param delay    the delay in milliseconds
+     * @param executor the Executor that runs the task
+     * @return ScheduledFuture that can be used to cancel the task before it is handed over
+     */
+    public static ScheduledFuture<?> schedule(Runnable task, long delay, Executor executor) {
+        return scheduler.schedule(() -> {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Run the task periodically with the fixed delay between the runs.
+     *
+     * @param task   the non-blocking task
+     * @param delay  the initial delay and the delay between the runs in milliseconds
+     * @return ScheduledFuture that can be used to cancel the task
+     */
+    public static ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, long delay) {
+        return scheduler.scheduleWithFixedDelay(task, delay, delay, TimeUnit.MILLISECONDS);
+    }
+}
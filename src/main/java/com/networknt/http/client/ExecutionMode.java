@@ -0,0 +1,32 @@
+package com.networknt.http.client;
+
+import java.util.Locale;
+
+/**
+ * The executor used by the shared HttpClient to run the response callbacks and dependent tasks.
+ */
+public enum ExecutionMode {
+    /**
+     * The JDK default executor, an unbounded cached thread pool created per HttpClient.
+     */
+    DEFAULT,
+    /**
+     * A virtual-thread-per-task executor. It is only available on Java 21 and falls back to DEFAULT otherwise.
+     */
+    VIRTUAL,
+    /**
+     * A bounded platform thread pool with queue depth, active count and rejection metrics.
+     */
+    BOUNDED;
+
+    /**
+     * @param value the mode name from the config, case-insensitive
+     * @return ExecutionMode or DEFAULT if the value is empty
+     */
+    public static ExecutionMode of(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return DEFAULT;
+        }
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -7,4 +7,5 @@ public class Headers {
     public static final String CORRELATION_ID_STRING = "X-Correlation-Id";
     public static final String CONTENT_TYPE_STRING = "Content-Type";
     public static final String ACCEPT_STRING = "Accept";
+    public static final String IDEMPOTENCY_KEY_STRING = "Idempotency-Key";
 }
@@ -0,0 +1,468 @@
+package com.networknt.http.client;
+
+import com.networknt.client.ClientConfig;
+import com.networknt.config.Config;
+import com.networknt.http.client.balancer.LoadBalancer;
+import com.networknt.http.client.batch.RequestCoalescer;
+import com.networknt.http.client.cache.DiskCache;
+import com.networknt.http.client.cache.ResponseCache;
+import com.networknt.http.client.compression.CompressionPolicy;
+import com.networknt.http.client.resilience.AdaptiveLimit;
+import com.networknt.http.client.resilience.AimdLimit;
+import com.networknt.http.client.resilience.Bulkheads;
+import com.networknt.http.client.resilience.CircuitBreakers;
+import com.networknt.http.client.resilience.GradientLimit;
+import com.networknt.http.client.resilience.HedgePolicy;
+import com.networknt.http.client.retry.BackoffRetryPolicy;
+import com.networknt.http.client.retry.Jitter;
+import com.networknt.http.client.retry.RetryPolicy;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * This class holds the httpClient section in the client.yml that controls how the HttpClientRequest executes
+ * requests. The section is optional and every property has a default value that keeps the previous behaviour.
+ *
+ * The instance is recreated when the ClientConfig is reloaded.
+ */
+public class HttpClientConfig {
+    public static final String HTTP_CLIENT = "httpClient";
+    public static final String EXECUTOR = "executor";
+    public static final String SYNC_MODE = "syncMode";
+    public static final String ASYNC_MODE = "asyncMode";
+    public static final String CORE_POOL_SIZE = "corePoolSize";
+    public static final String MAX_POOL_SIZE = "maxPoolSize";
+    public static final String QUEUE_CAPACITY = "queueCapacity";
+    public static final String KEEP_ALIVE_TIME = "keepAliveTime";
+    public static final String RETRY = "retry";
+    public static final String BACKOFF_MULTIPLIER = "backoffMultiplier";
+    public static final String MAX_DELAY = "maxDelay";
+    public static final String JITTER = "jitter";
+    public static final String ATTEMPT_TIMEOUT = "attemptTimeout";
+    public static final String STATUS_CODES = "statusCodes";
+    public static final String HEDGE = "hedge";
+    public static final String ENABLED = "enabled";
+    public static final String DELAY = "delay";
+    public static final String PERCENTILE = "percentile";
+    public static final String MAX_PERCENT = "maxPercent";
+    public static final String MAX_BURST = "maxBurst";
+    public static final String BULKHEAD = "bulkhead";
+    public static final String MAX_IN_FLIGHT = "maxInFlight";
+    public static final String MAX_QUEUE = "maxQueue";
+    public static final String MAX_WAIT = "maxWait";
+    public static final String LIMITS = "limits";
+    public static final String ADAPTIVE = "adaptive";
+    public static final String ALGORITHM = "algorithm";
+    public static final String MIN_LIMIT = "minLimit";
+    public static final String MAX_LIMIT = "maxLimit";
+    public static final String BACKOFF_RATIO = "backoffRatio";
+    public static final String TIMEOUT = "timeout";
+    public static final String TOLERANCE = "tolerance";
+    public static final String SMOOTHING = "smoothing";
+    public static final String CIRCUIT_BREAKER = "circuitBreaker";
+    public static final String WINDOW_SIZE = "windowSize";
+    public static final String MIN_CALLS = "minCalls";
+    public static final String FAILURE_RATE_THRESHOLD = "failureRateThreshold";
+    public static final String SLOW_CALL_RATE_THRESHOLD = "slowCallRateThreshold";
+    public static final String SLOW_CALL_DURATION = "slowCallDuration";
+    public static final String OPEN_DURATION = "openDuration";
+    public static final String HALF_OPEN_CALLS = "halfOpenCalls";
+    public static final String COMPRESSION = "compression";
+    public static final String RESPONSE = "response";
+    public static final String RESPONSE_HOSTS = "responseHosts";
+    public static final String REQUEST_THRESHOLD = "requestThreshold";
+    public static final String REQUEST_HOSTS = "requestHosts";
+    public static final String CACHE = "cache";
+    public static final String MAX_BYTES = "maxBytes";
+    public static final String MAX_ENTRY_BYTES = "maxEntryBytes";
+    public static final String LOAD_BALANCER = "loadBalancer";
+    public static final String DECAY_TIME = "decayTime";
+    public static final String FAILURE_PENALTY = "failurePenalty";
+    public static final String COALESCING = "coalescing";
+    public static final String KEY_HEADERS = "keyHeaders";
+    public static final String DISK = "disk";
+    public static final String DIRECTORY = "directory";
+    public static final String SEGMENT_SIZE = "segmentSize";
+    public static final String COMPACTION_INTERVAL = "compactionInterval";
+    public static final String SHARDING = "sharding";
+    public static final String SHARDS = "shards";
+    public static final String STRATEGY = "strategy";
+    public static final String ROTATION = "rotation";
+    public static final String MAX_CONNECTION_AGE = "maxConnectionAge";
+    public static final String DRAIN_TIMEOUT = "drainTimeout";
+    public static final String MAX_CLIENTS = "maxClients";
+    public static final String MAX_DESTINATIONS = "maxDestinations";
+
+    private static volatile ClientConfig clientConfig = ClientConfig.get();
+    private static volatile HttpClientConfig INSTANCE;
+    // the DiskCache outlives the reloads that don't change its settings, so its files are only opened once.
+    private static DiskCache diskCache;
+    private static List<Object> diskCacheSettings;
+    // the LoadBalancer keeps the latency and the outstanding requests of the instances across the reloads.
+    private static LoadBalancer sharedLoadBalancer;
+
+    private final Map<String, Object> mappedConfig;
+    private final ExecutionMode syncMode;
+    private final ExecutionMode asyncMode;
+    private final int corePoolSize;
+    private final int maxPoolSize;
+    private final int queueCapacity;
+    private final long keepAliveTime;
+    private final RetryPolicy retryPolicy;
+    private final HedgePolicy hedgePolicy;
+    private final Bulkheads bulkheads;
+    private final CircuitBreakers circuitBreakers;
+    private final CompressionPolicy compressionPolicy;
+    private final ResponseCache responseCache;
+    private final RequestCoalescer requestCoalescer;
+    private final LoadBalancer loadBalancer;
+    private final int shards;
+    private final HttpClientShards.Strategy shardingStrategy;
+    private final HttpClientShards.Rotation rotation;
+    private final int maxClients;
+    private final int maxDestinations;
+
+    @SuppressWarnings("unchecked")
+    private HttpClientConfig() {
+        Map<String, Object> clientMap = Config.getInstance().getJsonMapConfig(ClientConfig.CONFIG_NAME);
+        Object section = clientMap == null ? null : clientMap.get(HTTP_CLIENT);
+        mappedConfig = section instanceof Map ? (Map<String, Object>) section : Collections.emptyMap();
+
+        Map<String, Object> executorMap = getMap(mappedConfig, EXECUTOR);
+        syncMode = ExecutionMode.of(getString(executorMap, SYNC_MODE, null));
+        asyncMode = ExecutionMode.of(getString(executorMap, ASYNC_MODE, null));
+        int processors = Runtime.getRuntime().availableProcessors();
+        corePoolSize = getInt(executorMap, CORE_POOL_SIZE, processors);
+        maxPoolSize = Math.max(corePoolSize, getInt(executorMap, MAX_POOL_SIZE, processors * 4));
+        queueCapacity = getInt(executorMap, QUEUE_CAPACITY, 1000);
+        keepAliveTime = getLong(executorMap, KEEP_ALIVE_TIME, 60000L);
+
+        // the max attempts and the base delay are the maxRequestRetry and requestRetryDelay in the request section.
+        Map<String, Object> retryMap = getMap(mappedConfig, RETRY);
+        ClientConfig config = ClientConfig.get();
+        retryPolicy = new BackoffRetryPolicy(config.getMaxRequestRetry(), config.getRequestRetryDelay(),
+                getLong(retryMap, MAX_DELAY, 0L),
+                getDouble(retryMap, BACKOFF_MULTIPLIER, 1.0),
+                Jitter.of(getString(retryMap, JITTER, null)),
+                getLong(retryMap, ATTEMPT_TIMEOUT, 0L),
+                getIntSet(retryMap, STATUS_CODES, RetryPolicy.DEFAULT_RETRYABLE_STATUS_CODES));
+
+        Map<String, Object> hedgeMap = getMap(mappedConfig, HEDGE);
+        hedgePolicy = getBoolean(hedgeMap, ENABLED, false) ? new HedgePolicy(getLong(hedgeMap, DELAY, 100L),
+                getDouble(hedgeMap, PERCENTILE, 95.0), getInt(hedgeMap, MAX_PERCENT, 5),
+                getInt(hedgeMap, MAX_BURST, 10)) : null;
+
+        Map<String, Object> bulkheadMap = getMap(mappedConfig, BULKHEAD);
+        if (getBoolean(bulkheadMap, ENABLED, false)) {
+            Map<String, Integer> limits = new HashMap<>();
+            getMap(bulkheadMap, LIMITS).forEach((k, v) -> limits.put(k, Config.loadIntegerValue(k, v)));
+            bulkheads = new Bulkheads(getInt(bulkheadMap, MAX_IN_FLIGHT, 100), getInt(bulkheadMap, MAX_QUEUE, 100),
+                    getLong(bulkheadMap, MAX_WAIT, 1000L), limits, getLimitFactory(getMap(bulkheadMap, ADAPTIVE)));
+        } else {
+            bulkheads = null;
+        }
+
+        Map<String, Object> breakerMap = getMap(mappedConfig, CIRCUIT_BREAKER);
+        circuitBreakers = getBoolean(breakerMap, ENABLED, false) ? new CircuitBreakers(
+                getInt(breakerMap, WINDOW_SIZE, 100), getInt(breakerMap, MIN_CALLS, 20),
+                getInt(breakerMap, FAILURE_RATE_THRESHOLD, 50), getInt(breakerMap, SLOW_CALL_RATE_THRESHOLD, 0),
+                getLong(breakerMap, SLOW_CALL_DURATION, 0L), getLong(breakerMap, OPEN_DURATION, 30000L),
+                getInt(breakerMap, HALF_OPEN_CALLS, 5)) : null;
+
+        Map<String, Object> compressionMap = getMap(mappedConfig, COMPRESSION);
+        Map<String, Boolean> responseHosts = new HashMap<>();
+        getMap(compressionMap, RESPONSE_HOSTS).forEach((k, v) -> responseHosts.put(k, Config.loadBooleanValue(k, v)));
+        compressionPolicy = new CompressionPolicy(getBoolean(compressionMap, RESPONSE, false), responseHosts,
+                getLong(compressionMap, REQUEST_THRESHOLD, 8192L), getStringList(compressionMap, REQUEST_HOSTS));
+
+        Map<String, Object> cacheMap = getMap(mappedConfig, CACHE);
+        responseCache = getBoolean(cacheMap, ENABLED, false) ? new ResponseCache(
+                getLong(cacheMap, MAX_BYTES, 64L * 1024 * 1024), getLong(cacheMap, MAX_ENTRY_BYTES, 8L * 1024 * 1024)) : null;
+        Map<String, Object> balancerMap = getMap(mappedConfig, LOAD_BALANCER);
+        loadBalancer = getLoadBalancer(getLong(balancerMap, DECAY_TIME, 10000L),
+                getLong(balancerMap, FAILURE_PENALTY, 1000L));
+        Map<String, Object> coalescingMap = getMap(mappedConfig, COALESCING);
+        requestCoalescer = getBoolean(coalescingMap, ENABLED, false)
+                ? new RequestCoalescer(getStringList(coalescingMap, KEY_HEADERS)) : null;
+        Map<String, Object> diskMap = getMap(cacheMap, DISK);
+        if (responseCache != null && getBoolean(diskMap, ENABLED, false)) {
+            responseCache.setDiskCache(getDiskCache(
+                    Paths.get(getString(diskMap, DIRECTORY, System.getProperty("java.io.tmpdir") + "/http-client-cache")),
+                    getLong(diskMap, MAX_BYTES, 1024L * 1024 * 1024), getInt(diskMap, SEGMENT_SIZE, 64 * 1024 * 1024),
+                    getLong(diskMap, COMPACTION_INTERVAL, 60000L)));
+        } else {
+            closeDiskCache();
+        }
+        Map<String, Object> shardingMap = getMap(mappedConfig, SHARDING);
+        shards = Math.max(1, getInt(shardingMap, SHARDS, 1));
+        shardingStrategy = HttpClientShards.Strategy.of(getString(shardingMap, STRATEGY, null));
+        Map<String, Object> rotationMap = getMap(mappedConfig, ROTATION);
+        rotation = new HttpClientShards.Rotation(getLong(rotationMap, MAX_CONNECTION_AGE, 0L),
+                getDouble(rotationMap, JITTER, 0.2), getLong(rotationMap, DRAIN_TIMEOUT, 30000L));
+        maxClients = Math.max(1, getInt(mappedConfig, MAX_CLIENTS, 64));
+        maxDestinations = Math.max(1, getInt(mappedConfig, MAX_DESTINATIONS, 256));
+    }
+
+    /**
+     * Reuse the LoadBalancer of the previous config if its settings are the same, so that a reload doesn't lose the
+     * latency of the instances and the outstanding count of the requests in flight.
+     */
+    private static LoadBalancer getLoadBalancer(long decayTime, long failurePenalty) {
+        LoadBalancer previous = sharedLoadBalancer;
+        if (previous == null || previous.getDecayTime() != Math.max(1, decayTime)
+                || previous.getFailurePenalty() != failurePenalty) {
+            sharedLoadBalancer = new LoadBalancer(null, decayTime, failurePenalty);
+        }
+        return sharedLoadBalancer;
+    }
+
+    /**
+     * Reuse the DiskCache of the previous config if its settings are the same. Otherwise the previous one is closed
+     * before the new one is opened, as two caches must not write the segment files of the same directory.
+     */
+    private static DiskCache getDiskCache(Path directory, long maxBytes, int segmentSize, long compactionInterval) {
+        List<Object> settings = List.of(directory.toAbsolutePath().normalize(), maxBytes, segmentSize, compactionInterval);
+        if (diskCache == null || !settings.equals(diskCacheSettings)) {
+            closeDiskCache();
+            diskCache = DiskCache.open(directory, maxBytes, segmentSize, compactionInterval);
+            diskCacheSettings = settings;
+        }
+        return diskCache;
+    }
+
+    private static void closeDiskCache() {
+        if (diskCache != null) {
+            diskCache.close();
+            diskCache = null;
+            diskCacheSettings = null;
+        }
+    }
+
+    public static HttpClientConfig get() {
+        if (INSTANCE == null || clientConfig != ClientConfig.get()) {
+            synchronized (HttpClientConfig.class) {
+                if (INSTANCE == null || clientConfig != ClientConfig.get()) {
+                    clientConfig = ClientConfig.get();
+                    INSTANCE = new HttpClientConfig();
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    public Map<String, Object> getMappedConfig() {
+        return mappedConfig;
+    }
+
+    public ExecutionMode getSyncMode() {
+        return syncMode;
+    }
+
+    public ExecutionMode getAsyncMode() {
+        return asyncMode;
+    }
+
+    public int getCorePoolSize() {
+        return corePoolSize;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public long getKeepAliveTime() {
+        return keepAliveTime;
+    }
+
+    /**
+     * @return the default RetryPolicy of the send and sendAsync.
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * @return the shared HedgePolicy or null if the hedging is disabled.
+     */
+    public HedgePolicy getHedgePolicy() {
+        return hedgePolicy;
+    }
+
+    /**
+     * @return the shared Bulkheads or null if the bulkhead is disabled.
+     */
+    public Bulkheads getBulkheads() {
+        return bulkheads;
+    }
+
+    /**
+     * @return the shared CircuitBreakers or null if the circuit breaker is disabled.
+     */
+    public CircuitBreakers getCircuitBreakers() {
+        return circuitBreakers;
+    }
+
+    /**
+     * @return the CompressionPolicy, the compression is disabled for all the hosts by default.
+     */
+    public CompressionPolicy getCompressionPolicy() {
+        return compressionPolicy;
+    }
+
+    /**
+     * @return the shared ResponseCache or null if the cache is disabled.
+     */
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * @return the shared RequestCoalescer or null if the coalescing is disabled.
+     */
+    public RequestCoalescer getRequestCoalescer() {
+        return requestCoalescer;
+    }
+
+    /**
+     * @return the shared LoadBalancer of the requests sent to a serviceId.
+     */
+    public LoadBalancer getLoadBalancer() {
+        return loadBalancer;
+    }
+
+    /**
+     * @return the number of HttpClient instances per destination, 1 if the sharding is disabled.
+     */
+    public int getShards() {
+        return shards;
+    }
+
+    public HttpClientShards.Strategy getShardingStrategy() {
+        return shardingStrategy;
+    }
+
+    /**
+     * @return the Rotation of the shared clients, the rotation is disabled by default.
+     */
+    public HttpClientShards.Rotation getRotation() {
+        return rotation;
+    }
+
+    /**
+     * @return the max number of shared client keys in the HttpClientRegistry.
+     */
+    public int getMaxClients() {
+        return maxClients;
+    }
+
+    /**
+     * @return the max number of sharded destinations in the HttpClientRegistry.
+     */
+    public int getMaxDestinations() {
+        return maxDestinations;
+    }
+
+    /**
+     * @return the factory of the AdaptiveLimit for the algorithm or null if the algorithm is not set.
+     */
+    static IntFunction<AdaptiveLimit> getLimitFactory(Map<String, Object> map) {
+        String algorithm = getString(map, ALGORITHM, "none").toLowerCase(Locale.ROOT);
+        int minLimit = getInt(map, MIN_LIMIT, 1);
+        int maxLimit = getInt(map, MAX_LIMIT, 1000);
+        switch (algorithm) {
+            case "none":
+                return null;
+            case "aimd":
+                double backoffRatio = getDouble(map, BACKOFF_RATIO, 0.9);
+                long timeout = getLong(map, TIMEOUT, 5000L);
+                return limit -> new AimdLimit(limit, minLimit, maxLimit, backoffRatio, timeout);
+            case "gradient":
+                double tolerance = getDouble(map, TOLERANCE, 1.5);
+                double smoothing = getDouble(map, SMOOTHING, 0.2);
+                return limit -> new GradientLimit(limit, minLimit, maxLimit, tolerance, smoothing);
+            default:
+                throw new IllegalArgumentException("Unknown adaptive limit algorithm " + algorithm);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> getMap(Map<String, Object> map, String name) {
+        Object value = map.get(name);
+        return value instanceof Map ? (Map<String, Object>) value : Collections.emptyMap();
+    }
+
+    static String getString(Map<String, Object> map, String name, String defaultValue) {
+        Object value = map.get(name);
+        return value == null || value.toString().trim().isEmpty() ? defaultValue : value.toString().trim();
+    }
+
+    static int getInt(Map<String, Object> map, String name, int defaultValue) {
+        Object value = map.get(name);
+        return value == null || value.toString().trim().isEmpty() ? defaultValue : Config.loadIntegerValue(name, value);
+    }
+
+    static long getLong(Map<String, Object> map, String name, long defaultValue) {
+        Object value = map.get(name);
+        return value == null || value.toString().trim().isEmpty() ? defaultValue : Long.parseLong(value.toString().trim());
+    }
+
+    static double getDouble(Map<String, Object> map, String name, double defaultValue) {
+        Object value = map.get(name);
+        return value == null || value.toString().trim().isEmpty() ? defaultValue : Double.parseDouble(value.toString().trim());
+    }
+
+    /**
+     * Get a set of integers from a list or a comma separated string.
+     */
+    static Set<Integer> getIntSet(Map<String, Object> map, String name, Set<Integer> defaultValue) {
+        List<String> values = getStringList(map, name);
+        if (values == null) {
+            return defaultValue;
+        }
+        Set<Integer> set = new HashSet<>();
+        for (String value : values) {
+            set.add(Integer.valueOf(value));
+        }
+        return set;
+    }
+
+    /**
+     * Get a list of strings from a list or a comma separated string.
+     */
+    static List<String> getStringList(Map<String, Object> map, String name) {
+        Object value = map.get(name);
+        if (value == null) {
+            return null;
+        }
+        List<String> list = new ArrayList<>();
+        Collection<?> items = value instanceof Collection ? (Collection<?>) value : Arrays.asList(value.toString().split(","));
+        for (Object item : items) {
+            String s = String.valueOf(item).trim();
+            if (!s.isEmpty()) {
+                list.add(s);
+            }
+        }
+        return list;
+    }
+
+    static boolean getBoolean(Map<String, Object> map, String name, boolean defaultValue) {
+        Object value = map.get(name);
+        return value == null || value.toString().trim().isEmpty() ? defaultValue : Config.loadBooleanValue(name, value);
+    }
+}
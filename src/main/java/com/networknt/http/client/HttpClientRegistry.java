@@ -0,0 +1,231 @@
+package com.networknt.http.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLContext;
+import java.net.Authenticator;
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+/**
+ * A process-wide registry of JDK HttpClient instances keyed by the settings that are baked into a client
+ * when it is built. Each HttpClient owns its connection pool and selector thread, so sharing them across
+ * HttpClientRequest instances and calls lets connections and TLS sessions be reused.
+ *
+ * The clients of a key are kept as HttpClientShards. Without sharding, a key has one client that is shared by
+ * all the destinations. With sharding, the destination is part of the key and each destination has its own
+ * shards, so that each of them gets the number of connections of the shards.
+ *
+ * The registry is bounded by the maxClients of the httpClient section in the client.yml, and the sharded keys,
+ * which have one key per destination, by the maxDestinations apart from them. When a client is added, the
+ * clients built with an executor that was shut down or with an SSLContext that was replaced are removed, then
+ * the least recently used ones above the bounds. The removed clients are shut down once their in-flight
+ * requests are done, and a caller that still holds the removed shards gets the ones that replace them.
+ */
+public final class HttpClientRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(HttpClientRegistry.class);
+    private static final Map<Key, HttpClientShards> clients = new ConcurrentHashMap<>();
+
+    private HttpClientRegistry() {
+    }
+
+    /**
+     * Get the shared client for the key or build one with the supplier if it doesn't exist.
+     *
+     * @param key     the effective client settings
+     * @param factory the supplier to build a new client
+     * @return HttpClient
+     */
+    public static HttpClient getOrCreate(Key key, Supplier<HttpClient> factory) {
+        return getShards(key, factory).getClient();
+    }
+
+    /**
+     * Get the shared shards for the key or build them with the supplier if they don't exist.
+     *
+     * @param key     the effective client settings with the number of shards
+     * @param factory the supplier to build each client of the shards
+     * @return HttpClientShards
+     */
+    public static HttpClientShards getShards(Key key, Supplier<HttpClient> factory) {
+        HttpClientShards shards = clients.get(key);
+        if (shards != null) {
+            shards.touch();
+            return shards;
+        }
+        shards = clients.computeIfAbsent(key, k -> {
+            if (logger.isDebugEnabled())
+                logger.debug("Create a shared HttpClient for {}", k);
+            // a caller that took the shards before they were evicted sends on the shards that replace them.
+            return new HttpClientShards(k.shards, k.strategy, k.rotation, factory, () -> getShards(k, factory));
+        });
+        HttpClientConfig config = HttpClientConfig.get();
+        evict(key, config.getMaxClients(), config.getMaxDestinations());
+        return shards;
+    }
+
+    /**
+     * Remove and close the clients that can't be used anymore, then the least recently used ones above the max.
+     *
+     * @param current         the key of the client being added, it is never removed
+     * @param maxClients      the max number of keys without a destination in the registry
+     * @param maxDestinations the max number of sharded keys with a destination in the registry
+     */
+    static void evict(Key current, int maxClients, int maxDestinations) {
+        clients.forEach((key, shards) -> {
+            // the SSLContext is recreated when client.yml is reloaded, drop the clients built with the old one.
+            boolean staleContext = current.sslContext != null && key.sslContext != null
+                    && key.sslContext != current.sslContext;
+            boolean deadExecutor = key.executor instanceof ExecutorService && ((ExecutorService) key.executor).isShutdown();
+            if ((staleContext || deadExecutor) && key != current) {
+                remove(key, shards);
+            }
+        });
+        // the sharded keys have one key per destination, so they don't push the client settings out.
+        evictLeastRecentlyUsed(current, false, maxClients);
+        evictLeastRecentlyUsed(current, true, maxDestinations);
+    }
+
+    private static void evictLeastRecentlyUsed(Key current, boolean sharded, int max) {
+        List<Map.Entry<Key, HttpClientShards>> entries = new ArrayList<>();
+        for (Map.Entry<Key, HttpClientShards> entry : clients.entrySet()) {
+            if ((entry.getKey().destination != null) == sharded) {
+                entries.add(entry);
+            }
+        }
+        int excess = entries.size() - Math.max(1, max);
+        if (excess <= 0) {
+            return;
+        }
+        entries.sort(Comparator.comparingLong(e -> e.getValue().getLastAccess()));
+        for (Map.Entry<Key, HttpClientShards> entry : entries) {
+            if (excess <= 0) {
+                break;
+            }
+            if (entry.getKey() != current && remove(entry.getKey(), entry.getValue())) {
+                excess--;
+            }
+        }
+    }
+
+    private static boolean remove(Key key, HttpClientShards shards) {
+        if (!clients.remove(key, shards)) {
+            return false;
+        }
+        if (logger.isDebugEnabled())
+            logger.debug("Remove the shared HttpClient for {}", key);
+        shards.close();
+        return true;
+    }
+
+    /**
+     * @return the number of shared client keys in the registry.
+     */
+    public static int size() {
+        return clients.size();
+    }
+
+    /**
+     * Remove all shared clients. The existing clients are shut down once their in-flight requests are done.
+     */
+    public static void clear() {
+        clients.forEach(HttpClientRegistry::remove);
+    }
+
+    /**
+     * The effective settings of a HttpClient. Authenticator, Executor and SSLContext are compared by identity.
+     * The destination is only set when the clients are sharded. The builder is the class of a HttpClientRequest
+     * that overrides the buildHttpClient, so that its clients are not shared with the other classes.
+     */
+    public static final class Key {
+        private final boolean https;
+        private final boolean http2;
+        private final long connectTimeout;
+        private final String proxyHost;
+        private final int proxyPort;
+        private final Authenticator authenticator;
+        private final Executor executor;
+        private final SSLContext sslContext;
+        private final String destination;
+        private final int shards;
+        private final HttpClientShards.Strategy strategy;
+        private final HttpClientShards.Rotation rotation;
+        private final Class<?> builder;
+
+        public Key(boolean https, boolean http2, long connectTimeout, String proxyHost, int proxyPort,
+                Authenticator authenticator, Executor executor, SSLContext sslContext) {
+            this(https, http2, connectTimeout, proxyHost, proxyPort, authenticator, executor, sslContext, null, 1,
+                    HttpClientShards.Strategy.LEAST_IN_FLIGHT);
+        }
+
+        public Key(boolean https, boolean http2, long connectTimeout, String proxyHost, int proxyPort,
+                Authenticator authenticator, Executor executor, SSLContext sslContext, String destination,
+                int shards, HttpClientShards.Strategy strategy) {
+            this(https, http2, connectTimeout, proxyHost, proxyPort, authenticator, executor, sslContext, destination,
+                    shards, strategy, HttpClientShards.Rotation.NONE);
+        }
+
+        public Key(boolean https, boolean http2, long connectTimeout, String proxyHost, int proxyPort,
+                Authenticator authenticator, Executor executor, SSLContext sslContext, String destination,
+                int shards, HttpClientShards.Strategy strategy, HttpClientShards.Rotation rotation) {
+            this(https, http2, connectTimeout, proxyHost, proxyPort, authenticator, executor, sslContext, destination,
+                    shards, strategy, rotation, null);
+        }
+
+        public Key(boolean https, boolean http2, long connectTimeout, String proxyHost, int proxyPort,
+                Authenticator authenticator, Executor executor, SSLContext sslContext, String destination,
+                int shards, HttpClientShards.Strategy strategy, HttpClientShards.Rotation rotation,
+                Class<?> builder) {
+            this.https = https;
+            this.http2 = http2;
+            this.connectTimeout = connectTimeout;
+            this.proxyHost = proxyHost;
+            this.proxyPort = proxyPort;
+            this.authenticator = authenticator;
+            this.executor = executor;
+            this.sslContext = sslContext;
+            this.destination = destination;
+            this.shards = Math.max(1, shards);
+            this.strategy = strategy;
+            this.rotation = rotation;
+            this.builder = builder;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return https == key.https && http2 == key.http2 && connectTimeout == key.connectTimeout
+                    && proxyPort == key.proxyPort && Objects.equals(proxyHost, key.proxyHost)
+                    && authenticator == key.authenticator && executor == key.executor
+                    && sslContext == key.sslContext && Objects.equals(destination, key.destination)
+                    && shards == key.shards && strategy == key.strategy && Objects.equals(rotation, key.rotation)
+                    && builder == key.builder;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(https, http2, connectTimeout, proxyHost, proxyPort,
+                    System.identityHashCode(authenticator), System.identityHashCode(executor),
+                    System.identityHashCode(sslContext), destination, shards, strategy, rotation, builder);
+        }
+
+        @Override
+        public String toString() {
+            return "Key{https=" + https + ", http2=" + http2 + ", connectTimeout=" + connectTimeout
+                    + ", proxy=" + proxyHost + ":" + proxyPort
+                    + (destination == null ? "" : ", destination=" + destination + ", shards=" + shards)
+                    + (builder == null ? "" : ", builder=" + builder.getName()) + "}";
+        }
+    }
+}
@@ -5,10 +5,26 @@ import com.networknt.client.oauth.Jwt;
 import com.networknt.client.oauth.TokenManager;
 import com.networknt.config.Config;
 import com.networknt.config.TlsUtil;
+import com.networknt.http.client.balancer.LoadBalancer;
+import com.networknt.http.client.batch.RequestCoalescer;
+import com.networknt.http.client.cache.CacheEntry;
+import com.networknt.http.client.cache.CachingBodyHandler;
+import com.networknt.http.client.cache.ResponseCache;
+import com.networknt.http.client.compression.CompressionPolicy;
+import com.networknt.http.client.compression.DecompressingBodyHandler;
+import com.networknt.http.client.compression.GzipBodyPublisher;
+import com.networknt.http.client.resilience.Bulkhead;
+import com.networknt.http.client.resilience.Bulkheads;
+import com.networknt.http.client.resilience.CircuitBreaker;
+import com.networknt.http.client.resilience.CircuitBreakers;
+import com.networknt.http.client.resilience.HedgePolicy;
+import com.networknt.http.client.retry.RetryPolicy;
 import com.networknt.http.client.ssl.ClientX509ExtendedTrustManager;
 import com.networknt.http.client.ssl.CompositeX509TrustManager;
 import com.networknt.monad.Failure;
 import com.networknt.monad.Result;
+import com.networknt.monad.Success;
+import com.networknt.status.Status;
 import org.apache.commons.lang3.StringUtils;
 import org.owasp.encoder.Encode;
 import org.slf4j.Logger;
@@ -22,6 +38,7 @@ import java.net.*;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -29,16 +46,29 @@ import java.nio.file.Paths;
 import java.security.*;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class HttpClientRequest {
 
     private static final Logger logger = LoggerFactory.getLogger(HttpClientRequest.class);
     private static volatile ClientConfig clientConfig = ClientConfig.get();
     private static volatile SSLContext sslContext = null;
-    HttpClient httpClient;
 
     public static final String TLS = "tls";
     static final String LOAD_TRUST_STORE = "loadTrustStore";
@@ -56,11 +86,33 @@ public class HttpClientRequest {
     static final String TRUST_STORE_PROPERTY = "javax.net.ssl.trustStore";
     static final String TRUST_STORE_PASSWORD_PROPERTY = "javax.net.ssl.trustStorePassword";
     static final String TRUST_STORE_TYPE_PROPERTY = "javax.net.ssl.trustStoreType";
+    static final String BULKHEAD_FULL = "ERR10080";
+    static final String CIRCUIT_BREAKER_OPEN = "ERR10081";
+    static final String REQUEST_FAILED = "ERR10082";
+    static final String NO_SERVICE_INSTANCE = "ERR10083";
     private final TokenManager tokenManager = TokenManager.getInstance();
-    private String proxyHost = null;
-    private int proxyPort;
-    private Authenticator authenticator = null;
-    private ExecutorService executorService = null;
+    private volatile String proxyHost = null;
+    private volatile int proxyPort;
+    private volatile Authenticator authenticator = null;
+    private volatile ExecutorService executorService = null;
+    private volatile ExecutionMode syncMode = null;
+    private volatile ExecutionMode asyncMode = null;
+    private volatile int shards = 0;
+    private volatile HttpClientShards.Strategy shardingStrategy = null;
+    private volatile HttpClientShards.Rotation rotation = null;
+    private volatile RetryPolicy retryPolicy = null;
+    private volatile boolean retryNonIdempotent = false;
+    private volatile HedgePolicy hedgePolicy = null;
+    private volatile Bulkheads bulkheads = null;
+    private volatile CircuitBreakers circuitBreakers = null;
+    private volatile CompressionPolicy compressionPolicy = null;
+    private volatile ResponseCache responseCache = null;
+    private volatile RequestCoalescer requestCoalescer = null;
+    private volatile LoadBalancer loadBalancer = null;
+    private static final Map<String, WarmupResult> warmupResults = new ConcurrentHashMap<>();
+    private final boolean legacyBuild = overrides(getClass(), ClientConfig.class, boolean.class);
+    private final Class<?> builderClass = legacyBuild
+            || overrides(getClass(), ClientConfig.class, boolean.class, ExecutorService.class) ? getClass() : null;
 
     public HttpClientRequest() {
     }
@@ -87,6 +139,56 @@ public class HttpClientRequest {
         this.executorService = executorService;
     }
 
+    /**
+     * Sets the execution modes for the blocking send and the sendAsync. If they are not set, the syncMode and
+     * asyncMode in the httpClient.executor section of the client.yml are used. An executor set with the
+     * setExecutorService takes precedence over both modes.
+     *
+     * @param syncMode  the ExecutionMode for send
+     * @param asyncMode the ExecutionMode for sendAsync
+     */
+    public void setExecutionMode(ExecutionMode syncMode, ExecutionMode asyncMode) {
+        this.syncMode = syncMode;
+        this.asyncMode = asyncMode;
+    }
+
+    /**
+     * Sets the number of HttpClient instances per destination and the way the requests are spread over them. If
+     * they are not set, the shards and strategy in the httpClient.sharding section of the client.yml are used.
+     * With HTTP/2 each instance opens one connection to the destination, so the shards lift the cap of a single
+     * multiplexed connection.
+     *
+     * @param shards   the number of HttpClient instances per destination, 1 to disable the sharding
+     * @param strategy the Strategy to pick an instance for a request
+     */
+    public void setSharding(int shards, HttpClientShards.Strategy strategy) {
+        this.shards = Math.max(1, shards);
+        this.shardingStrategy = strategy;
+    }
+
+    public int getShards() {
+        return shards > 0 ? shards : HttpClientConfig.get().getShards();
+    }
+
+    public HttpClientShards.Strategy getShardingStrategy() {
+        return shardingStrategy != null ? shardingStrategy : HttpClientConfig.get().getShardingStrategy();
+    }
+
+    /**
+     * Sets the max age of the shared clients. If it is not set, the Rotation of the httpClient.rotation section
+     * of the client.yml is used. An expired client is replaced at its next request, and it is shut down once its
+     * in-flight requests are done, so the new connections reach the instances added behind a load balancer.
+     *
+     * @param rotation the Rotation or Rotation.NONE to keep the clients
+     */
+    public void setRotation(HttpClientShards.Rotation rotation) {
+        this.rotation = rotation;
+    }
+
+    public HttpClientShards.Rotation getRotation() {
+        return rotation != null ? rotation : HttpClientConfig.get().getRotation();
+    }
+
     /**
      * Sets an authenticator to use for HTTP authentication.
      *
@@ -96,7 +198,21 @@ public class HttpClientRequest {
         this.authenticator = authenticator;
     }
 
+    /**
+     * Build a HttpClient with the executor of the send. A subclass that overrides it is still called to build the
+     * clients of both the send and the sendAsync, and its clients are not shared with the other classes.
+     *
+     * @param clientConfig the ClientConfig
+     * @param isHttps      true if the client is used for https
+     * @return HttpClient
+     * @deprecated override the buildHttpClient with the executor, which is called for each execution mode
+     */
+    @Deprecated
     protected HttpClient buildHttpClient(ClientConfig clientConfig, boolean isHttps) {
+        return buildHttpClient(clientConfig, isHttps, getExecutor(false));
+    }
+
+    protected HttpClient buildHttpClient(ClientConfig clientConfig, boolean isHttps, ExecutorService executor) {
 
         HttpClient.Builder clientBuilder = HttpClient.newBuilder()
                 .connectTimeout(Duration.ofMillis(clientConfig.getRequest().getConnectTimeout()));
@@ -117,68 +233,1208 @@ public class HttpClientRequest {
                     .of(new InetSocketAddress(this.proxyHost, this.proxyPort == 0 ? 443 : this.proxyPort)));
         if (this.authenticator != null)
             clientBuilder.authenticator(this.authenticator);
-        if (this.executorService != null)
-            clientBuilder.executor(this.executorService);
+        if (executor != null)
+            clientBuilder.executor(executor);
         return clientBuilder.build();
     }
 
+    protected HttpClient getHttpClient(URI uri) {
+        return getHttpClient(uri, false);
+    }
+
+    /**
+     * Get the shared HttpClient for the uri from the HttpClientRegistry. A new client is only built when
+     * there is no client with the same scheme, http2 flag, proxy, authenticator, executor and SSLContext.
+     *
+     * @param uri   the request uri
+     * @param async true if the client is used by sendAsync
+     * @return HttpClient
+     */
+    protected HttpClient getHttpClient(URI uri, boolean async) {
+        return getHttpClientShards(uri, async).getClient();
+    }
+
+    /**
+     * Get the shared HttpClientShards for the uri from the HttpClientRegistry. Without sharding, it has the one
+     * client shared by all the destinations. With sharding, each destination has its own shards.
+     *
+     * @param uri   the request uri
+     * @param async true if the clients are used by sendAsync
+     * @return HttpClientShards
+     */
+    public HttpClientShards getHttpClientShards(URI uri, boolean async) {
+        ExecutorService executor = getExecutor(async);
+        boolean isHttps = "https".equals(uri.getScheme());
+        SSLContext context = null;
+        if (isHttps) {
+            try {
+                context = createSSLContext();
+            } catch (IOException e) {
+                logger.error("cannot initial http client:" + e);
+            }
+        }
+        int count = getShards();
+        HttpClientRegistry.Key key = new HttpClientRegistry.Key(isHttps, clientConfig.getRequestEnableHttp2(),
+                clientConfig.getRequest().getConnectTimeout(), proxyHost, proxyPort, authenticator,
+                executor, context, count > 1 ? uri.getScheme() + "://" + uri.getRawAuthority() : null, count,
+                getShardingStrategy(), getRotation(), builderClass);
+        return HttpClientRegistry.getShards(key, () -> legacyBuild ? buildHttpClient(clientConfig, isHttps)
+                : buildHttpClient(clientConfig, isHttps, executor));
+    }
+
+    /**
+     * @return true if a subclass up to the HttpClientRequest declares the buildHttpClient with the parameters
+     */
+    private static boolean overrides(Class<?> type, Class<?>... parameterTypes) {
+        for (Class<?> c = type; c != null && c != HttpClientRequest.class; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod("buildHttpClient", parameterTypes);
+                return true;
+            } catch (NoSuchMethodException e) {
+                // look up the superclass.
+            }
+        }
+        return false;
+    }
+
+    private ExecutorService getExecutor(boolean async) {
+        if (executorService != null) {
+            return executorService;
+        }
+        ExecutionMode mode = async ? asyncMode : syncMode;
+        if (mode == null) {
+            HttpClientConfig config = HttpClientConfig.get();
+            mode = async ? config.getAsyncMode() : config.getSyncMode();
+        }
+        return ClientExecutors.get(mode);
+    }
+
+    /**
+     * Get the executor of the sendAsync, which runs the delayed work that should not run on the ClientTimer
+     * thread, like the flush of a RequestCollapser.
+     *
+     * @return the Executor of the async mode or the common pool for the DEFAULT mode
+     */
+    public Executor getAsyncExecutor() {
+        ExecutorService executor = getExecutor(true);
+        return executor != null ? executor : ForkJoinPool.commonPool();
+    }
+
     public HttpResponse<?> send(HttpRequest.Builder builder, HttpResponse.BodyHandler<?> handler)
             throws InterruptedException, IOException {
-        return sendWithRetry(builder, handler, clientConfig.getMaxRequestRetry());
+        ResponseCache cache = getResponseCache();
+        return cache != null ? sendCached(cache, builder, handler) : sendDirect(builder, handler);
     }
 
     public CompletableFuture<? extends HttpResponse<?>> sendAsync(HttpRequest.Builder builder,
             HttpResponse.BodyHandler<?> handler) throws InterruptedException, IOException {
-        return sendAsyncWithRetry(builder, handler, clientConfig.getMaxRequestRetry());
+        ResponseCache cache = getResponseCache();
+        return cache != null ? sendAsyncCached(cache, builder, handler) : sendAsyncDirect(builder, handler);
+    }
+
+    /**
+     * Send the request to an instance of the service picked by the LoadBalancer. The scheme, path and query of the
+     * request URI are kept, and its host and port are replaced by the ones of the instance, for example
+     * https://petstore/v1/pets is sent to https://10.0.0.5:8443/v1/pets. The latency and the outcome of the
+     * request are recorded for the instance, and the retries of the request go to the same instance.
+     *
+     * @param serviceId the serviceId to discover the instances
+     * @param tag       the environment tag or null
+     * @param builder   the request builder
+     * @param handler   the BodyHandler
+     * @return the response
+     * @throws InterruptedException if the thread is interrupted
+     * @throws IOException if the request fails, or a ClientStatusException if no instance is discovered
+     */
+    public HttpResponse<?> send(String serviceId, String tag, HttpRequest.Builder builder,
+            HttpResponse.BodyHandler<?> handler) throws InterruptedException, IOException {
+        URI uri = builder.build().uri();
+        LoadBalancer.Instance instance = selectInstance(uri, serviceId, tag);
+        long start = instance.start();
+        boolean success = false;
+        try {
+            HttpResponse<?> response = send(builder.copy().uri(instance.resolve(uri)), handler);
+            success = response.statusCode() < 500;
+            return response;
+        } finally {
+            instance.complete(start, success);
+        }
     }
 
-    private HttpResponse<?> sendWithRetry(HttpRequest.Builder builder, HttpResponse.BodyHandler<?> handler, int retries)
+    /**
+     * Send the request asynchronously to an instance of the service picked by the LoadBalancer.
+     *
+     * @param serviceId the serviceId to discover the instances
+     * @param tag       the environment tag or null
+     * @param builder   the request builder
+     * @param handler   the BodyHandler
+     * @return CompletableFuture of the response
+     * @throws InterruptedException if the thread is interrupted
+     * @throws IOException a ClientStatusException if no instance is discovered
+     * @see #send(String, String, HttpRequest.Builder, HttpResponse.BodyHandler)
+     */
+    public CompletableFuture<? extends HttpResponse<?>> sendAsync(String serviceId, String tag,
+            HttpRequest.Builder builder, HttpResponse.BodyHandler<?> handler) throws InterruptedException, IOException {
+        URI uri = builder.build().uri();
+        LoadBalancer.Instance instance = selectInstance(uri, serviceId, tag);
+        long start = instance.start();
+        CompletableFuture<? extends HttpResponse<?>> future;
+        try {
+            future = sendAsync(builder.copy().uri(instance.resolve(uri)), handler);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            instance.complete(start, false);
+            throw e;
+        }
+        return future.whenComplete((r, t) -> instance.complete(start, t == null && r.statusCode() < 500));
+    }
+
+    private LoadBalancer.Instance selectInstance(URI uri, String serviceId, String tag) throws ClientStatusException {
+        LoadBalancer.Instance instance = getLoadBalancer().select(uri.getScheme(), serviceId, tag);
+        if (instance == null) {
+            throw new ClientStatusException(new Status(503, NO_SERVICE_INSTANCE, "NO_SERVICE_INSTANCE",
+                    "No instance of " + serviceId + (tag == null ? "" : " with tag " + tag) + " is discovered."));
+        }
+        return instance;
+    }
+
+    /**
+     * Open the connections to the hosts of the URIs before the first requests, so that they don't pay the DNS
+     * lookup, the TCP connect and the TLS handshake. The hosts are warmed up in parallel with HEAD probes sent by
+     * the shared HttpClients of the send and the sendAsync. For each client, a first probe does the full TLS
+     * handshake and fills the TLS session cache, then the other probes are sent in parallel so that the client
+     * keeps connectionsPerHost connections open, resuming the cached session. Any response means that the host is
+     * reachable, and a host whose first probe fails is not probed again.
+     *
+     * Call it before the service reports ready, for example prewarm(uris, 4).get(10, TimeUnit.SECONDS) in a
+     * startup hook. The connections are kept while they are not idle longer than the keep-alive of the client.
+     *
+     * @param uris               the URIs of the downstream hosts, the path of each URI is probed
+     * @param connectionsPerHost the number of connections to open to each host with HTTP/1.1
+     * @return CompletableFuture of the WarmupResult of each host keyed by the scheme, host and port
+     */
+    public CompletableFuture<Map<String, WarmupResult>> prewarm(Collection<URI> uris, int connectionsPerHost) {
+        Map<String, CompletableFuture<WarmupResult>> hosts = new LinkedHashMap<>();
+        for (URI uri : uris) {
+            hosts.computeIfAbsent(uri.getScheme() + "://" + uri.getRawAuthority(),
+                    host -> prewarm(host, uri, Math.max(1, connectionsPerHost)));
+        }
+        return CompletableFuture.allOf(hosts.values().toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            Map<String, WarmupResult> results = new LinkedHashMap<>();
+            hosts.forEach((host, future) -> results.put(host, future.join()));
+            if (logger.isInfoEnabled()) {
+                logger.info("Prewarmed the connections: {}", results.values());
+            }
+            return results;
+        });
+    }
+
+    private CompletableFuture<WarmupResult> prewarm(String host, URI uri, int connections) {
+        WarmupResult result = new WarmupResult(host);
+        warmupResults.put(host, result);
+        // the send and the sendAsync may use different shards, and each shard has its own connection pool.
+        Set<HttpClientShards> shardSets = Collections.newSetFromMap(new IdentityHashMap<>());
+        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+        try {
+            shardSets.add(getHttpClientShards(uri, false));
+            shardSets.add(getHttpClientShards(uri, true));
+        } catch (RuntimeException e) {
+            result.record(true, 0, null, e);
+            return CompletableFuture.completedFuture(result);
+        }
+        for (HttpClientShards shards : shardSets) {
+            for (int i = 0; i < shards.size(); i++) {
+                int index = i;
+                chain = chain.thenCompose(v -> probe(shards, index, uri, result, true)).thenCompose(warm -> {
+                    if (!warm || connections == 1) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    // one of the parallel probes reuses the connection of the first one, the others open new ones.
+                    CompletableFuture<?>[] probes = new CompletableFuture<?>[connections];
+                    for (int j = 0; j < probes.length; j++) {
+                        probes[j] = probe(shards, index, uri, result, false);
+                    }
+                    return CompletableFuture.allOf(probes);
+                });
+            }
+        }
+        return chain.thenApply(v -> result);
+    }
+
+    /**
+     * Send a probe on the shard at the index, counted as in flight so that a rotation doesn't shut it down.
+     *
+     * @return CompletableFuture of true if the probe got a response
+     */
+    private CompletableFuture<Boolean> probe(HttpClientShards shards, int index, URI uri, WarmupResult result,
+            boolean cold) {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .timeout(Duration.ofMillis(clientConfig.getRequest().getTimeout()))
+                .build();
+        HttpClientShards.Shard shard = shards.acquire(index);
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<Void>> response;
+        try {
+            response = shard.getClient().sendAsync(request, HttpResponse.BodyHandlers.discarding());
+        } catch (RuntimeException e) {
+            shard.release();
+            result.record(cold, 0, null, e);
+            return CompletableFuture.completedFuture(false);
+        }
+        return response.handle((r, t) -> {
+            shard.release();
+            result.record(cold, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), r, t);
+            return r != null;
+        });
+    }
+
+    /**
+     * @return the WarmupResult of each host prewarmed by the process, keyed by the scheme, host and port
+     */
+    public static Map<String, WarmupResult> getWarmupResults() {
+        return Collections.unmodifiableMap(warmupResults);
+    }
+
+    /**
+     * Sets the LoadBalancer of the requests sent to a serviceId. If it is not set, the LoadBalancer of the
+     * httpClient.loadBalancer section of the client.yml is used.
+     *
+     * @param loadBalancer the LoadBalancer
+     */
+    public void setLoadBalancer(LoadBalancer loadBalancer) {
+        this.loadBalancer = loadBalancer;
+    }
+
+    public LoadBalancer getLoadBalancer() {
+        return loadBalancer != null ? loadBalancer : HttpClientConfig.get().getLoadBalancer();
+    }
+
+    /**
+     * Send the request to the network, or share the exchange of an identical request in flight if the
+     * RequestCoalescer is enabled.
+     */
+    @SuppressWarnings("unchecked")
+    private HttpResponse<?> sendDirect(HttpRequest.Builder builder, HttpResponse.BodyHandler<?> handler)
             throws InterruptedException, IOException {
-        for (int attempt = 1; attempt <= retries; attempt++) {
+        RequestCoalescer coalescer = getRequestCoalescer();
+        if (coalescer != null) {
+            HttpRequest request = builder.build();
+            if (coalescer.isCoalescable(request)) {
+                // the first request is sent on the calling thread, and the identical ones wait for its response.
+                return await(coalescer.send(request, handler, h -> {
+                    try {
+                        return CompletableFuture.completedFuture((HttpResponse<byte[]>) sendExchange(builder, h));
+                    } catch (IOException | InterruptedException e) {
+                        return CompletableFuture.failedFuture(e);
+                    }
+                }));
+            }
+        }
+        return sendExchange(builder, handler);
+    }
+
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<? extends HttpResponse<?>> sendAsyncDirect(HttpRequest.Builder builder,
+            HttpResponse.BodyHandler<?> handler) {
+        RequestCoalescer coalescer = getRequestCoalescer();
+        if (coalescer != null) {
+            HttpRequest request = builder.build();
+            if (coalescer.isCoalescable(request)) {
+                return coalescer.send(request, handler,
+                        h -> (CompletableFuture<HttpResponse<byte[]>>) sendAsyncExchange(builder, h));
+            }
+        }
+        return sendAsyncExchange(builder, handler);
+    }
+
+    /**
+     * Send the request to the network with the compression, the retry policy, the circuit breaker and the bulkhead.
+     */
+    private HttpResponse<?> sendExchange(HttpRequest.Builder builder, HttpResponse.BodyHandler<?> handler)
+            throws InterruptedException, IOException {
+        RetryPolicy policy = getRetryPolicy();
+        HttpRequest.Builder compressionBuilder = prepareCompression(builder);
+        if (compressionBuilder != null) {
+            builder = compressionBuilder;
+            handler = new DecompressingBodyHandler<>(handler);
+        }
+        HttpRequest.Builder retryBuilder = prepareRetry(builder);
+        HttpResponse<?> response = sendWithRetry(retryBuilder != null ? retryBuilder : builder, handler,
+                retryBuilder != null ? policy : RetryPolicy.noRetry(policy));
+        return compressionBuilder != null ? DecompressingBodyHandler.decoded(response) : response;
+    }
+
+    private CompletableFuture<? extends HttpResponse<?>> sendAsyncExchange(HttpRequest.Builder builder,
+            HttpResponse.BodyHandler<?> handler) {
+        RetryPolicy policy = getRetryPolicy();
+        HttpRequest.Builder compressionBuilder = prepareCompression(builder);
+        if (compressionBuilder != null) {
+            builder = compressionBuilder;
+            handler = new DecompressingBodyHandler<>(handler);
+        }
+        HttpRequest.Builder retryBuilder = prepareRetry(builder);
+        CompletableFuture<? extends HttpResponse<?>> response = sendAsyncWithRetry(
+                retryBuilder != null ? retryBuilder : builder, handler,
+                retryBuilder != null ? policy : RetryPolicy.noRetry(policy));
+        return compressionBuilder != null ? response.thenApply(r -> DecompressingBodyHandler.decoded(r)) : response;
+    }
+
+    /**
+     * Wait for the response of a future, with the IOException of the exchange rethrown as it is.
+     */
+    private static <T> T await(CompletableFuture<T> future) throws InterruptedException, IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Sets the RequestCoalescer of the GET and HEAD requests. If it is not set, the coalescer in the
+     * httpClient.coalescing section of the client.yml is used when it is enabled.
+     *
+     * @param requestCoalescer the RequestCoalescer
+     */
+    public void setRequestCoalescer(RequestCoalescer requestCoalescer) {
+        this.requestCoalescer = requestCoalescer;
+    }
+
+    /**
+     * @return the RequestCoalescer or null if the coalescing is disabled.
+     */
+    public RequestCoalescer getRequestCoalescer() {
+        return requestCoalescer != null ? requestCoalescer : HttpClientConfig.get().getRequestCoalescer();
+    }
+
+    /**
+     * Sets the ResponseCache of the GET requests. If it is not set, the cache in the httpClient.cache section of the
+     * client.yml is used when it is enabled.
+     *
+     * @param responseCache the ResponseCache
+     */
+    public void setResponseCache(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    /**
+     * @return the ResponseCache or null if the cache is disabled.
+     */
+    public ResponseCache getResponseCache() {
+        return responseCache != null ? responseCache : HttpClientConfig.get().getResponseCache();
+    }
+
+    /**
+     * Serve the request from the cache if the stored response is fresh, or send it with the validators of the
+     * stale response. The other requests are sent as they are, and they invalidate the stored responses of the
+     * URI if they change it.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> HttpResponse<T> sendCached(ResponseCache cache, HttpRequest.Builder builder,
+            HttpResponse.BodyHandler<T> handler) throws InterruptedException, IOException {
+        HttpRequest request = builder.build();
+        if (!cache.isCacheable(request)) {
+            HttpResponse<T> response = (HttpResponse<T>) sendDirect(builder, handler);
+            cache.invalidate(request, response.statusCode());
+            return response;
+        }
+        ResponseCache.Lookup lookup = cache.lookup(request);
+        CompletableFuture<HttpResponse<T>> future;
+        if (lookup.getStatus() == ResponseCache.CacheStatus.HIT || lookup.getStatus() == ResponseCache.CacheStatus.STALE) {
+            if (lookup.getStatus() == ResponseCache.CacheStatus.STALE) {
+                revalidate(cache, builder, request, lookup.getEntry());
+            }
+            future = lookup.getEntry().serve(request, handler, System.currentTimeMillis());
+        } else {
+            CachingBodyHandler<T> caching = cache.handler(request, lookup.getEntry(), handler);
+            HttpResponse<T> response = (HttpResponse<T>) sendDirect(cache.conditional(builder, lookup.getEntry()), caching);
+            future = caching.toResponse(response);
+        }
+        return await(future);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<HttpResponse<T>> sendAsyncCached(ResponseCache cache, HttpRequest.Builder builder,
+            HttpResponse.BodyHandler<T> handler) {
+        HttpRequest request = builder.build();
+        if (!cache.isCacheable(request)) {
+            return ((CompletableFuture<HttpResponse<T>>) sendAsyncDirect(builder, handler)).thenApply(response -> {
+                cache.invalidate(request, response.statusCode());
+                return response;
+            });
+        }
+        ResponseCache.Lookup lookup = cache.lookup(request);
+        if (lookup.getStatus() == ResponseCache.CacheStatus.HIT || lookup.getStatus() == ResponseCache.CacheStatus.STALE) {
+            if (lookup.getStatus() == ResponseCache.CacheStatus.STALE) {
+                revalidate(cache, builder, request, lookup.getEntry());
+            }
+            return lookup.getEntry().serve(request, handler, System.currentTimeMillis());
+        }
+        CachingBodyHandler<T> caching = cache.handler(request, lookup.getEntry(), handler);
+        return ((CompletableFuture<HttpResponse<T>>) sendAsyncDirect(cache.conditional(builder, lookup.getEntry()), caching))
+                .thenCompose(caching::toResponse);
+    }
+
+    /**
+     * Revalidate a stale entry in the background. Only one revalidation of an entry is in flight at a time.
+     */
+    private void revalidate(ResponseCache cache, HttpRequest.Builder builder, HttpRequest request, CacheEntry entry) {
+        if (!entry.startRevalidation()) {
+            return;
+        }
+        sendAsyncDirect(cache.conditional(builder, entry), cache.handler(request, entry, HttpResponse.BodyHandlers.discarding()))
+                .whenComplete((r, t) -> {
+                    entry.endRevalidation();
+                    if (t != null && logger.isDebugEnabled()) {
+                        logger.debug("Failed to revalidate " + request.uri() + ":", t);
+                    }
+                });
+    }
+
+    /**
+     * Send a batch of requests with at most maxParallelism of them in flight, and wait for all of them. The
+     * requests go through the sendAsync with the retry policy, the circuit breaker and the bulkhead, and they
+     * share the HttpClient of the HttpClientRegistry.
+     *
+     * @param builders       the request builders
+     * @param handler        the BodyHandler of all the responses
+     * @param maxParallelism the max number of requests in flight
+     * @param <T>            the response body type
+     * @return a Result for each builder in the same order, a Success with the response or a Failure with a Status
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    public <T> List<Result<HttpResponse<T>>> sendAll(List<HttpRequest.Builder> builders,
+            HttpResponse.BodyHandler<T> handler, int maxParallelism) throws InterruptedException {
+        try {
+            return sendAllAsync(builders, handler, maxParallelism).get();
+        } catch (ExecutionException e) {
+            // the per-request errors are in the results, so this is not expected.
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Send a batch of requests with the client credentials token of the serviceId. The token is looked up once
+     * for the batch and set on all the builders. If the token cannot be obtained, no request is sent and all the
+     * results are the Failure of the token lookup.
+     *
+     * @param builders       the request builders
+     * @param handler        the BodyHandler of all the responses
+     * @param maxParallelism the max number of requests in flight
+     * @param requestPath    the request path to look up the token
+     * @param scopes         the scopes of the token
+     * @param serviceId      the serviceId to look up the token
+     * @param <T>            the response body type
+     * @return a Result for each builder in the same order
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    public <T> List<Result<HttpResponse<T>>> sendAll(List<HttpRequest.Builder> builders,
+            HttpResponse.BodyHandler<T> handler, int maxParallelism, String requestPath, String scopes,
+            String serviceId) throws InterruptedException {
+        Result<Jwt> result = tokenManager.getJwt(requestPath, scopes, serviceId);
+        if (result.isFailure()) {
+            List<Result<HttpResponse<T>>> failures = new ArrayList<>(builders.size());
+            for (int i = 0; i < builders.size(); i++) {
+                failures.add(Failure.of(result.getError()));
+            }
+            return failures;
+        }
+        String authorization = "Bearer " + result.getResult().getJwt();
+        for (HttpRequest.Builder builder : builders) {
+            builder.setHeader(Headers.AUTHORIZATION_STRING, authorization);
+        }
+        return sendAll(builders, handler, maxParallelism);
+    }
+
+    /**
+     * The non-blocking version of the sendAll. A completed request starts the next one, so no thread is waiting
+     * for the batch.
+     *
+     * @param builders       the request builders
+     * @param handler        the BodyHandler of all the responses
+     * @param maxParallelism the max number of requests in flight
+     * @param <T>            the response body type
+     * @return CompletableFuture of a Result for each builder in the same order
+     */
+    public <T> CompletableFuture<List<Result<HttpResponse<T>>>> sendAllAsync(List<HttpRequest.Builder> builders,
+            HttpResponse.BodyHandler<T> handler, int maxParallelism) {
+        Batch<T> batch = new Batch<>(builders, handler);
+        if (builders.isEmpty()) {
+            batch.future.complete(new ArrayList<>());
+        }
+        for (int i = 0; i < Math.max(1, Math.min(maxParallelism, builders.size())); i++) {
+            batch.run();
+        }
+        return batch.future;
+    }
+
+    /**
+     * The state of a sendAllAsync. Each run sends the next request of the batch, and it runs again when the
+     * response is received. A response that is already completed, for example by an open circuit breaker, is
+     * handled in a loop instead of a recursive call.
+     */
+    private final class Batch<T> implements Runnable {
+        private final List<HttpRequest.Builder> builders;
+        private final HttpResponse.BodyHandler<T> handler;
+        private final AtomicReferenceArray<Result<HttpResponse<T>>> results;
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicInteger remaining;
+        private final CompletableFuture<List<Result<HttpResponse<T>>>> future = new CompletableFuture<>();
+
+        Batch(List<HttpRequest.Builder> builders, HttpResponse.BodyHandler<T> handler) {
+            this.builders = builders;
+            this.handler = handler;
+            this.results = new AtomicReferenceArray<>(builders.size());
+            this.remaining = new AtomicInteger(builders.size());
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                int index = next.getAndIncrement();
+                if (index >= builders.size()) {
+                    return;
+                }
+                CompletableFuture<? extends HttpResponse<?>> response;
+                try {
+                    response = sendAsync(builders.get(index), handler);
+                } catch (Exception e) {
+                    response = CompletableFuture.failedFuture(e);
+                }
+                CompletableFuture<Void> done = response.handle((r, t) -> {
+                    complete(index, r, t);
+                    return null;
+                });
+                if (!done.isDone()) {
+                    done.thenRun(this);
+                    return;
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void complete(int index, HttpResponse<?> response, Throwable t) {
+            results.set(index, t == null ? Success.of((HttpResponse<T>) response) : toFailure(t));
+            if (remaining.decrementAndGet() == 0) {
+                List<Result<HttpResponse<T>>> list = new ArrayList<>(builders.size());
+                for (int i = 0; i < builders.size(); i++) {
+                    list.add(results.get(i));
+                }
+                future.complete(list);
+            }
+        }
+    }
+
+    private static <T> Result<T> toFailure(Throwable t) {
+        Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+        if (cause instanceof ClientStatusException) {
+            return ((ClientStatusException) cause).toFailure();
+        }
+        logger.error("Failed to send the request:", cause);
+        return Failure.of(new Status(500, REQUEST_FAILED, "REQUEST_FAILED", String.valueOf(cause)));
+    }
+
+    /**
+     * Sets the CompressionPolicy of the send and sendAsync. If it is not set, the policy in the
+     * httpClient.compression section of the client.yml is used.
+     *
+     * @param compressionPolicy the CompressionPolicy
+     */
+    public void setCompressionPolicy(CompressionPolicy compressionPolicy) {
+        this.compressionPolicy = compressionPolicy;
+    }
+
+    public CompressionPolicy getCompressionPolicy() {
+        return compressionPolicy != null ? compressionPolicy : HttpClientConfig.get().getCompressionPolicy();
+    }
+
+    /**
+     * Advertise the gzip and deflate content codings if the response compression is enabled for the host. A
+     * request with an Accept-Encoding set by the caller is sent as it is, and its response is not decompressed.
+     *
+     * @param builder the request builder from the caller
+     * @return a copy of the builder with the Accept-Encoding header or null if the response is not decompressed.
+     */
+    private HttpRequest.Builder prepareCompression(HttpRequest.Builder builder) {
+        HttpRequest request = builder.build();
+        if (!getCompressionPolicy().isResponseCompression(request.uri().getAuthority())
+                || request.headers().firstValue(DecompressingBodyHandler.ACCEPT_ENCODING).isPresent()) {
+            return null;
+        }
+        return builder.copy().setHeader(DecompressingBodyHandler.ACCEPT_ENCODING, DecompressingBodyHandler.GZIP_DEFLATE);
+    }
+
+    /**
+     * Allows the POST and PATCH requests to be retried. An Idempotency-Key header is generated for each send or
+     * sendAsync call unless the caller has set one, and it is the same in all the attempts of the call so that
+     * the server can detect the duplicates. It is false by default and these requests are only sent once.
+     *
+     * @param retryNonIdempotent true to retry the non-idempotent requests with an Idempotency-Key
+     */
+    public void setRetryNonIdempotent(boolean retryNonIdempotent) {
+        this.retryNonIdempotent = retryNonIdempotent;
+    }
+
+    /**
+     * Check if the request can be retried based on the method. The GET, PUT, DELETE and other idempotent methods
+     * are retried. The POST and PATCH requests are retried only if they have an Idempotency-Key header or the
+     * retryNonIdempotent is enabled, in which case a copy of the builder with a generated key is returned. A
+     * request with a body that can only be sent once, like an InputStream, is never retried.
+     *
+     * @param builder the request builder from the caller
+     * @return the builder used by all the attempts or null if the request must not be retried.
+     */
+    private HttpRequest.Builder prepareRetry(HttpRequest.Builder builder) {
+        HttpRequest request = builder.build();
+        if (request.bodyPublisher().filter(BinaryBodyPublishers::isOneShot).isPresent()) {
+            return null;
+        }
+        if (HttpMethod.isIdempotent(request.method())
+                || request.headers().firstValue(Headers.IDEMPOTENCY_KEY_STRING).isPresent()) {
+            return builder;
+        }
+        if (!retryNonIdempotent) {
+            return null;
+        }
+        // copy the builder so that the key is pinned to this call only, not the later calls with the same builder.
+        return builder.copy().setHeader(Headers.IDEMPOTENCY_KEY_STRING, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Sets the RetryPolicy for the send and sendAsync. If it is not set, a BackoffRetryPolicy is created from the
+     * maxRequestRetry and requestRetryDelay in the request section and the httpClient.retry section of client.yml.
+     *
+     * @param retryPolicy the RetryPolicy
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy != null ? retryPolicy : HttpClientConfig.get().getRetryPolicy();
+    }
+
+    private HttpResponse<?> sendWithRetry(HttpRequest.Builder builder, HttpResponse.BodyHandler<?> handler,
+            RetryPolicy policy) throws InterruptedException, IOException {
+        long deadline = getDeadline(policy);
+        long delay = 0;
+        for (int attempt = 1; ; attempt++) {
+            HttpRequest request = buildAttempt(builder, policy, deadline);
+            // a rejection by the circuit breaker or the bulkhead is not retried.
+            Permit permit = acquirePermit(request.uri());
+            HttpClientShards.Shard shard;
             try {
-                return httpClient.send(builder.build(), handler);
+                shard = getHttpClientShards(request.uri(), false).acquire();
+            } catch (RuntimeException e) {
+                permit.release();
+                throw e;
+            }
+            long start = System.nanoTime();
+            int statusCode = 0;
+            IOException error = null;
+            // the shard of a returned response is released when its body is read, which may be after the send.
+            Runnable release = ReleasingBodyHandler.once(shard::release);
+            boolean returned = false;
+            try {
+                StatusRetryHandler<?> retryHandler = new StatusRetryHandler<>(
+                        new ReleasingBodyHandler<>(handler, release), policy, attempt, delay, deadline,
+                        getMaxWait(request));
+                HttpResponse<?> response = shard.getClient().send(request, retryHandler);
+                statusCode = response.statusCode();
+                if (!retryHandler.isRetry()) {
+                    returned = true;
+                    return response;
+                }
+                delay = retryHandler.getRetryDelay();
             } catch (IOException | InterruptedException e) {
-                if (attempt == retries) {
+                if (e instanceof IOException) {
+                    error = (IOException) e;
+                }
+                delay = policy.getDelay(attempt, delay);
+                if (attempt >= policy.getMaxAttempts() || isPastDeadline(deadline, delay)) {
                     throw e;
                 }
-                if (clientConfig.getRequestRetryDelay() > 0) {
-                    TimeUnit.MILLISECONDS.sleep(clientConfig.getRequestRetryDelay());
+            } finally {
+                if (!returned) {
+                    release.run();
                 }
+                permit.complete(System.nanoTime() - start, statusCode, error);
+            }
+            if (delay > 0) {
+                TimeUnit.MILLISECONDS.sleep(delay);
             }
         }
-        throw new IOException("Failed to send request after " + retries + " attempts");
     }
 
     private CompletableFuture<? extends HttpResponse<?>> sendAsyncWithRetry(HttpRequest.Builder builder,
-            HttpResponse.BodyHandler<?> handler, int retries) throws InterruptedException, IOException {
+            HttpResponse.BodyHandler<?> handler, RetryPolicy policy) {
         CompletableFuture<HttpResponse<?>> future = new CompletableFuture<>();
-        sendAsyncWithRetry(builder, handler, retries, future, 1);
+        sendAsyncWithRetry(builder, handler, policy, future, getDeadline(policy), 1, 0);
         return future;
     }
 
-    private void sendAsyncWithRetry(HttpRequest.Builder builder, HttpResponse.BodyHandler<?> handler, int retries,
-            CompletableFuture<HttpResponse<?>> future, int attempt) {
-        httpClient.sendAsync(builder.build(), handler).whenComplete((response, throwable) -> {
+    private void sendAsyncWithRetry(HttpRequest.Builder builder, HttpResponse.BodyHandler<?> handler,
+            RetryPolicy policy, CompletableFuture<HttpResponse<?>> future, long deadline, int attempt,
+            long previousDelay) {
+        HttpRequest request;
+        CompletableFuture<Permit> permit;
+        try {
+            request = buildAttempt(builder, policy, deadline);
+            permit = acquirePermitAsync(request.uri());
+        } catch (RuntimeException e) {
+            // the retries are running on the timer thread, so nobody else would see the exception.
+            future.completeExceptionally(e);
+            return;
+        }
+        permit.whenComplete((p, t) -> {
+            if (t != null) {
+                future.completeExceptionally(t instanceof CompletionException && t.getCause() != null ? t.getCause() : t);
+            } else {
+                sendAsyncAttempt(request, p, builder, handler, policy, future, deadline, attempt, previousDelay);
+            }
+        });
+    }
+
+    private void sendAsyncAttempt(HttpRequest request, Permit permit, HttpRequest.Builder builder,
+            HttpResponse.BodyHandler<?> handler, RetryPolicy policy, CompletableFuture<HttpResponse<?>> future,
+            long deadline, int attempt, long previousDelay) {
+        CompletableFuture<Exchange> response;
+        HttpClientShards.Shard shard = null;
+        try {
+            HttpClientShards shards = getHttpClientShards(request.uri(), true);
+            shard = shards.acquire();
+            HttpClient client = shard.getClient();
+            Function<Runnable, StatusRetryHandler<?>> handlers = release -> new StatusRetryHandler<>(
+                    new ReleasingBodyHandler<>(handler, release), policy, attempt, previousDelay, deadline,
+                    getMaxWait(request));
+            HedgePolicy hedge = getHedgePolicy();
+            if (hedge != null && "GET".equals(request.method())) {
+                response = sendHedged(shards, shard, request, handlers, hedge);
+            } else {
+                Exchange exchange = Exchange.send(shard, request, handlers);
+                response = exchange.future.handle((r, t) -> exchange);
+            }
+        } catch (RuntimeException e) {
+            if (shard != null) {
+                shard.release();
+            }
+            permit.release();
+            future.completeExceptionally(e);
+            return;
+        }
+        response.whenComplete((exchange, error) -> {
+            if (exchange != null && !exchange.isSuccess()) {
+                // the shard of a response returned to the caller is released when its body is read.
+                exchange.release.run();
+            }
+            Throwable throwable = error != null ? error : exchange.getThrowable();
+            permit.complete(error != null ? 0 : exchange.getRtt(),
+                    error != null ? 0 : exchange.handler.getStatusCode(), throwable);
+            if (error != null) {
+                future.completeExceptionally(error);
+                return;
+            }
+            long delay;
             if (throwable == null) {
-                future.complete(response);
+                if (!exchange.handler.isRetry()) {
+                    future.complete(exchange.getResponse());
+                    return;
+                }
+                delay = exchange.handler.getRetryDelay();
             } else {
-                if (attempt < retries) {
-                    try {
-                        if (clientConfig.getRequestRetryDelay() > 0) {
-                            TimeUnit.MILLISECONDS.sleep(clientConfig.getRequestRetryDelay());
-                        }
-                    } catch (InterruptedException e) {
-                        future.completeExceptionally(e);
-                        return;
-                    }
-                    sendAsyncWithRetry(builder, handler, retries, future, attempt + 1);
-                } else {
+                delay = policy.getDelay(attempt, previousDelay);
+                if (attempt >= policy.getMaxAttempts() || isPastDeadline(deadline, delay)) {
                     future.completeExceptionally(throwable);
+                    return;
                 }
             }
+            // schedule the next attempt on the shared timer instead of parking the executor thread. The timer
+            // only hands it over, the next attempt is built and sent on the async executor.
+            Runnable next = () -> sendAsyncWithRetry(builder, handler, policy, future, deadline, attempt + 1, delay);
+            if (delay > 0) {
+                ClientTimer.schedule(next, delay, getAsyncExecutor());
+            } else {
+                next.run();
+            }
         });
     }
 
+    /**
+     * Sets the per-destination bulkheads that limit the concurrent in-flight requests. If it is not set, the
+     * bulkheads in the httpClient.bulkhead section of the client.yml are used when they are enabled.
+     *
+     * @param bulkheads the Bulkheads
+     */
+    public void setBulkheads(Bulkheads bulkheads) {
+        this.bulkheads = bulkheads;
+    }
+
+    /**
+     * @return the Bulkheads or null if the bulkhead is disabled.
+     */
+    public Bulkheads getBulkheads() {
+        return bulkheads != null ? bulkheads : HttpClientConfig.get().getBulkheads();
+    }
+
+    /**
+     * Sets the per-destination circuit breakers. If it is not set, the circuit breakers in the
+     * httpClient.circuitBreaker section of the client.yml are used when they are enabled.
+     *
+     * @param circuitBreakers the CircuitBreakers
+     */
+    public void setCircuitBreakers(CircuitBreakers circuitBreakers) {
+        this.circuitBreakers = circuitBreakers;
+    }
+
+    /**
+     * @return the CircuitBreakers or null if the circuit breaker is disabled.
+     */
+    public CircuitBreakers getCircuitBreakers() {
+        return circuitBreakers != null ? circuitBreakers : HttpClientConfig.get().getCircuitBreakers();
+    }
+
+    /**
+     * Take the permits of the circuit breaker and the bulkhead of the destination for one attempt, waiting for
+     * the bulkhead if necessary.
+     */
+    private Permit acquirePermit(URI uri) throws InterruptedException, ClientStatusException {
+        CircuitBreaker breaker = acquireCircuitBreaker(uri);
+        Bulkheads currentBulkheads = getBulkheads();
+        if (currentBulkheads == null) {
+            return breaker == null ? Permit.NONE : new Permit(null, breaker);
+        }
+        Bulkhead bulkhead = currentBulkheads.get(uri.getAuthority());
+        CompletableFuture<Boolean> granted = bulkhead.acquire();
+        try {
+            if (granted.get()) {
+                return new Permit(bulkhead, breaker);
+            }
+        } catch (InterruptedException e) {
+            bulkhead.cancel(granted);
+            if (breaker != null) {
+                breaker.release();
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            logger.error("Failed to acquire the bulkhead permit:", e);
+        }
+        if (breaker != null) {
+            breaker.release();
+        }
+        throw new ClientStatusException(bulkheadFull(bulkhead));
+    }
+
+    /**
+     * The non-blocking version of the acquirePermit. The returned future fails with a ClientStatusException if
+     * the attempt is rejected.
+     */
+    private CompletableFuture<Permit> acquirePermitAsync(URI uri) {
+        CircuitBreaker breaker;
+        try {
+            breaker = acquireCircuitBreaker(uri);
+        } catch (ClientStatusException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        Bulkheads currentBulkheads = getBulkheads();
+        if (currentBulkheads == null) {
+            return CompletableFuture.completedFuture(breaker == null ? Permit.NONE : new Permit(null, breaker));
+        }
+        Bulkhead bulkhead = currentBulkheads.get(uri.getAuthority());
+        return bulkhead.acquire().thenApply(granted -> {
+            if (granted) {
+                return new Permit(bulkhead, breaker);
+            }
+            if (breaker != null) {
+                breaker.release();
+            }
+            throw new CompletionException(new ClientStatusException(bulkheadFull(bulkhead)));
+        });
+    }
+
+    /**
+     * Take the permits of the circuit breaker and the bulkhead for an optional attempt, such as a hedge, only if
+     * they are free right now.
+     *
+     * @return the Permit or null if the attempt is not allowed
+     */
+    private Permit tryAcquirePermit(URI uri) {
+        CircuitBreaker breaker;
+        try {
+            breaker = acquireCircuitBreaker(uri);
+        } catch (ClientStatusException e) {
+            return null;
+        }
+        Bulkheads currentBulkheads = getBulkheads();
+        if (currentBulkheads == null) {
+            return breaker == null ? Permit.NONE : new Permit(null, breaker);
+        }
+        Bulkhead bulkhead = currentBulkheads.get(uri.getAuthority());
+        if (bulkhead.tryAcquire()) {
+            return new Permit(bulkhead, breaker);
+        }
+        if (breaker != null) {
+            breaker.release();
+        }
+        return null;
+    }
+
+    private CircuitBreaker acquireCircuitBreaker(URI uri) throws ClientStatusException {
+        CircuitBreakers currentBreakers = getCircuitBreakers();
+        if (currentBreakers == null) {
+            return null;
+        }
+        CircuitBreaker breaker = currentBreakers.get(uri.getAuthority());
+        if (!breaker.tryAcquire()) {
+            throw new ClientStatusException(new Status(503, CIRCUIT_BREAKER_OPEN, "CIRCUIT_BREAKER_OPEN",
+                    "The circuit breaker of " + breaker.getName() + " is " + breaker.getState() + "."));
+        }
+        return breaker;
+    }
+
+    /**
+     * @return true if the status code means that the destination sheds the load.
+     */
+    private static boolean isOverloaded(int statusCode) {
+        return statusCode == 429 || statusCode == 503;
+    }
+
+    private static Status bulkheadFull(Bulkhead bulkhead) {
+        return new Status(503, BULKHEAD_FULL, "BULKHEAD_FULL", "Too many in-flight requests to "
+                + bulkhead.getName() + " with " + bulkhead.getInFlight() + " in flight and "
+                + bulkhead.getQueued() + " queued.");
+    }
+
+    /**
+     * Sets the HedgePolicy for the GET requests sent with sendAsync. If it is not set, the policy in the
+     * httpClient.hedge section of the client.yml is used when it is enabled.
+     *
+     * @param hedgePolicy the HedgePolicy
+     */
+    public void setHedgePolicy(HedgePolicy hedgePolicy) {
+        this.hedgePolicy = hedgePolicy;
+    }
+
+    /**
+     * @return the HedgePolicy or null if the hedging is disabled.
+     */
+    public HedgePolicy getHedgePolicy() {
+        return hedgePolicy != null ? hedgePolicy : HttpClientConfig.get().getHedgePolicy();
+    }
+
+    /**
+     * Send the request and, if there is no response within the hedge delay and the hedge budget allows, send
+     * an identical request. The hedge takes its own shard and its own permits of the circuit breaker and the
+     * bulkhead, and it is skipped if they are not free right away. The first successful response wins and the
+     * other exchange is cancelled. If both fail, the last one is returned so that the retry can decide on it.
+     */
+    private CompletableFuture<Exchange> sendHedged(HttpClientShards shards, HttpClientShards.Shard shard,
+            HttpRequest request, Function<Runnable, StatusRetryHandler<?>> handlers, HedgePolicy hedge) {
+        String host = request.uri().getAuthority();
+        long start = System.nanoTime();
+        hedge.onRequest();
+        CompletableFuture<Exchange> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        List<Exchange> exchanges = new CopyOnWriteArrayList<>();
+        AtomicReference<ScheduledFuture<?>> timer = new AtomicReference<>();
+        AtomicBoolean returned = new AtomicBoolean();
+        Consumer<Exchange> onComplete = exchange -> {
+            boolean success = exchange.isSuccess();
+            // the first success is returned, or the last failure if there is no success.
+            if ((success || pending.decrementAndGet() == 0) && returned.compareAndSet(false, true)) {
+                if (success) {
+                    // the latency seen by the caller, which includes the hedge delay if the hedge wins.
+                    hedge.recordLatency(host, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    ScheduledFuture<?> scheduled = timer.get();
+                    if (scheduled != null) scheduled.cancel(false);
+                    // the other exchange is cancelled and released before the caller gets the response.
+                    exchanges.stream().filter(e -> e != exchange).forEach(e -> e.future.cancel(true));
+                }
+                result.complete(exchange);
+                return;
+            }
+            // the exchange is not returned, so its shard is released now.
+            exchange.release.run();
+        };
+        Exchange primary = Exchange.send(shard, request, handlers);
+        exchanges.add(primary);
+        // the hedge may rotate a shard and build a HttpClient, so it is sent on the async executor.
+        timer.set(ClientTimer.schedule(() -> {
+            if (returned.get()) {
+                return;
+            }
+            Permit permit = tryAcquirePermit(request.uri());
+            if (permit == null) {
+                return;
+            }
+            if (!hedge.tryAcquire()) {
+                permit.release();
+                return;
+            }
+            HttpClientShards.Shard hedgeShard = null;
+            Exchange hedged;
+            try {
+                hedgeShard = shards.acquire();
+                hedged = Exchange.send(hedgeShard, request, handlers);
+            } catch (RuntimeException e) {
+                if (hedgeShard != null) {
+                    hedgeShard.release();
+                }
+                permit.release();
+                logger.error("Failed to send a hedged request to " + request.uri(), e);
+                return;
+            }
+            pending.incrementAndGet();
+            if (logger.isDebugEnabled())
+                logger.debug("Send a hedged request to {}", request.uri());
+            exchanges.add(hedged);
+            hedged.future.whenComplete((r, t) -> {
+                if (hedged.future.isCancelled()) {
+                    // the primary exchange has won, so the hedge has no outcome.
+                    permit.release();
+                } else {
+                    Throwable throwable = hedged.getThrowable();
+                    permit.complete(hedged.getRtt(), throwable != null ? 0 : hedged.handler.getStatusCode(), throwable);
+                }
+                onComplete.accept(hedged);
+            });
+            if (returned.get()) {
+                hedged.future.cancel(true);
+            }
+        }, hedge.getDelay(host), getAsyncExecutor()));
+        primary.future.whenComplete((r, t) -> onComplete.accept(primary));
+        return result;
+    }
+
+    /**
+     * The permits of the circuit breaker and the bulkhead taken by one attempt. They are given back with the
+     * outcome of the attempt, or without it if the attempt is not sent.
+     */
+    private static final class Permit {
+        static final Permit NONE = new Permit(null, null);
+
+        private final Bulkhead bulkhead;
+        private final CircuitBreaker breaker;
+
+        Permit(Bulkhead bulkhead, CircuitBreaker breaker) {
+            this.bulkhead = bulkhead;
+            this.breaker = breaker;
+        }
+
+        void release() {
+            if (bulkhead != null) {
+                bulkhead.release();
+            }
+            if (breaker != null) {
+                breaker.release();
+            }
+        }
+
+        /**
+         * @param rtt        the duration of the attempt in nanoseconds
+         * @param statusCode the status code of the response or 0 if there is no response
+         * @param error      the error of the attempt or null if there is a response
+         */
+        void complete(long rtt, int statusCode, Throwable error) {
+            if (bulkhead != null) {
+                bulkhead.release(rtt, error != null || isOverloaded(statusCode));
+            }
+            if (breaker != null) {
+                breaker.onResult(rtt, error != null || statusCode >= 500);
+            }
+        }
+    }
+
+    /**
+     * One exchange of an attempt with its own StatusRetryHandler on a shard. The shard is released when the body
+     * of the response is read, or by the release if the response is not returned to the caller.
+     */
+    private static final class Exchange {
+        private final StatusRetryHandler<?> handler;
+        private final CompletableFuture<? extends HttpResponse<?>> future;
+        private final Runnable release;
+        private final long start = System.nanoTime();
+
+        private Exchange(StatusRetryHandler<?> handler, CompletableFuture<? extends HttpResponse<?>> future,
+                Runnable release) {
+            this.handler = handler;
+            this.future = future;
+            this.release = release;
+        }
+
+        static Exchange send(HttpClientShards.Shard shard, HttpRequest request,
+                Function<Runnable, StatusRetryHandler<?>> handlers) {
+            Runnable release = ReleasingBodyHandler.once(shard::release);
+            StatusRetryHandler<?> handler = handlers.apply(release);
+            return new Exchange(handler, shard.getClient().sendAsync(request, handler), release);
+        }
+
+        HttpResponse<?> getResponse() {
+            return future.getNow(null);
+        }
+
+        Throwable getThrowable() {
+            if (!future.isCompletedExceptionally()) {
+                return null;
+            }
+            try {
+                future.join();
+                return null;
+            } catch (CompletionException e) {
+                return e.getCause() != null ? e.getCause() : e;
+            } catch (CancellationException e) {
+                return e;
+            }
+        }
+
+        /**
+         * @return true if the exchange has a response that is not going to be retried.
+         */
+        boolean isSuccess() {
+            return getThrowable() == null && !handler.isRetry();
+        }
+
+        long getRtt() {
+            return System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * When the policy has an attempt timeout, the request timeout becomes the deadline of all the attempts.
+     */
+    private long getDeadline(RetryPolicy policy) {
+        return policy.getAttemptTimeout() > 0 ? System.currentTimeMillis() + clientConfig.getRequest().getTimeout() : 0;
+    }
+
+    /**
+     * @return the longest Retry-After in milliseconds that is waited for, the timeout of the request
+     */
+    private static long getMaxWait(HttpRequest request) {
+        long timeout = request.timeout().map(Duration::toMillis).orElse((long) clientConfig.getRequest().getTimeout());
+        return timeout > 0 ? timeout : RetryPolicy.MAX_RETRY_AFTER;
+    }
+
+    private static boolean isPastDeadline(long deadline, long delay) {
+        return deadline > 0 && System.currentTimeMillis() + delay >= deadline;
+    }
+
+    private static HttpRequest buildAttempt(HttpRequest.Builder builder, RetryPolicy policy, long deadline) {
+        if (policy.getAttemptTimeout() <= 0) {
+            return builder.build();
+        }
+        long timeout = Math.min(policy.getAttemptTimeout(), Math.max(1, deadline - System.currentTimeMillis()));
+        return builder.copy().timeout(Duration.ofMillis(timeout)).build();
+    }
+
     public HttpRequest.Builder initBuilder(String url, HttpMethod method) throws Exception {
         return initBuilder(new URI(url), method, Optional.empty());
     }
@@ -192,24 +1448,42 @@ public class HttpClientRequest {
     }
 
     public HttpRequest.Builder initBuilder(URI uri, HttpMethod method, Optional<?> body) {
-
-        httpClient = buildHttpClient(clientConfig, "https".equals(uri.getScheme()));
+        // build or look up the shared client early so that TLS config errors are reported on the caller thread.
+        getHttpClient(uri);
         HttpRequest.Builder builder = HttpRequest.newBuilder()
                 .timeout(Duration.ofMillis(clientConfig.getRequest().getTimeout()))
                 .uri(uri);
         if (HttpMethod.DELETE.equals(method)) {
             builder.DELETE();
         } else if (HttpMethod.POST.equals(method)) {
-            builder.POST(getBodyPublisher(body));
+            builder.POST(compressBody(builder, uri, getBodyPublisher(body)));
         } else if (HttpMethod.PUT.equals(method)) {
-            builder.PUT(getBodyPublisher(body));
+            builder.PUT(compressBody(builder, uri, getBodyPublisher(body)));
         } else if (HttpMethod.PATCH.equals(method)) {
-            builder.method("PATCH", getBodyPublisher(body));
+            builder.method("PATCH", compressBody(builder, uri, getBodyPublisher(body)));
+        }
+        if (body.isPresent() && body.get() instanceof MultipartBodyPublisher) {
+            // the boundary is only known by the body.
+            builder.setHeader(Headers.CONTENT_TYPE_STRING, ((MultipartBodyPublisher) body.get()).getContentType());
         }
         // GET is the default method.
         return builder;
     }
 
+    /**
+     * Gzip the request body if the host is in the allowlist of the CompressionPolicy and the body is larger than
+     * the threshold or its length is unknown.
+     */
+    private HttpRequest.BodyPublisher compressBody(HttpRequest.Builder builder, URI uri,
+            HttpRequest.BodyPublisher publisher) {
+        if (publisher == null
+                || !getCompressionPolicy().isRequestCompression(uri.getAuthority(), publisher.contentLength())) {
+            return publisher;
+        }
+        builder.setHeader(DecompressingBodyHandler.CONTENT_ENCODING, GzipBodyPublisher.GZIP);
+        return GzipBodyPublisher.of(publisher);
+    }
+
     /**
      * Add Authorization Code grant token the caller app gets from OAuth2 server.
      *
@@ -297,16 +1571,26 @@ public class HttpClientRequest {
 
     protected HttpRequest.BodyPublisher getBodyPublisher(Optional<?> body) {
         if (body.isPresent()) {
-            if (body.get() instanceof String) {
-                return HttpRequest.BodyPublishers.ofString((String) body.get());
-            } else if (body.get() instanceof Map) {
-                return ofFormData((Map) body.get());
+            Object value = body.get();
+            if (value instanceof HttpRequest.BodyPublisher) {
+                return (HttpRequest.BodyPublisher) value;
+            } else if (value instanceof String) {
+                return HttpRequest.BodyPublishers.ofString((String) value);
+            } else if (value instanceof Map) {
+                return ofFormData((Map) value);
+            } else if (value instanceof byte[]) {
+                return BinaryBodyPublishers.of((byte[]) value);
+            } else if (value instanceof ByteBuffer) {
+                return BinaryBodyPublishers.of((ByteBuffer) value);
+            } else if (value instanceof InputStream) {
+                return BinaryBodyPublishers.of((InputStream) value);
+            } else if (value instanceof Path) {
+                return BinaryBodyPublishers.of((Path) value);
             } else {
-                return HttpRequest.BodyPublishers.ofString(JsonMapper.toJson(body.get()));
+                return JsonBodyPublishers.of(value);
             }
         }
         return null;
-        // TODO add binary data BodyPublishers
     }
 
     private HttpRequest.BodyPublisher ofFormData(Map<Object, Object> data) {
@@ -0,0 +1,530 @@
+package com.networknt.http.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * A set of HttpClient instances with the same settings that share the requests. With HTTP/2, a HttpClient
+ * multiplexes all the requests to a host over one connection, so the throughput to the host is capped by the
+ * flow control window of that connection and by the server thread that reads it. Each shard is a HttpClient
+ * with its own connection pool, so N shards open N connections to the host and the requests are spread over
+ * them by the least in-flight requests or by round robin.
+ *
+ * A shard is taken with the acquire before the request is sent and given back with its release once the
+ * response is received, so that the in-flight requests of each shard are known.
+ *
+ * With a Rotation, the client of a shard is replaced once it is older than the max age minus a random jitter.
+ * The connections of a client stay pinned to the instances behind a load balancer that existed when they were
+ * opened, so the rotation lets the new instances get their share after a scale-out. The expiry is checked when a
+ * shard is taken and by a periodic check on the ClientTimer, so the clients of an idle destination are replaced
+ * as well. The old client gets no new request and is shut down once its in-flight requests are done, or aborted
+ * after the drain timeout, and the shards of a destination expire at different times, so only a part of the
+ * connections are opened again at once.
+ *
+ * The HttpClient can only be shut down on Java 21 and later. On the older versions, the old client is dropped
+ * and the JDK closes its connections and its selector thread once it is garbage collected.
+ */
+public final class HttpClientShards {
+    private static final Logger logger = LoggerFactory.getLogger(HttpClientShards.class);
+    private static final Method SHUTDOWN = findMethod("shutdown");
+    private static final Method SHUTDOWN_NOW = findMethod("shutdownNow");
+    static final long MIN_CHECK_INTERVAL = 1000;
+
+    private final AtomicReferenceArray<Shard> shards;
+    private final Strategy strategy;
+    private final Rotation rotation;
+    private final Supplier<HttpClient> factory;
+    private final Supplier<HttpClientShards> successor;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong rotationCount = new AtomicLong();
+    private volatile long lastAccess = System.nanoTime();
+    private final ScheduledFuture<?> expiryCheck;
+    private volatile boolean closed;
+
+    /**
+     * @param count    the number of HttpClient instances
+     * @param strategy the Strategy to pick a shard for a request
+     * @param factory  the supplier to build each HttpClient
+     */
+    public HttpClientShards(int count, Strategy strategy, Supplier<HttpClient> factory) {
+        this(count, strategy, Rotation.NONE, factory);
+    }
+
+    /**
+     * @param count    the number of HttpClient instances
+     * @param strategy the Strategy to pick a shard for a request
+     * @param rotation the Rotation of the clients or Rotation.NONE
+     * @param factory  the supplier to build each HttpClient
+     */
+    public HttpClientShards(int count, Strategy strategy, Rotation rotation, Supplier<HttpClient> factory) {
+        this(count, strategy, rotation, factory, null);
+    }
+
+    /**
+     * @param count     the number of HttpClient instances
+     * @param strategy  the Strategy to pick a shard for a request
+     * @param rotation  the Rotation of the clients or Rotation.NONE
+     * @param factory   the supplier to build each HttpClient
+     * @param successor the supplier of the shards that replace these ones once they are closed or null
+     */
+    HttpClientShards(int count, Strategy strategy, Rotation rotation, Supplier<HttpClient> factory,
+            Supplier<HttpClientShards> successor) {
+        this.successor = successor;
+        this.shards = new AtomicReferenceArray<>(Math.max(1, count));
+        this.strategy = strategy == null ? Strategy.LEAST_IN_FLIGHT : strategy;
+        this.rotation = rotation == null ? Rotation.NONE : rotation;
+        this.factory = factory;
+        for (int i = 0; i < shards.length(); i++) {
+            shards.set(i, new Shard(factory.get(), this.rotation.nextAge()));
+        }
+        // the timer only hands the check over, as building the new clients starts their selector threads.
+        expiryCheck = this.rotation.isEnabled() ? ClientTimer.scheduleWithFixedDelay(
+                () -> ForkJoinPool.commonPool().execute(this::rotateExpired),
+                Math.max(MIN_CHECK_INTERVAL, this.rotation.maxAge / 10)) : null;
+    }
+
+    /**
+     * Pick a shard for a request and count the request as in flight on it. The caller must call the release of
+     * the shard when the response is received or the request fails. Once these shards are closed, for example
+     * when they are evicted from the HttpClientRegistry, the shard is taken from the shards that replace them.
+     *
+     * @return the Shard
+     * @throws IllegalStateException if the shards are closed and have no successor
+     */
+    public Shard acquire() {
+        while (true) {
+            if (closed) {
+                return successor().acquire();
+            }
+            Shard shard = current(shards.length() == 1 ? 0 : select());
+            shard.inFlight.incrementAndGet();
+            // a shard retired after it was picked is not used, its release closes it if it was the last request.
+            if (shard.retired) {
+                shard.release();
+                continue;
+            }
+            shard.requestCount.incrementAndGet();
+            return shard;
+        }
+    }
+
+    /**
+     * Take the shard at the index like the acquire, for the work that has to reach every shard, for example the
+     * prewarm of the connections. The caller must call the release of the shard.
+     *
+     * @param index the index of the shard from 0 to the size
+     * @return the Shard
+     */
+    public Shard acquire(int index) {
+        while (true) {
+            if (closed) {
+                return successor().acquire(index);
+            }
+            Shard shard = current(index);
+            shard.inFlight.incrementAndGet();
+            if (shard.retired) {
+                shard.release();
+                continue;
+            }
+            shard.requestCount.incrementAndGet();
+            return shard;
+        }
+    }
+
+    /**
+     * @return the shard at the index, which is rotated first if its client has expired
+     */
+    private Shard current(int index) {
+        Shard shard = shards.get(index);
+        if (rotation.isEnabled() && !closed && shard.isExpired(System.nanoTime())) {
+            rotate(index, shard);
+            shard = shards.get(index);
+        }
+        return shard;
+    }
+
+    /**
+     * @return the shards that replace these closed ones
+     */
+    private HttpClientShards successor() {
+        if (successor == null) {
+            throw new IllegalStateException("The HttpClientShards are closed");
+        }
+        return successor.get();
+    }
+
+    private void rotateExpired() {
+        for (int i = 0; i < shards.length(); i++) {
+            current(i);
+        }
+    }
+
+    private int select() {
+        int length = shards.length();
+        int start = Math.floorMod(next.getAndIncrement(), length);
+        if (strategy == Strategy.ROUND_ROBIN) {
+            return start;
+        }
+        // the scan starts after the previous one, so the shards with the same count take turns.
+        int best = start;
+        int min = shards.get(start).inFlight.get();
+        for (int i = 1; i < length && min > 0; i++) {
+            int index = (start + i) % length;
+            int inFlight = shards.get(index).inFlight.get();
+            if (inFlight < min) {
+                best = index;
+                min = inFlight;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Replace the expired client of a shard with a new one. Only the caller that wins the retirement builds the
+     * new client, the others keep using the old one until it is replaced.
+     */
+    private void rotate(int index, Shard shard) {
+        if (!shard.retiring.compareAndSet(false, true)) {
+            return;
+        }
+        Shard replacement;
+        try {
+            replacement = new Shard(factory.get(), rotation.nextAge());
+        } catch (RuntimeException e) {
+            // keep the old client rather than failing the request, it is tried again at the next expiry.
+            logger.error("Failed to build the HttpClient to rotate a shard:", e);
+            shard.createdNanos = System.nanoTime();
+            shard.retiring.set(false);
+            return;
+        }
+        shards.set(index, replacement);
+        rotationCount.incrementAndGet();
+        shard.retire(rotation.drainTimeout);
+        if (closed) {
+            // the shards were closed while the client was built, so the close didn't see the replacement.
+            replacement.retire(rotation.drainTimeout);
+        }
+        if (logger.isDebugEnabled())
+            logger.debug("Rotated the HttpClient of shard {} after {} ms", index,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - shard.createdNanos));
+    }
+
+    /**
+     * Replace the client of every shard now, for example after a known scale-out of the destination. The old
+     * clients are drained and shut down like the expired ones.
+     */
+    public void rotateAll() {
+        for (int i = 0; i < shards.length(); i++) {
+            rotate(i, shards.get(i));
+        }
+    }
+
+    /**
+     * Retire the clients of all the shards when they are removed from the HttpClientRegistry. Each client is shut
+     * down once its in-flight requests are done, and the periodic expiry check is stopped. The callers that still
+     * hold the closed shards get the shards of their successor.
+     */
+    public void close() {
+        closed = true;
+        if (expiryCheck != null) {
+            expiryCheck.cancel(false);
+        }
+        for (int i = 0; i < shards.length(); i++) {
+            shards.get(i).retire(rotation.drainTimeout);
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    void touch() {
+        lastAccess = System.nanoTime();
+    }
+
+    long getLastAccess() {
+        return lastAccess;
+    }
+
+    /**
+     * The requests sent with the returned client are not counted as in flight, so the client may be shut down by
+     * a rotation while they are in flight. Use the acquire and the release of a Shard to count them.
+     *
+     * @return the current HttpClient of the first shard, after it is rotated if it has expired
+     */
+    public HttpClient getClient() {
+        return closed ? successor().getClient() : current(0).client;
+    }
+
+    /**
+     * @return the current HttpClient of each shard, like the getClient
+     */
+    public List<HttpClient> getClients() {
+        if (closed) {
+            return successor().getClients();
+        }
+        List<HttpClient> clients = new ArrayList<>(shards.length());
+        for (int i = 0; i < shards.length(); i++) {
+            clients.add(current(i).client);
+        }
+        return Collections.unmodifiableList(clients);
+    }
+
+    public int size() {
+        return shards.length();
+    }
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    public Rotation getRotation() {
+        return rotation;
+    }
+
+    /**
+     * @return the number of clients that were replaced by the rotation
+     */
+    public long getRotationCount() {
+        return rotationCount.get();
+    }
+
+    /**
+     * @return the in-flight and the total requests and the age in milliseconds of each shard
+     */
+    public List<Map<String, Object>> getStats() {
+        List<Map<String, Object>> stats = new ArrayList<>(shards.length());
+        long now = System.nanoTime();
+        for (int i = 0; i < shards.length(); i++) {
+            Shard shard = shards.get(i);
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("inFlight", shard.getInFlight());
+            map.put("requestCount", shard.getRequestCount());
+            map.put("age", TimeUnit.NANOSECONDS.toMillis(now - shard.createdNanos));
+            stats.add(map);
+        }
+        return stats;
+    }
+
+    /**
+     * HttpClient.shutdown and shutdownNow are only available on Java 21, the module is compiled for Java 11.
+     */
+    private static Method findMethod(String name) {
+        try {
+            return HttpClient.class.getMethod(name);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A HttpClient with the count of its requests.
+     */
+    public static final class Shard {
+        private final HttpClient client;
+        private final long maxAgeNanos;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong requestCount = new AtomicLong();
+        private final AtomicBoolean retiring = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile long createdNanos = System.nanoTime();
+        private volatile boolean retired;
+
+        Shard(HttpClient client, long maxAge) {
+            this.client = client;
+            // the conversion saturates, so the client of a disabled rotation never expires.
+            this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAge);
+        }
+
+        public HttpClient getClient() {
+            return client;
+        }
+
+        /**
+         * Count the request taken with the acquire as done.
+         */
+        public void release() {
+            if (inFlight.decrementAndGet() == 0 && retired) {
+                close();
+            }
+        }
+
+        public int getInFlight() {
+            return inFlight.get();
+        }
+
+        public long getRequestCount() {
+            return requestCount.get();
+        }
+
+        /**
+         * @return true if the shard was replaced by the rotation and gets no new request
+         */
+        public boolean isRetired() {
+            return retired;
+        }
+
+        /**
+         * @return true if the client was shut down after its in-flight requests were done
+         */
+        public boolean isClosed() {
+            return closed.get();
+        }
+
+        boolean isExpired(long now) {
+            return now - createdNanos >= maxAgeNanos;
+        }
+
+        void retire(long drainTimeout) {
+            retired = true;
+            if (inFlight.get() == 0) {
+                close();
+            } else if (drainTimeout > 0) {
+                // a request that is never released doesn't keep the old client forever.
+                ClientTimer.schedule(this::abort, drainTimeout);
+            }
+        }
+
+        /**
+         * Shut down the client once it has no request in flight.
+         */
+        void close() {
+            shutdown(SHUTDOWN);
+        }
+
+        /**
+         * Shut down the client after the drain timeout, the requests still in flight are aborted.
+         */
+        void abort() {
+            shutdown(SHUTDOWN_NOW);
+        }
+
+        /**
+         * Invoke the shutdown method on Java 21. On the older versions, the client is only marked as closed and
+         * the JDK closes its connections once it is garbage collected.
+         */
+        private void shutdown(Method method) {
+            if (!closed.compareAndSet(false, true) || method == null) {
+                return;
+            }
+            try {
+                method.invoke(client);
+            } catch (ReflectiveOperationException e) {
+                logger.warn("Failed to shut down the rotated HttpClient:", e);
+            }
+        }
+    }
+
+    /**
+     * The way a shard is picked for a request.
+     */
+    public enum Strategy {
+        /**
+         * The shard with the fewest in-flight requests, the shards with the same count take turns.
+         */
+        LEAST_IN_FLIGHT,
+        /**
+         * The shards in turn, whatever their in-flight requests.
+         */
+        ROUND_ROBIN;
+
+        /**
+         * @param value the strategy name from the config, case-insensitive
+         * @return Strategy or LEAST_IN_FLIGHT if the value is empty
+         */
+        public static Strategy of(String value) {
+            if (value == null || value.trim().isEmpty()) {
+                return LEAST_IN_FLIGHT;
+            }
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * The max age of the clients of the shards. The age of each client is the max age minus a random part of up
+     * to the jitter ratio of it, so that the clients built at the same time are not replaced at the same time.
+     */
+    public static final class Rotation {
+        public static final Rotation NONE = new Rotation(0, 0, 0);
+
+        private final long maxAge;
+        private final double jitter;
+        private final long drainTimeout;
+
+        /**
+         * @param maxAge       the max age of a client in milliseconds, 0 to disable the rotation
+         * @param jitter       the ratio of the max age removed at random from the age of each client, 0 to 1
+         * @param drainTimeout the time in milliseconds to wait for the in-flight requests of a retired client
+         *                     before it is shut down, 0 to wait for all of them
+         */
+        public Rotation(long maxAge, double jitter, long drainTimeout) {
+            this.maxAge = Math.max(0, maxAge);
+            this.jitter = Math.min(1, Math.max(0, jitter));
+            this.drainTimeout = Math.max(0, drainTimeout);
+        }
+
+        public boolean isEnabled() {
+            return maxAge > 0;
+        }
+
+        public long getMaxAge() {
+            return maxAge;
+        }
+
+        public double getJitter() {
+            return jitter;
+        }
+
+        public long getDrainTimeout() {
+            return drainTimeout;
+        }
+
+        /**
+         * @return the age in milliseconds of a new client, or Long.MAX_VALUE if the rotation is disabled
+         */
+        long nextAge() {
+            if (maxAge <= 0) {
+                return Long.MAX_VALUE;
+            }
+            return maxAge - (long) (maxAge * jitter * ThreadLocalRandom.current().nextDouble());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Rotation)) return false;
+            Rotation rotation = (Rotation) o;
+            return maxAge == rotation.maxAge && Double.compare(jitter, rotation.jitter) == 0
+                    && drainTimeout == rotation.drainTimeout;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(maxAge, jitter, drainTimeout);
+        }
+
+        @Override
+        public String toString() {
+            return "Rotation{maxAge=" + maxAge + ", jitter=" + jitter + ", drainTimeout=" + drainTimeout + "}";
+        }
+    }
+}
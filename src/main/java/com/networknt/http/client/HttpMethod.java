@@ -1,5 +1,7 @@
 package com.networknt.http.client;
 
+import java.util.Locale;
+
 public enum HttpMethod {
 
     GET("GET"),
@@ -13,4 +15,29 @@ public enum HttpMethod {
     HttpMethod(String methodString) {
         this.methodString = methodString;
     }
+
+    /**
+     * @return true if sending the request multiple times has the same effect as sending it once.
+     */
+    public boolean isIdempotent() {
+        return isIdempotent(methodString);
+    }
+
+    /**
+     * @param method the request method name, including the ones not in this enum like HEAD and OPTIONS
+     * @return true if the method is idempotent as defined in RFC 9110.
+     */
+    public static boolean isIdempotent(String method) {
+        switch (method.toUpperCase(Locale.ROOT)) {
+            case "GET":
+            case "HEAD":
+            case "OPTIONS":
+            case "TRACE":
+            case "PUT":
+            case "DELETE":
+                return true;
+            default:
+                return false;
+        }
+    }
 }
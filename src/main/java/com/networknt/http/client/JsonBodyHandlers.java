@@ -0,0 +1,151 @@
+package com.networknt.http.client;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * The BodyHandlers that decode a JSON response body into an object with the JsonMapper.objectMapper. Instead of
+ * joining the body into a byte array, decoding it into a String and parsing the String again, the ByteBuffers
+ * are kept as they are received from the HttpClient and the parser reads them through an InputStream when the
+ * body is complete. Only the encoded bytes of the body are held in memory, and no thread is blocked while the
+ * chunks arrive.
+ *
+ * An empty body is decoded as null.
+ */
+public final class JsonBodyHandlers {
+
+    private JsonBodyHandlers() {
+    }
+
+    public static <T> HttpResponse.BodyHandler<T> of(Class<T> type) {
+        JavaType javaType = JsonMapper.objectMapper.constructType(type);
+        return responseInfo -> new JsonBodySubscriber<>(JsonMapper.objectMapper, javaType);
+    }
+
+    public static <T> HttpResponse.BodyHandler<T> of(TypeReference<T> type) {
+        JavaType javaType = JsonMapper.objectMapper.getTypeFactory().constructType(type);
+        return responseInfo -> new JsonBodySubscriber<>(JsonMapper.objectMapper, javaType);
+    }
+
+    /**
+     * @param objectMapper the ObjectMapper to parse and bind the body
+     * @param type         the target type
+     * @param <T>          the target type
+     * @return a BodySubscriber that decodes the body into the target type
+     */
+    public static <T> HttpResponse.BodySubscriber<T> ofSubscriber(ObjectMapper objectMapper, JavaType type) {
+        return new JsonBodySubscriber<>(objectMapper, type);
+    }
+
+    static final class JsonBodySubscriber<T> implements HttpResponse.BodySubscriber<T> {
+        private final ObjectMapper objectMapper;
+        private final JavaType type;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final List<ByteBuffer> buffers = new ArrayList<>();
+
+        JsonBodySubscriber(ObjectMapper objectMapper, JavaType type) {
+            this.objectMapper = objectMapper;
+            this.type = type;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            // the HttpClient doesn't reuse the buffers once they are published, so they are kept without a copy.
+            for (ByteBuffer buffer : items) {
+                if (buffer.hasRemaining()) {
+                    buffers.add(buffer);
+                }
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            buffers.clear();
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (buffers.isEmpty()) {
+                result.complete(null);
+                return;
+            }
+            try (InputStream in = new ByteBufferInputStream(buffers)) {
+                result.complete(objectMapper.readValue(in, type));
+            } catch (IOException | RuntimeException e) {
+                result.completeExceptionally(e);
+            } finally {
+                buffers.clear();
+            }
+        }
+    }
+
+    /**
+     * Read a list of ByteBuffers in order. A buffer is released as soon as it has been read.
+     */
+    static final class ByteBufferInputStream extends InputStream {
+        private final Iterator<ByteBuffer> iterator;
+        private ByteBuffer current;
+
+        ByteBufferInputStream(List<ByteBuffer> buffers) {
+            this.iterator = buffers.iterator();
+        }
+
+        private boolean next() {
+            while (current == null || !current.hasRemaining()) {
+                if (!iterator.hasNext()) {
+                    current = null;
+                    return false;
+                }
+                current = iterator.next();
+                iterator.remove();
+            }
+            return true;
+        }
+
+        @Override
+        public int read() {
+            return next() ? current.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!next()) {
+                return -1;
+            }
+            int n = Math.min(len, current.remaining());
+            current.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return current == null ? 0 : current.remaining();
+        }
+    }
+}
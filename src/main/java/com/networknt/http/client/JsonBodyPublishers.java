@@ -0,0 +1,299 @@
+package com.networknt.http.client;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Flow;
+
+/**
+ * The BodyPublishers that encode an object as JSON with the JsonMapper.objectMapper. The bytes are written by the
+ * JsonGenerator straight into ByteBuffers, without a String in between.
+ *
+ * A single object is serialized once when the content length is asked for, so the Content-Length header is set,
+ * and its buffers are published again if the request is retried. A Collection is serialized the same way if its
+ * JSON fits in the buffer limit. A larger one is serialized one element at a time as the HttpClient requests
+ * more buffers, so the memory used by a large bulk upload is bounded by the chunk size and the largest element.
+ * Its content length is unknown and the body is sent in chunks.
+ *
+ * The buffers are not pooled, because the HttpClient may still hold a published buffer until it is written.
+ */
+public final class JsonBodyPublishers {
+    static final int DEFAULT_CHUNK_SIZE = 16 * 1024;
+    static final int DEFAULT_BUFFER_LIMIT = 64 * 1024;
+
+    private JsonBodyPublishers() {
+    }
+
+    /**
+     * @param body the object to encode, a Collection is streamed as a JSON array
+     * @return BodyPublisher
+     */
+    public static HttpRequest.BodyPublisher of(Object body) {
+        return of(JsonMapper.objectMapper, body, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param objectMapper the ObjectMapper to encode the body
+     * @param body         the object to encode, a Collection is streamed as a JSON array
+     * @param chunkSize    the size of the published buffers
+     * @return BodyPublisher
+     */
+    public static HttpRequest.BodyPublisher of(ObjectMapper objectMapper, Object body, int chunkSize) {
+        return of(objectMapper, body, chunkSize, DEFAULT_BUFFER_LIMIT);
+    }
+
+    /**
+     * @param objectMapper the ObjectMapper to encode the body
+     * @param body         the object to encode, a Collection is streamed as a JSON array
+     * @param chunkSize    the size of the published buffers
+     * @param bufferLimit  the max size in bytes of a Collection that is buffered and sent with a Content-Length
+     * @return BodyPublisher
+     */
+    public static HttpRequest.BodyPublisher of(ObjectMapper objectMapper, Object body, int chunkSize, int bufferLimit) {
+        if (body instanceof Collection) {
+            return new CollectionPublisher(objectMapper, (Collection<?>) body, chunkSize, bufferLimit);
+        }
+        return new BufferedPublisher(objectMapper, body, chunkSize);
+    }
+
+    /**
+     * Write the bytes into ByteBuffers of the chunk size and queue the full ones.
+     */
+    static final class ChunkOutputStream extends OutputStream {
+        private final int chunkSize;
+        private final Queue<ByteBuffer> chunks = new ArrayDeque<>();
+        private ByteBuffer current;
+        private long size;
+
+        ChunkOutputStream(int chunkSize) {
+            this.chunkSize = Math.max(512, chunkSize);
+        }
+
+        @Override
+        public void write(int b) {
+            ensureCapacity();
+            current.put((byte) b);
+            size++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            while (len > 0) {
+                ensureCapacity();
+                int n = Math.min(len, current.remaining());
+                current.put(b, off, n);
+                off += n;
+                len -= n;
+                size += n;
+            }
+        }
+
+        private void ensureCapacity() {
+            if (current == null) {
+                current = ByteBuffer.allocate(chunkSize);
+            } else if (!current.hasRemaining()) {
+                chunks.add(current.flip());
+                current = ByteBuffer.allocate(chunkSize);
+            }
+        }
+
+        /**
+         * Queue the partially filled buffer as well, at the end of the body.
+         */
+        void finish() {
+            if (current != null && current.position() > 0) {
+                chunks.add(current.flip());
+            }
+            current = null;
+        }
+
+        Queue<ByteBuffer> getChunks() {
+            return chunks;
+        }
+
+        long getSize() {
+            return size;
+        }
+    }
+
+    /**
+     * A single object serialized once into read-only chunks that are replayed for each subscriber.
+     */
+    static final class BufferedPublisher implements HttpRequest.BodyPublisher {
+        private final ObjectMapper objectMapper;
+        private final Object body;
+        private final int chunkSize;
+        private volatile List<ByteBuffer> chunks;
+        private volatile long contentLength = -1;
+
+        BufferedPublisher(ObjectMapper objectMapper, Object body, int chunkSize) {
+            this.objectMapper = objectMapper;
+            this.body = body;
+            this.chunkSize = chunkSize;
+        }
+
+        List<ByteBuffer> getChunks() throws IOException {
+            if (chunks == null) {
+                synchronized (this) {
+                    if (chunks == null) {
+                        ChunkOutputStream out = new ChunkOutputStream(chunkSize);
+                        objectMapper.writeValue(out, body);
+                        out.finish();
+                        contentLength = out.getSize();
+                        chunks = new ArrayList<>(out.getChunks());
+                    }
+                }
+            }
+            return chunks;
+        }
+
+        @Override
+        public long contentLength() {
+            try {
+                getChunks();
+            } catch (IOException e) {
+                // the error is reported to the subscriber.
+                return -1;
+            }
+            return contentLength;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            List<ByteBuffer> list;
+            try {
+                list = getChunks();
+            } catch (IOException | RuntimeException e) {
+                ChunkSubscription.fail(subscriber, e);
+                return;
+            }
+            Iterator<ByteBuffer> iterator = list.iterator();
+            // each subscriber reads its own view of the chunks, so the body can be sent again.
+            ChunkSubscription.subscribe(subscriber,
+                    () -> iterator.hasNext() ? iterator.next().asReadOnlyBuffer() : null);
+        }
+    }
+
+    /**
+     * A Collection serialized as a JSON array. The array is written up to the buffer limit when the content length
+     * is asked for. If it ends within the limit, its chunks are replayed for each subscriber with the content
+     * length. Otherwise they are dropped and the array is written again one element at a time on demand.
+     */
+    static final class CollectionPublisher implements HttpRequest.BodyPublisher {
+        private final ObjectMapper objectMapper;
+        private final Collection<?> body;
+        private final int chunkSize;
+        private final int bufferLimit;
+        private volatile boolean probed;
+        private List<ByteBuffer> chunks;
+        private long contentLength = -1;
+
+        CollectionPublisher(ObjectMapper objectMapper, Collection<?> body, int chunkSize, int bufferLimit) {
+            this.objectMapper = objectMapper;
+            this.body = body;
+            this.chunkSize = chunkSize;
+            this.bufferLimit = bufferLimit;
+        }
+
+        /**
+         * @return the chunks of the whole array or null if it is larger than the buffer limit
+         */
+        private List<ByteBuffer> getChunks() {
+            if (!probed) {
+                synchronized (this) {
+                    if (!probed) {
+                        buffer();
+                        probed = true;
+                    }
+                }
+            }
+            return chunks;
+        }
+
+        private void buffer() {
+            ArraySource source = new ArraySource(objectMapper, body.iterator(), chunkSize);
+            List<ByteBuffer> list = new ArrayList<>();
+            long size = 0;
+            try {
+                ByteBuffer chunk;
+                while ((chunk = source.next()) != null) {
+                    size += chunk.remaining();
+                    if (size > bufferLimit) {
+                        return;
+                    }
+                    list.add(chunk);
+                }
+            } catch (IOException | RuntimeException e) {
+                // the array is streamed and the error is reported to the subscriber.
+                return;
+            }
+            chunks = list;
+            contentLength = size;
+        }
+
+        @Override
+        public long contentLength() {
+            return getChunks() != null ? contentLength : -1;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            List<ByteBuffer> list = getChunks();
+            if (list == null) {
+                ChunkSubscription.subscribe(subscriber, new ArraySource(objectMapper, body.iterator(), chunkSize));
+                return;
+            }
+            Iterator<ByteBuffer> iterator = list.iterator();
+            ChunkSubscription.subscribe(subscriber,
+                    () -> iterator.hasNext() ? iterator.next().asReadOnlyBuffer() : null);
+        }
+    }
+
+    /**
+     * Write the elements into a JSON array until there is a full chunk or the array is closed.
+     */
+    static final class ArraySource implements ChunkSubscription.ChunkSource {
+        private final ObjectMapper objectMapper;
+        private final Iterator<?> iterator;
+        private final ChunkOutputStream out;
+        private JsonGenerator generator;
+        private boolean finished;
+
+        ArraySource(ObjectMapper objectMapper, Iterator<?> iterator, int chunkSize) {
+            this.objectMapper = objectMapper;
+            this.iterator = iterator;
+            this.out = new ChunkOutputStream(chunkSize);
+        }
+
+        @Override
+        public ByteBuffer next() throws IOException {
+            Queue<ByteBuffer> chunks = out.getChunks();
+            while (chunks.isEmpty() && !finished) {
+                if (generator == null) {
+                    generator = objectMapper.getFactory().createGenerator(out);
+                    generator.writeStartArray();
+                }
+                if (iterator.hasNext()) {
+                    objectMapper.writeValue(generator, iterator.next());
+                    generator.flush();
+                } else {
+                    generator.writeEndArray();
+                    generator.close();
+                    out.finish();
+                    finished = true;
+                }
+            }
+            return chunks.poll();
+        }
+    }
+}
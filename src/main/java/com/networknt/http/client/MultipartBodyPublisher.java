@@ -0,0 +1,458 @@
+package com.networknt.http.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * A multipart/form-data request body that is streamed part by part. The boundary lines and the part headers are
+ * encoded when the part is reached, and the content of a part is read one chunk at a time as the HttpClient
+ * requests more buffers, so the memory used doesn't depend on the size of the attachments.
+ *
+ * The Content-Length is set when the length of every part is known. A part read from an InputStream has an unknown
+ * length, so the body is sent in chunks.
+ *
+ * <pre>
+ * MultipartBodyPublisher body = MultipartBodyPublisher.builder()
+ *         .json("metadata", metadata)
+ *         .file("document", Paths.get("/data/report.pdf"))
+ *         .build();
+ * HttpRequest.Builder builder = httpClientRequest.initBuilder(url, HttpMethod.POST, Optional.of(body));
+ * </pre>
+ */
+public final class MultipartBodyPublisher implements HttpRequest.BodyPublisher {
+    private static final String CRLF = "\r\n";
+    private static final String OCTET_STREAM = "application/octet-stream";
+
+    private final String boundary;
+    private final List<Part> parts;
+    private final int chunkSize;
+    private volatile long contentLength = -2;
+
+    private MultipartBodyPublisher(String boundary, List<Part> parts, int chunkSize) {
+        this.boundary = boundary;
+        this.parts = parts;
+        this.chunkSize = chunkSize;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public String getBoundary() {
+        return boundary;
+    }
+
+    /**
+     * @return the value of the Content-Type header with the boundary
+     */
+    public String getContentType() {
+        return ContentType.MULTIPART_FORM_DATA_VALUE.value() + "; boundary=" + boundary;
+    }
+
+    @Override
+    public long contentLength() {
+        if (contentLength == -2) {
+            long length = 0;
+            for (int i = 0; i < parts.size() && length >= 0; i++) {
+                long partLength = parts.get(i).contentLength();
+                length = partLength < 0 ? -1 : length + partLength + encode(header(i)).remaining();
+            }
+            contentLength = length < 0 ? -1 : length + encode(trailer()).remaining();
+        }
+        return contentLength;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        ChunkSubscription.subscribe(subscriber, new MultipartSource());
+    }
+
+    /**
+     * The boundary line and the headers before the content of a part. The line break after the content of the
+     * previous part belongs to the boundary.
+     */
+    private String header(int index) {
+        Part part = parts.get(index);
+        StringBuilder sb = new StringBuilder();
+        if (index > 0) {
+            sb.append(CRLF);
+        }
+        sb.append("--").append(boundary).append(CRLF);
+        sb.append("Content-Disposition: form-data; name=\"").append(quote(part.name)).append('"');
+        if (part.filename != null) {
+            sb.append("; filename=\"").append(quote(part.filename)).append('"');
+        }
+        sb.append(CRLF);
+        if (part.contentType != null) {
+            sb.append(Headers.CONTENT_TYPE_STRING).append(": ").append(part.contentType).append(CRLF);
+        }
+        return sb.append(CRLF).toString();
+    }
+
+    private String trailer() {
+        return (parts.isEmpty() ? "" : CRLF) + "--" + boundary + "--" + CRLF;
+    }
+
+    private static ByteBuffer encode(String value) {
+        return ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Escape the quote and the line breaks in a name or a file name the way the browsers do.
+     */
+    static String quote(String value) {
+        return value.replace("\"", "%22").replace("\r", "%0D").replace("\n", "%0A");
+    }
+
+    /**
+     * Publish the header of each part, then its content, and the closing boundary at the end.
+     */
+    private final class MultipartSource implements ChunkSubscription.ChunkSource {
+        private int index = -1;
+        private ChunkSubscription.ChunkSource current;
+        private boolean finished;
+
+        @Override
+        public ByteBuffer next() throws IOException {
+            while (current != null) {
+                ByteBuffer chunk = current.next();
+                if (chunk == null) {
+                    ChunkSubscription.ChunkSource source = current;
+                    current = null;
+                    source.close();
+                } else if (chunk.hasRemaining()) {
+                    return chunk;
+                }
+            }
+            if (index + 1 < parts.size()) {
+                index++;
+                current = parts.get(index).open(chunkSize);
+                return encode(header(index));
+            }
+            if (!finished) {
+                finished = true;
+                return encode(trailer());
+            }
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (current != null) {
+                current.close();
+            }
+        }
+    }
+
+    /**
+     * A part of the body. The content is opened again for each subscription, so the body can be sent again if the
+     * request is retried.
+     */
+    abstract static class Part {
+        final String name;
+        final String filename;
+        final String contentType;
+
+        Part(String name, String filename, String contentType) {
+            if (name == null) {
+                throw new IllegalArgumentException("The name of a part is required");
+            }
+            this.name = name;
+            this.filename = filename;
+            this.contentType = contentType;
+        }
+
+        /**
+         * @return the length of the content or -1 if it is unknown
+         */
+        abstract long contentLength();
+
+        abstract ChunkSubscription.ChunkSource open(int chunkSize) throws IOException;
+    }
+
+    static final class BufferPart extends Part {
+        private final ByteBuffer content;
+
+        BufferPart(String name, String filename, String contentType, ByteBuffer content) {
+            super(name, filename, contentType);
+            this.content = content.asReadOnlyBuffer();
+        }
+
+        @Override
+        long contentLength() {
+            return content.remaining();
+        }
+
+        @Override
+        ChunkSubscription.ChunkSource open(int chunkSize) {
+            ByteBuffer[] chunk = { content.duplicate() };
+            return () -> {
+                ByteBuffer next = chunk[0];
+                chunk[0] = null;
+                return next;
+            };
+        }
+    }
+
+    static final class JsonPart extends Part {
+        private final ObjectMapper objectMapper;
+        private final Object value;
+        private volatile JsonBodyPublishers.BufferedPublisher buffered;
+
+        JsonPart(String name, ObjectMapper objectMapper, Object value) {
+            super(name, null, ContentType.APPLICATION_JSON.value());
+            this.objectMapper = objectMapper;
+            this.value = value;
+        }
+
+        private JsonBodyPublishers.BufferedPublisher getBuffered() {
+            if (buffered == null) {
+                synchronized (this) {
+                    if (buffered == null) {
+                        buffered = new JsonBodyPublishers.BufferedPublisher(objectMapper, value,
+                                JsonBodyPublishers.DEFAULT_CHUNK_SIZE);
+                    }
+                }
+            }
+            return buffered;
+        }
+
+        @Override
+        long contentLength() {
+            // a Collection is streamed as an array with an unknown length.
+            return value instanceof Collection ? -1 : getBuffered().contentLength();
+        }
+
+        @Override
+        ChunkSubscription.ChunkSource open(int chunkSize) throws IOException {
+            if (value instanceof Collection) {
+                return new JsonBodyPublishers.ArraySource(objectMapper, ((Collection<?>) value).iterator(), chunkSize);
+            }
+            Iterator<ByteBuffer> iterator = getBuffered().getChunks().iterator();
+            return () -> iterator.hasNext() ? iterator.next().asReadOnlyBuffer() : null;
+        }
+    }
+
+    static final class FilePart extends Part {
+        private final Path file;
+        private final long size;
+
+        FilePart(String name, String filename, String contentType, Path file, long size) {
+            super(name, filename, contentType);
+            this.file = file;
+            this.size = size;
+        }
+
+        @Override
+        long contentLength() {
+            return size;
+        }
+
+        @Override
+        ChunkSubscription.ChunkSource open(int chunkSize) throws IOException {
+            // the regions are mapped, so they are larger than the chunks copied from a stream.
+            return new BinaryBodyPublishers.MappedFileSource(FileChannel.open(file, StandardOpenOption.READ), size,
+                    Math.max(chunkSize, BinaryBodyPublishers.DEFAULT_REGION_SIZE));
+        }
+    }
+
+    static final class StreamPart extends Part {
+        private final Supplier<? extends InputStream> stream;
+
+        StreamPart(String name, String filename, String contentType, Supplier<? extends InputStream> stream) {
+            super(name, filename, contentType);
+            this.stream = stream;
+        }
+
+        @Override
+        long contentLength() {
+            return -1;
+        }
+
+        @Override
+        ChunkSubscription.ChunkSource open(int chunkSize) {
+            return new StreamSource(stream.get(), chunkSize);
+        }
+    }
+
+    /**
+     * Read the stream into a new buffer for each chunk, as the HttpClient may still hold the previous one.
+     */
+    static final class StreamSource implements ChunkSubscription.ChunkSource {
+        private final InputStream in;
+        private final int chunkSize;
+
+        StreamSource(InputStream in, int chunkSize) {
+            if (in == null) {
+                throw new IllegalStateException("The stream of a part is null");
+            }
+            this.in = in;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public ByteBuffer next() throws IOException {
+            byte[] bytes = new byte[chunkSize];
+            int n = in.readNBytes(bytes, 0, chunkSize);
+            return n == 0 ? null : ByteBuffer.wrap(bytes, 0, n);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    public static final class Builder {
+        private final List<Part> parts = new ArrayList<>();
+        private ObjectMapper objectMapper = JsonMapper.objectMapper;
+        private String boundary;
+        private int chunkSize = JsonBodyPublishers.DEFAULT_CHUNK_SIZE;
+
+        private Builder() {
+        }
+
+        /**
+         * @param boundary the boundary, a random one is generated by default
+         * @return Builder
+         */
+        public Builder boundary(String boundary) {
+            if (boundary == null || boundary.isEmpty() || boundary.length() > 70) {
+                throw new IllegalArgumentException("The boundary must have 1 to 70 characters");
+            }
+            this.boundary = boundary;
+            return this;
+        }
+
+        /**
+         * @param chunkSize the size of the buffers read from the streams and encoded from the JSON parts
+         * @return Builder
+         */
+        public Builder chunkSize(int chunkSize) {
+            this.chunkSize = Math.max(512, chunkSize);
+            return this;
+        }
+
+        /**
+         * @param objectMapper the ObjectMapper to encode the JSON parts added after it
+         * @return Builder
+         */
+        public Builder objectMapper(ObjectMapper objectMapper) {
+            this.objectMapper = objectMapper;
+            return this;
+        }
+
+        /**
+         * Add a form field encoded in UTF-8.
+         *
+         * @param name  the name of the field
+         * @param value the value of the field
+         * @return Builder
+         */
+        public Builder field(String name, String value) {
+            parts.add(new BufferPart(name, null, null, encode(value)));
+            return this;
+        }
+
+        /**
+         * Add a part encoded as JSON, a Collection is streamed as a JSON array.
+         *
+         * @param name  the name of the part
+         * @param value the object to encode
+         * @return Builder
+         */
+        public Builder json(String name, Object value) {
+            parts.add(new JsonPart(name, objectMapper, value));
+            return this;
+        }
+
+        /**
+         * @param name        the name of the part
+         * @param filename    the file name or null
+         * @param contentType the content type or null
+         * @param content     the bytes, the array must not be changed until the response is received
+         * @return Builder
+         */
+        public Builder bytes(String name, String filename, String contentType, byte[] content) {
+            parts.add(new BufferPart(name, filename, contentType, ByteBuffer.wrap(content)));
+            return this;
+        }
+
+        /**
+         * Add a file with the content type guessed from its name.
+         *
+         * @param name the name of the part
+         * @param file the file to send
+         * @return Builder
+         * @throws UncheckedIOException if the file cannot be read
+         */
+        public Builder file(String name, Path file) {
+            String contentType;
+            try {
+                contentType = Files.probeContentType(file);
+            } catch (IOException e) {
+                contentType = null;
+            }
+            return file(name, file, contentType == null ? OCTET_STREAM : contentType);
+        }
+
+        /**
+         * @param name        the name of the part
+         * @param file        the file to send, memory-mapped one region at a time
+         * @param contentType the content type
+         * @return Builder
+         * @throws UncheckedIOException if the file cannot be read
+         */
+        public Builder file(String name, Path file, String contentType) {
+            long size;
+            try {
+                size = Files.size(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            parts.add(new FilePart(name, String.valueOf(file.getFileName()), contentType, file, size));
+            return this;
+        }
+
+        /**
+         * Add a part read from a stream with an unknown length. The supplier is called for each attempt of the
+         * request and the stream is closed at the end of the part.
+         *
+         * @param name        the name of the part
+         * @param filename    the file name or null
+         * @param contentType the content type or null
+         * @param stream      the supplier of the stream
+         * @return Builder
+         */
+        public Builder stream(String name, String filename, String contentType, Supplier<? extends InputStream> stream) {
+            parts.add(new StreamPart(name, filename, contentType, stream));
+            return this;
+        }
+
+        public MultipartBodyPublisher build() {
+            String value = boundary;
+            if (value == null) {
+                value = "----HttpClientBoundary" + Long.toHexString(ThreadLocalRandom.current().nextLong())
+                        + Long.toHexString(ThreadLocalRandom.current().nextLong());
+            }
+            return new MultipartBodyPublisher(value, new ArrayList<>(parts), chunkSize);
+        }
+    }
+}
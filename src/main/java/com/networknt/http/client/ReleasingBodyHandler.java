@@ -0,0 +1,98 @@
+package com.networknt.http.client;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A BodyHandler that runs a callback once the body of the response has been received, has failed or has been
+ * cancelled by the caller. The send returns as soon as the body is available, which is before the body is read
+ * for the streaming BodyHandlers like ofInputStream and ofPublisher, so the shard of the exchange is released
+ * with this callback instead.
+ *
+ * @param <T> the response body type
+ */
+class ReleasingBodyHandler<T> implements HttpResponse.BodyHandler<T> {
+    private final HttpResponse.BodyHandler<T> handler;
+    private final Runnable release;
+
+    /**
+     * @param handler the BodyHandler of the caller
+     * @param release the callback, which must be safe to run more than once
+     */
+    ReleasingBodyHandler(HttpResponse.BodyHandler<T> handler, Runnable release) {
+        this.handler = handler;
+        this.release = release;
+    }
+
+    /**
+     * @param task the task
+     * @return a Runnable that runs the task only the first time it is run
+     */
+    static Runnable once(Runnable task) {
+        AtomicBoolean done = new AtomicBoolean();
+        return () -> {
+            if (done.compareAndSet(false, true)) {
+                task.run();
+            }
+        };
+    }
+
+    @Override
+    public HttpResponse.BodySubscriber<T> apply(HttpResponse.ResponseInfo responseInfo) {
+        return new ReleasingSubscriber<>(handler.apply(responseInfo), release);
+    }
+
+    static final class ReleasingSubscriber<T> implements HttpResponse.BodySubscriber<T> {
+        private final HttpResponse.BodySubscriber<T> downstream;
+        private final Runnable release;
+
+        ReleasingSubscriber(HttpResponse.BodySubscriber<T> downstream, Runnable release) {
+            this.downstream = downstream;
+            this.release = release;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return downstream.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            downstream.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    subscription.request(n);
+                }
+
+                @Override
+                public void cancel() {
+                    // the caller closed the stream before its end.
+                    subscription.cancel();
+                    release.run();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            downstream.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            release.run();
+            downstream.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            // released before the body is completed, so that the shard is free once the caller has the body.
+            release.run();
+            downstream.onComplete();
+        }
+    }
+}
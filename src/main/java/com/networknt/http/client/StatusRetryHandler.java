@@ -0,0 +1,81 @@
+package com.networknt.http.client;
+
+import com.networknt.http.client.retry.RetryAfter;
+import com.networknt.http.client.retry.RetryPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.http.HttpResponse;
+
+/**
+ * A BodyHandler for one attempt that checks the status code before the body is read. If the status code is
+ * retryable and the policy allows another attempt, the body is discarded without buffering and the delay of
+ * the next attempt is recorded. Otherwise, the body is handled by the caller's BodyHandler.
+ *
+ * A Retry-After longer than the max wait, which is the timeout of the request, is not waited for and the
+ * response is returned to the caller, so that a server can't park the caller for hours.
+ *
+ * @param <T> the response body type
+ */
+class StatusRetryHandler<T> implements HttpResponse.BodyHandler<T> {
+    private static final Logger logger = LoggerFactory.getLogger(StatusRetryHandler.class);
+
+    private final HttpResponse.BodyHandler<T> handler;
+    private final RetryPolicy policy;
+    private final int attempt;
+    private final long previousDelay;
+    private final long deadline;
+    private final long maxWait;
+    private volatile long retryDelay = -1;
+    private volatile int statusCode;
+
+    StatusRetryHandler(HttpResponse.BodyHandler<T> handler, RetryPolicy policy, int attempt, long previousDelay,
+            long deadline, long maxWait) {
+        this.handler = handler;
+        this.policy = policy;
+        this.attempt = attempt;
+        this.previousDelay = previousDelay;
+        this.deadline = deadline;
+        this.maxWait = maxWait;
+    }
+
+    @Override
+    public HttpResponse.BodySubscriber<T> apply(HttpResponse.ResponseInfo responseInfo) {
+        int statusCode = responseInfo.statusCode();
+        this.statusCode = statusCode;
+        if (attempt < policy.getMaxAttempts() && policy.isRetryableStatus(statusCode)) {
+            long now = System.currentTimeMillis();
+            long retryAfter = RetryAfter.parse(responseInfo.headers().firstValue(RetryAfter.RETRY_AFTER).orElse(null), now);
+            long delay = retryAfter < 0 ? policy.getDelay(attempt, previousDelay)
+                    : retryAfter > maxWait ? -1 : policy.getRetryAfterDelay(attempt, retryAfter);
+            if (delay >= 0 && (deadline <= 0 || now + delay < deadline)) {
+                if (logger.isDebugEnabled())
+                    logger.debug("Retry status {} in {} ms for attempt {}", statusCode, delay, attempt);
+                retryDelay = delay;
+                return HttpResponse.BodySubscribers.replacing(null);
+            }
+        }
+        return handler.apply(responseInfo);
+    }
+
+    /**
+     * @return true if the response was discarded and the request should be sent again.
+     */
+    boolean isRetry() {
+        return retryDelay >= 0;
+    }
+
+    /**
+     * @return the status code of the response or 0 if there is no response yet.
+     */
+    int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return the delay before the next attempt in milliseconds.
+     */
+    long getRetryDelay() {
+        return retryDelay;
+    }
+}
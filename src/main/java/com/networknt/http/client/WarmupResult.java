@@ -0,0 +1,146 @@
+package com.networknt.http.client;
+
+import javax.net.ssl.SSLSession;
+import java.net.http.HttpResponse;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The outcome of the warm-up of a host by the prewarm of the HttpClientRequest. The first probe of a client pays
+ * the DNS lookup, the TCP connect and the full TLS handshake, and the other probes open their connections with
+ * the TLS session that it put in the session cache, so the cold and the warm probe times tell the cost of a new
+ * connection with and without the resumption. With HTTP/2, the probes of a client share one connection.
+ */
+public class WarmupResult {
+    private final String host;
+    private int successCount;
+    private int failureCount;
+    private long coldMillis = -1;
+    private long warmTotalMillis;
+    private long warmMaxMillis;
+    private int warmCount;
+    private String version;
+    private String tlsProtocol;
+    private String cipherSuite;
+    private String error;
+
+    public WarmupResult(String host) {
+        this.host = host;
+    }
+
+    /**
+     * Record the outcome of a probe.
+     *
+     * @param cold     true for the first probe of a client
+     * @param millis   the time of the probe in milliseconds
+     * @param response the response or null if the probe failed
+     * @param error    the failure or null
+     */
+    synchronized void record(boolean cold, long millis, HttpResponse<?> response, Throwable error) {
+        if (response == null) {
+            failureCount++;
+            Throwable cause = error.getCause() != null ? error.getCause() : error;
+            this.error = String.valueOf(cause);
+            return;
+        }
+        successCount++;
+        if (cold) {
+            coldMillis = coldMillis < 0 ? millis : Math.max(coldMillis, millis);
+        } else {
+            warmCount++;
+            warmTotalMillis += millis;
+            warmMaxMillis = Math.max(warmMaxMillis, millis);
+        }
+        version = String.valueOf(response.version());
+        if (response.sslSession().isPresent()) {
+            SSLSession session = response.sslSession().get();
+            tlsProtocol = session.getProtocol();
+            cipherSuite = session.getCipherSuite();
+        }
+    }
+
+    /**
+     * @return the scheme, host and port
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * @return true if at least one probe reached the host
+     */
+    public synchronized boolean isWarm() {
+        return successCount > 0;
+    }
+
+    public synchronized int getSuccessCount() {
+        return successCount;
+    }
+
+    public synchronized int getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * @return the time in milliseconds of the first probe with a new connection and a full handshake, or -1
+     */
+    public synchronized long getColdMillis() {
+        return coldMillis;
+    }
+
+    /**
+     * @return the average time in milliseconds of the probes after the first one, or -1
+     */
+    public synchronized long getWarmMillis() {
+        return warmCount == 0 ? -1 : warmTotalMillis / warmCount;
+    }
+
+    public synchronized long getWarmMaxMillis() {
+        return warmCount == 0 ? -1 : warmMaxMillis;
+    }
+
+    /**
+     * @return the HTTP version of the responses
+     */
+    public synchronized String getVersion() {
+        return version;
+    }
+
+    public synchronized String getTlsProtocol() {
+        return tlsProtocol;
+    }
+
+    public synchronized String getCipherSuite() {
+        return cipherSuite;
+    }
+
+    /**
+     * @return the last failure of a probe or null
+     */
+    public synchronized String getError() {
+        return error;
+    }
+
+    public synchronized Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("successCount", successCount);
+        map.put("failureCount", failureCount);
+        map.put("coldMillis", coldMillis);
+        map.put("warmMillis", getWarmMillis());
+        map.put("warmMaxMillis", getWarmMaxMillis());
+        map.put("version", version);
+        if (tlsProtocol != null) {
+            map.put("tlsProtocol", tlsProtocol);
+            map.put("cipherSuite", cipherSuite);
+        }
+        if (error != null) {
+            map.put("error", error);
+        }
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return host + " " + toMap();
+    }
+}
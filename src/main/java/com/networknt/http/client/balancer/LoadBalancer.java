@@ -0,0 +1,248 @@
+package com.networknt.http.client.balancer;
+
+import com.networknt.cluster.Cluster;
+import com.networknt.service.SingletonServiceFactory;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pick an instance of a service with the power of two choices. The instances are discovered by the Cluster, two
+ * of them are picked at random and the one with the lower cost gets the request. The cost of an instance is its
+ * peak EWMA latency multiplied by its outstanding requests plus one, so a slow or overloaded instance sheds the
+ * load to the others without a central view of the service.
+ *
+ * The EWMA of an instance jumps to a latency above it and decays towards the lower ones with the decay time, so
+ * a latency spike is seen at once and forgotten slowly. It also decays while the instance gets no request, so a
+ * slow instance that recovers is tried again. A failed request is recorded with the failure penalty. A new
+ * instance has no latency, so it is tried as soon as it is discovered, with one request at a time until it
+ * responds.
+ *
+ * The instances that are no longer discovered for any service are dropped when the list of a service changes,
+ * so the churn of the instance addresses doesn't grow the balancer.
+ */
+public class LoadBalancer {
+    private final Cluster cluster;
+    private final long decayTime;
+    private final long failurePenalty;
+    private final Map<URI, Instance> instances = new ConcurrentHashMap<>();
+    private final Map<String, List<URI>> discovered = new ConcurrentHashMap<>();
+    private final AtomicLong selectCount = new AtomicLong();
+
+    /**
+     * @param cluster        the Cluster to discover the instances, or null for the Cluster of the service factory
+     * @param decayTime      the time in milliseconds for the EWMA to forget a latency
+     * @param failurePenalty the latency in milliseconds recorded for a failed request
+     */
+    public LoadBalancer(Cluster cluster, long decayTime, long failurePenalty) {
+        this.cluster = cluster;
+        this.decayTime = Math.max(1, decayTime);
+        this.failurePenalty = failurePenalty;
+    }
+
+    /**
+     * Discover the instances of the service and pick one of them.
+     *
+     * @param protocol  the protocol, http or https
+     * @param serviceId the serviceId
+     * @param tag       the environment tag or null
+     * @return the Instance, or null if no instance is discovered
+     */
+    public Instance select(String protocol, String serviceId, String tag) {
+        Cluster current = cluster != null ? cluster : SingletonServiceFactory.getBean(Cluster.class);
+        if (current == null) {
+            throw new IllegalStateException("No Cluster is configured to discover " + serviceId);
+        }
+        List<URI> uris = current.services(protocol, serviceId, tag);
+        refresh(protocol + "|" + serviceId + "|" + tag, uris == null ? Collections.emptyList() : uris);
+        if (uris == null || uris.isEmpty()) {
+            return null;
+        }
+        selectCount.incrementAndGet();
+        int size = uris.size();
+        if (size == 1) {
+            return get(uris.get(0));
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        // the second choice is another instance, picked from the others.
+        int second = (first + 1 + random.nextInt(size - 1)) % size;
+        Instance a = get(uris.get(first));
+        Instance b = get(uris.get(second));
+        long now = System.nanoTime();
+        return a.getCost(now) <= b.getCost(now) ? a : b;
+    }
+
+    /**
+     * Drop the instances that left the list of the service, unless another service still has them. A request
+     * in flight to a dropped instance completes on the Instance it holds.
+     */
+    private void refresh(String service, List<URI> uris) {
+        List<URI> previous = discovered.get(service);
+        if (uris.equals(previous)) {
+            return;
+        }
+        // a copy, as the Cluster may update its list in place.
+        discovered.put(service, new ArrayList<>(uris));
+        if (previous == null) {
+            return;
+        }
+        for (URI uri : previous) {
+            if (!uris.contains(uri) && discovered.values().stream().noneMatch(list -> list.contains(uri))) {
+                instances.remove(uri);
+            }
+        }
+    }
+
+    /**
+     * @param uri the URI of an instance
+     * @return the Instance with its latency and outstanding requests
+     */
+    public Instance get(URI uri) {
+        return instances.computeIfAbsent(uri, k -> new Instance(k, decayTime, failurePenalty));
+    }
+
+    public long getDecayTime() {
+        return decayTime;
+    }
+
+    public long getFailurePenalty() {
+        return failurePenalty;
+    }
+
+    public long getSelectCount() {
+        return selectCount.get();
+    }
+
+    /**
+     * @return the EWMA latency, the outstanding and the total requests of each instance.
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long now = System.nanoTime();
+        instances.forEach((uri, instance) -> {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("ewma", instance.getEwma(now) / 1_000_000.0);
+            map.put("outstanding", instance.getOutstanding());
+            map.put("requestCount", instance.getRequestCount());
+            map.put("failureCount", instance.getFailureCount());
+            stats.put(uri.toString(), map);
+        });
+        return stats;
+    }
+
+    /**
+     * An instance of a service with its peak EWMA latency and its outstanding requests.
+     */
+    public static final class Instance {
+        private final URI uri;
+        private final double decayNanos;
+        private final long failurePenaltyNanos;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicLong requestCount = new AtomicLong();
+        private final AtomicLong failureCount = new AtomicLong();
+        private double ewma;
+        private long stamp = System.nanoTime();
+
+        Instance(URI uri, long decayTime, long failurePenalty) {
+            this.uri = uri;
+            this.decayNanos = decayTime * 1_000_000.0;
+            this.failurePenaltyNanos = failurePenalty * 1_000_000L;
+        }
+
+        public URI getUri() {
+            return uri;
+        }
+
+        /**
+         * @param target the URI of the request with any host
+         * @return the URI with the scheme, host and port of the instance, and the path and query of the target
+         */
+        public URI resolve(URI target) {
+            try {
+                String path = uri.getRawPath() == null || uri.getRawPath().equals("/") ? "" : uri.getRawPath();
+                return new URI(uri.getScheme() + "://" + uri.getRawAuthority() + path
+                        + (target.getRawPath() == null ? "" : target.getRawPath())
+                        + (target.getRawQuery() == null ? "" : "?" + target.getRawQuery()));
+            } catch (URISyntaxException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+
+        /**
+         * Count a request sent to the instance.
+         *
+         * @return the start time in nanoseconds to pass to the complete
+         */
+        public long start() {
+            outstanding.incrementAndGet();
+            requestCount.incrementAndGet();
+            return System.nanoTime();
+        }
+
+        /**
+         * Record the latency of a request and release its outstanding count.
+         *
+         * @param start   the start time returned by the start
+         * @param success false if the request failed or the instance is unavailable
+         */
+        public void complete(long start, boolean success) {
+            outstanding.decrementAndGet();
+            long now = System.nanoTime();
+            long latency = now - start;
+            if (!success) {
+                failureCount.incrementAndGet();
+                latency = Math.max(latency, failurePenaltyNanos);
+            }
+            observe(latency, now);
+        }
+
+        synchronized void observe(long latency, long now) {
+            double weight = Math.exp(-Math.max(0, now - stamp) / decayNanos);
+            stamp = now;
+            double decayed = ewma * weight;
+            ewma = latency > decayed ? latency : decayed + latency * (1 - weight);
+        }
+
+        /**
+         * @param now the current time in nanoseconds
+         * @return the EWMA latency in nanoseconds, decayed to zero while there is no request
+         */
+        public synchronized double getEwma(long now) {
+            // an instance that stops getting requests is tried again as its latency is forgotten.
+            double elapsed = Math.max(0, now - stamp);
+            return ewma * Math.exp(-elapsed / decayNanos);
+        }
+
+        public int getOutstanding() {
+            return outstanding.get();
+        }
+
+        public long getRequestCount() {
+            return requestCount.get();
+        }
+
+        public long getFailureCount() {
+            return failureCount.get();
+        }
+
+        double getCost(long now) {
+            int pending = outstanding.get();
+            double latency = getEwma(now);
+            // an instance without samples is tried at once, but only one request at a time until it responds.
+            if (latency < 1 && pending > 0) {
+                return failurePenaltyNanos + pending;
+            }
+            return latency * (pending + 1);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.networknt.http.client.batch;
+
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Map a batch of keys to one bulk request and split its response back to the values of the keys. It is supplied
+ * by the user of the RequestCollapser for a bulk endpoint, for example GET /pets?ids=1,2,3.
+ *
+ * @param <K> the key type of an individual call
+ * @param <B> the response body type of the bulk request
+ * @param <V> the value type of an individual call
+ */
+public interface BatchMapper<K, B, V> {
+    /**
+     * @param keys the distinct keys of the batch in the order of the calls
+     * @return the request builder of the bulk request
+     * @throws Exception if the request cannot be built, then all the calls of the batch fail
+     */
+    HttpRequest.Builder toRequest(List<K> keys) throws Exception;
+
+    /**
+     * @return the BodyHandler of the bulk response
+     */
+    HttpResponse.BodyHandler<B> getBodyHandler();
+
+    /**
+     * Split the bulk response. A key without a value in the map gets a null value.
+     *
+     * @param keys     the keys of the batch
+     * @param response the bulk response
+     * @return the value of each key
+     * @throws Exception if the response cannot be split, then all the calls of the batch fail
+     */
+    Map<K, V> toValues(List<K> keys, HttpResponse<B> response) throws Exception;
+}
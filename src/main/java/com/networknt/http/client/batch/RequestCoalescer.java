@@ -0,0 +1,220 @@
+package com.networknt.http.client.batch;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Coalesce the identical GET and HEAD requests that are in flight at the same time into a single exchange. The
+ * first request of a key is sent with a byte array BodyHandler, and the requests of the same key that arrive
+ * before its response share it. The buffered body is passed to the BodyHandler of each request when the response
+ * is received, and a failure fails all of them.
+ *
+ * The key is the method, the URI, the conditional headers and the values of the key headers chosen by the user,
+ * for example the Authorization header so that the requests of different users are not shared. A request is
+ * only coalesced with the ones in flight, so a request sent after the response is received goes to the network.
+ */
+public class RequestCoalescer {
+    static final List<String> CONDITIONAL_HEADERS = List.of("if-none-match", "if-modified-since");
+
+    private final List<String> keyHeaders;
+    private final ConcurrentHashMap<String, CompletableFuture<HttpResponse<byte[]>>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong exchangeCount = new AtomicLong();
+    private final AtomicLong collapsedCount = new AtomicLong();
+
+    /**
+     * @param keyHeaders the names of the request headers that are part of the key
+     */
+    public RequestCoalescer(Collection<String> keyHeaders) {
+        List<String> names = new ArrayList<>();
+        if (keyHeaders != null) {
+            for (String name : keyHeaders) {
+                String lower = name.trim().toLowerCase(Locale.ROOT);
+                if (!lower.isEmpty() && !names.contains(lower)) {
+                    names.add(lower);
+                }
+            }
+        }
+        for (String name : CONDITIONAL_HEADERS) {
+            if (!names.contains(name)) {
+                names.add(name);
+            }
+        }
+        this.keyHeaders = Collections.unmodifiableList(names);
+    }
+
+    public List<String> getKeyHeaders() {
+        return keyHeaders;
+    }
+
+    /**
+     * @param request the request
+     * @return true if the request can share the exchange of an identical request
+     */
+    public boolean isCoalescable(HttpRequest request) {
+        String method = request.method();
+        return ("GET".equals(method) || "HEAD".equals(method))
+                && request.bodyPublisher().map(p -> p.contentLength() == 0).orElse(true);
+    }
+
+    /**
+     * Send the request or wait for the identical request in flight.
+     *
+     * @param request  the request of the caller
+     * @param handler  the BodyHandler of the caller
+     * @param exchange the function that sends the request with a BodyHandler of the buffered body
+     * @param <T>      the response body type
+     * @return CompletableFuture of the response
+     */
+    public <T> CompletableFuture<HttpResponse<T>> send(HttpRequest request, HttpResponse.BodyHandler<T> handler,
+            Function<HttpResponse.BodyHandler<byte[]>, CompletableFuture<HttpResponse<byte[]>>> exchange) {
+        requestCount.incrementAndGet();
+        String key = key(request);
+        CompletableFuture<HttpResponse<byte[]>> shared = new CompletableFuture<>();
+        CompletableFuture<HttpResponse<byte[]>> existing = inFlight.putIfAbsent(key, shared);
+        if (existing != null) {
+            collapsedCount.incrementAndGet();
+            shared = existing;
+        } else {
+            exchangeCount.incrementAndGet();
+            CompletableFuture<HttpResponse<byte[]>> leader = shared;
+            CompletableFuture<HttpResponse<byte[]>> response;
+            try {
+                response = exchange.apply(HttpResponse.BodyHandlers.ofByteArray());
+            } catch (RuntimeException e) {
+                response = CompletableFuture.failedFuture(e);
+            }
+            response.whenComplete((r, t) -> {
+                // the key is removed first, so a request that arrives after the response sends a new one.
+                inFlight.remove(key, leader);
+                if (t != null) {
+                    leader.completeExceptionally(t);
+                } else {
+                    leader.complete(r);
+                }
+            });
+        }
+        return shared.thenCompose(response -> replay(request, response, handler));
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return the number of requests that were sent to the network
+     */
+    public long getExchangeCount() {
+        return exchangeCount.get();
+    }
+
+    /**
+     * @return the number of requests that shared the exchange of an identical request
+     */
+    public long getCollapsedCount() {
+        return collapsedCount.get();
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("requestCount", getRequestCount());
+        stats.put("exchangeCount", getExchangeCount());
+        stats.put("collapsedCount", getCollapsedCount());
+        stats.put("inFlightCount", getInFlightCount());
+        return stats;
+    }
+
+    String key(HttpRequest request) {
+        StringBuilder sb = new StringBuilder(request.method()).append(' ').append(request.uri());
+        for (String name : keyHeaders) {
+            List<String> values = request.headers().allValues(name);
+            if (!values.isEmpty()) {
+                sb.append('\n').append(name).append(':').append(String.join(",", values));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Pass the buffered body to the BodyHandler of a caller.
+     */
+    static <T> CompletableFuture<HttpResponse<T>> replay(HttpRequest request, HttpResponse<byte[]> response,
+            HttpResponse.BodyHandler<T> handler) {
+        HttpResponse.BodySubscriber<T> subscriber = handler.apply(new HttpResponse.ResponseInfo() {
+            @Override
+            public int statusCode() {
+                return response.statusCode();
+            }
+
+            @Override
+            public HttpHeaders headers() {
+                return response.headers();
+            }
+
+            @Override
+            public HttpClient.Version version() {
+                return response.version();
+            }
+        });
+        byte[] body = response.body();
+        subscriber.onSubscribe(new BodySubscription(subscriber, body == null ? ByteBuffer.allocate(0)
+                : ByteBuffer.wrap(body).asReadOnlyBuffer()));
+        return subscriber.getBody().toCompletableFuture()
+                .thenApply(b -> new CoalescedResponse<>(request, response, b));
+    }
+
+    /**
+     * Publish the buffered body as a single buffer when it is requested.
+     */
+    private static final class BodySubscription implements Flow.Subscription {
+        private final Flow.Subscriber<List<ByteBuffer>> subscriber;
+        private final ByteBuffer body;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        BodySubscription(Flow.Subscriber<List<ByteBuffer>> subscriber, ByteBuffer body) {
+            this.subscriber = subscriber;
+            this.body = body;
+        }
+
+        @Override
+        public void request(long n) {
+            if (done.compareAndSet(false, true)) {
+                if (n <= 0) {
+                    subscriber.onError(new IllegalArgumentException("non-positive request " + n));
+                    return;
+                }
+                if (body.hasRemaining()) {
+                    List<ByteBuffer> item = new ArrayList<>(1);
+                    item.add(body);
+                    subscriber.onNext(item);
+                }
+                subscriber.onComplete();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            done.set(true);
+        }
+    }
+}
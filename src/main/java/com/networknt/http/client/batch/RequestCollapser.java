@@ -0,0 +1,162 @@
+package com.networknt.http.client.batch;
+
+import com.networknt.http.client.ClientTimer;
+import com.networknt.http.client.HttpClientRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collapse the individual calls by key into bulk requests. The calls are buffered for up to maxDelay
+ * milliseconds or maxBatchSize distinct keys, whichever comes first, then the BatchMapper builds one bulk
+ * request for the buffered keys and its response is split back to the waiting calls. The calls with the same
+ * key in a batch share the value.
+ *
+ * The bulk request is sent with the sendAsync of the HttpClientRequest, so it goes through the retry policy, the
+ * circuit breaker and the bulkhead of the bulk endpoint.
+ *
+ * @param <K> the key type of an individual call
+ * @param <V> the value type of an individual call
+ */
+public class RequestCollapser<K, V> {
+    private static final Logger logger = LoggerFactory.getLogger(RequestCollapser.class);
+
+    private final HttpClientRequest httpClientRequest;
+    private final BatchMapper<K, ?, V> mapper;
+    private final long maxDelay;
+    private final int maxBatchSize;
+    private final AtomicLong callCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private Map<K, CompletableFuture<V>> pending = new LinkedHashMap<>();
+
+    /**
+     * @param httpClientRequest the HttpClientRequest to send the bulk requests
+     * @param mapper            the BatchMapper of the bulk endpoint
+     * @param maxDelay          the max time in milliseconds a call is buffered
+     * @param maxBatchSize      the max number of distinct keys in a bulk request
+     */
+    public RequestCollapser(HttpClientRequest httpClientRequest, BatchMapper<K, ?, V> mapper, long maxDelay,
+                            int maxBatchSize) {
+        this.httpClientRequest = httpClientRequest;
+        this.mapper = mapper;
+        this.maxDelay = maxDelay;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+    }
+
+    /**
+     * Get the value of a key with the next bulk request.
+     *
+     * @param key the key
+     * @return CompletableFuture of the value, or null if the bulk response has no value for the key
+     */
+    public CompletableFuture<V> get(K key) {
+        callCount.incrementAndGet();
+        CompletableFuture<V> future;
+        Map<K, CompletableFuture<V>> full = null;
+        synchronized (this) {
+            Map<K, CompletableFuture<V>> batch = pending;
+            future = batch.get(key);
+            if (future == null) {
+                future = new CompletableFuture<>();
+                batch.put(key, future);
+                if (batch.size() == 1) {
+                    // the timer only hands the flush over, the bulk request is built and sent on the executor.
+                    ClientTimer.schedule(() -> flush(batch), maxDelay, httpClientRequest.getAsyncExecutor());
+                }
+                if (batch.size() >= maxBatchSize) {
+                    full = batch;
+                    pending = new LinkedHashMap<>();
+                }
+            }
+        }
+        if (full != null) {
+            send(full);
+        }
+        // a copy so that a caller cancelling its future doesn't affect the other callers of the key.
+        return future.copy();
+    }
+
+    /**
+     * Send the buffered calls now without waiting for the max delay.
+     */
+    public void flush() {
+        Map<K, CompletableFuture<V>> batch;
+        synchronized (this) {
+            batch = pending;
+            pending = new LinkedHashMap<>();
+        }
+        if (!batch.isEmpty()) {
+            send(batch);
+        }
+    }
+
+    private void flush(Map<K, CompletableFuture<V>> batch) {
+        synchronized (this) {
+            // the batch has been sent already when it was full.
+            if (pending != batch) {
+                return;
+            }
+            pending = new LinkedHashMap<>();
+        }
+        send(batch);
+    }
+
+    private void send(Map<K, CompletableFuture<V>> batch) {
+        batchCount.incrementAndGet();
+        sendBatch(mapper, batch);
+    }
+
+    private <B> void sendBatch(BatchMapper<K, B, V> batchMapper, Map<K, CompletableFuture<V>> batch) {
+        List<K> keys = new ArrayList<>(batch.keySet());
+        CompletableFuture<? extends HttpResponse<?>> response;
+        try {
+            response = httpClientRequest.sendAsync(batchMapper.toRequest(keys), batchMapper.getBodyHandler());
+        } catch (Exception e) {
+            fail(batch, e);
+            return;
+        }
+        response.whenComplete((r, t) -> {
+            if (t != null) {
+                fail(batch, t instanceof CompletionException && t.getCause() != null ? t.getCause() : t);
+                return;
+            }
+            Map<K, V> values;
+            try {
+                @SuppressWarnings("unchecked")
+                HttpResponse<B> typed = (HttpResponse<B>) r;
+                values = batchMapper.toValues(keys, typed);
+            } catch (Exception e) {
+                fail(batch, e);
+                return;
+            }
+            batch.forEach((key, future) -> future.complete(values == null ? null : values.get(key)));
+        });
+    }
+
+    private void fail(Map<K, CompletableFuture<V>> batch, Throwable t) {
+        logger.error("Failed to send the bulk request of " + batch.size() + " keys:", t);
+        batch.values().forEach(future -> future.completeExceptionally(t));
+    }
+
+    /**
+     * @return the number of individual calls
+     */
+    public long getCallCount() {
+        return callCount.get();
+    }
+
+    /**
+     * @return the number of bulk requests sent for the calls
+     */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+}
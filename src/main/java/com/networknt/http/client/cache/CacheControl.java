@@ -0,0 +1,83 @@
+package com.networknt.http.client.cache;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The directives of the Cache-Control header defined in RFC 9111 that are used by the response cache of the client.
+ * As the cache is shared by all the callers of the client, the public and private directives decide if a response
+ * can be stored, and the s-maxage takes precedence over the max-age.
+ */
+final class CacheControl {
+    static final String CACHE_CONTROL = "Cache-Control";
+
+    boolean noStore;
+    boolean noCache;
+    boolean mustRevalidate;
+    boolean isPublic;
+    boolean isPrivate;
+    long sMaxAge = -1;
+    long maxAge = -1;
+    long staleWhileRevalidate = -1;
+
+    private CacheControl() {
+    }
+
+    /**
+     * @param values the values of the Cache-Control headers
+     * @return CacheControl with the known directives, the invalid values are ignored
+     */
+    static CacheControl parse(List<String> values) {
+        CacheControl cacheControl = new CacheControl();
+        for (String value : values) {
+            for (String directive : value.split(",")) {
+                int index = directive.indexOf('=');
+                String name = (index < 0 ? directive : directive.substring(0, index)).trim().toLowerCase(Locale.ROOT);
+                String argument = index < 0 ? null : directive.substring(index + 1).trim().replace("\"", "");
+                switch (name) {
+                    case "no-store":
+                        cacheControl.noStore = true;
+                        break;
+                    case "no-cache":
+                        // a no-cache with field names is handled as a plain no-cache.
+                        cacheControl.noCache = true;
+                        break;
+                    case "must-revalidate":
+                    case "proxy-revalidate":
+                        cacheControl.mustRevalidate = true;
+                        break;
+                    case "public":
+                        cacheControl.isPublic = true;
+                        break;
+                    case "private":
+                        // a private with field names is handled as a plain private.
+                        cacheControl.isPrivate = true;
+                        break;
+                    case "s-maxage":
+                        cacheControl.sMaxAge = seconds(argument);
+                        break;
+                    case "max-age":
+                        cacheControl.maxAge = seconds(argument);
+                        break;
+                    case "stale-while-revalidate":
+                        cacheControl.staleWhileRevalidate = seconds(argument);
+                        break;
+                    default:
+                }
+            }
+        }
+        return cacheControl;
+    }
+
+    private static long seconds(String value) {
+        if (value == null || value.isEmpty()) {
+            return -1;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            // a value that is too large is the max value.
+            return value.chars().allMatch(Character::isDigit) ? Integer.MAX_VALUE : -1;
+        }
+    }
+}
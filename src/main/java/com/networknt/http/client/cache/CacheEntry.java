@@ -0,0 +1,305 @@
+package com.networknt.http.client.cache;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A stored response with its freshness computed as defined in RFC 9111. The entry is immutable, a revalidated
+ * response replaces it with a new entry that has the updated headers and the same body.
+ */
+public final class CacheEntry {
+    static final String AGE = "Age";
+    static final String DATE = "Date";
+    static final String ETAG = "ETag";
+    static final String EXPIRES = "Expires";
+    static final String LAST_MODIFIED = "Last-Modified";
+    static final String VARY = "Vary";
+    private static final long ENTRY_OVERHEAD = 256;
+
+    private final String key;
+    private final int statusCode;
+    private final HttpHeaders headers;
+    private final HttpClient.Version version;
+    private final ByteBuffer body;
+    private final long requestTime;
+    private final long responseTime;
+    private final long correctedInitialAge;
+    private final long freshnessLifetime;
+    private final long staleWhileRevalidate;
+    private final boolean noCache;
+    private final boolean mustRevalidate;
+    private final long size;
+    private final AtomicBoolean revalidating = new AtomicBoolean();
+
+    /**
+     * @param key          the key of the request and the values of its Vary headers
+     * @param statusCode   the status code of the response
+     * @param headers      the headers of the response
+     * @param version      the HTTP version of the response
+     * @param body         the body of the response
+     * @param requestTime  the time the request was sent in milliseconds
+     * @param responseTime the time the response was received in milliseconds
+     */
+    public CacheEntry(String key, int statusCode, HttpHeaders headers, HttpClient.Version version, ByteBuffer body,
+            long requestTime, long responseTime) {
+        this.key = key;
+        this.statusCode = statusCode;
+        this.headers = headers;
+        this.version = version;
+        this.body = body.asReadOnlyBuffer();
+        this.requestTime = requestTime;
+        this.responseTime = responseTime;
+
+        CacheControl cacheControl = CacheControl.parse(headers.allValues(CacheControl.CACHE_CONTROL));
+        long date = parseDate(headers.firstValue(DATE).orElse(null), responseTime);
+        long ageValue = parseSeconds(headers.firstValue(AGE).orElse(null)) * 1000;
+        long apparentAge = Math.max(0, responseTime - date);
+        correctedInitialAge = Math.max(apparentAge, ageValue + (responseTime - requestTime));
+        if (cacheControl.sMaxAge >= 0) {
+            // the cache is shared by the callers of the client, so the s-maxage takes precedence.
+            freshnessLifetime = cacheControl.sMaxAge * 1000;
+        } else if (cacheControl.maxAge >= 0) {
+            freshnessLifetime = cacheControl.maxAge * 1000;
+        } else if (headers.firstValue(EXPIRES).isPresent()) {
+            // an invalid Expires is a time in the past.
+            freshnessLifetime = Math.max(0, parseDate(headers.firstValue(EXPIRES).get(), date) - date);
+        } else {
+            // the heuristic freshness is 10% of the time since the last modification.
+            long lastModified = parseDate(headers.firstValue(LAST_MODIFIED).orElse(null), date);
+            freshnessLifetime = Math.max(0, (date - lastModified) / 10);
+        }
+        staleWhileRevalidate = Math.max(0, cacheControl.staleWhileRevalidate * 1000);
+        noCache = cacheControl.noCache;
+        mustRevalidate = cacheControl.mustRevalidate;
+
+        long headerSize = 0;
+        for (Map.Entry<String, List<String>> entry : headers.map().entrySet()) {
+            for (String value : entry.getValue()) {
+                headerSize += entry.getKey().length() + value.length() + 4;
+            }
+        }
+        size = this.body.remaining() + headerSize + key.length() + ENTRY_OVERHEAD;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public HttpHeaders getHeaders() {
+        return headers;
+    }
+
+    public HttpClient.Version getVersion() {
+        return version;
+    }
+
+    /**
+     * @return a read-only view of the body
+     */
+    public ByteBuffer getBody() {
+        return body.duplicate();
+    }
+
+    public long getRequestTime() {
+        return requestTime;
+    }
+
+    public long getResponseTime() {
+        return responseTime;
+    }
+
+    /**
+     * @return the approximate memory used by the entry in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @param now the current time in milliseconds
+     * @return the age of the response in milliseconds
+     */
+    public long getAge(long now) {
+        return correctedInitialAge + Math.max(0, now - responseTime);
+    }
+
+    public long getFreshnessLifetime() {
+        return freshnessLifetime;
+    }
+
+    /**
+     * @param now    the current time in milliseconds
+     * @param maxAge the max age accepted by the request in milliseconds or -1
+     * @return true if the response can be used without a revalidation
+     */
+    public boolean isFresh(long now, long maxAge) {
+        long age = getAge(now);
+        return !noCache && age < freshnessLifetime && (maxAge < 0 || age <= maxAge);
+    }
+
+    /**
+     * @param now the current time in milliseconds
+     * @return true if the stale response can be used while it is revalidated in the background
+     */
+    public boolean isStaleWhileRevalidate(long now) {
+        return !noCache && !mustRevalidate && staleWhileRevalidate > 0
+                && getAge(now) < freshnessLifetime + staleWhileRevalidate;
+    }
+
+    public String getETag() {
+        return headers.firstValue(ETAG).orElse(null);
+    }
+
+    public String getLastModified() {
+        return headers.firstValue(LAST_MODIFIED).orElse(null);
+    }
+
+    /**
+     * @return true if the entry can be revalidated with a conditional request
+     */
+    public boolean hasValidator() {
+        return getETag() != null || getLastModified() != null;
+    }
+
+    /**
+     * @return true if this call should send the background revalidation, false if another call is sending it
+     */
+    public boolean startRevalidation() {
+        return revalidating.compareAndSet(false, true);
+    }
+
+    public void endRevalidation() {
+        revalidating.set(false);
+    }
+
+    /**
+     * Update the stored headers with the headers of a 304 response, except the ones that describe the body.
+     *
+     * @param notModified  the headers of the 304 response
+     * @param requestTime  the time the conditional request was sent
+     * @param responseTime the time the 304 response was received
+     * @return the new entry with the same body
+     */
+    CacheEntry update(HttpHeaders notModified, long requestTime, long responseTime) {
+        Map<String, List<String>> map = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        map.putAll(headers.map());
+        notModified.map().forEach((name, values) -> {
+            if (!"Content-Length".equalsIgnoreCase(name) && !"Content-Encoding".equalsIgnoreCase(name)
+                    && !"Transfer-Encoding".equalsIgnoreCase(name)) {
+                map.put(name, values);
+            }
+        });
+        return new CacheEntry(key, statusCode, HttpHeaders.of(map, (k, v) -> true), version, body, requestTime,
+                responseTime);
+    }
+
+    /**
+     * Pass the stored body to the caller's BodyHandler, with an Age header for the current age of the response.
+     *
+     * @param request the request of the caller
+     * @param handler the BodyHandler of the caller
+     * @param now     the current time in milliseconds
+     * @param <T>     the response body type
+     * @return CompletableFuture of the response
+     */
+    public <T> CompletableFuture<HttpResponse<T>> serve(HttpRequest request, HttpResponse.BodyHandler<T> handler,
+            long now) {
+        Map<String, List<String>> map = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        map.putAll(headers.map());
+        map.put(AGE, List.of(String.valueOf(getAge(now) / 1000)));
+        HttpHeaders responseHeaders = HttpHeaders.of(map, (k, v) -> true);
+        HttpResponse.BodySubscriber<T> subscriber = handler.apply(new HttpResponse.ResponseInfo() {
+            @Override
+            public int statusCode() {
+                return statusCode;
+            }
+
+            @Override
+            public HttpHeaders headers() {
+                return responseHeaders;
+            }
+
+            @Override
+            public HttpClient.Version version() {
+                return version;
+            }
+        });
+        subscriber.onSubscribe(new BodySubscription(subscriber, body.duplicate()));
+        return subscriber.getBody().toCompletableFuture()
+                .thenApply(b -> new CachedResponse<>(request, statusCode, responseHeaders, version, b));
+    }
+
+    static long parseDate(String value, long defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return defaultValue;
+        }
+    }
+
+    private static long parseSeconds(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Publish the stored body as a single buffer when it is requested.
+     */
+    private static final class BodySubscription implements Flow.Subscription {
+        private final Flow.Subscriber<List<ByteBuffer>> subscriber;
+        private final ByteBuffer body;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        BodySubscription(Flow.Subscriber<List<ByteBuffer>> subscriber, ByteBuffer body) {
+            this.subscriber = subscriber;
+            this.body = body;
+        }
+
+        @Override
+        public void request(long n) {
+            if (done.compareAndSet(false, true)) {
+                if (n <= 0) {
+                    subscriber.onError(new IllegalArgumentException("non-positive request " + n));
+                    return;
+                }
+                if (body.hasRemaining()) {
+                    List<ByteBuffer> item = new ArrayList<>(1);
+                    item.add(body);
+                    subscriber.onNext(item);
+                }
+                subscriber.onComplete();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            done.set(true);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.networknt.http.client.cache;
+
+import javax.net.ssl.SSLSession;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Optional;
+
+/**
+ * A response served from the cache for the request of the caller.
+ *
+ * @param <T> the response body type
+ */
+final class CachedResponse<T> implements HttpResponse<T> {
+    private final HttpRequest request;
+    private final int statusCode;
+    private final HttpHeaders headers;
+    private final HttpClient.Version version;
+    private final T body;
+
+    CachedResponse(HttpRequest request, int statusCode, HttpHeaders headers, HttpClient.Version version, T body) {
+        this.request = request;
+        this.statusCode = statusCode;
+        this.headers = headers;
+        this.version = version;
+        this.body = body;
+    }
+
+    @Override
+    public int statusCode() {
+        return statusCode;
+    }
+
+    @Override
+    public HttpRequest request() {
+        return request;
+    }
+
+    @Override
+    public Optional<HttpResponse<T>> previousResponse() {
+        return Optional.empty();
+    }
+
+    @Override
+    public HttpHeaders headers() {
+        return headers;
+    }
+
+    @Override
+    public T body() {
+        return body;
+    }
+
+    @Override
+    public Optional<SSLSession> sslSession() {
+        return Optional.empty();
+    }
+
+    @Override
+    public URI uri() {
+        return request.uri();
+    }
+
+    @Override
+    public HttpClient.Version version() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + request.method() + " " + request.uri() + ") " + statusCode + " (cached)";
+    }
+}
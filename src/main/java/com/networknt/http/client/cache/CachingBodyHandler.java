@@ -0,0 +1,134 @@
+package com.networknt.http.client.cache;
+
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * The BodyHandler of a request that goes to the network on a cache miss or a revalidation. A storable response is
+ * copied into the cache as its body is passed to the caller's BodyHandler. A 304 response to a conditional request
+ * updates the stored entry, and its empty body is discarded so that the stored body is served instead.
+ *
+ * @param <T> the response body type
+ */
+public class CachingBodyHandler<T> implements HttpResponse.BodyHandler<T> {
+    private final ResponseCache cache;
+    private final HttpRequest request;
+    private final CacheEntry entry;
+    private final HttpResponse.BodyHandler<T> handler;
+    private final long requestTime = System.currentTimeMillis();
+    private volatile CacheEntry updated;
+
+    CachingBodyHandler(ResponseCache cache, HttpRequest request, CacheEntry entry, HttpResponse.BodyHandler<T> handler) {
+        this.cache = cache;
+        this.request = request;
+        this.entry = entry;
+        this.handler = handler;
+    }
+
+    @Override
+    public HttpResponse.BodySubscriber<T> apply(HttpResponse.ResponseInfo responseInfo) {
+        updated = null;
+        if (responseInfo.statusCode() == 304 && entry != null) {
+            updated = cache.notModified(entry, responseInfo.headers(), requestTime);
+            return HttpResponse.BodySubscribers.replacing(null);
+        }
+        HttpResponse.BodySubscriber<T> subscriber = handler.apply(responseInfo);
+        if (!cache.isStorable(request, responseInfo.statusCode(), responseInfo.headers())) {
+            return subscriber;
+        }
+        return new TeeSubscriber<>(subscriber, cache.getMaxEntryBytes(),
+                body -> cache.store(request, responseInfo, body, requestTime));
+    }
+
+    /**
+     * @param response the response from the network
+     * @return the response or the updated entry served from the cache if it was a 304
+     */
+    public CompletableFuture<HttpResponse<T>> toResponse(HttpResponse<T> response) {
+        CacheEntry current = updated;
+        if (current == null) {
+            return CompletableFuture.completedFuture(response);
+        }
+        return current.serve(request, handler, System.currentTimeMillis());
+    }
+
+    /**
+     * Copy the buffers of the body as they are passed to the caller's BodySubscriber. The copy is given up if the
+     * body is larger than the max entry size.
+     */
+    static final class TeeSubscriber<T> implements HttpResponse.BodySubscriber<T> {
+        interface Sink {
+            void accept(ByteBuffer body);
+        }
+
+        private final HttpResponse.BodySubscriber<T> downstream;
+        private final long maxBytes;
+        private final Sink sink;
+        private ByteBuffer copy = ByteBuffer.allocate(1024);
+        private boolean overflow;
+
+        TeeSubscriber(HttpResponse.BodySubscriber<T> downstream, long maxBytes, Sink sink) {
+            this.downstream = downstream;
+            this.maxBytes = maxBytes;
+            this.sink = sink;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return downstream.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            downstream.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            if (!overflow) {
+                for (ByteBuffer buffer : item) {
+                    append(buffer.duplicate());
+                }
+            }
+            downstream.onNext(item);
+        }
+
+        private void append(ByteBuffer buffer) {
+            if (overflow) {
+                return;
+            }
+            if (copy.position() + (long) buffer.remaining() > maxBytes) {
+                overflow = true;
+                copy = null;
+                return;
+            }
+            if (copy.remaining() < buffer.remaining()) {
+                long capacity = Math.max((long) copy.capacity() * 2, (long) copy.position() + buffer.remaining());
+                ByteBuffer larger = ByteBuffer.allocate((int) Math.min(capacity, maxBytes));
+                larger.put(copy.flip());
+                copy = larger;
+            }
+            copy.put(buffer);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            copy = null;
+            downstream.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (!overflow) {
+                // the entry is stored before the caller gets the response, so the next request finds it.
+                sink.accept(copy.flip());
+            }
+            downstream.onComplete();
+        }
+    }
+}
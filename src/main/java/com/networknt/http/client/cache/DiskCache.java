@@ -0,0 +1,663 @@
+package com.networknt.http.client.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * The second tier of the ResponseCache that survives restarts. The entries are appended to memory-mapped segment
+ * files, and the index from the key of an entry to its record is rebuilt by scanning the segments when the cache
+ * is opened. The body of an entry read from a segment is a view of the mapped file, so the large responses are
+ * served without copying them to the heap.
+ *
+ * The lookups only read the concurrent index. The writes are queued and appended by a single background thread,
+ * which also removes the oldest segments when the total size reaches the max bytes and rewrites the live records
+ * of the segments that are mostly superseded, so no lock is taken on the request path.
+ *
+ * A record is the magic number, the type, the length of the payload, the payload and the CRC32 of the payload.
+ * The payload of an entry is its key, status code, version, request and response times, headers and body. The
+ * payload of a removal is the primary key of the entries to remove, or an empty key to remove all the entries.
+ */
+public class DiskCache implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(DiskCache.class);
+    static final String SEGMENT_PREFIX = "segment-";
+    static final String SEGMENT_SUFFIX = ".dat";
+    private static final int MAGIC = 0x48434531;
+    private static final byte ENTRY = 1;
+    private static final byte REMOVAL = 2;
+    private static final int RECORD_HEADER = 9;
+    private static final int RECORD_OVERHEAD = RECORD_HEADER + 4;
+    private static final HttpClient.Version[] VERSIONS = HttpClient.Version.values();
+
+    private final Path directory;
+    private final long maxBytes;
+    private final int segmentSize;
+    private final long maxPendingBytes;
+    private final ConcurrentHashMap<String, Record> index = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, List<String>> varyIndex = new ConcurrentHashMap<>();
+    private final NavigableMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final ScheduledThreadPoolExecutor executor;
+    private final CountDownLatch loaded = new CountDownLatch(1);
+    private final AtomicLong writeCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong compactionCount = new AtomicLong();
+    private final AtomicLong segmentEvictionCount = new AtomicLong();
+    private volatile boolean closed;
+    // the segment and position of the next append, only used by the background thread.
+    private Segment active;
+
+    /**
+     * Open the cache in the directory. The existing segments are scanned on the background thread, and the
+     * lookups miss until they are loaded.
+     *
+     * @param directory          the directory of the segment files, it is created if it doesn't exist
+     * @param maxBytes           the max total size of the segment files
+     * @param segmentSize        the size of a segment file, the body of an entry is at most half of it
+     * @param compactionInterval the interval of the compaction in milliseconds
+     * @return the DiskCache
+     */
+    public static DiskCache open(Path directory, long maxBytes, int segmentSize, long compactionInterval) {
+        DiskCache cache = new DiskCache(directory, maxBytes, segmentSize);
+        // the background tasks are started once the cache is constructed.
+        cache.executor.execute(cache::load);
+        if (compactionInterval > 0) {
+            cache.executor.scheduleWithFixedDelay(cache::compact, compactionInterval, compactionInterval,
+                    TimeUnit.MILLISECONDS);
+        }
+        return cache;
+    }
+
+    private DiskCache(Path directory, long maxBytes, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = Math.max(segmentSize, 64 * 1024);
+        this.maxBytes = Math.max(maxBytes, 2L * this.segmentSize);
+        this.maxPendingBytes = this.segmentSize;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "http-client-disk-cache");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return the max size of a response body that can be stored
+     */
+    public long getMaxEntryBytes() {
+        return segmentSize / 2;
+    }
+
+    /**
+     * Wait until the existing segments are loaded.
+     *
+     * @param timeout the timeout in milliseconds
+     * @return true if the segments are loaded
+     * @throws InterruptedException if the thread is interrupted
+     */
+    public boolean awaitLoaded(long timeout) throws InterruptedException {
+        return loaded.await(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param key the key of the entry
+     * @return the stored entry or null
+     */
+    public CacheEntry get(String key) {
+        Record record = index.get(key);
+        return record == null ? null : record.entry;
+    }
+
+    /**
+     * @param primaryKey the method and the URI of the request
+     * @return the sorted and lower case names of the Vary header of the stored response or null
+     */
+    public List<String> getVary(String primaryKey) {
+        return varyIndex.get(primaryKey);
+    }
+
+    /**
+     * Queue the entry to be appended to the segments. The entry is dropped if the queue is full.
+     *
+     * @param entry the entry
+     */
+    public void put(CacheEntry entry) {
+        if (closed || entry.getBody().remaining() > getMaxEntryBytes()) {
+            return;
+        }
+        long size = entry.getSize();
+        if (pendingBytes.addAndGet(size) > maxPendingBytes) {
+            pendingBytes.addAndGet(-size);
+            droppedCount.incrementAndGet();
+            return;
+        }
+        submit(() -> {
+            pendingBytes.addAndGet(-size);
+            append(entry);
+        });
+    }
+
+    /**
+     * Remove the entries of the primary key, for all the values of the Vary headers.
+     *
+     * @param primaryKey the method and the URI of the request
+     */
+    public void remove(String primaryKey) {
+        varyIndex.remove(primaryKey);
+        removeFromIndex(primaryKey);
+        submit(() -> appendRemoval(primaryKey));
+    }
+
+    /**
+     * Remove all the entries.
+     */
+    public void clear() {
+        varyIndex.clear();
+        index.clear();
+        submit(() -> appendRemoval(""));
+    }
+
+    /**
+     * Run the compaction on the background thread now.
+     */
+    public void compactNow() {
+        submit(this::compact);
+    }
+
+    /**
+     * Wait until the queued writes are appended.
+     *
+     * @param timeout the timeout in milliseconds
+     * @return true if the writes are appended
+     * @throws InterruptedException if the thread is interrupted
+     */
+    public boolean flush(long timeout) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        submit(latch::countDown);
+        return latch.await(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Append the queued writes, force the segments to the disk and stop the background thread.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        try {
+            flush(10000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closed = true;
+        executor.execute(() -> {
+            for (Segment segment : segments.values()) {
+                segment.buffer.force();
+            }
+        });
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getEntryCount() {
+        return index.size();
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    public long getWriteCount() {
+        return writeCount.get();
+    }
+
+    /**
+     * @return the number of entries that were not stored because the write queue was full
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getCompactionCount() {
+        return compactionCount.get();
+    }
+
+    public long getSegmentEvictionCount() {
+        return segmentEvictionCount.get();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entryCount", getEntryCount());
+        stats.put("segmentCount", getSegmentCount());
+        stats.put("maxBytes", maxBytes);
+        stats.put("writeCount", getWriteCount());
+        stats.put("droppedCount", getDroppedCount());
+        stats.put("compactionCount", getCompactionCount());
+        stats.put("segmentEvictionCount", getSegmentEvictionCount());
+        return stats;
+    }
+
+    /**
+     * Queue the task and start a drain on the background thread if none is running. The queue is lock-free, so the
+     * request path never waits for the disk.
+     */
+    private void submit(Runnable task) {
+        if (closed) {
+            return;
+        }
+        pending.add(task);
+        if (draining.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        do {
+            Runnable task;
+            while ((task = pending.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    logger.error("Failed to write the disk cache " + directory + ":", e);
+                }
+            }
+            draining.set(false);
+            // a task added after the poll and before the flag is reset is drained by this thread.
+        } while (!pending.isEmpty() && draining.compareAndSet(false, true));
+    }
+
+    /**
+     * Scan the segment files in order and rebuild the index. The scan of a segment stops at the first record that
+     * is incomplete or corrupt, and the last segment is appended from there.
+     */
+    private void load() {
+        try {
+            List<Integer> ids = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+                for (Path path : stream) {
+                    String name = path.getFileName().toString();
+                    try {
+                        ids.add(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                    } catch (NumberFormatException e) {
+                        logger.warn("Ignore the file {} in the disk cache", path);
+                    }
+                }
+            }
+            Collections.sort(ids);
+            for (int id : ids) {
+                Segment segment = Segment.open(segmentPath(id), id, segmentSize);
+                segments.put(id, segment);
+                scan(segment);
+                active = segment;
+            }
+            if (logger.isInfoEnabled() && !ids.isEmpty()) {
+                logger.info("Loaded {} entries from {} segments in {}", index.size(), ids.size(), directory);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to load the disk cache " + directory + ":", e);
+        } finally {
+            loaded.countDown();
+        }
+    }
+
+    private void scan(Segment segment) {
+        ByteBuffer buffer = segment.buffer;
+        int position = 0;
+        while (position + RECORD_OVERHEAD <= segment.capacity) {
+            if (buffer.getInt(position) != MAGIC) {
+                break;
+            }
+            byte type = buffer.get(position + 4);
+            int length = buffer.getInt(position + 5);
+            if (length < 0 || position + RECORD_OVERHEAD + (long) length > segment.capacity) {
+                break;
+            }
+            ByteBuffer payload = buffer.duplicate().position(position + RECORD_HEADER).limit(position + RECORD_HEADER + length).slice();
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != buffer.getInt(position + RECORD_HEADER + length)) {
+                logger.warn("Corrupt record at {} of {}", position, segment.path);
+                break;
+            }
+            int recordSize = RECORD_OVERHEAD + length;
+            if (type == ENTRY) {
+                CacheEntry entry = decode(payload);
+                index(new Record(entry, segment, recordSize));
+            } else if (type == REMOVAL) {
+                String primaryKey = readString(payload);
+                if (primaryKey.isEmpty()) {
+                    index.clear();
+                    varyIndex.clear();
+                } else {
+                    varyIndex.remove(primaryKey);
+                    removeFromIndex(primaryKey);
+                }
+            }
+            position += recordSize;
+        }
+        segment.position = position;
+    }
+
+    private void index(Record record) {
+        Record previous = index.put(record.entry.getKey(), record);
+        if (previous != null) {
+            previous.segment.liveBytes.addAndGet(-previous.size);
+        }
+        record.segment.liveBytes.addAndGet(record.size);
+        String key = record.entry.getKey();
+        int newline = key.indexOf('\n');
+        varyIndex.put(newline < 0 ? key : key.substring(0, newline), ResponseCache.varyNames(record.entry.getHeaders()));
+    }
+
+    private void removeFromIndex(String primaryKey) {
+        index.values().removeIf(record -> {
+            String key = record.entry.getKey();
+            boolean matches = key.equals(primaryKey) || key.startsWith(primaryKey + "\n");
+            if (matches) {
+                record.segment.liveBytes.addAndGet(-record.size);
+            }
+            return matches;
+        });
+    }
+
+    private void append(CacheEntry entry) {
+        byte[] payload = encode(entry);
+        if (payload.length + RECORD_OVERHEAD > segmentSize) {
+            return;
+        }
+        Segment segment = allocate(payload.length + RECORD_OVERHEAD);
+        if (segment == null) {
+            return;
+        }
+        int position = write(segment, ENTRY, payload);
+        ByteBuffer stored = segment.buffer.duplicate().position(position + RECORD_HEADER)
+                .limit(position + RECORD_HEADER + payload.length).slice();
+        // the entry is decoded from the segment so that its body is a view of the mapped file.
+        index(new Record(decode(stored), segment, payload.length + RECORD_OVERHEAD));
+        writeCount.incrementAndGet();
+    }
+
+    private void appendRemoval(String primaryKey) {
+        // an entry of the primary key appended after the removal was requested is removed again.
+        if (primaryKey.isEmpty()) {
+            index.clear();
+            varyIndex.clear();
+        } else {
+            varyIndex.remove(primaryKey);
+            removeFromIndex(primaryKey);
+        }
+        byte[] payload = encodeString(primaryKey);
+        Segment segment = allocate(payload.length + RECORD_OVERHEAD);
+        if (segment != null) {
+            write(segment, REMOVAL, payload);
+        }
+        if (primaryKey.isEmpty()) {
+            // everything before the removal of all the entries is garbage.
+            for (Segment old : new ArrayList<>(segments.headMap(segment == null ? Integer.MAX_VALUE : segment.id).values())) {
+                delete(old);
+            }
+        }
+    }
+
+    private int write(Segment segment, byte type, byte[] payload) {
+        int position = segment.position;
+        ByteBuffer buffer = segment.buffer;
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        buffer.put(position + 4, type);
+        buffer.putInt(position + 5, payload.length);
+        buffer.duplicate().position(position + RECORD_HEADER).put(payload);
+        buffer.putInt(position + RECORD_HEADER + payload.length, (int) crc.getValue());
+        // the magic number is written last, so a record is complete when the scan finds it.
+        buffer.putInt(position, MAGIC);
+        segment.position = position + RECORD_HEADER + payload.length + 4;
+        return position;
+    }
+
+    /**
+     * @return the active segment with room for the record, a new segment is created if it is full
+     */
+    private Segment allocate(int size) {
+        if (active != null && active.position + size <= active.capacity) {
+            return active;
+        }
+        int id = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+        try {
+            Segment segment = Segment.open(segmentPath(id), id, segmentSize);
+            segments.put(id, segment);
+            if (active != null) {
+                active.buffer.force();
+            }
+            active = segment;
+            evict();
+            return segment;
+        } catch (IOException e) {
+            logger.error("Failed to create the segment " + segmentPath(id) + ":", e);
+            return null;
+        }
+    }
+
+    /**
+     * Remove the oldest segments and their entries while the total size is larger than the max bytes.
+     */
+    private void evict() {
+        while ((long) segments.size() * segmentSize > maxBytes && segments.size() > 1) {
+            Segment oldest = segments.firstEntry().getValue();
+            delete(oldest);
+            segmentEvictionCount.incrementAndGet();
+        }
+    }
+
+    private void delete(Segment segment) {
+        segments.remove(segment.id);
+        if (segment == active) {
+            active = null;
+        }
+        index.values().removeIf(record -> record.segment == segment);
+        Set<String> primaryKeys = new HashSet<>();
+        for (String key : index.keySet()) {
+            int newline = key.indexOf('\n');
+            primaryKeys.add(newline < 0 ? key : key.substring(0, newline));
+        }
+        varyIndex.keySet().retainAll(primaryKeys);
+        // the mapping stays valid for the entries that are being served until it is garbage collected.
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            logger.warn("Failed to delete the segment {}", segment.path, e);
+        }
+    }
+
+    /**
+     * Rewrite the live records of the sealed segments that are less than half live, and remove the segments that
+     * have no live records. It runs on the background thread.
+     */
+    void compact() {
+        boolean compacted = false;
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            if (segment == active) {
+                continue;
+            }
+            long live = segment.liveBytes.get();
+            if (live > segment.position / 2) {
+                continue;
+            }
+            List<Record> records = new ArrayList<>();
+            for (Record record : index.values()) {
+                if (record.segment == segment) {
+                    records.add(record);
+                }
+            }
+            for (Record record : records) {
+                // an entry replaced or removed since the copy is not rewritten.
+                if (index.get(record.entry.getKey()) == record) {
+                    append(record.entry);
+                }
+            }
+            if (segments.containsKey(segment.id)) {
+                delete(segment);
+            }
+            compacted = true;
+        }
+        if (compacted) {
+            compactionCount.incrementAndGet();
+        }
+    }
+
+    private Path segmentPath(int id) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    static byte[] encode(CacheEntry entry) {
+        Map<String, List<String>> headers = entry.getHeaders().map();
+        int size = 4 + 1 + 8 + 8 + 4;
+        List<byte[]> strings = new ArrayList<>();
+        strings.add(entry.getKey().getBytes(StandardCharsets.UTF_8));
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            for (String value : header.getValue()) {
+                strings.add(header.getKey().getBytes(StandardCharsets.UTF_8));
+                strings.add(value.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        for (byte[] string : strings) {
+            size += 4 + string.length;
+        }
+        ByteBuffer body = entry.getBody();
+        size += 4 + body.remaining();
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(entry.getStatusCode());
+        buffer.put((byte) entry.getVersion().ordinal());
+        buffer.putLong(entry.getRequestTime());
+        buffer.putLong(entry.getResponseTime());
+        buffer.putInt((strings.size() - 1) / 2);
+        for (byte[] string : strings) {
+            buffer.putInt(string.length).put(string);
+        }
+        buffer.putInt(body.remaining()).put(body);
+        return buffer.array();
+    }
+
+    static CacheEntry decode(ByteBuffer payload) {
+        ByteBuffer buffer = payload.duplicate();
+        int statusCode = buffer.getInt();
+        HttpClient.Version version = VERSIONS[buffer.get()];
+        long requestTime = buffer.getLong();
+        long responseTime = buffer.getLong();
+        int count = buffer.getInt();
+        String key = readString(buffer);
+        Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (int i = 0; i < count; i++) {
+            String name = readString(buffer);
+            headers.computeIfAbsent(name, k -> new ArrayList<>()).add(readString(buffer));
+        }
+        int length = buffer.getInt();
+        ByteBuffer body = buffer.limit(buffer.position() + length).slice();
+        return new CacheEntry(key, statusCode, HttpHeaders.of(headers, (k, v) -> true), version, body, requestTime,
+                responseTime);
+    }
+
+    private static byte[] encodeString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(4 + bytes.length).putInt(bytes.length).put(bytes).array();
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The location of an entry, the size of its record is counted in the live bytes of the segment.
+     */
+    private static final class Record {
+        final CacheEntry entry;
+        final Segment segment;
+        final int size;
+
+        Record(CacheEntry entry, Segment segment, int size) {
+            this.entry = entry;
+            this.segment = segment;
+            this.size = size;
+        }
+    }
+
+    private static final class Segment {
+        final Path path;
+        final int id;
+        final int capacity;
+        final MappedByteBuffer buffer;
+        final AtomicLong liveBytes = new AtomicLong();
+        // only used by the background thread.
+        int position;
+
+        Segment(Path path, int id, MappedByteBuffer buffer) {
+            this.path = path;
+            this.id = id;
+            this.capacity = buffer.capacity();
+            this.buffer = buffer;
+        }
+
+        static Segment open(Path path, int id, int size) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                // a new file is extended to the segment size, and an existing one keeps its size.
+                long length = Math.max(channel.size(), size);
+                return new Segment(path, id, channel.map(FileChannel.MapMode.READ_WRITE, 0, length));
+            }
+        }
+    }
+}
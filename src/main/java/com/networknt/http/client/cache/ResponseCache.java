@@ -0,0 +1,551 @@
+package com.networknt.http.client.cache;
+
+import com.networknt.http.client.Headers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An HTTP response cache for the GET requests as defined in RFC 9111. A stored response is served while it
+ * is fresh according to its max-age, Expires or Last-Modified, and revalidated with the If-None-Match and
+ * If-Modified-Since headers when it is stale. A 304 response updates the stored entry and the stored body is
+ * served. With stale-while-revalidate, a stale response is served at once and revalidated in the background.
+ *
+ * The responses are keyed by the method, the URI and the values of the request headers listed in the Vary header
+ * of the response. The cache is shared by all the callers of the client, so it follows the rules of a shared
+ * cache: a private response is never stored, and the response to a request with an Authorization header is only
+ * stored if it is marked public, s-maxage or must-revalidate, because it would be served to the other callers.
+ * The total size of the entries is bounded and the least recently used entries are evicted.
+ *
+ * With a DiskCache, the stored responses are also written to the disk and the entries that are not in memory are
+ * looked up there, so the cache survives restarts. The responses larger than the max entry bytes of the memory are
+ * only stored on the disk, and the entries read from the disk are served from the mapped files without being
+ * copied to the heap.
+ */
+public class ResponseCache {
+    private static final Logger logger = LoggerFactory.getLogger(ResponseCache.class);
+    static final String IF_NONE_MATCH = "If-None-Match";
+    static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+    /**
+     * The status codes that are cacheable by default in RFC 9110.
+     */
+    static final Set<Integer> CACHEABLE_STATUS_CODES = Set.of(200, 203, 204, 300, 301, 308, 404, 405, 410, 414, 501);
+
+    /**
+     * The result of a lookup for a request.
+     */
+    public enum CacheStatus {
+        /**
+         * There is no usable entry and the request is sent.
+         */
+        MISS,
+        /**
+         * The entry is fresh and it is served.
+         */
+        HIT,
+        /**
+         * The entry is stale within the stale-while-revalidate. It is served and revalidated in the background.
+         */
+        STALE,
+        /**
+         * The entry is stale and the request is sent with its validators.
+         */
+        REVALIDATE
+    }
+
+    public static final class Lookup {
+        private final CacheStatus status;
+        private final CacheEntry entry;
+
+        Lookup(CacheStatus status, CacheEntry entry) {
+            this.status = status;
+            this.entry = entry;
+        }
+
+        public CacheStatus getStatus() {
+            return status;
+        }
+
+        /**
+         * @return the entry or null for a MISS
+         */
+        public CacheEntry getEntry() {
+            return entry;
+        }
+    }
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, List<String>> varyIndex = new ConcurrentHashMap<>();
+    // the number of entries in memory for each primary key, the Vary of a key is dropped with its last entry.
+    private final Map<String, Integer> variantCounts = new HashMap<>();
+    private long size;
+    private volatile DiskCache diskCache;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong staleHitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong revalidationCount = new AtomicLong();
+    private final AtomicLong notModifiedCount = new AtomicLong();
+    private final AtomicLong storeCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong diskHitCount = new AtomicLong();
+
+    /**
+     * @param maxBytes      the max total size of the entries in bytes
+     * @param maxEntryBytes the max size of a response body that is stored
+     */
+    public ResponseCache(long maxBytes, long maxEntryBytes) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = Math.min(Math.min(maxEntryBytes, maxBytes), Integer.MAX_VALUE - 8);
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return the max size of a response body that is stored in memory or on the disk
+     */
+    public long getMaxEntryBytes() {
+        DiskCache disk = diskCache;
+        return disk == null ? maxEntryBytes : Math.max(maxEntryBytes, disk.getMaxEntryBytes());
+    }
+
+    /**
+     * Sets the second tier of the cache on the disk.
+     *
+     * @param diskCache the DiskCache or null to disable it
+     */
+    public void setDiskCache(DiskCache diskCache) {
+        this.diskCache = diskCache;
+    }
+
+    public DiskCache getDiskCache() {
+        return diskCache;
+    }
+
+    /**
+     * @param request the request
+     * @return true if the response of the request can be served from or stored in the cache
+     */
+    public boolean isCacheable(HttpRequest request) {
+        return "GET".equals(request.method())
+                && !CacheControl.parse(request.headers().allValues(CacheControl.CACHE_CONTROL)).noStore;
+    }
+
+    /**
+     * Find the entry of the request and decide how it is used.
+     *
+     * @param request a cacheable request
+     * @return Lookup
+     */
+    public Lookup lookup(HttpRequest request) {
+        CacheEntry entry = get(request);
+        if (entry == null) {
+            missCount.incrementAndGet();
+            return new Lookup(CacheStatus.MISS, null);
+        }
+        CacheControl cacheControl = CacheControl.parse(request.headers().allValues(CacheControl.CACHE_CONTROL));
+        long now = System.currentTimeMillis();
+        if (!cacheControl.noCache) {
+            if (entry.isFresh(now, cacheControl.maxAge < 0 ? -1 : cacheControl.maxAge * 1000)) {
+                hitCount.incrementAndGet();
+                return new Lookup(CacheStatus.HIT, entry);
+            }
+            if (cacheControl.maxAge < 0 && entry.isStaleWhileRevalidate(now)) {
+                staleHitCount.incrementAndGet();
+                return new Lookup(CacheStatus.STALE, entry);
+            }
+        }
+        if (entry.hasValidator()) {
+            return new Lookup(CacheStatus.REVALIDATE, entry);
+        }
+        missCount.incrementAndGet();
+        return new Lookup(CacheStatus.MISS, null);
+    }
+
+    /**
+     * @param request the request
+     * @return the stored entry for the request and the values of its Vary headers or null
+     */
+    public CacheEntry get(HttpRequest request) {
+        String primaryKey = primaryKey(request);
+        DiskCache disk = diskCache;
+        List<String> vary = varyIndex.get(primaryKey);
+        if (vary == null && disk != null) {
+            vary = disk.getVary(primaryKey);
+        }
+        if (vary == null) {
+            return null;
+        }
+        String key = variantKey(primaryKey, vary, request);
+        CacheEntry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry == null && disk != null) {
+            entry = disk.get(key);
+            if (entry != null) {
+                diskHitCount.incrementAndGet();
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * @param request the request of the caller
+     * @param entry   the stale entry to revalidate or null
+     * @param handler the BodyHandler of the caller
+     * @param <T>     the response body type
+     * @return the BodyHandler that stores the response or updates the entry
+     */
+    public <T> CachingBodyHandler<T> handler(HttpRequest request, CacheEntry entry, HttpResponse.BodyHandler<T> handler) {
+        return new CachingBodyHandler<>(this, request, entry, handler);
+    }
+
+    /**
+     * Add the validators of the entry to the request, unless the caller has set the conditional headers.
+     *
+     * @param builder the request builder of the caller
+     * @param entry   the stale entry or null
+     * @return the builder of the conditional request or the builder of the caller if there is no entry
+     */
+    public HttpRequest.Builder conditional(HttpRequest.Builder builder, CacheEntry entry) {
+        if (entry == null) {
+            return builder;
+        }
+        HttpRequest request = builder.build();
+        if (request.headers().firstValue(IF_NONE_MATCH).isPresent()
+                || request.headers().firstValue(IF_MODIFIED_SINCE).isPresent()) {
+            return builder;
+        }
+        revalidationCount.incrementAndGet();
+        HttpRequest.Builder copy = builder.copy();
+        if (entry.getETag() != null) {
+            copy.setHeader(IF_NONE_MATCH, entry.getETag());
+        }
+        if (entry.getLastModified() != null) {
+            copy.setHeader(IF_MODIFIED_SINCE, entry.getLastModified());
+        }
+        return copy;
+    }
+
+    /**
+     * @param statusCode the status code of the response
+     * @param headers    the headers of the response
+     * @return true if the response can be stored
+     */
+    public boolean isStorable(int statusCode, HttpHeaders headers) {
+        return isStorable(statusCode, headers, false);
+    }
+
+    /**
+     * @param request    the request of the response
+     * @param statusCode the status code of the response
+     * @param headers    the headers of the response
+     * @return true if the response can be stored and served to the other callers
+     */
+    public boolean isStorable(HttpRequest request, int statusCode, HttpHeaders headers) {
+        return isStorable(statusCode, headers, request.headers().firstValue(Headers.AUTHORIZATION_STRING).isPresent());
+    }
+
+    private boolean isStorable(int statusCode, HttpHeaders headers, boolean authorized) {
+        if (!CACHEABLE_STATUS_CODES.contains(statusCode)) {
+            return false;
+        }
+        CacheControl cacheControl = CacheControl.parse(headers.allValues(CacheControl.CACHE_CONTROL));
+        if (cacheControl.noStore || cacheControl.isPrivate || varyNames(headers).contains("*")) {
+            return false;
+        }
+        if (authorized && !cacheControl.isPublic && cacheControl.sMaxAge < 0 && !cacheControl.mustRevalidate) {
+            return false;
+        }
+        // without an explicit freshness or a validator, the response would never be used.
+        return cacheControl.maxAge >= 0 || cacheControl.sMaxAge >= 0 || headers.firstValue(CacheEntry.EXPIRES).isPresent()
+                || headers.firstValue(CacheEntry.ETAG).isPresent()
+                || headers.firstValue(CacheEntry.LAST_MODIFIED).isPresent();
+    }
+
+    /**
+     * Store a response received for the request.
+     */
+    void store(HttpRequest request, HttpResponse.ResponseInfo responseInfo, ByteBuffer body, long requestTime) {
+        String primaryKey = primaryKey(request);
+        List<String> vary = varyNames(responseInfo.headers());
+        CacheEntry entry = new CacheEntry(variantKey(primaryKey, vary, request), responseInfo.statusCode(),
+                responseInfo.headers(), responseInfo.version(), body, requestTime, System.currentTimeMillis());
+        put(entry);
+        storeCount.incrementAndGet();
+    }
+
+    /**
+     * Update the entry with the headers of a 304 response.
+     *
+     * @return the updated entry
+     */
+    CacheEntry notModified(CacheEntry entry, HttpHeaders headers, long requestTime) {
+        notModifiedCount.incrementAndGet();
+        CacheEntry updated = entry.update(headers, requestTime, System.currentTimeMillis());
+        put(updated);
+        return updated;
+    }
+
+    /**
+     * Add or replace the entry and evict the least recently used entries if the cache is full. The entry is also
+     * written to the DiskCache if there is one.
+     *
+     * @param entry the entry
+     */
+    public void put(CacheEntry entry) {
+        DiskCache disk = diskCache;
+        if (disk != null) {
+            disk.put(entry);
+        }
+        // the large bodies and the bodies that are mapped from the disk are not held in memory.
+        ByteBuffer body = entry.getBody();
+        if (entry.getSize() > maxBytes || body.remaining() > maxEntryBytes || body.isDirect()) {
+            synchronized (this) {
+                CacheEntry previous = entries.remove(entry.getKey());
+                if (previous != null) {
+                    size -= previous.getSize();
+                    unindex(previous);
+                }
+            }
+            return;
+        }
+        List<CacheEntry> evicted = new ArrayList<>();
+        synchronized (this) {
+            CacheEntry previous = entries.put(entry.getKey(), entry);
+            if (previous != null) {
+                size -= previous.getSize();
+            }
+            size += entry.getSize();
+            index(entry, previous == null);
+            Iterator<CacheEntry> iterator = entries.values().iterator();
+            while (size > maxBytes && iterator.hasNext()) {
+                CacheEntry eldest = iterator.next();
+                iterator.remove();
+                size -= eldest.getSize();
+                unindex(eldest);
+                evicted.add(eldest);
+            }
+        }
+        evictionCount.addAndGet(evicted.size());
+        if (logger.isDebugEnabled() && !evicted.isEmpty()) {
+            logger.debug("Evicted {} entries from the response cache", evicted.size());
+        }
+    }
+
+    /**
+     * Record the Vary of the entry added to the memory. The entries that are only on the disk are found with the
+     * Vary of the DiskCache.
+     */
+    private void index(CacheEntry entry, boolean added) {
+        String primaryKey = primaryKey(entry.getKey());
+        varyIndex.put(primaryKey, varyNames(entry.getHeaders()));
+        if (added) {
+            variantCounts.merge(primaryKey, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Drop the Vary of the primary key with the last of its entries removed from the memory, so that the index
+     * is bounded like the entries.
+     */
+    private void unindex(CacheEntry entry) {
+        String primaryKey = primaryKey(entry.getKey());
+        if (variantCounts.merge(primaryKey, -1, Integer::sum) <= 0) {
+            variantCounts.remove(primaryKey);
+            varyIndex.remove(primaryKey);
+        }
+    }
+
+    /**
+     * Remove the entries of the URI after an unsafe request to it succeeded, as defined in RFC 9111 section 4.4.
+     *
+     * @param request    the request sent
+     * @param statusCode the status code of the response
+     */
+    public void invalidate(HttpRequest request, int statusCode) {
+        String method = request.method();
+        if (statusCode < 200 || statusCode >= 400 || "GET".equals(method) || "HEAD".equals(method)
+                || "OPTIONS".equals(method) || "TRACE".equals(method)) {
+            return;
+        }
+        invalidate(request.uri());
+    }
+
+    /**
+     * Remove all the entries of the URI.
+     *
+     * @param uri the URI
+     */
+    public void invalidate(URI uri) {
+        String primaryKey = "GET " + uri;
+        DiskCache disk = diskCache;
+        if (disk != null) {
+            disk.remove(primaryKey);
+        }
+        synchronized (this) {
+            varyIndex.remove(primaryKey);
+            variantCounts.remove(primaryKey);
+            Iterator<CacheEntry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                CacheEntry entry = iterator.next();
+                if (entry.getKey().equals(primaryKey) || entry.getKey().startsWith(primaryKey + "\n")) {
+                    iterator.remove();
+                    size -= entry.getSize();
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (this) {
+            entries.clear();
+            varyIndex.clear();
+            variantCounts.clear();
+            size = 0;
+        }
+        DiskCache disk = diskCache;
+        if (disk != null) {
+            disk.clear();
+        }
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * @return the number of primary keys with a Vary in memory
+     */
+    synchronized int getVaryCount() {
+        return varyIndex.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getStaleHitCount() {
+        return staleHitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return the number of conditional requests sent to revalidate the stale entries
+     */
+    public long getRevalidationCount() {
+        return revalidationCount.get();
+    }
+
+    /**
+     * @return the number of 304 responses that were served from the cache
+     */
+    public long getNotModifiedCount() {
+        return notModifiedCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * @return the number of entries that were found on the disk and not in memory
+     */
+    public long getDiskHitCount() {
+        return diskHitCount.get();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entryCount", getEntryCount());
+        stats.put("size", getSize());
+        stats.put("maxBytes", maxBytes);
+        stats.put("hitCount", getHitCount());
+        stats.put("staleHitCount", getStaleHitCount());
+        stats.put("missCount", getMissCount());
+        stats.put("revalidationCount", getRevalidationCount());
+        stats.put("notModifiedCount", getNotModifiedCount());
+        stats.put("storeCount", storeCount.get());
+        stats.put("evictionCount", getEvictionCount());
+        DiskCache disk = diskCache;
+        if (disk != null) {
+            stats.put("diskHitCount", getDiskHitCount());
+            stats.put("disk", disk.getStats());
+        }
+        return stats;
+    }
+
+    static String primaryKey(HttpRequest request) {
+        return request.method() + " " + request.uri();
+    }
+
+    /**
+     * @return the primary key of the key of an entry
+     */
+    static String primaryKey(String key) {
+        int newline = key.indexOf('\n');
+        return newline < 0 ? key : key.substring(0, newline);
+    }
+
+    /**
+     * The key of a response is the primary key and the values of the request headers listed in the Vary header.
+     */
+    static String variantKey(String primaryKey, List<String> vary, HttpRequest request) {
+        if (vary.isEmpty()) {
+            return primaryKey;
+        }
+        StringBuilder sb = new StringBuilder(primaryKey);
+        for (String name : vary) {
+            sb.append('\n').append(name).append(':').append(String.join(",", request.headers().allValues(name)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the sorted and lower case header names of the Vary header
+     */
+    static List<String> varyNames(HttpHeaders headers) {
+        List<String> values = headers.allValues(CacheEntry.VARY);
+        if (values.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> names = new ArrayList<>();
+        for (String value : values) {
+            for (String name : value.split(",")) {
+                String trimmed = name.trim().toLowerCase(Locale.ROOT);
+                if (!trimmed.isEmpty() && !names.contains(trimmed)) {
+                    names.add(trimmed);
+                }
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+}
@@ -0,0 +1,68 @@
+package com.networknt.http.client.compression;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The policy of the content compression of the HttpClientRequest. When the response compression is enabled for a
+ * host, the requests advertise the gzip and deflate content codings with the Accept-Encoding header, and the
+ * compressed responses are decompressed before they are passed to the caller.
+ *
+ * The request bodies are only compressed for the hosts in the allowlist, as a server may not accept them. A body
+ * is compressed if it is larger than the threshold or its length is unknown, like a streamed JSON array.
+ */
+public class CompressionPolicy {
+    private final boolean response;
+    private final Map<String, Boolean> responseHosts;
+    private final long requestThreshold;
+    private final Set<String> requestHosts;
+
+    /**
+     * @param response      true to decompress the responses of all the hosts by default
+     * @param responseHosts the hosts and ports that override the default, for example the servers that compress
+     *                      badly or slowly
+     */
+    public CompressionPolicy(boolean response, Map<String, Boolean> responseHosts) {
+        this(response, responseHosts, 0, null);
+    }
+
+    /**
+     * @param response         true to decompress the responses of all the hosts by default
+     * @param responseHosts    the hosts and ports that override the default
+     * @param requestThreshold the min length in bytes of a request body to compress
+     * @param requestHosts     the hosts and ports that accept the compressed request bodies
+     */
+    public CompressionPolicy(boolean response, Map<String, Boolean> responseHosts, long requestThreshold,
+            Collection<String> requestHosts) {
+        this.response = response;
+        this.responseHosts = responseHosts == null ? Collections.emptyMap() : new HashMap<>(responseHosts);
+        this.requestThreshold = requestThreshold;
+        this.requestHosts = requestHosts == null ? Collections.emptySet() : new HashSet<>(requestHosts);
+    }
+
+    /**
+     * @param host the destination host and port
+     * @return true if the compressed responses are accepted from the host
+     */
+    public boolean isResponseCompression(String host) {
+        Boolean enabled = responseHosts.get(host);
+        return enabled != null ? enabled : response;
+    }
+
+    /**
+     * @param host          the destination host and port
+     * @param contentLength the length of the request body or -1 if it is unknown
+     * @return true if the request body is sent with gzip
+     */
+    public boolean isRequestCompression(String host, long contentLength) {
+        return requestHosts.contains(host) && (contentLength < 0 || contentLength >= requestThreshold);
+    }
+
+    public long getRequestThreshold() {
+        return requestThreshold;
+    }
+}
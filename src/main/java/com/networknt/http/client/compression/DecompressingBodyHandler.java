@@ -0,0 +1,161 @@
+package com.networknt.http.client.compression;
+
+import javax.net.ssl.SSLSession;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * A BodyHandler that decompresses a gzip or deflate response body incrementally as the buffers are received, and
+ * passes the inflated buffers to the caller's BodyHandler. The Content-Encoding and the Content-Length of the
+ * compressed body are removed from the ResponseInfo the caller's BodyHandler sees, and from the HttpResponse
+ * returned by the decoded method.
+ *
+ * A response with another content coding is passed to the caller's BodyHandler as it is.
+ *
+ * @param <T> the response body type
+ */
+public class DecompressingBodyHandler<T> implements HttpResponse.BodyHandler<T> {
+    public static final String ACCEPT_ENCODING = "Accept-Encoding";
+    public static final String CONTENT_ENCODING = "Content-Encoding";
+    public static final String CONTENT_LENGTH = "Content-Length";
+    /**
+     * The value of the Accept-Encoding header for the content codings that can be decompressed.
+     */
+    public static final String GZIP_DEFLATE = "gzip, deflate";
+    static final int CHUNK_SIZE = 16 * 1024;
+
+    private final HttpResponse.BodyHandler<T> handler;
+
+    public DecompressingBodyHandler(HttpResponse.BodyHandler<T> handler) {
+        this.handler = handler;
+    }
+
+    @Override
+    public HttpResponse.BodySubscriber<T> apply(HttpResponse.ResponseInfo responseInfo) {
+        String encoding = getEncoding(responseInfo.headers());
+        if (encoding == null) {
+            return handler.apply(responseInfo);
+        }
+        HttpResponse.ResponseInfo decodedInfo = new DecodedResponseInfo(responseInfo);
+        return new InflatingSubscriber<>(handler.apply(decodedInfo), !"deflate".equals(encoding), CHUNK_SIZE);
+    }
+
+    /**
+     * Hide the Content-Encoding and the Content-Length of the compressed body from the caller.
+     *
+     * @param response the response received with a DecompressingBodyHandler
+     * @param <T>      the response body type
+     * @return the response with the headers of the decoded body
+     */
+    public static <T> HttpResponse<T> decoded(HttpResponse<T> response) {
+        if (response == null || getEncoding(response.headers()) == null) {
+            return response;
+        }
+        return new DecodedResponse<>(response);
+    }
+
+    /**
+     * @return gzip or deflate if the body can be decompressed, null otherwise
+     */
+    static String getEncoding(HttpHeaders headers) {
+        Optional<String> value = headers.firstValue(CONTENT_ENCODING);
+        if (value.isEmpty()) {
+            return null;
+        }
+        String encoding = value.get().trim().toLowerCase(Locale.ROOT);
+        if ("gzip".equals(encoding) || "x-gzip".equals(encoding)) {
+            return "gzip";
+        }
+        return "deflate".equals(encoding) ? encoding : null;
+    }
+
+    static HttpHeaders decodedHeaders(HttpHeaders headers) {
+        return HttpHeaders.of(headers.map(), (name, value) ->
+                !CONTENT_ENCODING.equalsIgnoreCase(name) && !CONTENT_LENGTH.equalsIgnoreCase(name));
+    }
+
+    private static final class DecodedResponseInfo implements HttpResponse.ResponseInfo {
+        private final HttpResponse.ResponseInfo responseInfo;
+        private final HttpHeaders headers;
+
+        DecodedResponseInfo(HttpResponse.ResponseInfo responseInfo) {
+            this.responseInfo = responseInfo;
+            this.headers = decodedHeaders(responseInfo.headers());
+        }
+
+        @Override
+        public int statusCode() {
+            return responseInfo.statusCode();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return headers;
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return responseInfo.version();
+        }
+    }
+
+    private static final class DecodedResponse<T> implements HttpResponse<T> {
+        private final HttpResponse<T> response;
+        private final HttpHeaders headers;
+
+        DecodedResponse(HttpResponse<T> response) {
+            this.response = response;
+            this.headers = decodedHeaders(response.headers());
+        }
+
+        @Override
+        public int statusCode() {
+            return response.statusCode();
+        }
+
+        @Override
+        public HttpRequest request() {
+            return response.request();
+        }
+
+        @Override
+        public Optional<HttpResponse<T>> previousResponse() {
+            return response.previousResponse();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return headers;
+        }
+
+        @Override
+        public T body() {
+            return response.body();
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return response.sslSession();
+        }
+
+        @Override
+        public URI uri() {
+            return response.uri();
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return response.version();
+        }
+
+        @Override
+        public String toString() {
+            return response.toString();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.networknt.http.client.compression;
+
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A BodyPublisher that gzips the buffers of another BodyPublisher as they are published. One buffer of the body is
+ * requested at a time and compressed into buffers of the chunk size, so the compressed body is never held in
+ * memory. The compressed length is unknown, so the body is sent in chunks with the Content-Encoding: gzip header.
+ *
+ * Each subscription subscribes to the body again with a new Deflater, so the request can be retried if the body
+ * can be sent again.
+ */
+public class GzipBodyPublisher implements HttpRequest.BodyPublisher {
+    public static final String GZIP = "gzip";
+    static final int CHUNK_SIZE = 16 * 1024;
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final HttpRequest.BodyPublisher body;
+    private final int level;
+
+    /**
+     * @param body  the BodyPublisher of the uncompressed body
+     * @param level the compression level from 0 to 9, or -1 for the default level
+     */
+    public GzipBodyPublisher(HttpRequest.BodyPublisher body, int level) {
+        this.body = body;
+        this.level = level;
+    }
+
+    /**
+     * @param body the BodyPublisher of the uncompressed body
+     * @return the BodyPublisher of the body compressed with the default level
+     */
+    public static GzipBodyPublisher of(HttpRequest.BodyPublisher body) {
+        return new GzipBodyPublisher(body, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @return the BodyPublisher of the uncompressed body
+     */
+    public HttpRequest.BodyPublisher getBody() {
+        return body;
+    }
+
+    @Override
+    public long contentLength() {
+        return -1;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        GzipSubscription subscription = new GzipSubscription(subscriber, new Deflater(level, true));
+        subscriber.onSubscribe(subscription);
+        body.subscribe(subscription);
+    }
+
+    /**
+     * Subscribe to the uncompressed body for the subscriber of the compressed body. The buffers are compressed on
+     * the thread of the uncompressed body and queued, and a single drain loop publishes them as they are requested.
+     * The next uncompressed buffer is only requested when the queue is empty.
+     */
+    static final class GzipSubscription implements Flow.Subscription, Flow.Subscriber<ByteBuffer> {
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+        private final Deflater deflater;
+        private final CRC32 crc = new CRC32();
+        private final Queue<ByteBuffer> ready = new ConcurrentLinkedQueue<>();
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final AtomicBoolean requested = new AtomicBoolean();
+        private volatile Flow.Subscription upstream;
+        private volatile boolean upstreamDone;
+        private volatile Throwable error;
+        private volatile boolean done;
+        private ByteBuffer current;
+        private long size;
+
+        GzipSubscription(Flow.Subscriber<? super ByteBuffer> subscriber, Deflater deflater) {
+            this.subscriber = subscriber;
+            this.deflater = deflater;
+            ready.add(ByteBuffer.wrap(HEADER).asReadOnlyBuffer());
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("non-positive request " + n);
+                upstreamDone = true;
+            } else {
+                demand.getAndAccumulate(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+            Flow.Subscription subscription = upstream;
+            if (subscription != null) {
+                subscription.cancel();
+            }
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            upstream = subscription;
+            if (done) {
+                subscription.cancel();
+            } else {
+                drain();
+            }
+        }
+
+        @Override
+        public void onNext(ByteBuffer item) {
+            try {
+                crc.update(item.duplicate());
+                size += item.remaining();
+                deflater.setInput(item);
+                while (!deflater.needsInput()) {
+                    deflate();
+                }
+            } catch (RuntimeException e) {
+                upstream.cancel();
+                onError(e);
+                return;
+            }
+            requested.set(false);
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            deflater.end();
+            error = throwable;
+            upstreamDone = true;
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            deflater.finish();
+            while (!deflater.finished()) {
+                deflate();
+            }
+            deflater.end();
+            if (current != null && current.position() > 0) {
+                ready.add(current.flip());
+            }
+            current = null;
+            ByteBuffer trailer = ByteBuffer.allocate(8);
+            trailer.putInt(Integer.reverseBytes((int) crc.getValue()));
+            trailer.putInt(Integer.reverseBytes((int) size));
+            ready.add(trailer.flip());
+            upstreamDone = true;
+            drain();
+        }
+
+        /**
+         * Compress into the current buffer and queue it when it is full.
+         */
+        private void deflate() {
+            if (current == null) {
+                current = ByteBuffer.allocate(CHUNK_SIZE);
+            }
+            deflater.deflate(current);
+            if (!current.hasRemaining()) {
+                ready.add(current.flip());
+                current = null;
+            }
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                while (!done) {
+                    if (error != null) {
+                        done = true;
+                        subscriber.onError(error);
+                        break;
+                    }
+                    // the queue is complete once the upstream is done, so the flag is read before the queue.
+                    boolean finished = upstreamDone;
+                    if (ready.isEmpty()) {
+                        if (finished) {
+                            done = true;
+                            subscriber.onComplete();
+                        } else if (upstream != null && requested.compareAndSet(false, true)) {
+                            upstream.request(1);
+                            continue;
+                        }
+                        break;
+                    }
+                    if (demand.get() == 0) {
+                        break;
+                    }
+                    demand.decrementAndGet();
+                    subscriber.onNext(ready.poll());
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
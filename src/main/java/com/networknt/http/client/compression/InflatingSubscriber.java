@@ -0,0 +1,80 @@
+package com.networknt.http.client.compression;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * A BodySubscriber that inflates the received buffers before they are passed to the caller's BodySubscriber. Each
+ * received list is passed on as one inflated list, so the demand of the caller's subscriber is forwarded as is.
+ *
+ * @param <T> the response body type
+ */
+final class InflatingSubscriber<T> implements HttpResponse.BodySubscriber<T> {
+    private final HttpResponse.BodySubscriber<T> downstream;
+    private final ResponseInflater inflater;
+    private Flow.Subscription subscription;
+    private boolean done;
+    private boolean empty = true;
+
+    InflatingSubscriber(HttpResponse.BodySubscriber<T> downstream, boolean gzip, int chunkSize) {
+        this.downstream = downstream;
+        this.inflater = new ResponseInflater(gzip, chunkSize);
+    }
+
+    @Override
+    public CompletionStage<T> getBody() {
+        return downstream.getBody();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        downstream.onSubscribe(subscription);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> item) {
+        if (done) {
+            return;
+        }
+        List<ByteBuffer> inflated;
+        for (ByteBuffer buffer : item) {
+            empty &= !buffer.hasRemaining();
+        }
+        try {
+            inflated = inflater.inflate(item);
+        } catch (IOException | RuntimeException e) {
+            subscription.cancel();
+            onError(e);
+            return;
+        }
+        downstream.onNext(inflated);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        if (!done) {
+            done = true;
+            inflater.end();
+            downstream.onError(throwable);
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        if (!done) {
+            done = true;
+            inflater.end();
+            // a HEAD or a 304 response has the Content-Encoding of the representation without a body.
+            if (inflater.isFinished() || empty) {
+                downstream.onComplete();
+            } else {
+                downstream.onError(new IOException("Compressed response body is truncated"));
+            }
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.networknt.http.client.compression;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Inflate a gzip or deflate body one received buffer at a time. The gzip header and trailer are parsed here, as
+ * the Inflater only handles the compressed data, and they may be split across the buffers. A gzip body with more
+ * than one member is inflated as the concatenation of the members.
+ *
+ * The deflate content coding is the zlib format, but some servers send the raw deflate data, so the format is
+ * detected from the first two bytes.
+ */
+final class ResponseInflater {
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    private static final int TRAILER_SIZE = 8;
+
+    private enum State { HEADER, DATA, TRAILER, END }
+
+    private final boolean gzip;
+    private final int chunkSize;
+    private final CRC32 crc = new CRC32();
+    private Inflater inflater;
+    private State state = State.HEADER;
+    private byte[] pending = new byte[16];
+    private int pendingSize;
+    private long size;
+    private boolean finished;
+    private ByteBuffer current;
+    private List<ByteBuffer> output;
+
+    ResponseInflater(boolean gzip, int chunkSize) {
+        this.gzip = gzip;
+        this.chunkSize = chunkSize;
+        if (gzip) {
+            inflater = new Inflater(true);
+        }
+    }
+
+    /**
+     * @param buffers the received buffers, they are fully consumed
+     * @return the inflated buffers, empty if the received ones didn't complete a block
+     * @throws IOException if the body is not a valid gzip or deflate stream
+     */
+    List<ByteBuffer> inflate(List<ByteBuffer> buffers) throws IOException {
+        output = new ArrayList<>();
+        for (ByteBuffer buffer : buffers) {
+            while (buffer.hasRemaining()) {
+                process(buffer);
+            }
+        }
+        if (current != null && current.position() > 0) {
+            output.add(current.flip());
+            current = null;
+        }
+        return output;
+    }
+
+    /**
+     * @return true if the end of the compressed data was reached
+     */
+    boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Release the native memory of the Inflater.
+     */
+    void end() {
+        if (inflater != null) {
+            inflater.end();
+        }
+    }
+
+    private void process(ByteBuffer buffer) throws IOException {
+        switch (state) {
+            case HEADER:
+                pend(buffer.get());
+                int length = gzip ? gzipHeaderLength() : zlibHeaderLength();
+                if (length >= 0) {
+                    startData();
+                }
+                break;
+            case DATA:
+                inflateData(buffer);
+                break;
+            case TRAILER:
+                pend(buffer.get());
+                if (pendingSize == TRAILER_SIZE) {
+                    checkTrailer();
+                }
+                break;
+            default:
+                // a gzip member may be followed by another one, anything else after the end is ignored.
+                if (gzip && (buffer.get(buffer.position()) & 0xff) == (GZIP_MAGIC & 0xff)) {
+                    inflater.reset();
+                    crc.reset();
+                    size = 0;
+                    finished = false;
+                    state = State.HEADER;
+                } else {
+                    buffer.position(buffer.limit());
+                }
+        }
+    }
+
+    private void pend(byte b) {
+        if (pendingSize == pending.length) {
+            byte[] bytes = new byte[pending.length * 2];
+            System.arraycopy(pending, 0, bytes, 0, pendingSize);
+            pending = bytes;
+        }
+        pending[pendingSize++] = b;
+    }
+
+    private int pendingByte(int index) {
+        return pending[index] & 0xff;
+    }
+
+    /**
+     * @return the length of the gzip header or -1 if more bytes are needed
+     */
+    private int gzipHeaderLength() throws IOException {
+        if (pendingSize >= 2 && (pendingByte(0) | pendingByte(1) << 8) != GZIP_MAGIC) {
+            throw new ZipException("Not in gzip format");
+        }
+        if (pendingSize < 10) {
+            return -1;
+        }
+        if (pendingByte(2) != 8) {
+            throw new ZipException("Unsupported gzip compression method " + pendingByte(2));
+        }
+        int flags = pendingByte(3);
+        int length = 10;
+        if ((flags & FEXTRA) != 0) {
+            if (pendingSize < length + 2) {
+                return -1;
+            }
+            length += 2 + (pendingByte(length) | pendingByte(length + 1) << 8);
+        }
+        if ((flags & FNAME) != 0) {
+            length = skipZeroTerminated(length);
+        }
+        if (length >= 0 && (flags & FCOMMENT) != 0) {
+            length = skipZeroTerminated(length);
+        }
+        if (length >= 0 && (flags & FHCRC) != 0) {
+            length += 2;
+        }
+        return length >= 0 && pendingSize >= length ? length : -1;
+    }
+
+    private int skipZeroTerminated(int offset) {
+        for (int i = offset; i < pendingSize; i++) {
+            if (pending[i] == 0) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Detect the zlib header from the first two bytes, the data is the raw deflate format without it.
+     */
+    private int zlibHeaderLength() {
+        if (pendingSize < 2) {
+            return -1;
+        }
+        int cmf = pendingByte(0);
+        boolean zlib = (cmf & 0x0f) == 8 && ((cmf << 8) | pendingByte(1)) % 31 == 0;
+        inflater = new Inflater(!zlib);
+        return 0;
+    }
+
+    /**
+     * The bytes of a zlib header or raw deflate data that were read for the detection are inflated first.
+     */
+    private void startData() throws IOException {
+        state = State.DATA;
+        ByteBuffer bytes = gzip ? null : ByteBuffer.wrap(pending, 0, pendingSize);
+        pendingSize = 0;
+        if (bytes != null) {
+            while (bytes.hasRemaining() && state == State.DATA) {
+                inflateData(bytes);
+            }
+        }
+    }
+
+    private void inflateData(ByteBuffer buffer) throws IOException {
+        inflater.setInput(buffer);
+        try {
+            while (true) {
+                if (current == null || !current.hasRemaining()) {
+                    if (current != null) {
+                        output.add(current.flip());
+                    }
+                    current = ByteBuffer.allocate(chunkSize);
+                }
+                int start = current.position();
+                int n = inflater.inflate(current);
+                if (n > 0 && gzip) {
+                    ByteBuffer inflated = current.duplicate();
+                    inflated.flip().position(start);
+                    crc.update(inflated);
+                    size += n;
+                }
+                if (inflater.finished()) {
+                    if (gzip) {
+                        state = State.TRAILER;
+                    } else {
+                        state = State.END;
+                        finished = true;
+                    }
+                    return;
+                }
+                if (inflater.needsDictionary()) {
+                    throw new ZipException("Deflate dictionary is not supported");
+                }
+                if (n == 0 && inflater.needsInput()) {
+                    return;
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException(e.getMessage());
+        } finally {
+            // the Inflater advances the position of the input to the bytes that were consumed.
+            inflater.setInput(new byte[0]);
+        }
+    }
+
+    private void checkTrailer() throws IOException {
+        long expectedCrc = pendingByte(0) | pendingByte(1) << 8 | pendingByte(2) << 16 | (long) pendingByte(3) << 24;
+        long expectedSize = pendingByte(4) | pendingByte(5) << 8 | pendingByte(6) << 16 | (long) pendingByte(7) << 24;
+        pendingSize = 0;
+        if (expectedCrc != crc.getValue() || expectedSize != (size & 0xffffffffL)) {
+            throw new ZipException("Corrupt gzip trailer");
+        }
+        state = State.END;
+        finished = true;
+    }
+}
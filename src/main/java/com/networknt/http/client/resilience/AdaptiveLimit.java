@@ -0,0 +1,22 @@
+package com.networknt.http.client.resilience;
+
+/**
+ * An algorithm that adjusts the max number of concurrent in-flight requests to a destination from the measured
+ * round-trip time and the dropped requests. An instance is created for each destination and is used by the
+ * Bulkhead of the destination, so the implementations don't need to be thread-safe.
+ */
+public interface AdaptiveLimit {
+    /**
+     * @return the current limit
+     */
+    int getLimit();
+
+    /**
+     * Update the limit with a completed request.
+     *
+     * @param rtt      the round-trip time in nanoseconds
+     * @param inFlight the number of in-flight requests when the request completed, including itself
+     * @param dropped  true if the request failed or was rejected by the server because of overload
+     */
+    void onSample(long rtt, int inFlight, boolean dropped);
+}
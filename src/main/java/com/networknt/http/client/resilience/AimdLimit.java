@@ -0,0 +1,49 @@
+package com.networknt.http.client.resilience;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Additive increase and multiplicative decrease. The limit grows by one for each successful request while the
+ * limit is in use, and it is multiplied by the backoff ratio when a request is dropped or slower than the
+ * timeout.
+ */
+public class AimdLimit implements AdaptiveLimit {
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long timeout;
+    private int limit;
+
+    /**
+     * @param initialLimit the limit before there is any sample
+     * @param minLimit     the min limit
+     * @param maxLimit     the max limit
+     * @param backoffRatio the ratio between 0.5 and 1 to decrease the limit with
+     * @param timeout      the round-trip time in milliseconds over which a request is considered dropped
+     */
+    public AimdLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio, long timeout) {
+        if (backoffRatio < 0.5 || backoffRatio >= 1.0) {
+            throw new IllegalArgumentException("backoffRatio must be in [0.5, 1.0)");
+        }
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.backoffRatio = backoffRatio;
+        this.timeout = TimeUnit.MILLISECONDS.toNanos(timeout);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+    }
+
+    @Override
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public void onSample(long rtt, int inFlight, boolean dropped) {
+        if (dropped || rtt > timeout) {
+            limit = Math.max(minLimit, Math.min(limit - 1, (int) (limit * backoffRatio)));
+        } else if (inFlight * 2 >= limit) {
+            // only grow when the limit is actually used, otherwise it would grow forever at a low load.
+            limit = Math.min(maxLimit, limit + 1);
+        }
+    }
+}
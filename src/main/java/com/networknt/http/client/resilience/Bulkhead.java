@@ -0,0 +1,190 @@
+package com.networknt.http.client.resilience;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limit the number of concurrent in-flight requests to a destination. When all the permits are taken, the
+ * callers wait in a bounded queue up to the max wait time, and they are rejected right away if the queue is
+ * full as well. The acquire never blocks, so it is used by both the send and the sendAsync.
+ *
+ * If an AdaptiveLimit is set, the limit is adjusted with the round-trip time of each released request.
+ */
+public class Bulkhead {
+    private static final CompletableFuture<Boolean> ACQUIRED = CompletableFuture.completedFuture(true);
+    private static final CompletableFuture<Boolean> REJECTED = CompletableFuture.completedFuture(false);
+
+    private final String name;
+    private final int maxQueue;
+    private final long maxWait;
+    private final Deque<CompletableFuture<Boolean>> queue = new ArrayDeque<>();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AdaptiveLimit adaptiveLimit;
+    private volatile int limit;
+    private int inFlight;
+
+    /**
+     * @param name        the host or serviceId of the destination
+     * @param maxInFlight the max number of concurrent in-flight requests
+     * @param maxQueue    the max number of callers waiting for a permit
+     * @param maxWait     the max time in milliseconds a caller waits in the queue
+     */
+    public Bulkhead(String name, int maxInFlight, int maxQueue, long maxWait) {
+        this(name, maxInFlight, maxQueue, maxWait, null);
+    }
+
+    /**
+     * @param name          the host or serviceId of the destination
+     * @param maxInFlight   the max number of concurrent in-flight requests if there is no adaptive limit
+     * @param maxQueue      the max number of callers waiting for a permit
+     * @param maxWait       the max time in milliseconds a caller waits in the queue
+     * @param adaptiveLimit the AdaptiveLimit that adjusts the limit or null for a static limit
+     */
+    public Bulkhead(String name, int maxInFlight, int maxQueue, long maxWait, AdaptiveLimit adaptiveLimit) {
+        this.name = name;
+        this.adaptiveLimit = adaptiveLimit;
+        this.limit = Math.max(1, adaptiveLimit == null ? maxInFlight : adaptiveLimit.getLimit());
+        this.maxQueue = Math.max(0, maxQueue);
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * Acquire a permit. The returned future is completed with true when the permit is granted, or with false if
+     * the queue is full or the max wait time is reached. A granted permit must be released.
+     *
+     * @return CompletableFuture of the result
+     */
+    public CompletableFuture<Boolean> acquire() {
+        CompletableFuture<Boolean> waiter;
+        synchronized (this) {
+            if (inFlight < limit && queue.isEmpty()) {
+                inFlight++;
+                return ACQUIRED;
+            }
+            if (queue.size() >= maxQueue) {
+                rejectedCount.incrementAndGet();
+                return REJECTED;
+            }
+            waiter = new CompletableFuture<>();
+            queue.add(waiter);
+        }
+        if (maxWait > 0) {
+            waiter.completeOnTimeout(false, maxWait, TimeUnit.MILLISECONDS);
+        }
+        waiter.thenAccept(granted -> {
+            if (!granted) {
+                rejectedCount.incrementAndGet();
+                synchronized (this) {
+                    queue.remove(waiter);
+                }
+            }
+        });
+        drain();
+        return waiter;
+    }
+
+    /**
+     * Acquire a permit only if one is free right now, without waiting in the queue. It is used for the optional
+     * requests, for example the hedged ones, which are not worth queueing. A granted permit must be released.
+     *
+     * @return true if the permit is granted
+     */
+    public synchronized boolean tryAcquire() {
+        if (inFlight < limit && queue.isEmpty()) {
+            inFlight++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Give up a waiter returned by the acquire, for example when the caller thread is interrupted. If the permit
+     * has been granted in the meantime, it is released.
+     *
+     * @param waiter the future returned by the acquire
+     */
+    public void cancel(CompletableFuture<Boolean> waiter) {
+        if (!waiter.complete(false) && waiter.join()) {
+            release();
+        }
+    }
+
+    /**
+     * Release a granted permit and hand it over to the next waiter in the queue.
+     */
+    public void release() {
+        synchronized (this) {
+            inFlight--;
+        }
+        drain();
+    }
+
+    /**
+     * Release a granted permit with the outcome of the request so that the adaptive limit can be updated.
+     *
+     * @param rtt     the round-trip time in nanoseconds
+     * @param dropped true if the request failed or was rejected by the server because of overload
+     */
+    public void release(long rtt, boolean dropped) {
+        if (adaptiveLimit != null) {
+            synchronized (this) {
+                adaptiveLimit.onSample(rtt, inFlight, dropped);
+                limit = Math.max(1, adaptiveLimit.getLimit());
+            }
+        }
+        release();
+    }
+
+    private void drain() {
+        while (true) {
+            CompletableFuture<Boolean> next;
+            synchronized (this) {
+                if (inFlight >= limit || queue.isEmpty()) {
+                    return;
+                }
+                next = queue.poll();
+                inFlight++;
+            }
+            // complete outside the lock as the waiter may send the request on this thread.
+            if (!next.complete(true)) {
+                synchronized (this) {
+                    inFlight--;
+                }
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Change the max number of concurrent in-flight requests. The in-flight requests over a lowered limit are
+     * not affected, but no new permit is granted until the number drops below the limit.
+     *
+     * @param limit the new limit
+     */
+    public void setLimit(int limit) {
+        this.limit = Math.max(1, limit);
+        drain();
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueued() {
+        return queue.size();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+}
@@ -0,0 +1,74 @@
+package com.networknt.http.client.resilience;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+/**
+ * The per-destination bulkheads. A destination is the host and port of the request uri by default, and its
+ * limit can be overridden by the host and port or the serviceId. With a limit factory, the limit of each
+ * destination is adjusted by its own AdaptiveLimit starting from the configured limit.
+ */
+public class Bulkheads {
+    private final int maxInFlight;
+    private final int maxQueue;
+    private final long maxWait;
+    private final Map<String, Integer> limits;
+    private final IntFunction<AdaptiveLimit> limitFactory;
+    private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxInFlight the default max number of concurrent in-flight requests per destination
+     * @param maxQueue    the max number of callers waiting for a permit per destination
+     * @param maxWait     the max time in milliseconds a caller waits in the queue
+     * @param limits      the max in-flight requests of specific destinations
+     */
+    public Bulkheads(int maxInFlight, int maxQueue, long maxWait, Map<String, Integer> limits) {
+        this(maxInFlight, maxQueue, maxWait, limits, null);
+    }
+
+    /**
+     * @param maxInFlight  the default initial max number of concurrent in-flight requests per destination
+     * @param maxQueue     the max number of callers waiting for a permit per destination
+     * @param maxWait      the max time in milliseconds a caller waits in the queue
+     * @param limits       the initial max in-flight requests of specific destinations
+     * @param limitFactory create the AdaptiveLimit of a destination from its initial limit, or null for static limits
+     */
+    public Bulkheads(int maxInFlight, int maxQueue, long maxWait, Map<String, Integer> limits,
+                     IntFunction<AdaptiveLimit> limitFactory) {
+        this.limitFactory = limitFactory;
+        this.maxInFlight = maxInFlight;
+        this.maxQueue = maxQueue;
+        this.maxWait = maxWait;
+        this.limits = limits == null ? Collections.emptyMap() : limits;
+    }
+
+    /**
+     * @param destination the host and port or the serviceId
+     * @return the Bulkhead of the destination
+     */
+    public Bulkhead get(String destination) {
+        return bulkheads.computeIfAbsent(destination, k -> {
+            int limit = limits.getOrDefault(k, maxInFlight);
+            return new Bulkhead(k, limit, maxQueue, maxWait, limitFactory == null ? null : limitFactory.apply(limit));
+        });
+    }
+
+    /**
+     * @return the in-flight, queued and rejected counts of each destination.
+     */
+    public Map<String, Map<String, Object>> getStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        bulkheads.forEach((destination, bulkhead) -> {
+            Map<String, Object> stat = new LinkedHashMap<>();
+            stat.put("limit", bulkhead.getLimit());
+            stat.put("inFlight", bulkhead.getInFlight());
+            stat.put("queued", bulkhead.getQueued());
+            stat.put("rejected", bulkhead.getRejectedCount());
+            stats.put(destination, stat);
+        });
+        return stats;
+    }
+}
@@ -0,0 +1,169 @@
+package com.networknt.http.client.resilience;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A circuit breaker of a destination. It is closed while the failure rate and the slow call rate of the recent
+ * calls are under the thresholds. Once a rate reaches its threshold, the breaker is open and the calls are
+ * rejected right away for the open duration. After that, it is half-open and lets a few probe calls through to
+ * decide whether to close again or to stay open for another open duration.
+ *
+ * The rates are calculated from a sliding window of the outcomes of the last calls.
+ */
+public class CircuitBreaker {
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int minCalls;
+    private final int failureRateThreshold;
+    private final int slowCallRateThreshold;
+    private final long slowCallDuration;
+    private final long openDuration;
+    private final int halfOpenCalls;
+    private final boolean[] failures;
+    private final boolean[] slows;
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private int index;
+    private int count;
+    private int failureCount;
+    private int slowCount;
+    private volatile State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenPermits;
+
+    /**
+     * @param name                  the host or serviceId of the destination
+     * @param windowSize            the number of recent calls in the sliding window
+     * @param minCalls              the min number of calls in the window before the rates are checked
+     * @param failureRateThreshold  the failure rate in percentage that opens the breaker, 0 to disable
+     * @param slowCallRateThreshold the slow call rate in percentage that opens the breaker, 0 to disable
+     * @param slowCallDuration      the duration in milliseconds over which a call is slow, 0 to disable
+     * @param openDuration          the time in milliseconds the breaker stays open before it is half-open
+     * @param halfOpenCalls         the number of probe calls in the half-open state
+     */
+    public CircuitBreaker(String name, int windowSize, int minCalls, int failureRateThreshold,
+                          int slowCallRateThreshold, long slowCallDuration, long openDuration, int halfOpenCalls) {
+        this.name = name;
+        this.failures = new boolean[Math.max(1, windowSize)];
+        this.slows = new boolean[failures.length];
+        this.minCalls = Math.max(1, Math.min(failures.length, minCalls));
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallDuration = TimeUnit.MILLISECONDS.toNanos(slowCallDuration);
+        this.openDuration = TimeUnit.MILLISECONDS.toNanos(openDuration);
+        this.halfOpenCalls = Math.max(1, Math.min(failures.length, halfOpenCalls));
+    }
+
+    /**
+     * Check if a call is permitted. A permitted call must be reported with the onResult, or with the release if
+     * it is not sent after all.
+     *
+     * @return true if the call is permitted
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openDuration) {
+                rejectedCount.incrementAndGet();
+                return false;
+            }
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenPermits <= 0) {
+                rejectedCount.incrementAndGet();
+                return false;
+            }
+            halfOpenPermits--;
+        }
+        return true;
+    }
+
+    /**
+     * Give back a permitted call that is not sent.
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN) {
+            halfOpenPermits++;
+        }
+    }
+
+    /**
+     * Record the outcome of a permitted call.
+     *
+     * @param rtt     the duration of the call in nanoseconds
+     * @param failure true if the call failed
+     */
+    public synchronized void onResult(long rtt, boolean failure) {
+        if (state == State.OPEN) {
+            // a late result of a call sent before the breaker was opened.
+            return;
+        }
+        boolean slow = slowCallDuration > 0 && rtt > slowCallDuration;
+        if (count == failures.length) {
+            failureCount -= failures[index] ? 1 : 0;
+            slowCount -= slows[index] ? 1 : 0;
+        } else {
+            count++;
+        }
+        failures[index] = failure;
+        slows[index] = slow;
+        failureCount += failure ? 1 : 0;
+        slowCount += slow ? 1 : 0;
+        index = (index + 1) % failures.length;
+
+        if (count < (state == State.HALF_OPEN ? halfOpenCalls : minCalls)) {
+            return;
+        }
+        if (isOverThreshold(failureCount, failureRateThreshold) || isOverThreshold(slowCount, slowCallRateThreshold)) {
+            transition(State.OPEN);
+        } else if (state == State.HALF_OPEN) {
+            transition(State.CLOSED);
+        }
+    }
+
+    private boolean isOverThreshold(int calls, int threshold) {
+        return threshold > 0 && calls * 100 >= threshold * count;
+    }
+
+    private void transition(State target) {
+        state = target;
+        index = 0;
+        count = 0;
+        failureCount = 0;
+        slowCount = 0;
+        if (target == State.OPEN) {
+            openedAt = System.nanoTime();
+        } else if (target == State.HALF_OPEN) {
+            halfOpenPermits = halfOpenCalls;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return the failure rate in percentage of the calls in the window or -1 if there are not enough calls.
+     */
+    public synchronized int getFailureRate() {
+        return count < minCalls ? -1 : failureCount * 100 / count;
+    }
+
+    /**
+     * @return the slow call rate in percentage of the calls in the window or -1 if there are not enough calls.
+     */
+    public synchronized int getSlowCallRate() {
+        return count < minCalls ? -1 : slowCount * 100 / count;
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+}
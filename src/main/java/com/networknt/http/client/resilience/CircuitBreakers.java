@@ -0,0 +1,65 @@
+package com.networknt.http.client.resilience;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The per-destination circuit breakers with the same settings. A destination is the host and port of the
+ * request uri.
+ */
+public class CircuitBreakers {
+    private final int windowSize;
+    private final int minCalls;
+    private final int failureRateThreshold;
+    private final int slowCallRateThreshold;
+    private final long slowCallDuration;
+    private final long openDuration;
+    private final int halfOpenCalls;
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    /**
+     * @param windowSize            the number of recent calls in the sliding window
+     * @param minCalls              the min number of calls in the window before the rates are checked
+     * @param failureRateThreshold  the failure rate in percentage that opens the breaker
+     * @param slowCallRateThreshold the slow call rate in percentage that opens the breaker
+     * @param slowCallDuration      the duration in milliseconds over which a call is slow, 0 to disable
+     * @param openDuration          the time in milliseconds a breaker stays open before it is half-open
+     * @param halfOpenCalls         the number of probe calls in the half-open state
+     */
+    public CircuitBreakers(int windowSize, int minCalls, int failureRateThreshold, int slowCallRateThreshold,
+                           long slowCallDuration, long openDuration, int halfOpenCalls) {
+        this.windowSize = windowSize;
+        this.minCalls = minCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallDuration = slowCallDuration;
+        this.openDuration = openDuration;
+        this.halfOpenCalls = halfOpenCalls;
+    }
+
+    /**
+     * @param destination the host and port
+     * @return the CircuitBreaker of the destination
+     */
+    public CircuitBreaker get(String destination) {
+        return breakers.computeIfAbsent(destination, k -> new CircuitBreaker(k, windowSize, minCalls,
+                failureRateThreshold, slowCallRateThreshold, slowCallDuration, openDuration, halfOpenCalls));
+    }
+
+    /**
+     * @return the state, rates and rejected count of each destination.
+     */
+    public Map<String, Map<String, Object>> getStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        breakers.forEach((destination, breaker) -> {
+            Map<String, Object> stat = new LinkedHashMap<>();
+            stat.put("state", breaker.getState().name());
+            stat.put("failureRate", breaker.getFailureRate());
+            stat.put("slowCallRate", breaker.getSlowCallRate());
+            stat.put("rejected", breaker.getRejectedCount());
+            stats.put(destination, stat);
+        });
+        return stats;
+    }
+}
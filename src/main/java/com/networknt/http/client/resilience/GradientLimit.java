@@ -0,0 +1,89 @@
+package com.networknt.http.client.resilience;
+
+/**
+ * A gradient limit that compares the recent round-trip time with the baseline of the destination. While the
+ * latency stays within the tolerance, the limit grows by a small queue allowance. When the latency rises because
+ * the destination starts to queue the requests, the limit shrinks with the ratio of the two round-trip times.
+ * The limit settles around the knee where the latency starts to degrade with the concurrency.
+ *
+ * The limit is updated once per window of about one round trip, that is, a number of samples equal to the limit,
+ * so that it doesn't overshoot before the effect of the previous update is measured. The baseline follows a
+ * lower round-trip time right away and a higher one slowly. It is not raised by a round-trip time over the
+ * tolerance unless the limit is already at the min limit, so that it doesn't drift up with the queueing delay
+ * it is meant to detect, but still follows a destination that has become slower for good.
+ */
+public class GradientLimit implements AdaptiveLimit {
+    private static final int BASELINE_WINDOW = 60;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private double limit;
+    private double baseline;
+    private long rttSum;
+    private int samples;
+    private int maxInFlight;
+    private boolean dropped;
+
+    /**
+     * @param initialLimit the limit before there is any sample
+     * @param minLimit     the min limit
+     * @param maxLimit     the max limit
+     * @param tolerance    the ratio of the recent to the baseline round-trip time that is tolerated
+     * @param smoothing    the weight between 0 and 1 of a new limit
+     */
+    public GradientLimit(int initialLimit, int minLimit, int maxLimit, double tolerance, double smoothing) {
+        if (tolerance < 1.0) {
+            throw new IllegalArgumentException("tolerance must be at least 1.0");
+        }
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.tolerance = tolerance;
+        this.smoothing = Math.max(0.01, Math.min(1.0, smoothing));
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+    }
+
+    @Override
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    @Override
+    public void onSample(long rtt, int inFlight, boolean dropped) {
+        this.dropped |= dropped;
+        if (!dropped) {
+            rttSum += rtt;
+            samples++;
+            // the first request is the best guess of the round-trip time without load.
+            if (baseline == 0) {
+                baseline = rtt;
+            }
+        }
+        maxInFlight = Math.max(maxInFlight, inFlight);
+        if (samples < (int) limit && !this.dropped) {
+            return;
+        }
+        double newLimit = limit;
+        if (this.dropped) {
+            newLimit = limit * 0.5;
+        } else {
+            double recentRtt = (double) rttSum / samples;
+            if (recentRtt < baseline) {
+                baseline = recentRtt;
+            } else if (recentRtt <= baseline * tolerance || limit <= minLimit) {
+                baseline += (recentRtt - baseline) / BASELINE_WINDOW;
+            }
+            double gradient = Math.max(0.5, Math.min(1.0, tolerance * baseline / recentRtt));
+            // the limit doesn't grow if it is not in use, as the samples say nothing about it.
+            if (gradient < 1.0 || maxInFlight * 2 >= limit) {
+                newLimit = limit * gradient + Math.sqrt(limit);
+            }
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - smoothing) + newLimit * smoothing));
+        rttSum = 0;
+        samples = 0;
+        maxInFlight = 0;
+        this.dropped = false;
+    }
+}
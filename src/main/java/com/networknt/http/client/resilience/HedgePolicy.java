@@ -0,0 +1,98 @@
+package com.networknt.http.client.resilience;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The policy of the hedged requests. If an idempotent request doesn't get a response within the hedge delay,
+ * a second identical request is sent and the first response wins. The delay is the observed percentile of the
+ * latency for the host once there are enough samples, or the fixed delay otherwise.
+ *
+ * The hedges are limited by a budget so that they cannot amplify the load during an incident. Each request
+ * earns maxPercent of a hedge, and a hedge spends one. The unspent budget is capped to a small burst.
+ */
+public class HedgePolicy {
+    private static final int SAMPLE_SIZE = 128;
+    private static final int MIN_SAMPLES = 20;
+    private static final long UNIT = 100;
+
+    private final long delay;
+    private final double percentile;
+    private final int maxPercent;
+    private final long maxCredits;
+    private final Map<String, LatencyTracker> trackers = new ConcurrentHashMap<>();
+    private final AtomicLong credits = new AtomicLong();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong hedgeCount = new AtomicLong();
+
+    /**
+     * @param delay      the fixed hedge delay in milliseconds
+     * @param percentile the latency percentile used as the hedge delay per host, 0 to always use the fixed delay
+     * @param maxPercent the max number of hedges as a percentage of the requests
+     * @param maxBurst   the max number of hedges that can be saved up for a burst
+     */
+    public HedgePolicy(long delay, double percentile, int maxPercent, int maxBurst) {
+        this.delay = delay;
+        this.percentile = percentile;
+        this.maxPercent = maxPercent;
+        this.maxCredits = Math.max(1, maxBurst) * UNIT;
+    }
+
+    /**
+     * @param host the destination host and port
+     * @return the delay in milliseconds before the hedge is sent
+     */
+    public long getDelay(String host) {
+        if (percentile > 0) {
+            LatencyTracker tracker = trackers.get(host);
+            if (tracker != null && tracker.getPercentile() >= 0) {
+                return Math.max(1, tracker.getPercentile());
+            }
+        }
+        return delay;
+    }
+
+    /**
+     * Record the latency of a completed request to the host.
+     *
+     * @param host    the destination host and port
+     * @param latency the latency in milliseconds
+     */
+    public void recordLatency(String host, long latency) {
+        if (percentile > 0) {
+            trackers.computeIfAbsent(host, k -> new LatencyTracker(SAMPLE_SIZE, percentile, MIN_SAMPLES)).record(latency);
+        }
+    }
+
+    /**
+     * Called for each hedge eligible request to earn the hedge budget.
+     */
+    public void onRequest() {
+        requestCount.incrementAndGet();
+        credits.getAndUpdate(c -> Math.min(maxCredits, c + maxPercent));
+    }
+
+    /**
+     * @return true if a hedge can be sent within the budget
+     */
+    public boolean tryAcquire() {
+        long current;
+        do {
+            current = credits.get();
+            if (current < UNIT) {
+                return false;
+            }
+        } while (!credits.compareAndSet(current, current - UNIT));
+        hedgeCount.incrementAndGet();
+        return true;
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public long getHedgeCount() {
+        return hedgeCount.get();
+    }
+}
@@ -0,0 +1,50 @@
+package com.networknt.http.client.resilience;
+
+import java.util.Arrays;
+
+/**
+ * Keep the latencies of the recent requests to a host in a ring buffer to estimate a percentile. The
+ * percentile is recalculated every few samples so that the lookup on the request path stays cheap.
+ */
+public class LatencyTracker {
+    private static final int RECALCULATE_INTERVAL = 16;
+
+    private final long[] samples;
+    private final double percentile;
+    private final int minSamples;
+    private int count;
+    private int index;
+    private volatile long cached = -1;
+
+    /**
+     * @param size       the number of recent samples to keep
+     * @param percentile the percentile to estimate between 0 and 100
+     * @param minSamples the min number of samples before the percentile is available
+     */
+    public LatencyTracker(int size, double percentile, int minSamples) {
+        this.samples = new long[size];
+        this.percentile = percentile;
+        this.minSamples = Math.min(size, minSamples);
+    }
+
+    public synchronized void record(long latency) {
+        samples[index] = latency;
+        index = (index + 1) % samples.length;
+        if (count < samples.length) {
+            count++;
+        }
+        if (count >= minSamples && (count == minSamples || index % RECALCULATE_INTERVAL == 0)) {
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(percentile / 100.0 * count) - 1;
+            cached = sorted[Math.max(0, Math.min(count - 1, rank))];
+        }
+    }
+
+    /**
+     * @return the estimated percentile in milliseconds or -1 if there are not enough samples.
+     */
+    public long getPercentile() {
+        return cached;
+    }
+}
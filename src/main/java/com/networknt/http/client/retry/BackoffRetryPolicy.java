@@ -0,0 +1,137 @@
+package com.networknt.http.client.retry;
+
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An exponential backoff retry policy with optional jitter and a max delay cap. With the multiplier 1 and no
+ * jitter, it retries with the fixed delay like the requestRetryDelay in the client.yml.
+ *
+ * Without a max delay, the backoff stops growing at one hour or at the base delay if it is longer, so that a
+ * large number of attempts doesn't overflow the delay.
+ */
+public class BackoffRetryPolicy implements RetryPolicy {
+    static final long BACKOFF_LIMIT = TimeUnit.HOURS.toMillis(1);
+
+    private final int maxAttempts;
+    private final long baseDelay;
+    private final long maxDelay;
+    private final double multiplier;
+    private final Jitter jitter;
+    private final long attemptTimeout;
+    private final Set<Integer> retryableStatusCodes;
+
+    public BackoffRetryPolicy(int maxAttempts, long baseDelay, long maxDelay, double multiplier, Jitter jitter,
+            long attemptTimeout) {
+        this(maxAttempts, baseDelay, maxDelay, multiplier, jitter, attemptTimeout, DEFAULT_RETRYABLE_STATUS_CODES);
+    }
+
+    /**
+     * @param maxAttempts    the max number of attempts including the first one
+     * @param baseDelay      the delay before the first retry in milliseconds
+     * @param maxDelay       the cap of the delay in milliseconds, 0 means no cap
+     * @param multiplier     the factor applied to the delay for each retry
+     * @param jitter         the jitter applied to the delay
+     * @param attemptTimeout the timeout of each attempt in milliseconds, 0 means the request timeout
+     * @param retryableStatusCodes the response status codes to retry
+     */
+    public BackoffRetryPolicy(int maxAttempts, long baseDelay, long maxDelay, double multiplier, Jitter jitter,
+            long attemptTimeout, Set<Integer> retryableStatusCodes) {
+        if (multiplier < 1) {
+            throw new IllegalArgumentException("multiplier must not be less than 1");
+        }
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelay = Math.max(0, baseDelay);
+        this.maxDelay = maxDelay;
+        this.multiplier = multiplier;
+        this.jitter = jitter == null ? Jitter.NONE : jitter;
+        this.attemptTimeout = Math.max(0, attemptTimeout);
+        this.retryableStatusCodes = retryableStatusCodes == null ? Set.of() : Set.copyOf(retryableStatusCodes);
+    }
+
+    /**
+     * @param maxAttempts the max number of attempts including the first one
+     * @param delay       the fixed delay between the attempts in milliseconds
+     * @return a BackoffRetryPolicy without backoff and jitter
+     */
+    public static BackoffRetryPolicy fixed(int maxAttempts, long delay) {
+        return new BackoffRetryPolicy(maxAttempts, delay, 0, 1, Jitter.NONE, 0);
+    }
+
+    @Override
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    @Override
+    public long getDelay(int attempt, long previousDelay) {
+        if (baseDelay == 0) {
+            return 0;
+        }
+        long delay;
+        switch (jitter) {
+            case FULL:
+                delay = ThreadLocalRandom.current().nextLong(cap(exponential(attempt)) + 1);
+                break;
+            case DECORRELATED:
+                long upper = Math.min(Math.max(baseDelay, previousDelay), limit()) * 3;
+                delay = baseDelay + ThreadLocalRandom.current().nextLong(upper - baseDelay + 1);
+                break;
+            default:
+                delay = exponential(attempt);
+        }
+        return cap(delay);
+    }
+
+    @Override
+    public long getAttemptTimeout() {
+        return attemptTimeout;
+    }
+
+    @Override
+    public boolean isRetryableStatus(int statusCode) {
+        return retryableStatusCodes.contains(statusCode);
+    }
+
+    /**
+     * The server asks for a longer wait than the max delay, so the response is returned instead of waiting.
+     */
+    @Override
+    public long getRetryAfterDelay(int attempt, long retryAfter) {
+        return maxDelay > 0 && retryAfter > maxDelay ? -1 : retryAfter;
+    }
+
+    public Set<Integer> getRetryableStatusCodes() {
+        return retryableStatusCodes;
+    }
+
+    public long getBaseDelay() {
+        return baseDelay;
+    }
+
+    public long getMaxDelay() {
+        return maxDelay;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public Jitter getJitter() {
+        return jitter;
+    }
+
+    private long exponential(int attempt) {
+        double delay = baseDelay * Math.pow(multiplier, Math.max(0, attempt - 1));
+        return delay >= limit() ? limit() : (long) delay;
+    }
+
+    private long limit() {
+        return Math.max(baseDelay, BACKOFF_LIMIT);
+    }
+
+    private long cap(long delay) {
+        return maxDelay > 0 ? Math.min(delay, maxDelay) : delay;
+    }
+}
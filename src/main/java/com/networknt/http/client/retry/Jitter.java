@@ -0,0 +1,32 @@
+package com.networknt.http.client.retry;
+
+import java.util.Locale;
+
+/**
+ * The randomization applied to the backoff delay so that the clients don't retry in lockstep.
+ */
+public enum Jitter {
+    /**
+     * Use the exponential delay as it is.
+     */
+    NONE,
+    /**
+     * A random delay between 0 and the exponential delay.
+     */
+    FULL,
+    /**
+     * A random delay between the base delay and three times of the previous delay.
+     */
+    DECORRELATED;
+
+    /**
+     * @param value the jitter name from the config, case-insensitive
+     * @return Jitter or NONE if the value is empty
+     */
+    public static Jitter of(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return NONE;
+        }
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,41 @@
+package com.networknt.http.client.retry;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Parse the Retry-After response header defined in RFC 9110. The value is either a number of seconds or an
+ * HTTP-date.
+ */
+public final class RetryAfter {
+    public static final String RETRY_AFTER = "Retry-After";
+
+    private RetryAfter() {
+    }
+
+    /**
+     * @param value the Retry-After header value
+     * @param now   the current time in milliseconds
+     * @return the delay in milliseconds, 0 if the date is in the past or -1 if the value is missing or invalid.
+     */
+    public static long parse(String value, long now) {
+        if (value == null || value.trim().isEmpty()) {
+            return -1;
+        }
+        String trimmed = value.trim();
+        if (Character.isDigit(trimmed.charAt(0))) {
+            try {
+                return Math.multiplyExact(Long.parseLong(trimmed), 1000L);
+            } catch (NumberFormatException | ArithmeticException e) {
+                return -1;
+            }
+        }
+        try {
+            long time = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return Math.max(0, time - now);
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+}
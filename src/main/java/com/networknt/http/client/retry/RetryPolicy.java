@@ -0,0 +1,83 @@
+package com.networknt.http.client.retry;
+
+import java.util.Set;
+
+/**
+ * A policy to decide how many times and how long apart a request is attempted by the HttpClientRequest.
+ * It is used by both the send and the sendAsync.
+ */
+public interface RetryPolicy {
+    /**
+     * The status codes that are retried by default. They are the cases where a short delayed retry is cheapest.
+     */
+    Set<Integer> DEFAULT_RETRYABLE_STATUS_CODES = Set.of(429, 502, 503, 504);
+
+    /**
+     * The longest Retry-After in milliseconds that is waited for when the request has no timeout.
+     */
+    long MAX_RETRY_AFTER = 60000;
+
+    /**
+     * @return the max number of attempts including the first one.
+     */
+    int getMaxAttempts();
+
+    /**
+     * Get the delay before the next attempt after the given attempt is failed.
+     *
+     * @param attempt       the failed attempt starting from 1
+     * @param previousDelay the delay before the failed attempt or 0 for the first attempt
+     * @return the delay in milliseconds
+     */
+    long getDelay(int attempt, long previousDelay);
+
+    /**
+     * The timeout of each attempt. If it is greater than 0, the request timeout in the client.yml becomes the
+     * overall timeout of all the attempts and the delays in between.
+     *
+     * @return the attempt timeout in milliseconds or 0 to use the request timeout for each attempt.
+     */
+    long getAttemptTimeout();
+
+    /**
+     * @param statusCode the response status code
+     * @return true if the response should be discarded and the request retried.
+     */
+    default boolean isRetryableStatus(int statusCode) {
+        return DEFAULT_RETRYABLE_STATUS_CODES.contains(statusCode);
+    }
+
+    /**
+     * Get the delay before the next attempt when the retried response has a Retry-After header.
+     *
+     * @param attempt    the failed attempt starting from 1
+     * @param retryAfter the delay from the Retry-After header in milliseconds
+     * @return the delay in milliseconds or -1 to give up and return the response to the caller.
+     */
+    default long getRetryAfterDelay(int attempt, long retryAfter) {
+        return retryAfter;
+    }
+
+    /**
+     * @param policy the RetryPolicy to keep the attempt timeout from
+     * @return a RetryPolicy that only allows one attempt
+     */
+    static RetryPolicy noRetry(RetryPolicy policy) {
+        return new RetryPolicy() {
+            @Override
+            public int getMaxAttempts() {
+                return 1;
+            }
+
+            @Override
+            public long getDelay(int attempt, long previousDelay) {
+                return 0;
+            }
+
+            @Override
+            public long getAttemptTimeout() {
+                return policy.getAttemptTimeout();
+            }
+        };
+    }
+}
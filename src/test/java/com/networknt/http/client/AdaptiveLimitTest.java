@@ -0,0 +1,106 @@
+package com.networknt.http.client;
+
+import com.networknt.http.client.resilience.Bulkhead;
+import com.networknt.http.client.resilience.Bulkheads;
+import com.networknt.http.client.resilience.GradientLimit;
+import com.networknt.http.client.retry.BackoffRetryPolicy;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simulate a downstream service whose latency degrades with the concurrency beyond a knee, and drive it with
+ * more callers than it can serve. The adaptive limit should settle near the knee instead of the caller count.
+ */
+public class AdaptiveLimitTest {
+    static final Logger logger = LoggerFactory.getLogger(AdaptiveLimitTest.class);
+    private static final int KNEE = 5;
+    private static final int CALLERS = 30;
+    private static final long BASE_LATENCY = 50;
+
+    private static HttpServer server;
+    private static final AtomicInteger concurrency = new AtomicInteger();
+
+    @BeforeAll
+    public static void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        // the latency is flat up to the knee and grows with the square of the overload beyond it.
+        server.createContext("/work", exchange -> {
+            int current = concurrency.incrementAndGet();
+            try {
+                double overload = Math.max(1.0, (double) current / KNEE);
+                Thread.sleep((long) (BASE_LATENCY * overload * overload));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                concurrency.decrementAndGet();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testGradientConvergesNearKnee() throws Exception {
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        httpClientRequest.setRetryPolicy(BackoffRetryPolicy.fixed(1, 0));
+        Bulkheads bulkheads = new Bulkheads(2, CALLERS, 0, null, limit -> new GradientLimit(limit, 1, 200, 1.5, 0.2));
+        httpClientRequest.setBulkheads(bulkheads);
+        String url = "http://localhost:" + server.getAddress().getPort() + "/work";
+        Bulkhead bulkhead = bulkheads.get("localhost:" + server.getAddress().getPort());
+
+        long end = System.currentTimeMillis() + 4000;
+        AtomicLong completed = new AtomicLong();
+        ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+        for (int i = 0; i < CALLERS; i++) {
+            callers.execute(() -> {
+                while (System.currentTimeMillis() < end) {
+                    try {
+                        HttpRequest.Builder builder = httpClientRequest.initBuilder(url, HttpMethod.GET);
+                        httpClientRequest.send(builder, HttpResponse.BodyHandlers.discarding());
+                        completed.incrementAndGet();
+                    } catch (Exception e) {
+                        logger.error("Exception:", e);
+                        return;
+                    }
+                }
+            });
+        }
+        // sample the limit after the warm-up.
+        Thread.sleep(2000);
+        List<Integer> limits = new ArrayList<>();
+        while (System.currentTimeMillis() < end) {
+            limits.add(bulkhead.getLimit());
+            Thread.sleep(50);
+        }
+        callers.shutdown();
+        Assertions.assertTrue(callers.awaitTermination(10, TimeUnit.SECONDS));
+        double average = limits.stream().mapToInt(Integer::intValue).average().orElse(0);
+        logger.info("completed = {} average limit = {} limits = {}", completed.get(), average, limits);
+        // the limit neither stays at the initial limit nor grows to the number of callers.
+        Assertions.assertTrue(average >= KNEE * 0.5 && average <= KNEE * 2.5, "average limit " + average);
+        Assertions.assertEquals(0L, bulkhead.getRejectedCount());
+    }
+}
@@ -0,0 +1,58 @@
+package com.networknt.http.client;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.ServerSocket;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class AsyncRetryTest {
+
+    @Test
+    public void testFailingRequestsDoNotParkThreads() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        // nothing is listening on the port, so every attempt fails with a connection refused. With only four
+        // executor threads, a retry that sleeps between the attempts would take minutes to finish all requests.
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        httpClientRequest.setExecutorService(executorService);
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        int baseline = threadMXBean.getThreadCount();
+        threadMXBean.resetPeakThreadCount();
+
+        int requests = 2000;
+        List<CompletableFuture<? extends HttpResponse<?>>> futures = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            HttpRequest.Builder builder = httpClientRequest.initBuilder("http://localhost:" + port + "/v1/pets/" + i, HttpMethod.GET);
+            futures.add(httpClientRequest.sendAsync(builder, HttpResponse.BodyHandlers.ofString()));
+        }
+        int failed = 0;
+        try {
+            for (CompletableFuture<? extends HttpResponse<?>> future : futures) {
+                try {
+                    future.get(60, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    failed++;
+                }
+            }
+        } finally {
+            executorService.shutdown();
+        }
+        Assertions.assertEquals(requests, failed);
+        int peak = threadMXBean.getPeakThreadCount();
+        Assertions.assertTrue(peak - baseline < 50, "peak threads " + peak + " baseline " + baseline);
+    }
+}
@@ -0,0 +1,173 @@
+package com.networknt.http.client;
+
+import com.networknt.http.client.retry.BackoffRetryPolicy;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BinaryBodyPublishersTest {
+    private static HttpServer server;
+    private static final AtomicInteger hits = new AtomicInteger();
+
+    @BeforeAll
+    public static void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        // echo the body with the content length of the request.
+        server.createContext("/echo", exchange -> {
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            String length = exchange.getRequestHeaders().getFirst("Content-Length");
+            exchange.getResponseHeaders().add("X-Request-Length", String.valueOf(length));
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        // always unavailable, so the request is retried until the max attempts.
+        server.createContext("/unavailable", exchange -> {
+            hits.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            byte[] body = "unavailable".getBytes();
+            exchange.sendResponseHeaders(503, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.stop(0);
+    }
+
+    static byte[] bytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    static byte[] toBytes(List<ByteBuffer> buffers) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (ByteBuffer buffer : buffers) {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            out.write(bytes, 0, bytes.length);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testDirectByteBuffer() {
+        byte[] bytes = bytes(10000);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length + 100);
+        buffer.put(new byte[100]).put(bytes).flip().position(100);
+        HttpRequest.BodyPublisher publisher = BinaryBodyPublishers.of(buffer);
+        Assertions.assertEquals(bytes.length, publisher.contentLength());
+        Assertions.assertArrayEquals(bytes, toBytes(JsonBodyPublishersTest.collect(publisher)));
+        // the buffer is not consumed, so the body can be sent again.
+        Assertions.assertArrayEquals(bytes, toBytes(JsonBodyPublishersTest.collect(publisher)));
+        Assertions.assertEquals(100, buffer.position());
+    }
+
+    @Test
+    public void testMappedFile() throws Exception {
+        byte[] bytes = bytes(20000);
+        Path file = Files.createTempFile("body", ".bin");
+        try {
+            Files.write(file, bytes);
+            HttpRequest.BodyPublisher publisher = BinaryBodyPublishers.ofMappedFile(file, 4096);
+            Assertions.assertEquals(bytes.length, publisher.contentLength());
+            List<ByteBuffer> buffers = JsonBodyPublishersTest.collect(publisher);
+            Assertions.assertEquals(5, buffers.size());
+            Assertions.assertTrue(buffers.get(0).isDirect());
+            Assertions.assertArrayEquals(bytes, toBytes(buffers));
+            Assertions.assertArrayEquals(bytes, toBytes(JsonBodyPublishersTest.collect(publisher)));
+
+            Files.write(file, new byte[0]);
+            Assertions.assertThrows(Exception.class, () -> JsonBodyPublishersTest.collect(publisher));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        Assertions.assertThrows(UncheckedIOException.class, () -> BinaryBodyPublishers.of(file));
+    }
+
+    @Test
+    public void testPost() throws Exception {
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        String url = "http://localhost:" + server.getAddress().getPort() + "/echo";
+        byte[] bytes = bytes(3 * BinaryBodyPublishers.DEFAULT_REGION_SIZE / 2);
+        Path file = Files.createTempFile("body", ".bin");
+        try {
+            Files.write(file, bytes);
+            HttpRequest.Builder builder = httpClientRequest.initBuilder(url, HttpMethod.POST, Optional.of(file));
+            HttpResponse<byte[]> response = (HttpResponse<byte[]>) httpClientRequest.sendAsync(builder, HttpResponse.BodyHandlers.ofByteArray()).get(10, TimeUnit.SECONDS);
+            Assertions.assertArrayEquals(bytes, response.body());
+            Assertions.assertEquals(String.valueOf(bytes.length), response.headers().firstValue("X-Request-Length").orElse(null));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        byte[] small = bytes(1000);
+        HttpRequest.Builder builder = httpClientRequest.initBuilder(url, HttpMethod.PUT, Optional.of(small));
+        HttpResponse<byte[]> response = (HttpResponse<byte[]>) httpClientRequest.send(builder, HttpResponse.BodyHandlers.ofByteArray());
+        Assertions.assertArrayEquals(small, response.body());
+        Assertions.assertEquals("1000", response.headers().firstValue("X-Request-Length").orElse(null));
+
+        builder = httpClientRequest.initBuilder(url, HttpMethod.POST, Optional.of(ByteBuffer.wrap(small)));
+        response = (HttpResponse<byte[]>) httpClientRequest.send(builder, HttpResponse.BodyHandlers.ofByteArray());
+        Assertions.assertArrayEquals(small, response.body());
+        Assertions.assertEquals("1000", response.headers().firstValue("X-Request-Length").orElse(null));
+
+        builder = httpClientRequest.initBuilder(url, HttpMethod.POST, Optional.of(new ByteArrayInputStream(small)));
+        response = (HttpResponse<byte[]>) httpClientRequest.send(builder, HttpResponse.BodyHandlers.ofByteArray());
+        Assertions.assertArrayEquals(small, response.body());
+        // the length of a stream is unknown, so the body is chunked.
+        Assertions.assertEquals("null", response.headers().firstValue("X-Request-Length").orElse(null));
+    }
+
+    @Test
+    public void testStreamIsNotRetried() throws Exception {
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        httpClientRequest.setRetryPolicy(BackoffRetryPolicy.fixed(3, 0));
+        String url = "http://localhost:" + server.getAddress().getPort() + "/unavailable";
+        byte[] small = bytes(1000);
+        hits.set(0);
+        HttpRequest.Builder builder = httpClientRequest.initBuilder(url, HttpMethod.PUT, Optional.of(small));
+        Assertions.assertEquals(503, httpClientRequest.send(builder, HttpResponse.BodyHandlers.ofString()).statusCode());
+        Assertions.assertEquals(3, hits.get());
+
+        // the stream has been read by the first attempt, so the PUT is sent once.
+        hits.set(0);
+        builder = httpClientRequest.initBuilder(url, HttpMethod.PUT, Optional.of(new ByteArrayInputStream(small)));
+        Assertions.assertEquals(503, httpClientRequest.send(builder, HttpResponse.BodyHandlers.ofString()).statusCode());
+        Assertions.assertEquals(1, hits.get());
+        hits.set(0);
+        builder = httpClientRequest.initBuilder(url, HttpMethod.PUT, Optional.of(new ByteArrayInputStream(small)));
+        Assertions.assertEquals(503, httpClientRequest.sendAsync(builder, HttpResponse.BodyHandlers.ofString())
+                .get(10, TimeUnit.SECONDS).statusCode());
+        Assertions.assertEquals(1, hits.get());
+
+        // a second subscription fails instead of sending the rest of the stream.
+        HttpRequest.BodyPublisher publisher = BinaryBodyPublishers.of(new ByteArrayInputStream(small));
+        Assertions.assertArrayEquals(small, toBytes(JsonBodyPublishersTest.collect(publisher)));
+        CompletionException e = Assertions.assertThrows(CompletionException.class,
+                () -> JsonBodyPublishersTest.collect(publisher));
+        Assertions.assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+}
@@ -0,0 +1,45 @@
+package com.networknt.http.client;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+public class BoundedExecutorTest {
+
+    @Test
+    public void testSaturationMetrics() throws Exception {
+        BoundedExecutor executor = new BoundedExecutor(1, 2, 2, 1000);
+        CountDownLatch latch = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(2);
+        try {
+            for (int i = 0; i < 4; i++) {
+                executor.execute(() -> {
+                    started.countDown();
+                    try {
+                        latch.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            started.await();
+            Assertions.assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> { }));
+            Assertions.assertEquals(2, executor.getActiveCount());
+            Assertions.assertEquals(2, executor.getQueueDepth());
+            Assertions.assertEquals(1L, executor.getRejectedCount());
+            Assertions.assertEquals(1L, executor.getMetrics().get("rejectedCount"));
+        } finally {
+            latch.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testExecutionModeOf() {
+        Assertions.assertEquals(ExecutionMode.DEFAULT, ExecutionMode.of(null));
+        Assertions.assertEquals(ExecutionMode.VIRTUAL, ExecutionMode.of("virtual"));
+        Assertions.assertEquals(ExecutionMode.BOUNDED, ExecutionMode.of(" Bounded "));
+    }
+}
@@ -0,0 +1,76 @@
+package com.networknt.http.client;
+
+import com.networknt.http.client.resilience.Bulkhead;
+import com.networknt.http.client.resilience.Bulkheads;
+import com.networknt.http.client.retry.BackoffRetryPolicy;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class BulkheadRequestTest {
+    private static HttpServer server;
+    private static final CountDownLatch blocked = new CountDownLatch(1);
+
+    @BeforeAll
+    public static void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/slow", exchange -> {
+            try {
+                blocked.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testFailFastWhenFull() throws Exception {
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        httpClientRequest.setRetryPolicy(BackoffRetryPolicy.fixed(3, 0));
+        Bulkheads bulkheads = new Bulkheads(2, 1, 0, null);
+        httpClientRequest.setBulkheads(bulkheads);
+        String url = "http://localhost:" + server.getAddress().getPort() + "/slow";
+        List<CompletableFuture<? extends HttpResponse<?>>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            HttpRequest.Builder builder = httpClientRequest.initBuilder(url, HttpMethod.GET);
+            futures.add(httpClientRequest.sendAsync(builder, HttpResponse.BodyHandlers.discarding()));
+        }
+        Bulkhead bulkhead = bulkheads.get("localhost:" + server.getAddress().getPort());
+        Assertions.assertEquals(2, bulkhead.getInFlight());
+        Assertions.assertEquals(1, bulkhead.getQueued());
+        // the fourth request is rejected without waiting and is not retried.
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class, () -> futures.get(3).get(1, TimeUnit.SECONDS));
+        Assertions.assertTrue(e.getCause() instanceof ClientStatusException);
+        Assertions.assertEquals(HttpClientRequest.BULKHEAD_FULL, ((ClientStatusException) e.getCause()).getStatus().getCode());
+        Assertions.assertEquals(1L, bulkhead.getRejectedCount());
+
+        blocked.countDown();
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals(200, futures.get(i).get(10, TimeUnit.SECONDS).statusCode());
+        }
+        Assertions.assertEquals(0, bulkhead.getInFlight());
+        Assertions.assertEquals(0, bulkhead.getQueued());
+    }
+}
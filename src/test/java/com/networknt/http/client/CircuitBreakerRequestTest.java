@@ -0,0 +1,67 @@
+package com.networknt.http.client;
+
+import com.networknt.http.client.resilience.CircuitBreaker;
+import com.networknt.http.client.resilience.CircuitBreakers;
+import com.networknt.http.client.retry.BackoffRetryPolicy;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CircuitBreakerRequestTest {
+    private static HttpServer server;
+    private static final AtomicInteger hits = new AtomicInteger();
+
+    @BeforeAll
+    public static void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/down", exchange -> {
+            hits.incrementAndGet();
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testShortCircuit() throws Exception {
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        httpClientRequest.setRetryPolicy(BackoffRetryPolicy.fixed(3, 0));
+        CircuitBreakers circuitBreakers = new CircuitBreakers(10, 4, 50, 0, 0, 60000, 1);
+        httpClientRequest.setCircuitBreakers(circuitBreakers);
+        String url = "http://localhost:" + server.getAddress().getPort() + "/down";
+
+        // the first call gets the 503 after three attempts.
+        HttpResponse<?> response = httpClientRequest.send(httpClientRequest.initBuilder(url, HttpMethod.GET), HttpResponse.BodyHandlers.discarding());
+        Assertions.assertEquals(503, response.statusCode());
+        Assertions.assertEquals(3, hits.get());
+
+        // the breaker opens during the retries of the second call.
+        ClientStatusException e = Assertions.assertThrows(ClientStatusException.class,
+                () -> httpClientRequest.send(httpClientRequest.initBuilder(url, HttpMethod.GET), HttpResponse.BodyHandlers.discarding()));
+        Assertions.assertEquals(HttpClientRequest.CIRCUIT_BREAKER_OPEN, e.getStatus().getCode());
+        Assertions.assertEquals(4, hits.get());
+        CircuitBreaker breaker = circuitBreakers.get("localhost:" + server.getAddress().getPort());
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        // the open breaker short-circuits the async calls without reaching the server.
+        HttpRequest.Builder builder = httpClientRequest.initBuilder(url, HttpMethod.GET);
+        ExecutionException ee = Assertions.assertThrows(ExecutionException.class,
+                () -> httpClientRequest.sendAsync(builder, HttpResponse.BodyHandlers.discarding()).get(1, TimeUnit.SECONDS));
+        Assertions.assertTrue(ee.getCause() instanceof ClientStatusException);
+        Assertions.assertEquals(4, hits.get());
+    }
+}
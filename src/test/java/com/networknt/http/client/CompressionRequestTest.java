@@ -0,0 +1,137 @@
+package com.networknt.http.client;
+
+import com.networknt.http.client.compression.CompressionPolicy;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class CompressionRequestTest {
+    private static HttpServer server;
+    private static final String TEXT = "[" + "{\"id\":1,\"name\":\"item\"},".repeat(5000) + "{}]";
+
+    @BeforeAll
+    public static void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        // gzip the body if the client accepts it and echo the Accept-Encoding.
+        server.createContext("/list", exchange -> {
+            String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            byte[] body = TEXT.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("X-Accept-Encoding", String.valueOf(accept));
+            if (accept != null && accept.contains("gzip")) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                try (OutputStream gzip = new GZIPOutputStream(out)) {
+                    gzip.write(body);
+                }
+                body = out.toByteArray();
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        // gunzip the request body and echo it with the Content-Encoding of the request.
+        server.createContext("/echo", exchange -> {
+            String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            byte[] body = "gzip".equals(encoding) ? new GZIPInputStream(exchange.getRequestBody()).readAllBytes()
+                    : exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().add("X-Content-Encoding", String.valueOf(encoding));
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testDecompression() throws Exception {
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        httpClientRequest.setCompressionPolicy(new CompressionPolicy(true, null));
+        String url = "http://localhost:" + server.getAddress().getPort() + "/list";
+
+        HttpRequest.Builder builder = httpClientRequest.initBuilder(url, HttpMethod.GET);
+        HttpResponse<String> response = (HttpResponse<String>) httpClientRequest.send(builder, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(TEXT, response.body());
+        Assertions.assertEquals("gzip, deflate", response.headers().firstValue("X-Accept-Encoding").orElse(null));
+        Assertions.assertTrue(response.headers().firstValue("Content-Encoding").isEmpty());
+        Assertions.assertTrue(response.headers().firstValue("Content-Length").isEmpty());
+
+        response = (HttpResponse<String>) httpClientRequest.sendAsync(builder, HttpResponse.BodyHandlers.ofString()).get(10, TimeUnit.SECONDS);
+        Assertions.assertEquals(TEXT, response.body());
+        Assertions.assertTrue(response.headers().firstValue("Content-Encoding").isEmpty());
+
+        // the caller's own Accept-Encoding is sent and the body is not decoded.
+        builder = httpClientRequest.initBuilder(url, HttpMethod.GET).setHeader("Accept-Encoding", "gzip");
+        HttpResponse<byte[]> raw = (HttpResponse<byte[]>) httpClientRequest.send(builder, HttpResponse.BodyHandlers.ofByteArray());
+        Assertions.assertEquals("gzip", raw.headers().firstValue("Content-Encoding").orElse(null));
+        Assertions.assertTrue(raw.body().length < TEXT.length() / 10);
+    }
+
+    @Test
+    public void testHostToggle() throws Exception {
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        String host = "localhost:" + server.getAddress().getPort();
+        httpClientRequest.setCompressionPolicy(new CompressionPolicy(true, Map.of(host, false)));
+        HttpRequest.Builder builder = httpClientRequest.initBuilder("http://" + host + "/list", HttpMethod.GET);
+        HttpResponse<String> response = (HttpResponse<String>) httpClientRequest.send(builder, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(TEXT, response.body());
+        Assertions.assertEquals("null", response.headers().firstValue("X-Accept-Encoding").orElse(null));
+
+        httpClientRequest.setCompressionPolicy(new CompressionPolicy(false, Map.of(host, true)));
+        response = (HttpResponse<String>) httpClientRequest.send(builder, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(TEXT, response.body());
+        Assertions.assertEquals("gzip, deflate", response.headers().firstValue("X-Accept-Encoding").orElse(null));
+    }
+
+    @Test
+    public void testRequestCompression() throws Exception {
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        String host = "localhost:" + server.getAddress().getPort();
+        httpClientRequest.setCompressionPolicy(new CompressionPolicy(false, null, 1024, List.of(host)));
+        String url = "http://" + host + "/echo";
+
+        HttpRequest.Builder builder = httpClientRequest.initBuilder(url, HttpMethod.POST, Optional.of(TEXT));
+        HttpResponse<String> response = (HttpResponse<String>) httpClientRequest.send(builder, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(TEXT, response.body());
+        Assertions.assertEquals("gzip", response.headers().firstValue("X-Content-Encoding").orElse(null));
+
+        // a streamed JSON array has an unknown length and is compressed.
+        List<Map<String, Object>> items = JsonBodyPublishersTest.items(2000);
+        builder = httpClientRequest.initBuilder(url, HttpMethod.PUT, Optional.of(items));
+        response = (HttpResponse<String>) httpClientRequest.sendAsync(builder, HttpResponse.BodyHandlers.ofString()).get(10, TimeUnit.SECONDS);
+        Assertions.assertEquals(JsonMapper.toJson(items), response.body());
+        Assertions.assertEquals("gzip", response.headers().firstValue("X-Content-Encoding").orElse(null));
+
+        // a body below the threshold is sent as it is.
+        builder = httpClientRequest.initBuilder(url, HttpMethod.POST, Optional.of("small"));
+        response = (HttpResponse<String>) httpClientRequest.send(builder, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals("small", response.body());
+        Assertions.assertEquals("null", response.headers().firstValue("X-Content-Encoding").orElse(null));
+
+        // a host that is not in the allowlist gets the body as it is.
+        httpClientRequest.setCompressionPolicy(new CompressionPolicy(false, null, 1024, List.of("other:8443")));
+        builder = httpClientRequest.initBuilder(url, HttpMethod.POST, Optional.of(TEXT));
+        response = (HttpResponse<String>) httpClientRequest.send(builder, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(TEXT, response.body());
+        Assertions.assertEquals("null", response.headers().firstValue("X-Content-Encoding").orElse(null));
+    }
+}
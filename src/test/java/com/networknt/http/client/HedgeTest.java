@@ -0,0 +1,107 @@
+package com.networknt.http.client;
+
+import com.networknt.http.client.resilience.Bulkheads;
+import com.networknt.http.client.resilience.HedgePolicy;
+import com.networknt.http.client.retry.BackoffRetryPolicy;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HedgeTest {
+    private static HttpServer server;
+    private static ExecutorService serverExecutor;
+    private static final AtomicInteger hits = new AtomicInteger();
+
+    @BeforeAll
+    public static void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        // the first request is stuck in the tail, the hedged one is answered right away.
+        server.createContext("/pets", exchange -> {
+            int hit = hits.incrementAndGet();
+            if (hit == 1) {
+                try {
+                    Thread.sleep(3000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            byte[] body = ("hit " + hit).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        // every request is slow.
+        server.createContext("/tail", exchange -> {
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "tail".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.stop(0);
+        serverExecutor.shutdown();
+    }
+
+    @Test
+    public void testHedgeWinsOverSlowRequest() throws Exception {
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        httpClientRequest.setRetryPolicy(BackoffRetryPolicy.fixed(1, 0));
+        HedgePolicy hedgePolicy = new HedgePolicy(50, 0, 100, 1);
+        httpClientRequest.setHedgePolicy(hedgePolicy);
+        httpClientRequest.setSharding(2, HttpClientShards.Strategy.LEAST_IN_FLIGHT);
+        String url = "http://localhost:" + server.getAddress().getPort() + "/pets";
+        HttpRequest.Builder builder = httpClientRequest.initBuilder(url, HttpMethod.GET);
+        long start = System.currentTimeMillis();
+        HttpResponse<?> response = httpClientRequest.sendAsync(builder, HttpResponse.BodyHandlers.ofString()).get(10, TimeUnit.SECONDS);
+        long elapsed = System.currentTimeMillis() - start;
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals("hit 2", response.body());
+        Assertions.assertTrue(elapsed < 2000, "elapsed " + elapsed);
+        Assertions.assertEquals(1L, hedgePolicy.getHedgeCount());
+        // the hedge is sent on the idle shard and both shards are released.
+        for (Map<String, Object> stats : httpClientRequest.getHttpClientShards(builder.build().uri(), true).getStats()) {
+            Assertions.assertEquals(1L, stats.get("requestCount"));
+            Assertions.assertEquals(0, stats.get("inFlight"));
+        }
+    }
+
+    @Test
+    public void testNoHedgeWithoutBulkheadPermit() throws Exception {
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        httpClientRequest.setRetryPolicy(BackoffRetryPolicy.fixed(1, 0));
+        HedgePolicy hedgePolicy = new HedgePolicy(50, 0, 100, 1);
+        httpClientRequest.setHedgePolicy(hedgePolicy);
+        Bulkheads bulkheads = new Bulkheads(1, 10, 0, null);
+        httpClientRequest.setBulkheads(bulkheads);
+        String url = "http://localhost:" + server.getAddress().getPort() + "/tail";
+        HttpResponse<?> response = httpClientRequest.sendAsync(httpClientRequest.initBuilder(url, HttpMethod.GET),
+                HttpResponse.BodyHandlers.ofString()).get(10, TimeUnit.SECONDS);
+        Assertions.assertEquals(200, response.statusCode());
+        // the only permit is taken by the request, so the hedge is not sent instead of waiting for it.
+        Assertions.assertEquals(0L, hedgePolicy.getHedgeCount());
+        Assertions.assertEquals(0, bulkheads.get("localhost:" + server.getAddress().getPort()).getInFlight());
+    }
+}
@@ -0,0 +1,143 @@
+package com.networknt.http.client;
+
+import com.networknt.client.ClientConfig;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HttpClientRegistryTest {
+
+    @Test
+    public void testSameSettingsShareClient() {
+        HttpClientRequest request1 = new HttpClientRequest();
+        HttpClientRequest request2 = new HttpClientRequest();
+        HttpClient client1 = request1.getHttpClient(URI.create("http://localhost:7080/v1/pets"));
+        HttpClient client2 = request2.getHttpClient(URI.create("http://localhost:7081/v1/pets/1"));
+        Assertions.assertSame(client1, client2);
+    }
+
+    @Test
+    public void testDifferentSettingsUseDifferentClient() {
+        HttpClientRequest request1 = new HttpClientRequest();
+        HttpClientRequest request2 = new HttpClientRequest();
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            request2.setExecutorService(executorService);
+            HttpClient client1 = request1.getHttpClient(URI.create("http://localhost:7080/v1/pets"));
+            HttpClient client2 = request2.getHttpClient(URI.create("http://localhost:7080/v1/pets"));
+            Assertions.assertNotSame(client1, client2);
+            Assertions.assertSame(client2, request2.getHttpClient(URI.create("http://localhost:7080/v1/pets")));
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testLegacyBuildIsUsed() {
+        AtomicInteger builds = new AtomicInteger();
+        HttpClientRequest custom = new HttpClientRequest() {
+            @Override
+            protected HttpClient buildHttpClient(ClientConfig clientConfig, boolean isHttps) {
+                builds.incrementAndGet();
+                return HttpClient.newHttpClient();
+            }
+        };
+        URI uri = URI.create("http://localhost:7080/v1/pets");
+        HttpClient client = custom.getHttpClient(uri);
+        Assertions.assertEquals(1, builds.get());
+        Assertions.assertSame(client, custom.getHttpClient(uri));
+        // the client built by the subclass is not shared with the other classes.
+        Assertions.assertNotSame(client, new HttpClientRequest().getHttpClient(uri));
+    }
+
+    @Test
+    public void testShutdownExecutorIsEvicted() {
+        URI uri = URI.create("http://localhost:7080/v1/pets");
+        ExecutorService executor1 = Executors.newSingleThreadExecutor();
+        ExecutorService executor2 = Executors.newSingleThreadExecutor();
+        try {
+            HttpClientRequest request1 = new HttpClientRequest();
+            request1.setExecutorService(executor1);
+            HttpClientShards shards = request1.getHttpClientShards(uri, false);
+            executor1.shutdown();
+            // the next client added to the registry removes and closes the one of the dead executor.
+            HttpClientRequest request2 = new HttpClientRequest();
+            request2.setExecutorService(executor2);
+            request2.getHttpClientShards(uri, false);
+            Assertions.assertTrue(shards.isClosed());
+        } finally {
+            executor1.shutdown();
+            executor2.shutdown();
+        }
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        HttpClientRegistry.clear();
+        HttpClientRegistry.Key[] keys = new HttpClientRegistry.Key[3];
+        HttpClientShards[] shards = new HttpClientShards[3];
+        for (int i = 0; i < 3; i++) {
+            keys[i] = new HttpClientRegistry.Key(false, false, 1000 + i, null, 0, null, null, null);
+            shards[i] = HttpClientRegistry.getShards(keys[i], HttpClient::newHttpClient);
+        }
+        // the first key is used again, so the second one is the least recently used of them.
+        HttpClientRegistry.getShards(keys[0], HttpClient::newHttpClient);
+        HttpClientRegistry.evict(keys[2], 2, 256);
+        Assertions.assertEquals(2, HttpClientRegistry.size());
+        Assertions.assertTrue(shards[1].isClosed());
+        Assertions.assertFalse(shards[0].isClosed());
+        Assertions.assertFalse(shards[2].isClosed());
+        Assertions.assertNotSame(shards[1], HttpClientRegistry.getShards(keys[1], HttpClient::newHttpClient));
+    }
+
+    @Test
+    public void testDestinationsAreBoundedApart() {
+        HttpClientRegistry.clear();
+        HttpClientRegistry.Key settings = new HttpClientRegistry.Key(false, false, 2000, null, 0, null, null, null);
+        HttpClientShards shared = HttpClientRegistry.getShards(settings, HttpClient::newHttpClient);
+        HttpClientShards[] destinations = new HttpClientShards[3];
+        for (int i = 0; i < 3; i++) {
+            HttpClientRegistry.Key key = new HttpClientRegistry.Key(false, false, 2000, null, 0, null, null, null,
+                    "http://host" + i, 2, HttpClientShards.Strategy.LEAST_IN_FLIGHT);
+            destinations[i] = HttpClientRegistry.getShards(key, HttpClient::newHttpClient);
+            HttpClientRegistry.evict(key, 1, 2);
+        }
+        // the destinations evict each other, but not the client settings.
+        Assertions.assertFalse(shared.isClosed());
+        Assertions.assertTrue(destinations[0].isClosed());
+        Assertions.assertFalse(destinations[1].isClosed());
+        Assertions.assertFalse(destinations[2].isClosed());
+        Assertions.assertEquals(3, HttpClientRegistry.size());
+    }
+
+    @Test
+    public void testEvictedShardsFailOver() {
+        HttpClientRegistry.Key key = new HttpClientRegistry.Key(false, false, 3000, null, 0, null, null, null);
+        HttpClientShards shards = HttpClientRegistry.getShards(key, HttpClient::newHttpClient);
+        HttpClientShards.Shard old = shards.acquire();
+        old.release();
+        // another thread evicts the shards that this caller still holds.
+        HttpClientRegistry.clear();
+        Assertions.assertTrue(shards.isClosed());
+        Assertions.assertTrue(old.isClosed());
+        HttpClientShards.Shard shard = shards.acquire();
+        Assertions.assertNotSame(old, shard);
+        Assertions.assertFalse(shard.isRetired());
+        Assertions.assertFalse(shard.isClosed());
+        HttpClientShards replacement = HttpClientRegistry.getShards(key, HttpClient::newHttpClient);
+        Assertions.assertNotSame(shards, replacement);
+        Assertions.assertSame(replacement.getClient(), shard.getClient());
+        Assertions.assertSame(replacement.getClient(), shards.getClient());
+        shard.release();
+
+        // the shards built outside of the registry have no successor.
+        HttpClientShards standalone = new HttpClientShards(1, null, HttpClient::newHttpClient);
+        standalone.close();
+        Assertions.assertThrows(IllegalStateException.class, standalone::acquire);
+    }
+}
@@ -0,0 +1,319 @@
+package com.networknt.http.client;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+public class HttpClientShardsTest {
+    static final Logger logger = LoggerFactory.getLogger(HttpClientShardsTest.class);
+    private static final Set<Integer> ports = ConcurrentHashMap.newKeySet();
+    private static HttpServer server;
+    private static ExecutorService serverExecutor;
+    private static volatile CountDownLatch streamLatch;
+
+    @BeforeAll
+    public static void startServer() throws Exception {
+        serverExecutor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(serverExecutor);
+        // record the client port of each connection.
+        server.createContext("/", exchange -> {
+            ports.add(exchange.getRemoteAddress().getPort());
+            byte[] body = "ok".getBytes(StandardCharsets.US_ASCII);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        // send the first part of the body and the rest after the latch.
+        server.createContext("/stream", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            out.write("first".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            try {
+                streamLatch.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            out.write("last".getBytes(StandardCharsets.US_ASCII));
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.stop(0);
+        serverExecutor.shutdown();
+    }
+
+    private static URI uri(String path) {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + path);
+    }
+
+    @Test
+    public void testRoundRobin() {
+        HttpClientShards shards = new HttpClientShards(3, HttpClientShards.Strategy.ROUND_ROBIN, HttpClient::newHttpClient);
+        Assertions.assertEquals(3, shards.size());
+        Assertions.assertEquals(3, Set.copyOf(shards.getClients()).size());
+        for (int i = 0; i < 6; i++) {
+            // the held requests don't change the turn.
+            shards.acquire();
+        }
+        for (Map<String, Object> stats : shards.getStats()) {
+            Assertions.assertEquals(2L, stats.get("requestCount"));
+            Assertions.assertEquals(2, stats.get("inFlight"));
+        }
+    }
+
+    @Test
+    public void testLeastInFlight() {
+        HttpClientShards shards = new HttpClientShards(3, HttpClientShards.Strategy.LEAST_IN_FLIGHT, HttpClient::newHttpClient);
+        HttpClientShards.Shard a = shards.acquire();
+        HttpClientShards.Shard b = shards.acquire();
+        HttpClientShards.Shard c = shards.acquire();
+        Assertions.assertEquals(3, Set.of(a, b, c).size());
+        // b is the only shard without an in-flight request.
+        b.release();
+        Assertions.assertSame(b, shards.acquire());
+        // all the shards have one request, so the next one goes to any of them.
+        Assertions.assertEquals(2, shards.acquire().getInFlight());
+        Assertions.assertEquals(4, a.getInFlight() + b.getInFlight() + c.getInFlight());
+        // the idle shards take turns.
+        HttpClientShards idle = new HttpClientShards(3, HttpClientShards.Strategy.LEAST_IN_FLIGHT, HttpClient::newHttpClient);
+        Set<HttpClientShards.Shard> used = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < 3; i++) {
+            HttpClientShards.Shard shard = idle.acquire();
+            used.add(shard);
+            shard.release();
+        }
+        Assertions.assertEquals(3, used.size());
+    }
+
+    @Test
+    public void testShardsPerDestination() {
+        HttpClientRequest unsharded = new HttpClientRequest();
+        unsharded.setSharding(1, null);
+        HttpClientShards shared = unsharded.getHttpClientShards(URI.create("http://localhost:7080/v1/pets"), false);
+        Assertions.assertEquals(1, shared.size());
+        Assertions.assertSame(shared, unsharded.getHttpClientShards(URI.create("http://localhost:7081/v1/pets"), false));
+
+        HttpClientRequest sharded = new HttpClientRequest();
+        sharded.setSharding(3, HttpClientShards.Strategy.ROUND_ROBIN);
+        HttpClientShards shards = sharded.getHttpClientShards(URI.create("http://localhost:7080/v1/pets"), false);
+        Assertions.assertEquals(3, shards.size());
+        Assertions.assertEquals(HttpClientShards.Strategy.ROUND_ROBIN, shards.getStrategy());
+        Assertions.assertSame(shards, sharded.getHttpClientShards(URI.create("http://localhost:7080/v1/pets/1"), false));
+        Assertions.assertNotSame(shards, sharded.getHttpClientShards(URI.create("http://localhost:7081/v1/pets"), false));
+        Assertions.assertFalse(shards.getClients().contains(shared.getClient()));
+    }
+
+    @Test
+    public void testSendSpreadsRequests() throws Exception {
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        httpClientRequest.setSharding(3, HttpClientShards.Strategy.ROUND_ROBIN);
+        URI uri = uri("/sharded");
+        HttpClientShards shards = httpClientRequest.getHttpClientShards(uri, false);
+        ports.clear();
+        for (int i = 0; i < 6; i++) {
+            HttpResponse<?> response = httpClientRequest.send(httpClientRequest.initBuilder(uri, HttpMethod.GET),
+                    HttpResponse.BodyHandlers.ofString());
+            Assertions.assertEquals(200, response.statusCode());
+        }
+        // each shard opens its own connection and keeps it for its next requests.
+        Assertions.assertEquals(3, ports.size());
+        for (Map<String, Object> stats : shards.getStats()) {
+            Assertions.assertEquals(2L, stats.get("requestCount"));
+            Assertions.assertEquals(0, stats.get("inFlight"));
+        }
+
+        List<CompletableFuture<? extends HttpResponse<?>>> futures = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            futures.add(httpClientRequest.sendAsync(httpClientRequest.initBuilder(uri, HttpMethod.GET),
+                    HttpResponse.BodyHandlers.ofString()));
+        }
+        for (CompletableFuture<? extends HttpResponse<?>> future : futures) {
+            Assertions.assertEquals(200, future.get(10, TimeUnit.SECONDS).statusCode());
+        }
+        long total = 0;
+        for (Map<String, Object> stats : httpClientRequest.getHttpClientShards(uri, true).getStats()) {
+            Assertions.assertEquals(0, stats.get("inFlight"));
+            total += (Long) stats.get("requestCount");
+        }
+        Assertions.assertTrue(total >= 6);
+    }
+
+    @Test
+    public void testStreamingBodyHoldsShard() throws Exception {
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        httpClientRequest.setSharding(2, HttpClientShards.Strategy.LEAST_IN_FLIGHT);
+        URI uri = uri("/stream");
+        for (boolean async : new boolean[]{false, true}) {
+            streamLatch = new CountDownLatch(1);
+            HttpClientShards shards = httpClientRequest.getHttpClientShards(uri, async);
+            HttpRequest.Builder builder = httpClientRequest.initBuilder(uri, HttpMethod.GET);
+            HttpResponse<?> response = async
+                    ? httpClientRequest.sendAsync(builder, HttpResponse.BodyHandlers.ofInputStream()).get(10, TimeUnit.SECONDS)
+                    : httpClientRequest.send(builder, HttpResponse.BodyHandlers.ofInputStream());
+            // the send has returned, but the body is still being received on the shard.
+            Assertions.assertEquals(1, inFlight(shards));
+            streamLatch.countDown();
+            try (InputStream in = (InputStream) response.body()) {
+                Assertions.assertEquals("firstlast", new String(in.readAllBytes(), StandardCharsets.US_ASCII));
+            }
+            Assertions.assertEquals(0, inFlight(shards));
+        }
+    }
+
+    private static int inFlight(HttpClientShards shards) {
+        int inFlight = 0;
+        for (Map<String, Object> stats : shards.getStats()) {
+            inFlight += (Integer) stats.get("inFlight");
+        }
+        return inFlight;
+    }
+
+    @Test
+    public void testRotationDrainsOldClient() throws Exception {
+        HttpClientShards shards = new HttpClientShards(1, null, new HttpClientShards.Rotation(50, 0, 0),
+                HttpClient::newHttpClient);
+        HttpClientShards.Shard old = shards.acquire();
+        TimeUnit.MILLISECONDS.sleep(80);
+        HttpClientShards.Shard shard = shards.acquire();
+        Assertions.assertNotSame(old, shard);
+        Assertions.assertNotSame(old.getClient(), shards.getClient());
+        Assertions.assertEquals(1, shards.getRotationCount());
+        // the old client gets no new request, and it is closed after its last request.
+        Assertions.assertTrue(old.isRetired());
+        Assertions.assertFalse(old.isClosed());
+        Assertions.assertSame(shard, shards.acquire());
+        old.release();
+        Assertions.assertTrue(old.isClosed());
+        Assertions.assertFalse(shard.isRetired());
+
+        // a request that is never released doesn't keep the old client after the drain timeout.
+        HttpClientShards timed = new HttpClientShards(1, null, new HttpClientShards.Rotation(50, 0, 100),
+                HttpClient::newHttpClient);
+        HttpClientShards.Shard stuck = timed.acquire();
+        TimeUnit.MILLISECONDS.sleep(80);
+        timed.acquire().release();
+        Assertions.assertTrue(stuck.isRetired());
+        Assertions.assertFalse(stuck.isClosed());
+        TimeUnit.MILLISECONDS.sleep(300);
+        Assertions.assertTrue(stuck.isClosed());
+        shards.close();
+        timed.close();
+    }
+
+    @Test
+    public void testIdleShardRotates() throws Exception {
+        HttpClientShards shards = new HttpClientShards(1, null, new HttpClientShards.Rotation(100, 0, 0),
+                HttpClient::newHttpClient);
+        HttpClient old = shards.getClient();
+        // no request is sent, the periodic check rotates the expired shard.
+        TimeUnit.MILLISECONDS.sleep(HttpClientShards.MIN_CHECK_INTERVAL + 300);
+        Assertions.assertTrue(shards.getRotationCount() >= 1);
+        Assertions.assertNotSame(old, shards.getClient());
+        shards.close();
+        long rotations = shards.getRotationCount();
+        TimeUnit.MILLISECONDS.sleep(HttpClientShards.MIN_CHECK_INTERVAL + 300);
+        Assertions.assertEquals(rotations, shards.getRotationCount());
+    }
+
+    @Test
+    public void testRotationJitter() {
+        HttpClientShards.Rotation rotation = new HttpClientShards.Rotation(1000, 0.5, 0);
+        Set<Long> ages = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < 100; i++) {
+            long age = rotation.nextAge();
+            Assertions.assertTrue(age > 500 && age <= 1000, "age " + age);
+            ages.add(age);
+        }
+        Assertions.assertTrue(ages.size() > 1);
+        Assertions.assertEquals(Long.MAX_VALUE, HttpClientShards.Rotation.NONE.nextAge());
+        Assertions.assertFalse(HttpClientShards.Rotation.NONE.isEnabled());
+    }
+
+    @Test
+    public void testRotationOpensNewConnection() throws Exception {
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        httpClientRequest.setRotation(new HttpClientShards.Rotation(100, 0, 0));
+        URI uri = uri("/rotated");
+        ports.clear();
+        for (int i = 0; i < 2; i++) {
+            HttpResponse<?> response = httpClientRequest.send(httpClientRequest.initBuilder(uri, HttpMethod.GET),
+                    HttpResponse.BodyHandlers.ofString());
+            Assertions.assertEquals(200, response.statusCode());
+        }
+        Assertions.assertEquals(1, ports.size());
+        TimeUnit.MILLISECONDS.sleep(150);
+        // the expired client is replaced at the next request, which opens a new connection.
+        HttpResponse<?> response = httpClientRequest.send(httpClientRequest.initBuilder(uri, HttpMethod.GET),
+                HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals(2, ports.size());
+        Assertions.assertEquals(1, httpClientRequest.getHttpClientShards(uri, false).getRotationCount());
+    }
+
+    /**
+     * Compare the throughput of 1, 2, 4 and 8 HTTP/2 shards with 256 concurrent requests to one host. The JDK has
+     * no HTTP/2 server, so the local HttpServer answers with HTTP/1.1 and only the overhead of the shards is
+     * measured. Set -Dbenchmark.uri to a local HTTP/2 stub, for example h2o or nghttpd with a small static file,
+     * to measure the scaling. The project has no JMH dependency, so it is a manual benchmark with a warm-up.
+     * Remove the Disabled to run it.
+     */
+    @Test
+    @Disabled
+    public void benchmark() throws Exception {
+        URI uri = URI.create(System.getProperty("benchmark.uri", uri("/benchmark").toString()));
+        int concurrency = 256;
+        int requests = 50000;
+        for (int count : new int[]{1, 2, 4, 8}) {
+            HttpClientShards shards = new HttpClientShards(count, HttpClientShards.Strategy.LEAST_IN_FLIGHT,
+                    () -> HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build());
+            HttpRequest request = HttpRequest.newBuilder(uri).build();
+            for (int round = 0; round < 2; round++) {
+                Semaphore semaphore = new Semaphore(concurrency);
+                long start = System.nanoTime();
+                for (int i = 0; i < requests; i++) {
+                    semaphore.acquire();
+                    HttpClientShards.Shard shard = shards.acquire();
+                    shard.getClient().sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((r, t) -> {
+                        shard.release();
+                        semaphore.release();
+                    });
+                }
+                semaphore.acquire(concurrency);
+                long elapsed = System.nanoTime() - start;
+                if (round == 1) {
+                    logger.info("{} shards: {} requests/s", count, requests * 1_000_000_000L / elapsed);
+                }
+            }
+        }
+    }
+}
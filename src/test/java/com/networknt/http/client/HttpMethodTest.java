@@ -2,6 +2,9 @@ package com.networknt.http.client;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class HttpMethodTest {
@@ -11,4 +14,26 @@ public class HttpMethodTest {
         assertTrue(HttpMethod.GET.name().equals("GET"));
     }
 
+    @Test
+    public void testIdempotent() {
+        assertTrue(HttpMethod.GET.isIdempotent());
+        assertTrue(HttpMethod.PUT.isIdempotent());
+        assertTrue(HttpMethod.DELETE.isIdempotent());
+        assertFalse(HttpMethod.POST.isIdempotent());
+        assertFalse(HttpMethod.PATCH.isIdempotent());
+        assertTrue(HttpMethod.isIdempotent("head"));
+    }
+
+    @Test
+    public void testIdempotentInTurkishLocale() {
+        Locale locale = Locale.getDefault();
+        try {
+            // the lower case i is upper cased to a dotted I in the Turkish locale.
+            Locale.setDefault(new Locale("tr", "TR"));
+            assertTrue(HttpMethod.isIdempotent("options"));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
 }
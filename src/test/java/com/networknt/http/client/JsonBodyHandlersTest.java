@@ -0,0 +1,174 @@
+package com.networknt.http.client;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+public class JsonBodyHandlersTest {
+    static final Logger logger = LoggerFactory.getLogger(JsonBodyHandlersTest.class);
+    private static HttpServer server;
+
+    public static class Pet {
+        public long id;
+        public String name;
+        public List<String> tags;
+    }
+
+    @BeforeAll
+    public static void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/pets", exchange -> {
+            // chunked so that the body arrives in several buffers.
+            exchange.sendResponseHeaders(200, 0);
+            exchange.getResponseBody().write(pets(1000).getBytes(StandardCharsets.UTF_8));
+            exchange.close();
+        });
+        server.createContext("/empty", exchange -> {
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.stop(0);
+    }
+
+    static String pets(int count) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"id\":").append(i).append(",\"name\":\"pet \\u00e9").append(i)
+                    .append("\",\"tags\":[\"a\",\"b\"],\"unknown\":{\"x\":[1,2.5,true,null]}}");
+        }
+        return sb.append(']').toString();
+    }
+
+    @Test
+    public void testTypeReference() throws Exception {
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        HttpRequest.Builder builder = httpClientRequest.initBuilder("http://localhost:" + server.getAddress().getPort() + "/pets", HttpMethod.GET);
+        HttpResponse<List<Pet>> response = (HttpResponse<List<Pet>>) httpClientRequest.sendAsync(builder,
+                JsonBodyHandlers.of(new TypeReference<List<Pet>>() {})).get(10, TimeUnit.SECONDS);
+        List<Pet> pets = response.body();
+        Assertions.assertEquals(1000, pets.size());
+        Assertions.assertEquals(999L, pets.get(999).id);
+        Assertions.assertEquals("pet \u00e9999", pets.get(999).name);
+        Assertions.assertEquals(List.of("a", "b"), pets.get(0).tags);
+    }
+
+    @Test
+    public void testEmptyBody() throws Exception {
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        HttpRequest.Builder builder = httpClientRequest.initBuilder("http://localhost:" + server.getAddress().getPort() + "/empty", HttpMethod.GET);
+        HttpResponse<?> response = httpClientRequest.send(builder, JsonBodyHandlers.of(Pet.class));
+        Assertions.assertNull(response.body());
+    }
+
+    @Test
+    public void testSplitBuffers() {
+        // split in the middle of every token, including the multi-byte characters.
+        byte[] json = "{\"id\":12345,\"name\":\"caf\u00e9\",\"tags\":[\"x\"]}".getBytes(StandardCharsets.UTF_8);
+        List<ByteBuffer> chunks = new ArrayList<>();
+        for (byte b : json) {
+            chunks.add(ByteBuffer.wrap(new byte[]{b}));
+        }
+        Pet pet = feed(JsonBodyHandlers.of(Pet.class), chunks);
+        Assertions.assertEquals(12345L, pet.id);
+        Assertions.assertEquals("caf\u00e9", pet.name);
+    }
+
+    @Test
+    public void testInvalidJson() {
+        List<ByteBuffer> chunks = List.of(ByteBuffer.wrap("{\"id\":}".getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertThrows(CompletionException.class, () -> feed(JsonBodyHandlers.of(Pet.class), chunks));
+    }
+
+    /**
+     * Feed the chunks to the BodySubscriber of the handler as the HttpClient would.
+     */
+    static <T> T feed(HttpResponse.BodyHandler<T> handler, List<ByteBuffer> chunks) {
+        HttpResponse.BodySubscriber<T> subscriber = handler.apply(null);
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        for (ByteBuffer chunk : chunks) {
+            subscriber.onNext(List.of(chunk));
+        }
+        subscriber.onComplete();
+        return subscriber.getBody().toCompletableFuture().join();
+    }
+
+    /**
+     * Compare the time and the allocated bytes of the streaming handler with the String path for 10KB, 1MB and
+     * 50MB bodies. The project has no JMH dependency, so it is a manual benchmark with a warm-up. Remove the
+     * Disabled to run it.
+     */
+    @Test
+    @Disabled
+    public void benchmark() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        for (int count : new int[]{120, 12000, 600000}) {
+            byte[] json = pets(count).getBytes(StandardCharsets.UTF_8);
+            List<ByteBuffer> chunks = new ArrayList<>();
+            for (int i = 0; i < json.length; i += 16384) {
+                chunks.add(ByteBuffer.wrap(json, i, Math.min(16384, json.length - i)).slice());
+            }
+            int iterations = Math.max(3, 20000000 / json.length);
+            for (int round = 0; round < 2; round++) {
+                long allocated = threads.getThreadAllocatedBytes(thread);
+                long start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    chunks.forEach(ByteBuffer::rewind);
+                    feed(JsonBodyHandlers.of(new TypeReference<List<Map<String, Object>>>() {}), chunks);
+                }
+                long streamTime = (System.nanoTime() - start) / iterations;
+                long streamBytes = (threads.getThreadAllocatedBytes(thread) - allocated) / iterations;
+
+                allocated = threads.getThreadAllocatedBytes(thread);
+                start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    chunks.forEach(ByteBuffer::rewind);
+                    String body = feed(responseInfo -> HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8), chunks);
+                    JsonMapper.string2List(body);
+                }
+                long stringTime = (System.nanoTime() - start) / iterations;
+                long stringBytes = (threads.getThreadAllocatedBytes(thread) - allocated) / iterations;
+                if (round == 1) {
+                    logger.info("{} bytes: stream {} us {} bytes allocated, string {} us {} bytes allocated", json.length,
+                            TimeUnit.NANOSECONDS.toMicros(streamTime), streamBytes, TimeUnit.NANOSECONDS.toMicros(stringTime), stringBytes);
+                }
+            }
+        }
+    }
+}
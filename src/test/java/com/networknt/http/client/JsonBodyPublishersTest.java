@@ -0,0 +1,173 @@
+package com.networknt.http.client;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+public class JsonBodyPublishersTest {
+    private static HttpServer server;
+
+    public static class Item {
+        public int id;
+        public String name;
+    }
+
+    @BeforeAll
+    public static void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        // echo the body with the transfer encoding of the request.
+        server.createContext("/echo", exchange -> {
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            String length = exchange.getRequestHeaders().getFirst("Content-Length");
+            exchange.getResponseHeaders().add("X-Request-Length", String.valueOf(length));
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.stop(0);
+    }
+
+    /**
+     * Subscribe to the publisher and request one buffer at a time.
+     */
+    static List<ByteBuffer> collect(HttpRequest.BodyPublisher publisher) {
+        List<ByteBuffer> buffers = new ArrayList<>();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        publisher.subscribe(new Flow.Subscriber<ByteBuffer>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                buffers.add(item);
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                done.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(null);
+            }
+        });
+        done.join();
+        return buffers;
+    }
+
+    static String toString(List<ByteBuffer> buffers) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (ByteBuffer buffer : buffers) {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            out.write(bytes, 0, bytes.length);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    static List<Map<String, Object>> items(int count) {
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            items.add(Map.of("id", i, "name", "item \u00e9" + i));
+        }
+        return items;
+    }
+
+    @Test
+    public void testSingleObject() {
+        Map<String, Object> body = Map.of("id", 1, "name", "\u00e9t\u00e9");
+        HttpRequest.BodyPublisher publisher = JsonBodyPublishers.of(body);
+        String json = JsonMapper.toJson(body);
+        Assertions.assertEquals(json.getBytes(StandardCharsets.UTF_8).length, publisher.contentLength());
+        Assertions.assertEquals(json, toString(collect(publisher)));
+        // the body can be sent again for a retry.
+        Assertions.assertEquals(json, toString(collect(publisher)));
+    }
+
+    @Test
+    public void testCollectionIsStreamed() {
+        List<Map<String, Object>> body = items(5000);
+        HttpRequest.BodyPublisher publisher = JsonBodyPublishers.of(JsonMapper.objectMapper, body, 4096);
+        Assertions.assertEquals(-1L, publisher.contentLength());
+        List<ByteBuffer> buffers = collect(publisher);
+        Assertions.assertTrue(buffers.size() > 10);
+        for (ByteBuffer buffer : buffers) {
+            Assertions.assertTrue(buffer.remaining() <= 4096);
+        }
+        Assertions.assertEquals(JsonMapper.toJson(body), toString(buffers));
+    }
+
+    @Test
+    public void testSmallCollectionIsBuffered() {
+        List<Map<String, Object>> body = items(10);
+        HttpRequest.BodyPublisher publisher = JsonBodyPublishers.of(body);
+        String json = JsonMapper.toJson(body);
+        Assertions.assertEquals(json.getBytes(StandardCharsets.UTF_8).length, publisher.contentLength());
+        Assertions.assertEquals(json, toString(collect(publisher)));
+        // the body can be sent again for a retry.
+        Assertions.assertEquals(json, toString(collect(publisher)));
+        HttpRequest.BodyPublisher empty = JsonBodyPublishers.of(new ArrayList<>());
+        Assertions.assertEquals(2L, empty.contentLength());
+        Assertions.assertEquals("[]", toString(collect(empty)));
+        // the same array is streamed if it is over the buffer limit.
+        HttpRequest.BodyPublisher streamed = JsonBodyPublishers.of(JsonMapper.objectMapper, body, 512, 100);
+        Assertions.assertEquals(-1L, streamed.contentLength());
+        Assertions.assertEquals(json, toString(collect(streamed)));
+    }
+
+    @Test
+    public void testPost() throws Exception {
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        String url = "http://localhost:" + server.getAddress().getPort() + "/echo";
+        List<Map<String, Object>> items = items(5000);
+        HttpRequest.Builder builder = httpClientRequest.initBuilder(url, HttpMethod.POST, Optional.of(items));
+        HttpResponse<String> response = (HttpResponse<String>) httpClientRequest.sendAsync(builder, HttpResponse.BodyHandlers.ofString()).get(10, TimeUnit.SECONDS);
+        Assertions.assertEquals(JsonMapper.toJson(items), response.body());
+        Assertions.assertEquals("null", response.headers().firstValue("X-Request-Length").orElse(null));
+
+        // a small array is sent with the Content-Length.
+        List<Map<String, Object>> few = items(10);
+        builder = httpClientRequest.initBuilder(url, HttpMethod.POST, Optional.of(few));
+        response = (HttpResponse<String>) httpClientRequest.send(builder, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(JsonMapper.toJson(few), response.body());
+        Assertions.assertEquals(String.valueOf(response.body().getBytes(StandardCharsets.UTF_8).length),
+                response.headers().firstValue("X-Request-Length").orElse(null));
+
+        Item item = new Item();
+        item.id = 1;
+        item.name = "item";
+        builder = httpClientRequest.initBuilder(url, HttpMethod.POST, Optional.of(item));
+        response = (HttpResponse<String>) httpClientRequest.send(builder, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(JsonMapper.toJson(item), response.body());
+        Assertions.assertEquals(String.valueOf(response.body().getBytes(StandardCharsets.UTF_8).length),
+                response.headers().firstValue("X-Request-Length").orElse(null));
+    }
+}
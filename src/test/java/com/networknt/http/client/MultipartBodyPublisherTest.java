@@ -0,0 +1,175 @@
+package com.networknt.http.client;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+public class MultipartBodyPublisherTest {
+    private static HttpServer server;
+
+    @BeforeAll
+    public static void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        // echo the body with the headers of the request.
+        server.createContext("/echo", exchange -> {
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().add("X-Request-Length",
+                    String.valueOf(exchange.getRequestHeaders().getFirst("Content-Length")));
+            exchange.getResponseHeaders().add("X-Request-Type",
+                    String.valueOf(exchange.getRequestHeaders().getFirst("Content-Type")));
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        // count the bytes of a large body without keeping it.
+        server.createContext("/count", exchange -> {
+            long count = 0;
+            byte[] buffer = new byte[8192];
+            try (InputStream in = exchange.getRequestBody()) {
+                for (int n; (n = in.read(buffer)) > 0; ) {
+                    count += n;
+                }
+            }
+            byte[] body = String.valueOf(count).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.stop(0);
+    }
+
+    /**
+     * A stream of the given size that doesn't hold its content.
+     */
+    static InputStream generate(long size) {
+        return new InputStream() {
+            private long remaining = size;
+
+            @Override
+            public int read() {
+                return remaining-- > 0 ? 'x' : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int n = (int) Math.min(len, remaining);
+                Arrays.fill(b, off, off + n, (byte) 'x');
+                remaining -= n;
+                return n;
+            }
+        };
+    }
+
+    @Test
+    public void testEncoding() {
+        MultipartBodyPublisher publisher = MultipartBodyPublisher.builder()
+                .boundary("b0undary")
+                .field("title", "\u00e9t\u00e9")
+                .json("metadata", Map.of("id", 1))
+                .bytes("thumb", "a\"b.png", ContentType.IMAGE_PNG_VALUE.value(), new byte[] {1, 2, 3})
+                .build();
+        String expected = "--b0undary\r\n"
+                + "Content-Disposition: form-data; name=\"title\"\r\n\r\n"
+                + "\u00e9t\u00e9\r\n"
+                + "--b0undary\r\n"
+                + "Content-Disposition: form-data; name=\"metadata\"\r\n"
+                + "Content-Type: application/json\r\n\r\n"
+                + "{\"id\":1}\r\n"
+                + "--b0undary\r\n"
+                + "Content-Disposition: form-data; name=\"thumb\"; filename=\"a%22b.png\"\r\n"
+                + "Content-Type: image/png\r\n\r\n"
+                + "\u0001\u0002\u0003\r\n"
+                + "--b0undary--\r\n";
+        Assertions.assertEquals("multipart/form-data; boundary=b0undary", publisher.getContentType());
+        Assertions.assertEquals(expected.getBytes(StandardCharsets.UTF_8).length, publisher.contentLength());
+        Assertions.assertEquals(expected, JsonBodyPublishersTest.toString(JsonBodyPublishersTest.collect(publisher)));
+        // the parts are opened again, so the body can be sent again.
+        Assertions.assertEquals(expected, JsonBodyPublishersTest.toString(JsonBodyPublishersTest.collect(publisher)));
+
+        MultipartBodyPublisher empty = MultipartBodyPublisher.builder().boundary("b").build();
+        Assertions.assertEquals("--b--\r\n", JsonBodyPublishersTest.toString(JsonBodyPublishersTest.collect(empty)));
+    }
+
+    @Test
+    public void testStreamIsChunked() {
+        MultipartBodyPublisher publisher = MultipartBodyPublisher.builder()
+                .chunkSize(4096)
+                .stream("data", "data.bin", null, () -> generate(100000))
+                .build();
+        Assertions.assertEquals(-1L, publisher.contentLength());
+        List<ByteBuffer> buffers = JsonBodyPublishersTest.collect(publisher);
+        long size = 0;
+        for (ByteBuffer buffer : buffers) {
+            Assertions.assertTrue(buffer.remaining() <= 4096);
+            size += buffer.remaining();
+        }
+        Assertions.assertTrue(size > 100000);
+    }
+
+    @Test
+    public void testPost() throws Exception {
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        String url = "http://localhost:" + server.getAddress().getPort();
+        byte[] bytes = BinaryBodyPublishersTest.bytes(50000);
+        Path file = Files.createTempFile("document", ".bin");
+        try {
+            Files.write(file, bytes);
+            MultipartBodyPublisher publisher = MultipartBodyPublisher.builder()
+                    .json("metadata", Map.of("name", "document"))
+                    .file("document", file)
+                    .build();
+            HttpRequest.Builder builder = httpClientRequest.initBuilder(url + "/echo", HttpMethod.POST, Optional.of(publisher));
+            HttpResponse<byte[]> response = (HttpResponse<byte[]>) httpClientRequest.sendAsync(builder, HttpResponse.BodyHandlers.ofByteArray()).get(10, TimeUnit.SECONDS);
+            Assertions.assertEquals(String.valueOf(publisher.contentLength()), response.headers().firstValue("X-Request-Length").orElse(null));
+            Assertions.assertEquals(publisher.getContentType(), response.headers().firstValue("X-Request-Type").orElse(null));
+            String body = new String(response.body(), StandardCharsets.ISO_8859_1);
+            Assertions.assertTrue(body.contains("filename=\"" + file.getFileName() + "\"\r\nContent-Type: application/octet-stream\r\n\r\n"));
+            Assertions.assertTrue(body.contains(new String(bytes, StandardCharsets.ISO_8859_1)));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        // a large stream is sent with a bounded amount of memory.
+        long size = 64L * 1024 * 1024;
+        MultipartBodyPublisher publisher = MultipartBodyPublisher.builder()
+                .field("name", "large")
+                .stream("data", "large.bin", "application/octet-stream", () -> generate(size))
+                .build();
+        HttpRequest.Builder builder = httpClientRequest.initBuilder(url + "/count", HttpMethod.POST, Optional.of(publisher));
+        HttpResponse<String> response = (HttpResponse<String>) httpClientRequest.send(builder, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertTrue(Long.parseLong(response.body()) > size);
+
+        publisher = MultipartBodyPublisher.builder()
+                .stream("data", null, null, () -> new ByteArrayInputStream("abc".getBytes(StandardCharsets.UTF_8)))
+                .build();
+        builder = httpClientRequest.initBuilder(url + "/echo", HttpMethod.PUT, Optional.of(publisher));
+        HttpResponse<byte[]> echo = (HttpResponse<byte[]>) httpClientRequest.send(builder, HttpResponse.BodyHandlers.ofByteArray());
+        Assertions.assertEquals("null", echo.headers().firstValue("X-Request-Length").orElse(null));
+        Assertions.assertTrue(new String(echo.body(), StandardCharsets.UTF_8).contains("\r\n\r\nabc\r\n--"));
+    }
+}
@@ -0,0 +1,110 @@
+package com.networknt.http.client;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class PrewarmTest {
+    private static final List<HttpServer> servers = new ArrayList<>();
+    private static final List<Set<Integer>> ports = new ArrayList<>();
+    private static ExecutorService serverExecutor;
+
+    @BeforeAll
+    public static void startServers() throws Exception {
+        serverExecutor = Executors.newCachedThreadPool();
+        for (int i = 0; i < 2; i++) {
+            HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            Set<Integer> remotePorts = ConcurrentHashMap.newKeySet();
+            server.setExecutor(serverExecutor);
+            // record the client port of each connection, and hold the probes a little so that they overlap.
+            server.createContext("/", exchange -> {
+                remotePorts.add(exchange.getRemoteAddress().getPort());
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if ("HEAD".equals(exchange.getRequestMethod())) {
+                    exchange.sendResponseHeaders(405, -1);
+                } else {
+                    byte[] body = "ok".getBytes(StandardCharsets.US_ASCII);
+                    exchange.sendResponseHeaders(200, body.length);
+                    exchange.getResponseBody().write(body);
+                }
+                exchange.close();
+            });
+            server.start();
+            servers.add(server);
+            ports.add(remotePorts);
+        }
+    }
+
+    @AfterAll
+    public static void stopServers() {
+        servers.forEach(server -> server.stop(0));
+        serverExecutor.shutdown();
+    }
+
+    private static URI uri(int index, String path) {
+        return URI.create("http://localhost:" + servers.get(index).getAddress().getPort() + path);
+    }
+
+    @Test
+    public void testPrewarm() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        URI down = URI.create("http://localhost:" + port + "/health");
+        // the two URIs of the first server are warmed up once.
+        Map<String, WarmupResult> results = httpClientRequest.prewarm(
+                List.of(uri(0, "/health"), uri(0, "/v1/pets"), uri(1, "/"), down), 3).get(30, TimeUnit.SECONDS);
+        Assertions.assertEquals(3, results.size());
+
+        WarmupResult result = results.get("http://localhost:" + servers.get(0).getAddress().getPort());
+        Assertions.assertTrue(result.isWarm());
+        // a 405 response means that the host is reachable.
+        Assertions.assertEquals(0, result.getFailureCount());
+        Assertions.assertTrue(result.getColdMillis() >= 0);
+        Assertions.assertTrue(result.getWarmMillis() >= 0);
+        Assertions.assertEquals("HTTP_1_1", result.getVersion());
+        // a cold probe and three parallel ones for each of the sync and async clients, the same client by default.
+        // one of the parallel probes reuses the cold connection if the server keeps it open, which depends on the
+        // JDK version of the HttpServer, so each client opens three or four connections.
+        int clients = result.getSuccessCount() / 4;
+        Assertions.assertEquals(4 * clients, result.getSuccessCount());
+        for (Set<Integer> remotePorts : ports) {
+            Assertions.assertTrue(remotePorts.size() >= 3 * clients && remotePorts.size() <= 4 * clients,
+                    "connections " + remotePorts.size());
+        }
+
+        WarmupResult failed = results.get("http://localhost:" + port);
+        Assertions.assertFalse(failed.isWarm());
+        Assertions.assertNotNull(failed.getError());
+        // the first probe failed, so the others are not sent.
+        Assertions.assertTrue(failed.getFailureCount() <= clients);
+        Assertions.assertSame(failed, HttpClientRequest.getWarmupResults().get("http://localhost:" + port));
+
+        // the next request is sent on a prewarmed connection or a new one if the server closed them.
+        HttpResponse<?> response = httpClientRequest.send(httpClientRequest.initBuilder(uri(0, "/v1/pets").toString(), HttpMethod.GET),
+                HttpResponse.BodyHandlers.discarding());
+        Assertions.assertEquals(200, response.statusCode());
+    }
+}
@@ -0,0 +1,195 @@
+package com.networknt.http.client;
+
+import com.networknt.http.client.cache.ResponseCache;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ResponseCacheRequestTest {
+    private static HttpServer server;
+    private static final Map<String, AtomicInteger> counts = new ConcurrentHashMap<>();
+
+    @BeforeAll
+    public static void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/fresh", exchange -> respond(exchange, "max-age=60", "fresh"));
+        server.createContext("/etag", exchange -> respond(exchange, "no-cache", "etag"));
+        server.createContext("/swr", exchange -> respond(exchange, "max-age=0, stale-while-revalidate=60", "swr"));
+        server.createContext("/nostore", exchange -> respond(exchange, "no-store", "nostore"));
+        // the body is the token of the caller.
+        server.createContext("/me", exchange -> respond(exchange, "max-age=60",
+                exchange.getRequestHeaders().getFirst("Authorization")));
+        server.createContext("/shared", exchange -> respond(exchange, "public, max-age=60",
+                exchange.getRequestHeaders().getFirst("Authorization")));
+        server.createContext("/private", exchange -> respond(exchange, "private, max-age=60", "private"));
+        server.createContext("/vary", exchange -> {
+            exchange.getResponseHeaders().add("Vary", "Accept-Language");
+            respond(exchange, "max-age=60", exchange.getRequestHeaders().getFirst("Accept-Language"));
+        });
+        server.start();
+    }
+
+    /**
+     * Count the requests of the path and return 304 if the If-None-Match has the ETag of the body.
+     */
+    private static void respond(HttpExchange exchange, String cacheControl, String text) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        counts.computeIfAbsent(path + " " + exchange.getRequestMethod(), k -> new AtomicInteger()).incrementAndGet();
+        String etag = "\"" + text + "\"";
+        exchange.getResponseHeaders().add("Cache-Control", cacheControl);
+        exchange.getResponseHeaders().add("ETag", etag);
+        exchange.getRequestBody().readAllBytes();
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+        } else {
+            byte[] body = text.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        }
+        exchange.close();
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.stop(0);
+    }
+
+    private static int count(String path, String method) {
+        AtomicInteger count = counts.get(path + " " + method);
+        return count == null ? 0 : count.get();
+    }
+
+    private static String url(String path) {
+        return "http://localhost:" + server.getAddress().getPort() + path;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static HttpResponse<String> get(HttpClientRequest httpClientRequest, String path, boolean async) throws Exception {
+        HttpRequest.Builder builder = httpClientRequest.initBuilder(url(path), HttpMethod.GET);
+        return async ? (HttpResponse<String>) httpClientRequest.sendAsync(builder, HttpResponse.BodyHandlers.ofString()).get(10, TimeUnit.SECONDS)
+                : (HttpResponse<String>) httpClientRequest.send(builder, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    public void testFreshHit() throws Exception {
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        ResponseCache cache = new ResponseCache(1024 * 1024, 64 * 1024);
+        httpClientRequest.setResponseCache(cache);
+        Assertions.assertEquals("fresh", get(httpClientRequest, "/fresh", false).body());
+        HttpResponse<String> response = get(httpClientRequest, "/fresh", false);
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals("fresh", response.body());
+        Assertions.assertTrue(response.headers().firstValue("Age").isPresent());
+        Assertions.assertEquals("fresh", get(httpClientRequest, "/fresh", true).body());
+        Assertions.assertEquals(1, count("/fresh", "GET"));
+        Assertions.assertEquals(2, cache.getHitCount());
+        Assertions.assertEquals(1, cache.getMissCount());
+
+        // a successful POST invalidates the stored response.
+        HttpRequest.Builder builder = httpClientRequest.initBuilder(url("/fresh"), HttpMethod.POST, Optional.of("{}"));
+        Assertions.assertEquals(200, httpClientRequest.send(builder, HttpResponse.BodyHandlers.ofString()).statusCode());
+        Assertions.assertEquals(0, cache.getEntryCount());
+        Assertions.assertEquals("fresh", get(httpClientRequest, "/fresh", true).body());
+        Assertions.assertEquals(2, count("/fresh", "GET"));
+    }
+
+    @Test
+    public void testRevalidation() throws Exception {
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        ResponseCache cache = new ResponseCache(1024 * 1024, 64 * 1024);
+        httpClientRequest.setResponseCache(cache);
+        Assertions.assertEquals("etag", get(httpClientRequest, "/etag", false).body());
+        HttpResponse<String> response = get(httpClientRequest, "/etag", false);
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals("etag", response.body());
+        response = get(httpClientRequest, "/etag", true);
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals("etag", response.body());
+        Assertions.assertEquals(3, count("/etag", "GET"));
+        Assertions.assertEquals(2, cache.getRevalidationCount());
+        Assertions.assertEquals(2, cache.getNotModifiedCount());
+        Assertions.assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void testStaleWhileRevalidate() throws Exception {
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        ResponseCache cache = new ResponseCache(1024 * 1024, 64 * 1024);
+        httpClientRequest.setResponseCache(cache);
+        Assertions.assertEquals("swr", get(httpClientRequest, "/swr", true).body());
+        Assertions.assertEquals("swr", get(httpClientRequest, "/swr", false).body());
+        Assertions.assertEquals(1, cache.getStaleHitCount());
+        // the stale response is served at once and revalidated in the background.
+        long deadline = System.currentTimeMillis() + 10000;
+        while (cache.getNotModifiedCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(2, count("/swr", "GET"));
+        Assertions.assertEquals(1, cache.getNotModifiedCount());
+    }
+
+    @Test
+    public void testNoStoreAndVary() throws Exception {
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        ResponseCache cache = new ResponseCache(1024 * 1024, 64 * 1024);
+        httpClientRequest.setResponseCache(cache);
+        get(httpClientRequest, "/nostore", false);
+        get(httpClientRequest, "/nostore", true);
+        Assertions.assertEquals(2, count("/nostore", "GET"));
+        Assertions.assertEquals(0, cache.getEntryCount());
+
+        for (String language : new String[] {"en", "fr", "en", "fr"}) {
+            HttpRequest.Builder builder = httpClientRequest.initBuilder(url("/vary"), HttpMethod.GET);
+            builder.setHeader("Accept-Language", language);
+            HttpResponse<?> response = httpClientRequest.send(builder, HttpResponse.BodyHandlers.ofString());
+            Assertions.assertEquals(language, response.body());
+        }
+        Assertions.assertEquals(2, count("/vary", "GET"));
+        Assertions.assertEquals(2, cache.getEntryCount());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static HttpResponse<String> get(HttpClientRequest httpClientRequest, String path, String token) throws Exception {
+        HttpRequest.Builder builder = httpClientRequest.initBuilder(url(path), HttpMethod.GET);
+        builder.setHeader("Authorization", token);
+        return (HttpResponse<String>) httpClientRequest.send(builder, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    public void testAuthorization() throws Exception {
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        ResponseCache cache = new ResponseCache(1024 * 1024, 64 * 1024);
+        httpClientRequest.setResponseCache(cache);
+        // the response to a token is not served to the other token.
+        Assertions.assertEquals("Bearer a", get(httpClientRequest, "/me", "Bearer a").body());
+        Assertions.assertEquals("Bearer b", get(httpClientRequest, "/me", "Bearer b").body());
+        Assertions.assertEquals("Bearer a", get(httpClientRequest, "/me", "Bearer a").body());
+        Assertions.assertEquals(3, count("/me", "GET"));
+        Assertions.assertEquals(0, cache.getEntryCount());
+
+        // a public response is shared by the callers.
+        Assertions.assertEquals("Bearer a", get(httpClientRequest, "/shared", "Bearer a").body());
+        Assertions.assertEquals("Bearer a", get(httpClientRequest, "/shared", "Bearer b").body());
+        Assertions.assertEquals(1, count("/shared", "GET"));
+
+        // a private response is never stored, even without a token.
+        get(httpClientRequest, "/private", false);
+        get(httpClientRequest, "/private", true);
+        Assertions.assertEquals(2, count("/private", "GET"));
+        Assertions.assertEquals(1, cache.getEntryCount());
+    }
+}
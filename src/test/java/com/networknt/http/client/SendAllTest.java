@@ -0,0 +1,74 @@
+package com.networknt.http.client;
+
+import com.networknt.http.client.retry.BackoffRetryPolicy;
+import com.networknt.monad.Result;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SendAllTest {
+    private static HttpServer server;
+    private static final AtomicInteger inFlight = new AtomicInteger();
+    private static final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @BeforeAll
+    public static void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        // echo the id in the path after a delay that is longer for the lower ids, so they complete out of order.
+        server.createContext("/items", exchange -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            String id = exchange.getRequestURI().getPath().substring("/items/".length());
+            try {
+                Thread.sleep(Math.max(0, 50 - Integer.parseInt(id) * 2));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            byte[] body = id.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(Integer.parseInt(id) % 10 == 9 ? 404 : 200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testOrderAndParallelism() throws Exception {
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        httpClientRequest.setRetryPolicy(BackoffRetryPolicy.fixed(1, 0));
+        List<HttpRequest.Builder> builders = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            builders.add(httpClientRequest.initBuilder("http://localhost:" + server.getAddress().getPort() + "/items/" + i, HttpMethod.GET));
+        }
+        // the last one can't connect.
+        builders.add(httpClientRequest.initBuilder("http://localhost:1/items/20", HttpMethod.GET));
+        List<Result<HttpResponse<String>>> results = httpClientRequest.sendAll(builders, HttpResponse.BodyHandlers.ofString(), 4);
+        Assertions.assertEquals(21, results.size());
+        for (int i = 0; i < 20; i++) {
+            Assertions.assertTrue(results.get(i).isSuccess());
+            Assertions.assertEquals(String.valueOf(i), results.get(i).getResult().body());
+            Assertions.assertEquals(i % 10 == 9 ? 404 : 200, results.get(i).getResult().statusCode());
+        }
+        Assertions.assertTrue(results.get(20).isFailure());
+        Assertions.assertEquals(HttpClientRequest.REQUEST_FAILED, results.get(20).getError().getCode());
+        Assertions.assertTrue(maxInFlight.get() <= 4, "max in flight " + maxInFlight.get());
+    }
+}
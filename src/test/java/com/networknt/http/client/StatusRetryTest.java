@@ -0,0 +1,164 @@
+package com.networknt.http.client;
+
+import com.networknt.http.client.retry.BackoffRetryPolicy;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class StatusRetryTest {
+    private static HttpServer server;
+    private static final AtomicInteger hits = new AtomicInteger();
+    private static final List<String> keys = new CopyOnWriteArrayList<>();
+
+    @BeforeAll
+    public static void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        // the first two calls of each path are rejected with a 503 and a Retry-After header.
+        server.createContext("/unavailable", exchange -> {
+            int hit = hits.incrementAndGet();
+            byte[] body = ("hit " + hit).getBytes(StandardCharsets.UTF_8);
+            if (hit % 3 != 0) {
+                exchange.getResponseHeaders().add("Retry-After", "0");
+                exchange.sendResponseHeaders(503, body.length);
+            } else {
+                exchange.sendResponseHeaders(200, body.length);
+            }
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.createContext("/orders", exchange -> {
+            hits.incrementAndGet();
+            keys.add(String.valueOf(exchange.getRequestHeaders().getFirst(Headers.IDEMPOTENCY_KEY_STRING)));
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+        server.createContext("/later", exchange -> {
+            hits.incrementAndGet();
+            exchange.getResponseHeaders().add("Retry-After", "86400");
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+        server.createContext("/notfound", exchange -> {
+            hits.incrementAndGet();
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.stop(0);
+    }
+
+    private String url(String path) {
+        return "http://localhost:" + server.getAddress().getPort() + path;
+    }
+
+    @Test
+    public void testRetryUnavailable() throws Exception {
+        hits.set(0);
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        httpClientRequest.setRetryPolicy(BackoffRetryPolicy.fixed(3, 10));
+        HttpRequest.Builder builder = httpClientRequest.initBuilder(url("/unavailable"), HttpMethod.GET);
+        HttpResponse<?> response = httpClientRequest.send(builder, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals("hit 3", response.body());
+        Assertions.assertEquals(3, hits.get());
+    }
+
+    @Test
+    public void testRetryUnavailableAsync() throws Exception {
+        hits.set(0);
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        httpClientRequest.setRetryPolicy(BackoffRetryPolicy.fixed(3, 10));
+        HttpRequest.Builder builder = httpClientRequest.initBuilder(url("/unavailable"), HttpMethod.GET);
+        HttpResponse<?> response = httpClientRequest.sendAsync(builder, HttpResponse.BodyHandlers.ofString()).get(10, TimeUnit.SECONDS);
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals(3, hits.get());
+    }
+
+    @Test
+    public void testLastAttemptIsReturned() throws Exception {
+        hits.set(0);
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        httpClientRequest.setRetryPolicy(BackoffRetryPolicy.fixed(2, 10));
+        HttpRequest.Builder builder = httpClientRequest.initBuilder(url("/unavailable"), HttpMethod.GET);
+        HttpResponse<?> response = httpClientRequest.send(builder, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(503, response.statusCode());
+        Assertions.assertEquals("hit 2", response.body());
+    }
+
+    @Test
+    public void testLongRetryAfterIsReturned() throws Exception {
+        hits.set(0);
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        // no max delay, so only the timeout of the request limits the Retry-After.
+        httpClientRequest.setRetryPolicy(BackoffRetryPolicy.fixed(3, 10));
+        HttpRequest.Builder builder = httpClientRequest.initBuilder(url("/later"), HttpMethod.GET);
+        long start = System.currentTimeMillis();
+        HttpResponse<?> response = httpClientRequest.send(builder, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(503, response.statusCode());
+        Assertions.assertEquals(1, hits.get());
+        response = httpClientRequest.sendAsync(builder, HttpResponse.BodyHandlers.ofString()).get(10, TimeUnit.SECONDS);
+        Assertions.assertEquals(503, response.statusCode());
+        Assertions.assertEquals(2, hits.get());
+        Assertions.assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    @Test
+    public void testNotRetryableStatus() throws Exception {
+        hits.set(0);
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        httpClientRequest.setRetryPolicy(BackoffRetryPolicy.fixed(3, 10));
+        HttpRequest.Builder builder = httpClientRequest.initBuilder(url("/notfound"), HttpMethod.GET);
+        HttpResponse<?> response = httpClientRequest.send(builder, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(404, response.statusCode());
+        Assertions.assertEquals(1, hits.get());
+    }
+
+    @Test
+    public void testPostIsNotRetried() throws Exception {
+        hits.set(0);
+        keys.clear();
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        httpClientRequest.setRetryPolicy(BackoffRetryPolicy.fixed(3, 10));
+        HttpRequest.Builder builder = httpClientRequest.initBuilder(url("/orders"), HttpMethod.POST, Optional.of("{}"));
+        HttpResponse<?> response = httpClientRequest.send(builder, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(503, response.statusCode());
+        Assertions.assertEquals(1, hits.get());
+        Assertions.assertEquals("null", keys.get(0));
+    }
+
+    @Test
+    public void testPostIsRetriedWithIdempotencyKey() throws Exception {
+        hits.set(0);
+        keys.clear();
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        httpClientRequest.setRetryPolicy(BackoffRetryPolicy.fixed(3, 10));
+        httpClientRequest.setRetryNonIdempotent(true);
+        HttpRequest.Builder builder = httpClientRequest.initBuilder(url("/orders"), HttpMethod.POST, Optional.of("{}"));
+        HttpResponse<?> response = httpClientRequest.sendAsync(builder, HttpResponse.BodyHandlers.ofString()).get(10, TimeUnit.SECONDS);
+        Assertions.assertEquals(503, response.statusCode());
+        Assertions.assertEquals(3, hits.get());
+        // the same key is sent in all the attempts of the call, and a new key is generated for the next call.
+        Assertions.assertEquals(1, new HashSet<>(keys).size());
+        Assertions.assertNotEquals("null", keys.get(0));
+        httpClientRequest.send(builder, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(2, new HashSet<>(keys).size());
+    }
+}
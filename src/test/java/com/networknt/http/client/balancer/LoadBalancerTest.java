@@ -0,0 +1,211 @@
+package com.networknt.http.client.balancer;
+
+import com.networknt.cluster.Cluster;
+import com.networknt.http.client.ClientStatusException;
+import com.networknt.http.client.HttpClientRequest;
+import com.networknt.http.client.HttpMethod;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LoadBalancerTest {
+    private static final long[] DELAYS = {0, 40, 400};
+    private static final List<HttpServer> servers = new ArrayList<>();
+    private static final List<AtomicInteger> hits = new ArrayList<>();
+    private static ExecutorService serverExecutor;
+
+    /**
+     * A Cluster that returns the URIs registered for a serviceId.
+     */
+    static class StubCluster implements Cluster {
+        final Map<String, List<URI>> services = new HashMap<>();
+
+        @Override
+        public String serviceToUrl(String protocol, String serviceId, String tag, String requestKey) {
+            List<URI> uris = services(protocol, serviceId, tag);
+            return uris.isEmpty() ? null : uris.get(0).toString();
+        }
+
+        @Override
+        public List<URI> services(String protocol, String serviceId, String tag) {
+            return services.getOrDefault(serviceId, Collections.emptyList());
+        }
+    }
+
+    @BeforeAll
+    public static void startServers() throws Exception {
+        serverExecutor = Executors.newCachedThreadPool();
+        for (long delay : DELAYS) {
+            HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            AtomicInteger count = new AtomicInteger();
+            server.setExecutor(serverExecutor);
+            server.createContext("/v1/pets", exchange -> {
+                count.incrementAndGet();
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                byte[] body = (delay + " " + exchange.getRequestURI()).getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+                exchange.close();
+            });
+            server.start();
+            servers.add(server);
+            hits.add(count);
+        }
+    }
+
+    @AfterAll
+    public static void stopServers() {
+        servers.forEach(server -> server.stop(0));
+        serverExecutor.shutdown();
+    }
+
+    private static StubCluster cluster() {
+        StubCluster cluster = new StubCluster();
+        List<URI> uris = new ArrayList<>();
+        for (HttpServer server : servers) {
+            uris.add(URI.create("http://localhost:" + server.getAddress().getPort()));
+        }
+        cluster.services.put("com.networknt.petstore-1.0.0", uris);
+        return cluster;
+    }
+
+    @Test
+    public void testInstance() {
+        LoadBalancer.Instance instance = new LoadBalancer(new StubCluster(), 1000, 500).get(URI.create("https://10.0.0.5:8443"));
+        Assertions.assertEquals(URI.create("https://10.0.0.5:8443/v1/pets?limit=10"),
+                instance.resolve(URI.create("https://petstore/v1/pets?limit=10")));
+        long now = System.nanoTime();
+        Assertions.assertEquals(0.0, instance.getCost(now));
+        // a new instance gets one request at a time until it responds.
+        long start = instance.start();
+        Assertions.assertTrue(instance.getCost(now) >= 500_000_000L);
+        instance.complete(start, false);
+        Assertions.assertEquals(1, instance.getFailureCount());
+        Assertions.assertEquals(0, instance.getOutstanding());
+        // the failure is recorded with the penalty, and the peak is kept until it decays.
+        long end = System.nanoTime();
+        Assertions.assertTrue(instance.getEwma(end) >= 400_000_000L);
+        instance.observe(1_000_000L, end);
+        Assertions.assertTrue(instance.getEwma(end) >= 400_000_000L);
+        Assertions.assertTrue(instance.getEwma(end + 5_000_000_000L) < 10_000_000L);
+    }
+
+    @Test
+    public void testInstancesArePruned() {
+        StubCluster cluster = new StubCluster();
+        URI a = URI.create("http://10.0.0.1:8080");
+        URI b = URI.create("http://10.0.0.2:8080");
+        URI c = URI.create("http://10.0.0.3:8080");
+        List<URI> petstore = new ArrayList<>(List.of(a, b));
+        cluster.services.put("petstore", petstore);
+        cluster.services.put("inventory", List.of(b));
+        LoadBalancer balancer = new LoadBalancer(cluster, 1000, 500);
+        for (int i = 0; i < 20; i++) {
+            balancer.select("http", "petstore", null);
+        }
+        balancer.select("http", "inventory", null);
+        LoadBalancer.Instance instance = balancer.get(a);
+        Assertions.assertEquals(2, balancer.getStats().size());
+        // the list is updated in place, a is gone and c is new, b is still discovered for the inventory.
+        petstore.clear();
+        petstore.add(c);
+        Assertions.assertSame(balancer.get(c), balancer.select("http", "petstore", null));
+        Assertions.assertEquals(Set.of(b.toString(), c.toString()), balancer.getStats().keySet());
+        Assertions.assertNotSame(instance, balancer.get(a));
+        cluster.services.put("inventory", List.of());
+        Assertions.assertNull(balancer.select("http", "inventory", null));
+        Assertions.assertFalse(balancer.getStats().containsKey(b.toString()));
+    }
+
+    @Test
+    public void testShedLoad() throws Exception {
+        hits.forEach(count -> count.set(0));
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        // a short decay time, so that the latency of the first connections is forgotten during the test.
+        LoadBalancer balancer = new LoadBalancer(cluster(), 200, 1000);
+        httpClientRequest.setLoadBalancer(balancer);
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<HttpResponse<?>>> futures = new ArrayList<>();
+            for (int i = 0; i < 300; i++) {
+                int id = i;
+                futures.add(executor.submit(() -> httpClientRequest.send("com.networknt.petstore-1.0.0", null,
+                        httpClientRequest.initBuilder("http://petstore/v1/pets?id=" + id, HttpMethod.GET),
+                        HttpResponse.BodyHandlers.ofString())));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                HttpResponse<?> response = futures.get(i).get(30, TimeUnit.SECONDS);
+                Assertions.assertEquals(200, response.statusCode());
+                Assertions.assertTrue(((String) response.body()).endsWith("/v1/pets?id=" + i));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assertions.assertEquals(300, hits.get(0).get() + hits.get(1).get() + hits.get(2).get());
+        // the slow instance sheds most of its load to the fast ones.
+        Assertions.assertTrue(hits.get(2).get() * 4 < hits.get(0).get(), hits.toString());
+        Assertions.assertTrue(hits.get(1).get() < hits.get(0).get(), hits.toString());
+        Assertions.assertEquals(300, balancer.getSelectCount());
+        Assertions.assertEquals(3, balancer.getStats().size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testUnavailableInstance() throws Exception {
+        hits.forEach(count -> count.set(0));
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        StubCluster cluster = new StubCluster();
+        URI down = URI.create("http://localhost:" + port);
+        cluster.services.put("petstore", List.of(URI.create("http://localhost:" + servers.get(0).getAddress().getPort()), down));
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        LoadBalancer balancer = new LoadBalancer(cluster, 10000, 1000);
+        httpClientRequest.setLoadBalancer(balancer);
+        int failed = 0;
+        for (int i = 0; i < 50; i++) {
+            CompletableFuture<HttpResponse<String>> future = (CompletableFuture<HttpResponse<String>>) httpClientRequest.sendAsync(
+                    "petstore", null, httpClientRequest.initBuilder("http://petstore/v1/pets", HttpMethod.GET),
+                    HttpResponse.BodyHandlers.ofString());
+            try {
+                future.get(10, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                failed++;
+            }
+        }
+        // the instance that is down is tried once, then its penalty keeps the requests away from it.
+        Assertions.assertTrue(failed <= 2, "failed " + failed);
+        Assertions.assertEquals(failed, balancer.get(down).getFailureCount());
+        Assertions.assertEquals(50 - failed, hits.get(0).get());
+
+        ClientStatusException e = Assertions.assertThrows(ClientStatusException.class, () -> httpClientRequest.send(
+                "unknown", "dev", httpClientRequest.initBuilder("http://unknown/v1/pets", HttpMethod.GET),
+                HttpResponse.BodyHandlers.ofString()));
+        Assertions.assertEquals("ERR10083", e.getStatus().getCode());
+    }
+}
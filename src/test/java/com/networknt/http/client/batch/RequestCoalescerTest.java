@@ -0,0 +1,170 @@
+package com.networknt.http.client.batch;
+
+import com.networknt.http.client.HttpClientRequest;
+import com.networknt.http.client.HttpMethod;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RequestCoalescerTest {
+    private static HttpServer server;
+    private static ExecutorService serverExecutor;
+    private static final AtomicInteger hits = new AtomicInteger();
+    private static volatile CountDownLatch release = new CountDownLatch(0);
+
+    @BeforeAll
+    public static void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        // the response is held until the test releases it, and it echoes the Authorization header.
+        server.createContext("/slow", exchange -> {
+            hits.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = ("user " + exchange.getRequestHeaders().getFirst("Authorization")).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.stop(0);
+        serverExecutor.shutdown();
+    }
+
+    private static String url() {
+        return "http://localhost:" + server.getAddress().getPort() + "/slow";
+    }
+
+    private static void awaitHits(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (hits.get() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void testKey() {
+        RequestCoalescer coalescer = new RequestCoalescer(List.of("Authorization"));
+        HttpRequest a = HttpRequest.newBuilder(URI.create("http://localhost/a")).header("Authorization", "a").header("X-Trace", "1").build();
+        HttpRequest b = HttpRequest.newBuilder(URI.create("http://localhost/a")).header("Authorization", "a").header("X-Trace", "2").build();
+        HttpRequest c = HttpRequest.newBuilder(URI.create("http://localhost/a")).header("Authorization", "a").header("If-None-Match", "\"v1\"").build();
+        Assertions.assertEquals(coalescer.key(a), coalescer.key(b));
+        Assertions.assertNotEquals(coalescer.key(a), coalescer.key(c));
+        Assertions.assertTrue(coalescer.isCoalescable(a));
+        Assertions.assertFalse(coalescer.isCoalescable(HttpRequest.newBuilder(URI.create("http://localhost/a"))
+                .POST(HttpRequest.BodyPublishers.ofString("{}")).build()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSendAsync() throws Exception {
+        hits.set(0);
+        release = new CountDownLatch(1);
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        RequestCoalescer coalescer = new RequestCoalescer(List.of("Authorization"));
+        httpClientRequest.setRequestCoalescer(coalescer);
+        List<CompletableFuture<HttpResponse<String>>> strings = new ArrayList<>();
+        List<CompletableFuture<HttpResponse<byte[]>>> bytes = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            HttpRequest.Builder builder = httpClientRequest.initBuilder(url(), HttpMethod.GET);
+            builder.setHeader("Authorization", i < 15 ? "alice" : "bob");
+            if (i % 2 == 0) {
+                strings.add((CompletableFuture<HttpResponse<String>>) httpClientRequest.sendAsync(builder, HttpResponse.BodyHandlers.ofString()));
+            } else {
+                bytes.add((CompletableFuture<HttpResponse<byte[]>>) httpClientRequest.sendAsync(builder, HttpResponse.BodyHandlers.ofByteArray()));
+            }
+        }
+        awaitHits(2);
+        release.countDown();
+        for (int i = 0; i < strings.size(); i++) {
+            HttpResponse<String> response = strings.get(i).get(10, TimeUnit.SECONDS);
+            Assertions.assertEquals(200, response.statusCode());
+            Assertions.assertEquals(i * 2 < 15 ? "user alice" : "user bob", response.body());
+        }
+        for (CompletableFuture<HttpResponse<byte[]>> future : bytes) {
+            Assertions.assertTrue(new String(future.get(10, TimeUnit.SECONDS).body(), StandardCharsets.UTF_8).startsWith("user "));
+        }
+        Assertions.assertEquals(2, hits.get());
+        Assertions.assertEquals(20, coalescer.getRequestCount());
+        Assertions.assertEquals(2, coalescer.getExchangeCount());
+        Assertions.assertEquals(18, coalescer.getCollapsedCount());
+        Assertions.assertEquals(0, coalescer.getInFlightCount());
+
+        // a POST is never coalesced.
+        HttpRequest.Builder builder = httpClientRequest.initBuilder(url(), HttpMethod.POST, Optional.of("{}"));
+        httpClientRequest.sendAsync(builder, HttpResponse.BodyHandlers.ofString()).get(10, TimeUnit.SECONDS);
+        httpClientRequest.sendAsync(builder, HttpResponse.BodyHandlers.ofString()).get(10, TimeUnit.SECONDS);
+        Assertions.assertEquals(4, hits.get());
+        Assertions.assertEquals(20, coalescer.getRequestCount());
+    }
+
+    @Test
+    public void testSend() throws Exception {
+        hits.set(0);
+        release = new CountDownLatch(1);
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        RequestCoalescer coalescer = new RequestCoalescer(null);
+        httpClientRequest.setRequestCoalescer(coalescer);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<HttpResponse<?>>> futures = new ArrayList<>();
+            futures.add(executor.submit(() -> httpClientRequest.send(httpClientRequest.initBuilder(url(), HttpMethod.GET), HttpResponse.BodyHandlers.ofString())));
+            awaitHits(1);
+            for (int i = 0; i < 7; i++) {
+                futures.add(executor.submit(() -> httpClientRequest.send(httpClientRequest.initBuilder(url(), HttpMethod.GET), HttpResponse.BodyHandlers.ofString())));
+            }
+            long deadline = System.currentTimeMillis() + 10000;
+            while (coalescer.getCollapsedCount() < 7 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            for (Future<HttpResponse<?>> future : futures) {
+                Assertions.assertEquals("user null", future.get(10, TimeUnit.SECONDS).body());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assertions.assertEquals(1, hits.get());
+        Assertions.assertEquals(7, coalescer.getCollapsedCount());
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        RequestCoalescer coalescer = new RequestCoalescer(null);
+        httpClientRequest.setRequestCoalescer(coalescer);
+        CompletableFuture<?> first = httpClientRequest.sendAsync(httpClientRequest.initBuilder("http://localhost:1/a", HttpMethod.GET), HttpResponse.BodyHandlers.ofString());
+        CompletableFuture<?> second = httpClientRequest.sendAsync(httpClientRequest.initBuilder("http://localhost:1/a", HttpMethod.GET), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertThrows(ExecutionException.class, () -> first.get(10, TimeUnit.SECONDS));
+        Assertions.assertThrows(ExecutionException.class, () -> second.get(10, TimeUnit.SECONDS));
+        Assertions.assertEquals(0, coalescer.getInFlightCount());
+    }
+}
@@ -0,0 +1,145 @@
+package com.networknt.http.client.batch;
+
+import com.networknt.http.client.HttpClientRequest;
+import com.networknt.http.client.HttpMethod;
+import com.networknt.http.client.retry.BackoffRetryPolicy;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+public class RequestCollapserTest {
+    private static HttpServer server;
+    private static final AtomicInteger hits = new AtomicInteger();
+
+    @BeforeAll
+    public static void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        // GET /pets?ids=1,2,3 returns a line of id=name for each id except 13.
+        server.createContext("/pets", exchange -> {
+            hits.incrementAndGet();
+            String ids = exchange.getRequestURI().getQuery().substring("ids=".length());
+            StringBuilder sb = new StringBuilder();
+            for (String id : ids.split(",")) {
+                if (!"13".equals(id)) {
+                    sb.append(id).append("=pet").append(id).append('\n');
+                }
+            }
+            byte[] body = sb.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.stop(0);
+    }
+
+    private static BatchMapper<Integer, String, String> petMapper(HttpClientRequest httpClientRequest, String host) {
+        return new BatchMapper<Integer, String, String>() {
+            @Override
+            public HttpRequest.Builder toRequest(List<Integer> keys) throws Exception {
+                String ids = keys.stream().map(String::valueOf).collect(Collectors.joining(","));
+                return httpClientRequest.initBuilder(host + "/pets?ids=" + ids, HttpMethod.GET);
+            }
+
+            @Override
+            public HttpResponse.BodyHandler<String> getBodyHandler() {
+                return HttpResponse.BodyHandlers.ofString();
+            }
+
+            @Override
+            public Map<Integer, String> toValues(List<Integer> keys, HttpResponse<String> response) {
+                Map<Integer, String> values = new HashMap<>();
+                for (String line : response.body().split("\n")) {
+                    String[] pair = line.split("=");
+                    values.put(Integer.valueOf(pair[0]), pair[1]);
+                }
+                return values;
+            }
+        };
+    }
+
+    @Test
+    public void testCollapse() throws Exception {
+        hits.set(0);
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        String host = "http://localhost:" + server.getAddress().getPort();
+        RequestCollapser<Integer, String> collapser = new RequestCollapser<>(httpClientRequest, petMapper(httpClientRequest, host), 50, 10);
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            futures.add(collapser.get(i));
+        }
+        // the same key in a batch shares the value.
+        CompletableFuture<String> duplicate = collapser.get(24);
+        for (int i = 0; i < 25; i++) {
+            Assertions.assertEquals(i == 13 ? null : "pet" + i, futures.get(i).get(5, TimeUnit.SECONDS));
+        }
+        Assertions.assertEquals("pet24", duplicate.get(5, TimeUnit.SECONDS));
+        // two full batches and one sent after the max delay.
+        Assertions.assertEquals(3, hits.get());
+        Assertions.assertEquals(3L, collapser.getBatchCount());
+        Assertions.assertEquals(26L, collapser.getCallCount());
+    }
+
+    @Test
+    public void testFailure() {
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        httpClientRequest.setRetryPolicy(BackoffRetryPolicy.fixed(1, 0));
+        RequestCollapser<Integer, String> collapser = new RequestCollapser<>(httpClientRequest, petMapper(httpClientRequest, "http://localhost:1"), 10, 10);
+        CompletableFuture<String> first = collapser.get(1);
+        CompletableFuture<String> second = collapser.get(2);
+        collapser.flush();
+        Assertions.assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        Assertions.assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(1L, collapser.getBatchCount());
+    }
+
+    @Test
+    public void testFlushOffTimerThread() throws Exception {
+        HttpClientRequest httpClientRequest = new HttpClientRequest();
+        String host = "http://localhost:" + server.getAddress().getPort();
+        BatchMapper<Integer, String, String> mapper = petMapper(httpClientRequest, host);
+        AtomicReference<String> thread = new AtomicReference<>();
+        BatchMapper<Integer, String, String> recording = new BatchMapper<Integer, String, String>() {
+            @Override
+            public HttpRequest.Builder toRequest(List<Integer> keys) throws Exception {
+                thread.set(Thread.currentThread().getName());
+                return mapper.toRequest(keys);
+            }
+
+            @Override
+            public HttpResponse.BodyHandler<String> getBodyHandler() {
+                return mapper.getBodyHandler();
+            }
+
+            @Override
+            public Map<Integer, String> toValues(List<Integer> keys, HttpResponse<String> response) throws Exception {
+                return mapper.toValues(keys, response);
+            }
+        };
+        RequestCollapser<Integer, String> collapser = new RequestCollapser<>(httpClientRequest, recording, 10, 10);
+        Assertions.assertEquals("pet1", collapser.get(1).get(5, TimeUnit.SECONDS));
+        // the batch flushed after the max delay is built and sent off the shared timer thread.
+        Assertions.assertNotEquals("http-client-timer", thread.get());
+    }
+}
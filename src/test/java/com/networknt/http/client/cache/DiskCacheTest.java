@@ -0,0 +1,194 @@
+package com.networknt.http.client.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class DiskCacheTest {
+    private static final int SEGMENT_SIZE = 64 * 1024;
+    private Path directory;
+
+    @BeforeEach
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("disk-cache");
+    }
+
+    @AfterEach
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static CacheEntry entry(String key, String body, String... nameValues) {
+        Map<String, List<String>> map = new HashMap<>();
+        map.put("Cache-Control", List.of("max-age=60"));
+        for (int i = 0; i < nameValues.length; i += 2) {
+            map.put(nameValues[i], List.of(nameValues[i + 1]));
+        }
+        long now = System.currentTimeMillis();
+        return new CacheEntry(key, 200, HttpHeaders.of(map, (k, v) -> true), HttpClient.Version.HTTP_2,
+                ByteBuffer.wrap(body.getBytes(StandardCharsets.UTF_8)), now - 10, now);
+    }
+
+    private static String body(CacheEntry entry) {
+        return StandardCharsets.UTF_8.decode(entry.getBody()).toString();
+    }
+
+    private DiskCache open(long maxBytes) throws InterruptedException {
+        DiskCache cache = DiskCache.open(directory, maxBytes, SEGMENT_SIZE, 0);
+        Assertions.assertTrue(cache.awaitLoaded(10000));
+        return cache;
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        DiskCache cache = open(10 * SEGMENT_SIZE);
+        CacheEntry entry = entry("GET http://localhost/a\naccept-language:en", "hello", "Vary", "Accept-Language", "ETag", "\"v1\"");
+        cache.put(entry);
+        cache.put(entry("GET http://localhost/b", "removed"));
+        cache.put(entry("GET http://localhost/c", "old"));
+        cache.put(entry("GET http://localhost/c", "new"));
+        cache.remove("GET http://localhost/b");
+        Assertions.assertTrue(cache.flush(10000));
+        Assertions.assertEquals(2, cache.getEntryCount());
+        Assertions.assertTrue(cache.get(entry.getKey()).getBody().isDirect());
+        cache.close();
+
+        cache = open(10 * SEGMENT_SIZE);
+        Assertions.assertEquals(2, cache.getEntryCount());
+        CacheEntry loaded = cache.get(entry.getKey());
+        Assertions.assertEquals("hello", body(loaded));
+        Assertions.assertEquals(200, loaded.getStatusCode());
+        Assertions.assertEquals(HttpClient.Version.HTTP_2, loaded.getVersion());
+        Assertions.assertEquals("\"v1\"", loaded.getETag());
+        Assertions.assertEquals(entry.getResponseTime(), loaded.getResponseTime());
+        Assertions.assertEquals(entry.getFreshnessLifetime(), loaded.getFreshnessLifetime());
+        Assertions.assertEquals(List.of("accept-language"), cache.getVary("GET http://localhost/a"));
+        Assertions.assertNull(cache.get("GET http://localhost/b"));
+        Assertions.assertEquals("new", body(cache.get("GET http://localhost/c")));
+
+        cache.clear();
+        Assertions.assertTrue(cache.flush(10000));
+        cache.close();
+        cache = open(10 * SEGMENT_SIZE);
+        Assertions.assertEquals(0, cache.getEntryCount());
+        cache.close();
+    }
+
+    @Test
+    public void testResponseCacheTier() throws Exception {
+        DiskCache disk = open(10 * SEGMENT_SIZE);
+        ResponseCache cache = new ResponseCache(1024 * 1024, 16);
+        cache.setDiskCache(disk);
+        Assertions.assertEquals(SEGMENT_SIZE / 2, cache.getMaxEntryBytes());
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost/large")).build();
+        // the body is larger than the max entry bytes of the memory, so it is only stored on the disk.
+        cache.put(entry(ResponseCache.primaryKey(request), "a response larger than 16 bytes"));
+        Assertions.assertTrue(disk.flush(10000));
+        Assertions.assertEquals(0, cache.getEntryCount());
+        disk.close();
+
+        // a new process finds the entry on the disk.
+        disk = open(10 * SEGMENT_SIZE);
+        cache = new ResponseCache(1024 * 1024, 16);
+        cache.setDiskCache(disk);
+        ResponseCache.Lookup lookup = cache.lookup(request);
+        Assertions.assertEquals(ResponseCache.CacheStatus.HIT, lookup.getStatus());
+        Assertions.assertEquals("a response larger than 16 bytes", body(lookup.getEntry()));
+        Assertions.assertEquals(1, cache.getDiskHitCount());
+
+        cache.invalidate(request.uri());
+        Assertions.assertNull(cache.get(request));
+        disk.close();
+    }
+
+    @Test
+    public void testSegmentEviction() throws Exception {
+        DiskCache cache = open(2 * SEGMENT_SIZE);
+        String body = "x".repeat(10000);
+        for (int i = 0; i < 20; i++) {
+            cache.put(entry("GET http://localhost/" + i, body));
+            Assertions.assertTrue(cache.flush(10000));
+        }
+        Assertions.assertEquals(2, cache.getSegmentCount());
+        Assertions.assertTrue(cache.getSegmentEvictionCount() > 0);
+        Assertions.assertNull(cache.get("GET http://localhost/0"));
+        Assertions.assertEquals(body, body(cache.get("GET http://localhost/19")));
+        try (Stream<Path> files = Files.list(directory)) {
+            Assertions.assertEquals(2, files.count());
+        }
+        cache.close();
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        DiskCache cache = open(10 * SEGMENT_SIZE);
+        String body = "x".repeat(10000);
+        // the same keys are overwritten, so the first segment is mostly superseded.
+        for (int i = 0; i < 12; i++) {
+            cache.put(entry("GET http://localhost/" + (i % 3), body + i));
+            Assertions.assertTrue(cache.flush(10000));
+        }
+        int segments = cache.getSegmentCount();
+        Assertions.assertTrue(segments > 1);
+        cache.compactNow();
+        Assertions.assertTrue(cache.flush(10000));
+        Assertions.assertEquals(1, cache.getCompactionCount());
+        Assertions.assertTrue(cache.getSegmentCount() < segments);
+        Assertions.assertEquals(3, cache.getEntryCount());
+        Assertions.assertEquals(body + 11, body(cache.get("GET http://localhost/2")));
+        cache.close();
+
+        cache = open(10 * SEGMENT_SIZE);
+        Assertions.assertEquals(3, cache.getEntryCount());
+        Assertions.assertEquals(body + 9, body(cache.get("GET http://localhost/0")));
+        cache.close();
+    }
+
+    @Test
+    public void testCorruptRecord() throws Exception {
+        DiskCache cache = open(10 * SEGMENT_SIZE);
+        cache.put(entry("GET http://localhost/a", "first"));
+        cache.put(entry("GET http://localhost/b", "second"));
+        Assertions.assertTrue(cache.flush(10000));
+        cache.close();
+
+        // corrupt the last byte of the body of the second record.
+        Path segment = directory.resolve("segment-00000000.dat");
+        byte[] first = DiskCache.encode(entry("GET http://localhost/a", "first"));
+        byte[] second = DiskCache.encode(entry("GET http://localhost/b", "second"));
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {'X'}), first.length + 13 + 9 + second.length - 1);
+        }
+        cache = open(10 * SEGMENT_SIZE);
+        Assertions.assertEquals("first", body(cache.get("GET http://localhost/a")));
+        Assertions.assertNull(cache.get("GET http://localhost/b"));
+        // the next record is appended over the corrupt one.
+        cache.put(entry("GET http://localhost/c", "third"));
+        Assertions.assertTrue(cache.flush(10000));
+        cache.close();
+        cache = open(10 * SEGMENT_SIZE);
+        Assertions.assertEquals(2, cache.getEntryCount());
+        Assertions.assertEquals("third", body(cache.get("GET http://localhost/c")));
+        cache.close();
+    }
+}
@@ -0,0 +1,185 @@
+package com.networknt.http.client.cache;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ResponseCacheTest {
+    static HttpHeaders headers(String... nameValues) {
+        Map<String, List<String>> map = new HashMap<>();
+        for (int i = 0; i < nameValues.length; i += 2) {
+            map.put(nameValues[i], List.of(nameValues[i + 1]));
+        }
+        return HttpHeaders.of(map, (k, v) -> true);
+    }
+
+    static String httpDate(long time) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(time).atZone(ZoneOffset.UTC));
+    }
+
+    static HttpRequest get(String uri) {
+        return HttpRequest.newBuilder(URI.create(uri)).build();
+    }
+
+    static CacheEntry entry(String key, int bodySize, HttpHeaders headers, long now) {
+        return new CacheEntry(key, 200, headers, HttpClient.Version.HTTP_1_1, ByteBuffer.allocate(bodySize), now, now);
+    }
+
+    @Test
+    public void testCacheControl() {
+        CacheControl cacheControl = CacheControl.parse(List.of("max-age=\"60\", no-cache", "Stale-While-Revalidate=30"));
+        Assertions.assertEquals(60, cacheControl.maxAge);
+        Assertions.assertEquals(30, cacheControl.staleWhileRevalidate);
+        Assertions.assertTrue(cacheControl.noCache);
+        Assertions.assertFalse(cacheControl.noStore);
+        cacheControl = CacheControl.parse(List.of("no-store, max-age=abc, must-revalidate"));
+        Assertions.assertTrue(cacheControl.noStore);
+        Assertions.assertTrue(cacheControl.mustRevalidate);
+        Assertions.assertEquals(-1, cacheControl.maxAge);
+    }
+
+    @Test
+    public void testFreshness() {
+        long now = System.currentTimeMillis();
+        CacheEntry entry = entry("GET /a", 10, headers("Cache-Control", "max-age=60", "Age", "50"), now);
+        Assertions.assertEquals(50000, entry.getAge(now));
+        Assertions.assertTrue(entry.isFresh(now, -1));
+        Assertions.assertFalse(entry.isFresh(now, 10000));
+        Assertions.assertFalse(entry.isFresh(now + 10000, -1));
+
+        entry = entry("GET /a", 10, headers("Date", httpDate(now), "Expires", httpDate(now + 30000)), now);
+        Assertions.assertEquals(30000, entry.getFreshnessLifetime());
+
+        // 10% of the time since the last modification.
+        entry = entry("GET /a", 10, headers("Date", httpDate(now), "Last-Modified", httpDate(now - 1000000)), now);
+        Assertions.assertEquals(100000, entry.getFreshnessLifetime());
+
+        entry = entry("GET /a", 10, headers("Cache-Control", "max-age=10, s-maxage=20"), now);
+        Assertions.assertEquals(20000, entry.getFreshnessLifetime());
+
+        entry = entry("GET /a", 10, headers("Cache-Control", "max-age=10, stale-while-revalidate=20"), now);
+        Assertions.assertFalse(entry.isFresh(now + 15000, -1));
+        Assertions.assertTrue(entry.isStaleWhileRevalidate(now + 15000));
+        Assertions.assertFalse(entry.isStaleWhileRevalidate(now + 31000));
+
+        entry = entry("GET /a", 10, headers("Cache-Control", "max-age=60, no-cache", "ETag", "\"v1\""), now);
+        Assertions.assertFalse(entry.isFresh(now, -1));
+        Assertions.assertTrue(entry.hasValidator());
+    }
+
+    @Test
+    public void testStorable() {
+        ResponseCache cache = new ResponseCache(10000, 1000);
+        Assertions.assertTrue(cache.isStorable(200, headers("Cache-Control", "max-age=60")));
+        Assertions.assertTrue(cache.isStorable(404, headers("ETag", "\"v1\"")));
+        Assertions.assertFalse(cache.isStorable(200, headers()));
+        Assertions.assertFalse(cache.isStorable(500, headers("Cache-Control", "max-age=60")));
+        Assertions.assertFalse(cache.isStorable(200, headers("Cache-Control", "max-age=60, no-store")));
+        Assertions.assertFalse(cache.isStorable(200, headers("Cache-Control", "max-age=60", "Vary", "*")));
+        Assertions.assertFalse(cache.isStorable(200, headers("Cache-Control", "private, max-age=60")));
+        HttpRequest authorized = HttpRequest.newBuilder(URI.create("http://localhost/a")).header("Authorization", "Bearer a").build();
+        Assertions.assertFalse(cache.isStorable(authorized, 200, headers("Cache-Control", "max-age=60")));
+        Assertions.assertTrue(cache.isStorable(authorized, 200, headers("Cache-Control", "public, max-age=60")));
+        Assertions.assertTrue(cache.isStorable(authorized, 200, headers("Cache-Control", "s-maxage=60")));
+        Assertions.assertTrue(cache.isStorable(authorized, 200, headers("Cache-Control", "max-age=60, must-revalidate")));
+        Assertions.assertTrue(cache.isStorable(get("http://localhost/a"), 200, headers("Cache-Control", "max-age=60")));
+    }
+
+    @Test
+    public void testLruEviction() {
+        long now = System.currentTimeMillis();
+        HttpHeaders headers = headers("Cache-Control", "max-age=60");
+        HttpRequest a = get("http://localhost/a");
+        HttpRequest b = get("http://localhost/b");
+        // room for three entries of 500 bytes and their overhead.
+        long entrySize = entry(ResponseCache.primaryKey(a), 500, headers, now).getSize();
+        ResponseCache cache = new ResponseCache(entrySize * 3 + entrySize / 2, 1000);
+        cache.store(a, new Info(headers), ByteBuffer.allocate(500), now);
+        cache.store(b, new Info(headers), ByteBuffer.allocate(500), now);
+        cache.store(get("http://localhost/c"), new Info(headers), ByteBuffer.allocate(500), now);
+        Assertions.assertEquals(3, cache.getEntryCount());
+        // the access to a makes b the least recently used.
+        Assertions.assertNotNull(cache.get(a));
+        cache.store(get("http://localhost/d"), new Info(headers), ByteBuffer.allocate(500), now);
+        Assertions.assertEquals(1, cache.getEvictionCount());
+        Assertions.assertEquals(3, cache.getEntryCount());
+        Assertions.assertTrue(cache.getSize() <= cache.getMaxBytes());
+        Assertions.assertNotNull(cache.get(a));
+        Assertions.assertNull(cache.get(b));
+
+        // the Vary of the evicted URIs is dropped as well, so the URIs with changing queries don't grow the index.
+        for (int i = 0; i < 100; i++) {
+            cache.store(get("http://localhost/e?ids=" + i), new Info(headers), ByteBuffer.allocate(500), now);
+        }
+        Assertions.assertEquals(3, cache.getEntryCount());
+        Assertions.assertEquals(3, cache.getVaryCount());
+    }
+
+    @Test
+    public void testVary() {
+        long now = System.currentTimeMillis();
+        ResponseCache cache = new ResponseCache(100000, 10000);
+        HttpHeaders headers = headers("Cache-Control", "max-age=60", "Vary", "Accept-Language, accept");
+        HttpRequest en = HttpRequest.newBuilder(URI.create("http://localhost/a")).header("Accept-Language", "en").build();
+        HttpRequest fr = HttpRequest.newBuilder(URI.create("http://localhost/a")).header("Accept-Language", "fr").build();
+        cache.store(en, new Info(headers), ByteBuffer.wrap("hello".getBytes(StandardCharsets.UTF_8)), now);
+        Assertions.assertNotNull(cache.get(en));
+        Assertions.assertNull(cache.get(fr));
+        cache.store(fr, new Info(headers), ByteBuffer.wrap("bonjour".getBytes(StandardCharsets.UTF_8)), now);
+        Assertions.assertEquals(2, cache.getEntryCount());
+        Assertions.assertEquals(5, cache.get(en).getBody().remaining());
+        Assertions.assertEquals(7, cache.get(fr).getBody().remaining());
+
+        cache.invalidate(URI.create("http://localhost/a"));
+        Assertions.assertEquals(0, cache.getEntryCount());
+        Assertions.assertNull(cache.get(en));
+        Assertions.assertEquals(0, cache.getVaryCount());
+
+        // the Vary is kept until the last variant of the URI is evicted.
+        long entrySize = entry(ResponseCache.primaryKey(en) + "\naccept:\naccept-language:en", 5, headers, now).getSize();
+        ResponseCache small = new ResponseCache(entrySize * 2 + entrySize / 2, 1000);
+        small.store(en, new Info(headers), ByteBuffer.allocate(5), now);
+        small.store(fr, new Info(headers), ByteBuffer.allocate(5), now);
+        small.store(get("http://localhost/b"), new Info(headers("Cache-Control", "max-age=60")), ByteBuffer.allocate(5), now);
+        Assertions.assertEquals(2, small.getEntryCount());
+        Assertions.assertNull(small.get(en));
+        Assertions.assertNotNull(small.get(fr));
+        Assertions.assertEquals(2, small.getVaryCount());
+    }
+
+    static final class Info implements HttpResponse.ResponseInfo {
+        private final HttpHeaders headers;
+
+        Info(HttpHeaders headers) {
+            this.headers = headers;
+        }
+
+        @Override
+        public int statusCode() {
+            return 200;
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return headers;
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return HttpClient.Version.HTTP_1_1;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.networknt.http.client.compression;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class DecompressingBodyHandlerTest {
+    static String text(int lines) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            sb.append("{\"id\":").append(i).append(",\"name\":\"item ").append(i).append("\"}\n");
+        }
+        return sb.toString();
+    }
+
+    static byte[] gzip(String text) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return out.toByteArray();
+    }
+
+    static byte[] deflate(String text, boolean nowrap) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflate = new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap))) {
+            deflate.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Feed the body to the handler in buffers of the given size.
+     */
+    static String receive(String encoding, byte[] body, int bufferSize) {
+        HttpHeaders headers = HttpHeaders.of(Map.of("Content-Encoding", List.of(encoding),
+                "Content-Length", List.of(String.valueOf(body.length))), (k, v) -> true);
+        HttpResponse.ResponseInfo info = new HttpResponse.ResponseInfo() {
+            @Override
+            public int statusCode() {
+                return 200;
+            }
+
+            @Override
+            public HttpHeaders headers() {
+                return headers;
+            }
+
+            @Override
+            public HttpClient.Version version() {
+                return HttpClient.Version.HTTP_1_1;
+            }
+        };
+        HttpResponse.BodySubscriber<String> subscriber = new DecompressingBodyHandler<>(responseInfo -> {
+            // the caller's BodyHandler sees the headers of the decoded body.
+            Assertions.assertTrue(responseInfo.headers().firstValue("Content-Encoding").isEmpty());
+            Assertions.assertTrue(responseInfo.headers().firstValue("Content-Length").isEmpty());
+            return HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8);
+        }).apply(info);
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        for (int i = 0; i < body.length; i += bufferSize) {
+            List<ByteBuffer> item = new ArrayList<>();
+            item.add(ByteBuffer.wrap(body, i, Math.min(bufferSize, body.length - i)).slice());
+            subscriber.onNext(item);
+        }
+        subscriber.onComplete();
+        return subscriber.getBody().toCompletableFuture().join();
+    }
+
+    @Test
+    public void testGzip() throws Exception {
+        String text = text(5000);
+        byte[] body = gzip(text);
+        Assertions.assertEquals(text, receive("gzip", body, 8192));
+        // the header and the trailer split across the buffers.
+        Assertions.assertEquals(text, receive("x-gzip", body, 1));
+        Assertions.assertEquals("", receive("gzip", gzip(""), 3));
+    }
+
+    @Test
+    public void testGzipMembers() throws Exception {
+        byte[] first = gzip("first ");
+        byte[] second = gzip("second");
+        byte[] body = new byte[first.length + second.length];
+        System.arraycopy(first, 0, body, 0, first.length);
+        System.arraycopy(second, 0, body, first.length, second.length);
+        Assertions.assertEquals("first second", receive("gzip", body, 5));
+    }
+
+    @Test
+    public void testDeflate() throws Exception {
+        String text = text(3000);
+        Assertions.assertEquals(text, receive("deflate", deflate(text, false), 1000));
+        // some servers send the raw deflate data without the zlib header.
+        Assertions.assertEquals(text, receive("deflate", deflate(text, true), 1000));
+        Assertions.assertEquals(text, receive("deflate", deflate(text, true), 1));
+    }
+
+    @Test
+    public void testInvalidBody() throws Exception {
+        byte[] body = gzip(text(1000));
+        byte[] truncated = new byte[body.length - 4];
+        System.arraycopy(body, 0, truncated, 0, truncated.length);
+        CompletionException e = Assertions.assertThrows(CompletionException.class, () -> receive("gzip", truncated, 100));
+        Assertions.assertTrue(e.getCause() instanceof IOException);
+
+        body[body.length - 8] ^= 1;
+        e = Assertions.assertThrows(CompletionException.class, () -> receive("gzip", body, 100));
+        Assertions.assertTrue(e.getCause() instanceof IOException);
+
+        e = Assertions.assertThrows(CompletionException.class, () -> receive("gzip", "plain text".getBytes(StandardCharsets.UTF_8), 100));
+        Assertions.assertTrue(e.getCause() instanceof IOException);
+    }
+}
@@ -0,0 +1,120 @@
+package com.networknt.http.client.compression;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.zip.GZIPInputStream;
+
+public class GzipBodyPublisherTest {
+    /**
+     * Subscribe to the publisher and request one buffer at a time.
+     */
+    static List<ByteBuffer> collect(HttpRequest.BodyPublisher publisher) {
+        List<ByteBuffer> buffers = new ArrayList<>();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        publisher.subscribe(new Flow.Subscriber<ByteBuffer>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                buffers.add(item);
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                done.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(null);
+            }
+        });
+        done.join();
+        return buffers;
+    }
+
+    static String gunzip(List<ByteBuffer> buffers) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (ByteBuffer buffer : buffers) {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            out.write(bytes, 0, bytes.length);
+        }
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    static String text(int lines) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            sb.append("{\"id\":").append(i).append(",\"name\":\"item ").append(i).append("\"},");
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testCompress() throws Exception {
+        String text = text(20000);
+        GzipBodyPublisher publisher = GzipBodyPublisher.of(HttpRequest.BodyPublishers.ofString(text));
+        Assertions.assertEquals(-1L, publisher.contentLength());
+        List<ByteBuffer> buffers = collect(publisher);
+        long size = 0;
+        for (ByteBuffer buffer : buffers) {
+            Assertions.assertTrue(buffer.remaining() <= GzipBodyPublisher.CHUNK_SIZE);
+            size += buffer.remaining();
+        }
+        Assertions.assertTrue(size < text.length() / 5);
+        Assertions.assertEquals(text, gunzip(buffers));
+        // a retry compresses the body again.
+        Assertions.assertEquals(text, gunzip(collect(publisher)));
+        Assertions.assertEquals("", gunzip(collect(GzipBodyPublisher.of(HttpRequest.BodyPublishers.noBody()))));
+    }
+
+    @Test
+    public void testAsyncBody() throws Exception {
+        String text = text(5000);
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        // the uncompressed buffers are published from another thread.
+        HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.fromPublisher(subscriber -> {
+            SubmissionPublisher<ByteBuffer> publisher = new SubmissionPublisher<>();
+            publisher.subscribe(subscriber);
+            for (int i = 0; i < bytes.length; i += 1000) {
+                publisher.submit(ByteBuffer.wrap(bytes, i, Math.min(1000, bytes.length - i)));
+            }
+            publisher.close();
+        });
+        Assertions.assertEquals(text, gunzip(collect(GzipBodyPublisher.of(body))));
+    }
+
+    @Test
+    public void testError() {
+        HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.ofInputStream(() -> new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("broken");
+            }
+        });
+        Assertions.assertThrows(Exception.class, () -> collect(GzipBodyPublisher.of(body)));
+    }
+}
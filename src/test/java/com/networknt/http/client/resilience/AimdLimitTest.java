@@ -0,0 +1,40 @@
+package com.networknt.http.client.resilience;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class AimdLimitTest {
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(2000);
+
+    @Test
+    public void testIncreaseAndDecrease() {
+        AimdLimit limit = new AimdLimit(10, 2, 12, 0.5, 1000);
+        limit.onSample(FAST, 10, false);
+        Assertions.assertEquals(11, limit.getLimit());
+        // the limit doesn't grow when it is not in use.
+        limit.onSample(FAST, 2, false);
+        Assertions.assertEquals(11, limit.getLimit());
+        limit.onSample(FAST, 11, false);
+        limit.onSample(FAST, 12, false);
+        Assertions.assertEquals(12, limit.getLimit());
+        limit.onSample(FAST, 12, true);
+        Assertions.assertEquals(6, limit.getLimit());
+        limit.onSample(SLOW, 6, false);
+        Assertions.assertEquals(3, limit.getLimit());
+        limit.onSample(SLOW, 3, false);
+        limit.onSample(SLOW, 2, false);
+        Assertions.assertEquals(2, limit.getLimit());
+    }
+
+    @Test
+    public void testBulkheadLimit() {
+        Bulkhead bulkhead = new Bulkhead("localhost:8080", 100, 10, 0, new AimdLimit(4, 1, 10, 0.5, 1000));
+        Assertions.assertEquals(4, bulkhead.getLimit());
+        Assertions.assertTrue(bulkhead.acquire().join());
+        bulkhead.release(FAST, true);
+        Assertions.assertEquals(2, bulkhead.getLimit());
+    }
+}
@@ -0,0 +1,90 @@
+package com.networknt.http.client.resilience;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+public class BulkheadTest {
+
+    @Test
+    public void testQueueAndReject() {
+        Bulkhead bulkhead = new Bulkhead("localhost:8080", 2, 1, 0);
+        Assertions.assertTrue(bulkhead.acquire().join());
+        Assertions.assertTrue(bulkhead.acquire().join());
+        CompletableFuture<Boolean> waiter = bulkhead.acquire();
+        Assertions.assertFalse(waiter.isDone());
+        Assertions.assertEquals(1, bulkhead.getQueued());
+        // the queue is full, so the next caller is rejected right away.
+        CompletableFuture<Boolean> rejected = bulkhead.acquire();
+        Assertions.assertTrue(rejected.isDone());
+        Assertions.assertFalse(rejected.join());
+        Assertions.assertEquals(1L, bulkhead.getRejectedCount());
+        // the released permit is handed over to the waiter.
+        bulkhead.release();
+        Assertions.assertTrue(waiter.join());
+        Assertions.assertEquals(2, bulkhead.getInFlight());
+        Assertions.assertEquals(0, bulkhead.getQueued());
+    }
+
+    @Test
+    public void testMaxWait() {
+        Bulkhead bulkhead = new Bulkhead("localhost:8080", 1, 10, 50);
+        Assertions.assertTrue(bulkhead.acquire().join());
+        CompletableFuture<Boolean> waiter = bulkhead.acquire();
+        Assertions.assertFalse(waiter.join());
+        Assertions.assertEquals(0, bulkhead.getQueued());
+        Assertions.assertEquals(1L, bulkhead.getRejectedCount());
+        // the timed out waiter doesn't take the permit.
+        bulkhead.release();
+        Assertions.assertEquals(0, bulkhead.getInFlight());
+    }
+
+    @Test
+    public void testTryAcquire() {
+        Bulkhead bulkhead = new Bulkhead("localhost:8080", 1, 10, 0);
+        Assertions.assertTrue(bulkhead.tryAcquire());
+        // it doesn't wait in the queue.
+        Assertions.assertFalse(bulkhead.tryAcquire());
+        Assertions.assertEquals(0, bulkhead.getQueued());
+        bulkhead.release();
+        Assertions.assertTrue(bulkhead.tryAcquire());
+        Assertions.assertEquals(1, bulkhead.getInFlight());
+    }
+
+    @Test
+    public void testCancel() {
+        Bulkhead bulkhead = new Bulkhead("localhost:8080", 1, 10, 0);
+        Assertions.assertTrue(bulkhead.acquire().join());
+        CompletableFuture<Boolean> waiter = bulkhead.acquire();
+        bulkhead.cancel(waiter);
+        bulkhead.release();
+        Assertions.assertEquals(0, bulkhead.getInFlight());
+        // cancel a granted permit releases it.
+        CompletableFuture<Boolean> granted = bulkhead.acquire();
+        Assertions.assertTrue(granted.join());
+        bulkhead.cancel(granted);
+        Assertions.assertEquals(0, bulkhead.getInFlight());
+    }
+
+    @Test
+    public void testSetLimit() {
+        Bulkhead bulkhead = new Bulkhead("localhost:8080", 1, 10, 0);
+        Assertions.assertTrue(bulkhead.acquire().join());
+        CompletableFuture<Boolean> waiter = bulkhead.acquire();
+        Assertions.assertFalse(waiter.isDone());
+        bulkhead.setLimit(2);
+        Assertions.assertTrue(waiter.join());
+        Assertions.assertEquals(2, bulkhead.getInFlight());
+    }
+
+    @Test
+    public void testLimits() {
+        Bulkheads bulkheads = new Bulkheads(10, 10, 100, Map.of("localhost:8443", 2));
+        Assertions.assertEquals(2, bulkheads.get("localhost:8443").getLimit());
+        Assertions.assertEquals(10, bulkheads.get("localhost:8080").getLimit());
+        Assertions.assertSame(bulkheads.get("localhost:8080"), bulkheads.get("localhost:8080"));
+        Assertions.assertEquals(2, bulkheads.getStats().size());
+    }
+}
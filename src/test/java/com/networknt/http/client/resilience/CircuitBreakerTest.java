@@ -0,0 +1,76 @@
+package com.networknt.http.client.resilience;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class CircuitBreakerTest {
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+    @Test
+    public void testOpenOnFailureRate() {
+        CircuitBreaker breaker = new CircuitBreaker("localhost:8080", 10, 4, 50, 0, 0, 60000, 2);
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertTrue(breaker.tryAcquire());
+            breaker.onResult(FAST, true);
+        }
+        // not enough calls in the window yet.
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        Assertions.assertTrue(breaker.tryAcquire());
+        breaker.onResult(FAST, false);
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Assertions.assertFalse(breaker.tryAcquire());
+        Assertions.assertEquals(1L, breaker.getRejectedCount());
+    }
+
+    @Test
+    public void testSlidingWindow() {
+        CircuitBreaker breaker = new CircuitBreaker("localhost:8080", 4, 4, 50, 0, 0, 60000, 2);
+        breaker.onResult(FAST, true);
+        for (int i = 0; i < 10; i++) {
+            breaker.onResult(FAST, false);
+        }
+        Assertions.assertEquals(0, breaker.getFailureRate());
+        breaker.onResult(FAST, true);
+        Assertions.assertEquals(25, breaker.getFailureRate());
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testOpenOnSlowCallRate() {
+        CircuitBreaker breaker = new CircuitBreaker("localhost:8080", 10, 2, 50, 100, 100, 60000, 2);
+        breaker.onResult(SLOW, false);
+        breaker.onResult(SLOW, false);
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void testHalfOpen() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("localhost:8080", 10, 1, 50, 0, 0, 50, 2);
+        breaker.onResult(FAST, true);
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Thread.sleep(100);
+        // only the probe calls are permitted.
+        Assertions.assertTrue(breaker.tryAcquire());
+        Assertions.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        Assertions.assertTrue(breaker.tryAcquire());
+        Assertions.assertFalse(breaker.tryAcquire());
+        // a probe that is not sent gives back its permit.
+        breaker.release();
+        Assertions.assertTrue(breaker.tryAcquire());
+        breaker.onResult(FAST, false);
+        Assertions.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.onResult(FAST, true);
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        Thread.sleep(100);
+        Assertions.assertTrue(breaker.tryAcquire());
+        Assertions.assertTrue(breaker.tryAcquire());
+        breaker.onResult(FAST, false);
+        breaker.onResult(FAST, false);
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        Assertions.assertTrue(breaker.tryAcquire());
+    }
+}
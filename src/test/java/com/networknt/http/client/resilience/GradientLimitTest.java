@@ -0,0 +1,56 @@
+package com.networknt.http.client.resilience;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class GradientLimitTest {
+    private static final long BASE = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * The round-trip time is flat up to the knee and grows with the square of the overload beyond it.
+     */
+    private static long rtt(int concurrency, int knee) {
+        double overload = Math.max(1.0, (double) concurrency / knee);
+        return (long) (BASE * overload * overload);
+    }
+
+    @Test
+    public void testConvergeFromBelow() {
+        GradientLimit limit = new GradientLimit(1, 1, 1000, 1.5, 0.2);
+        for (int i = 0; i < 20000; i++) {
+            int inFlight = limit.getLimit();
+            limit.onSample(rtt(inFlight, 20), inFlight, false);
+        }
+        Assertions.assertTrue(limit.getLimit() >= 20 && limit.getLimit() <= 40, "limit " + limit.getLimit());
+    }
+
+    @Test
+    public void testConvergeFromAbove() {
+        GradientLimit limit = new GradientLimit(200, 1, 1000, 1.5, 0.2);
+        // the baseline is learned at a low concurrency before the load goes up.
+        limit.onSample(BASE, 1, false);
+        for (int i = 0; i < 20000; i++) {
+            int inFlight = limit.getLimit();
+            limit.onSample(rtt(inFlight, 20), inFlight, false);
+        }
+        Assertions.assertTrue(limit.getLimit() >= 20 && limit.getLimit() <= 40, "limit " + limit.getLimit());
+    }
+
+    @Test
+    public void testDropped() {
+        GradientLimit limit = new GradientLimit(100, 1, 1000, 1.5, 1.0);
+        limit.onSample(BASE, 100, true);
+        Assertions.assertEquals(50, limit.getLimit());
+    }
+
+    @Test
+    public void testNotInUse() {
+        GradientLimit limit = new GradientLimit(10, 1, 1000, 1.5, 1.0);
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(BASE, 1, false);
+        }
+        Assertions.assertEquals(10, limit.getLimit());
+    }
+}
@@ -0,0 +1,39 @@
+package com.networknt.http.client.resilience;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class HedgePolicyTest {
+
+    @Test
+    public void testBudget() {
+        HedgePolicy policy = new HedgePolicy(100, 0, 10, 1);
+        Assertions.assertFalse(policy.tryAcquire());
+        for (int i = 0; i < 9; i++) {
+            policy.onRequest();
+        }
+        Assertions.assertFalse(policy.tryAcquire());
+        policy.onRequest();
+        Assertions.assertTrue(policy.tryAcquire());
+        Assertions.assertFalse(policy.tryAcquire());
+        // the unspent budget is capped to the burst.
+        for (int i = 0; i < 100; i++) {
+            policy.onRequest();
+        }
+        Assertions.assertTrue(policy.tryAcquire());
+        Assertions.assertFalse(policy.tryAcquire());
+        Assertions.assertEquals(2L, policy.getHedgeCount());
+        Assertions.assertEquals(110L, policy.getRequestCount());
+    }
+
+    @Test
+    public void testPercentileDelay() {
+        HedgePolicy policy = new HedgePolicy(100, 95, 10, 1);
+        Assertions.assertEquals(100L, policy.getDelay("localhost:8443"));
+        for (int i = 1; i <= 128; i++) {
+            policy.recordLatency("localhost:8443", i);
+        }
+        Assertions.assertEquals(122L, policy.getDelay("localhost:8443"));
+        Assertions.assertEquals(100L, policy.getDelay("localhost:8444"));
+    }
+}
@@ -0,0 +1,59 @@
+package com.networknt.http.client.retry;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class BackoffRetryPolicyTest {
+
+    @Test
+    public void testFixedDelay() {
+        BackoffRetryPolicy policy = BackoffRetryPolicy.fixed(3, 100);
+        Assertions.assertEquals(3, policy.getMaxAttempts());
+        Assertions.assertEquals(100L, policy.getDelay(1, 0));
+        Assertions.assertEquals(100L, policy.getDelay(2, 100));
+    }
+
+    @Test
+    public void testExponentialWithCap() {
+        BackoffRetryPolicy policy = new BackoffRetryPolicy(10, 100, 1000, 2, Jitter.NONE, 0);
+        Assertions.assertEquals(100L, policy.getDelay(1, 0));
+        Assertions.assertEquals(200L, policy.getDelay(2, 100));
+        Assertions.assertEquals(400L, policy.getDelay(3, 200));
+        Assertions.assertEquals(1000L, policy.getDelay(5, 800));
+        Assertions.assertEquals(1000L, policy.getDelay(100, 1000));
+    }
+
+    @Test
+    public void testFullJitter() {
+        BackoffRetryPolicy policy = new BackoffRetryPolicy(10, 100, 1000, 2, Jitter.FULL, 0);
+        for (int i = 0; i < 1000; i++) {
+            long delay = policy.getDelay(3, 0);
+            Assertions.assertTrue(delay >= 0 && delay <= 400, "delay " + delay);
+        }
+    }
+
+    @Test
+    public void testDecorrelatedJitter() {
+        BackoffRetryPolicy policy = new BackoffRetryPolicy(10, 100, 1000, 1, Jitter.DECORRELATED, 0);
+        long previous = 0;
+        for (int attempt = 1; attempt < 1000; attempt++) {
+            long delay = policy.getDelay(attempt, previous);
+            Assertions.assertTrue(delay >= 100 && delay <= Math.min(1000, Math.max(100, previous) * 3), "delay " + delay);
+            previous = delay;
+        }
+    }
+
+    @Test
+    public void testManyAttemptsWithoutCap() {
+        BackoffRetryPolicy full = new BackoffRetryPolicy(Integer.MAX_VALUE, 100, 0, 2, Jitter.FULL, 0);
+        BackoffRetryPolicy none = new BackoffRetryPolicy(Integer.MAX_VALUE, 100, 0, 2, Jitter.NONE, 0);
+        BackoffRetryPolicy decorrelated = new BackoffRetryPolicy(Integer.MAX_VALUE, 100, 0, 1, Jitter.DECORRELATED, 0);
+        for (int attempt : new int[]{64, 1000, 100000, Integer.MAX_VALUE}) {
+            long delay = full.getDelay(attempt, 0);
+            Assertions.assertTrue(delay >= 0 && delay <= BackoffRetryPolicy.BACKOFF_LIMIT, "delay " + delay);
+            Assertions.assertEquals(BackoffRetryPolicy.BACKOFF_LIMIT, none.getDelay(attempt, 0));
+            delay = decorrelated.getDelay(attempt, Long.MAX_VALUE);
+            Assertions.assertTrue(delay >= 100 && delay <= BackoffRetryPolicy.BACKOFF_LIMIT * 3, "delay " + delay);
+        }
+    }
+}
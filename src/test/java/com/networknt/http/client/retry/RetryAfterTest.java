@@ -0,0 +1,32 @@
+package com.networknt.http.client.retry;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+public class RetryAfterTest {
+
+    @Test
+    public void testSeconds() {
+        Assertions.assertEquals(120000L, RetryAfter.parse("120", 0));
+        Assertions.assertEquals(0L, RetryAfter.parse(" 0 ", 0));
+    }
+
+    @Test
+    public void testHttpDate() {
+        long now = 1700000000000L;
+        String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(now + 30000).atOffset(ZoneOffset.UTC));
+        Assertions.assertEquals(30000L, RetryAfter.parse(date, now));
+        Assertions.assertEquals(0L, RetryAfter.parse(date, now + 60000));
+    }
+
+    @Test
+    public void testInvalid() {
+        Assertions.assertEquals(-1L, RetryAfter.parse(null, 0));
+        Assertions.assertEquals(-1L, RetryAfter.parse("soon", 0));
+        Assertions.assertEquals(-1L, RetryAfter.parse("99999999999999999999", 0));
+    }
+}